@@ -2,6 +2,7 @@ package com.fanaujie.ripple.apigateway.config;
 
 import com.fanaujie.ripple.cache.driver.RedisDriver;
 import com.fanaujie.ripple.cache.service.impl.RedisConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.impl.RedisDeliveryCursorStorage;
 import com.fanaujie.ripple.cache.service.impl.RedisUserProfileStorage;
 import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
 import com.fanaujie.ripple.communication.msgapi.MessageAPISender;
@@ -10,6 +11,7 @@ import com.fanaujie.ripple.protobuf.msgapiserver.MessageAPIGrpc;
 import com.fanaujie.ripple.snowflakeid.client.SnowflakeIdClient;
 import com.fanaujie.ripple.storage.spi.RippleStorageLoader;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.cache.service.UserProfileStorage;
 import org.redisson.api.RedissonClient;
@@ -70,6 +72,13 @@ public class ComponentConfig {
         return new RedisUserProfileStorage(redissonClient, storageFacade);
     }
 
+    @Bean
+    public DeliveryCursorStorage deliveryCursorStorage(
+            RedissonClient redissonClient,
+            @Value("${delivery.cursor.ttl-seconds}") int cursorTtlSeconds) {
+        return new RedisDeliveryCursorStorage(redissonClient, cursorTtlSeconds);
+    }
+
     @Bean
     public ConversationSummaryStorage conversationStorage(
             RedissonClient redissonClient, RippleStorageFacade storageFacade) {
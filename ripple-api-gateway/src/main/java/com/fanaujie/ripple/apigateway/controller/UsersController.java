@@ -278,6 +278,44 @@ public class UsersController {
         }
     }
 
+    @GetMapping(value = "/me/devices/{deviceId}/redelivery-cursors", produces = "application/json")
+    @Operation(
+            summary = "Take redelivery cursors",
+            description =
+                    "Retrieve the conversations with messages that could not be delivered to the device while it was connected, and clear them. Read each conversation's messages after afterMessageId to catch up without a full resync.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "Successfully retrieved redelivery cursors",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema =
+                                                @Schema(
+                                                        implementation =
+                                                                RedeliveryCursorsResponse.class))),
+                @ApiResponse(
+                        responseCode = "401",
+                        description = "Unauthorized access",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = CommonResponse.class)))
+            })
+    public ResponseEntity<RedeliveryCursorsResponse> takeRedeliveryCursors(
+            @Parameter(description = "Device ID", required = true) @PathVariable("deviceId")
+                    String deviceId,
+            @Parameter(hidden = true) @AuthenticationPrincipal Jwt jwt) {
+        try {
+            long currentUserId = Long.parseLong(jwt.getSubject());
+            return messageService.takeRedeliveryCursors(currentUserId, deviceId);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest()
+                    .body(RedeliveryCursorsResponse.error(400, "Invalid user ID format"));
+        }
+    }
+
     // ==================== Profile ====================
 
     @GetMapping(value = "/me/profile", produces = "application/json")
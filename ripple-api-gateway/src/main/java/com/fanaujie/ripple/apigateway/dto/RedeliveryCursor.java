@@ -0,0 +1,14 @@
+package com.fanaujie.ripple.apigateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedeliveryCursor {
+    private String conversationId;
+    // Read the conversation's messages after this id to catch up on the undelivered ones
+    private String afterMessageId;
+}
@@ -0,0 +1,14 @@
+package com.fanaujie.ripple.apigateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedeliveryCursorsData {
+    private List<RedeliveryCursor> cursors;
+}
@@ -0,0 +1,22 @@
+package com.fanaujie.ripple.apigateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedeliveryCursorsResponse {
+    private int code;
+    private String message;
+    private RedeliveryCursorsData data;
+
+    public static RedeliveryCursorsResponse success(RedeliveryCursorsData data) {
+        return new RedeliveryCursorsResponse(200, "success", data);
+    }
+
+    public static RedeliveryCursorsResponse error(int code, String message) {
+        return new RedeliveryCursorsResponse(code, message, null);
+    }
+}
@@ -1,6 +1,6 @@
 package com.fanaujie.ripple.apigateway.dto;
 
-import com.fanaujie.ripple.apigateway.service.utils.FileTypeUtils;
+import com.fanaujie.ripple.storage.service.utils.FileTypeUtils;
 import com.fanaujie.ripple.protobuf.msgapiserver.SingleMessageContent;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -7,6 +7,7 @@ import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
 import com.fanaujie.ripple.snowflakeid.client.SnowflakeIdClient;
 import com.fanaujie.ripple.storage.model.Messages;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.List;
 
 @Service
 @Slf4j
@@ -26,16 +28,19 @@ public class MessageService {
     private final SnowflakeIdClient snowflakeIdClient;
     private final RippleStorageFacade storageFacade;
     private final ConversationSummaryStorage conversationStorage;
+    private final DeliveryCursorStorage deliveryCursorStorage;
 
     public MessageService(
             MessageAPISender messageAPISender,
             SnowflakeIdClient snowflakeIdClient,
             RippleStorageFacade storageFacade,
-            ConversationSummaryStorage conversationStorage) {
+            ConversationSummaryStorage conversationStorage,
+            DeliveryCursorStorage deliveryCursorStorage) {
         this.messageAPISender = messageAPISender;
         this.snowflakeIdClient = snowflakeIdClient;
         this.storageFacade = storageFacade;
         this.conversationStorage = conversationStorage;
+        this.deliveryCursorStorage = deliveryCursorStorage;
     }
 
     public ResponseEntity<MessageResponse> sendMessage(SendMessageRequest request) {
@@ -92,6 +97,29 @@ public class MessageService {
         }
     }
 
+    // Cursors are removed once taken, messages pushed after that are delivered or recorded again
+    public ResponseEntity<RedeliveryCursorsResponse> takeRedeliveryCursors(
+            long userId, String deviceId) {
+        try {
+            List<RedeliveryCursor> cursors =
+                    deliveryCursorStorage
+                            .takeUndelivered(String.valueOf(userId), deviceId)
+                            .entrySet()
+                            .stream()
+                            .map(
+                                    e ->
+                                            new RedeliveryCursor(
+                                                    e.getKey(), String.valueOf(e.getValue() - 1)))
+                            .toList();
+            return ResponseEntity.ok(
+                    RedeliveryCursorsResponse.success(new RedeliveryCursorsData(cursors)));
+        } catch (Exception e) {
+            log.error("takeRedeliveryCursors: Error taking redelivery cursors", e);
+            return ResponseEntity.status(500)
+                    .body(RedeliveryCursorsResponse.error(500, "Internal server error"));
+        }
+    }
+
     private int validateReadSize(int readSize, int maxSize) {
         if (readSize <= 0) {
             return maxSize;
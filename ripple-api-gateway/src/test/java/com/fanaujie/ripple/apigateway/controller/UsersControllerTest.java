@@ -752,6 +752,28 @@ class UsersControllerTest {
         verify(messageService).markLastReadMessageId("conv1", 100L, 1L);
     }
 
+    @Test
+    void takeRedeliveryCursors_Success() throws Exception {
+        RedeliveryCursorsData data =
+                new RedeliveryCursorsData(List.of(new RedeliveryCursor("conv1", "99")));
+        when(messageService.takeRedeliveryCursors(1L, "device-1"))
+                .thenReturn(ResponseEntity.ok(RedeliveryCursorsResponse.success(data)));
+
+        mockMvc.perform(
+                        get("/api/users/me/devices/{deviceId}/redelivery-cursors", "device-1")
+                                .with(
+                                        jwt().jwt(builder -> builder.subject(USER_ID))
+                                                .authorities(
+                                                        Collections.singletonList(
+                                                                new SimpleGrantedAuthority(
+                                                                        "ROLE_user")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.cursors[0].conversationId").value("conv1"))
+                .andExpect(jsonPath("$.data.cursors[0].afterMessageId").value("99"));
+
+        verify(messageService).takeRedeliveryCursors(1L, "device-1");
+    }
+
     // ==================== User Groups Tests ====================
 
     @Test
@@ -2,6 +2,7 @@ package com.fanaujie.ripple.apigateway.service;
 
 import com.fanaujie.ripple.apigateway.dto.*;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
 import com.fanaujie.ripple.communication.msgapi.MessageAPISender;
 import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
@@ -17,6 +18,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +37,8 @@ class MessageServiceTest {
 
     @MockitoBean private ConversationSummaryStorage conversationStorage;
 
+    @MockitoBean private DeliveryCursorStorage deliveryCursorStorage;
+
     @Autowired private MessageService messageService;
 
     private static final long SENDER_ID = 1L;
@@ -44,7 +49,12 @@ class MessageServiceTest {
 
     @BeforeEach
     void setUp() {
-        reset(messageAPISender, snowflakeIdClient, storageFacade, conversationStorage);
+        reset(
+                messageAPISender,
+                snowflakeIdClient,
+                storageFacade,
+                conversationStorage,
+                deliveryCursorStorage);
     }
 
     // ==================== sendMessage Tests ====================
@@ -325,4 +335,43 @@ class MessageServiceTest {
                         eq(CONVERSATION_ID), eq(SENDER_ID), eq(MESSAGE_ID), anyLong());
         verify(conversationStorage, never()).resetUnreadCount(anyLong(), anyString());
     }
+
+    // ==================== takeRedeliveryCursors Tests ====================
+
+    @Test
+    void takeRedeliveryCursors_Success() {
+        // Given
+        when(deliveryCursorStorage.takeUndelivered("1", "device-1"))
+                .thenReturn(Map.of(CONVERSATION_ID, MESSAGE_ID));
+
+        // When
+        ResponseEntity<RedeliveryCursorsResponse> response =
+                messageService.takeRedeliveryCursors(SENDER_ID, "device-1");
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(200, response.getBody().getCode());
+        // The cursor points before the oldest undelivered message, reads after it are exclusive
+        assertEquals(
+                List.of(
+                        new RedeliveryCursor(CONVERSATION_ID, String.valueOf(MESSAGE_ID - 1))),
+                response.getBody().getData().getCursors());
+    }
+
+    @Test
+    void takeRedeliveryCursors_Error_ReturnsInternalError() {
+        // Given
+        when(deliveryCursorStorage.takeUndelivered(anyString(), anyString()))
+                .thenThrow(new RuntimeException("Redis error"));
+
+        // When
+        ResponseEntity<RedeliveryCursorsResponse> response =
+                messageService.takeRedeliveryCursors(SENDER_ID, "device-1");
+
+        // Then
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(500, response.getBody().getCode());
+    }
 }
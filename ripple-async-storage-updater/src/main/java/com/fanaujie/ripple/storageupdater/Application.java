@@ -4,10 +4,13 @@ import com.fanaujie.ripple.cache.driver.RedisDriver;
 import com.fanaujie.ripple.cache.service.impl.RedisUserProfileStorage;
 import com.fanaujie.ripple.communication.msgqueue.GenericConsumer;
 import com.fanaujie.ripple.communication.msgqueue.GenericProducer;
+import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaConsumerConfig;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaConsumerConfigFactory;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaGenericConsumer;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaGenericProducer;
+import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaParallelConsumer;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaProducerConfigFactory;
+import com.fanaujie.ripple.communication.msgqueue.kafka.ParallelConsumerConfig;
 import com.fanaujie.ripple.communication.processor.DefaultProcessorDispatcher;
 import com.fanaujie.ripple.communication.processor.ProcessorDispatcher;
 import com.fanaujie.ripple.protobuf.push.PushMessage;
@@ -26,6 +29,7 @@ import com.typesafe.config.ConfigFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -48,6 +52,16 @@ public class Application {
         int kafkaMaxPollRecords = config.getInt("kafka.consumer.max-poll-records");
         int kafkaFetchMinBytes = config.getInt("kafka.consumer.fetch-min-bytes");
         int kafkaFetchMaxWaitMs = config.getInt("kafka.consumer.fetch-max-wait-ms");
+        int kafkaParallelLaneSize = config.getInt("kafka.consumer.parallel.lane-size");
+        ParallelConsumerConfig.LaneOrdering kafkaParallelOrdering =
+                config.getEnum(
+                        ParallelConsumerConfig.LaneOrdering.class,
+                        "kafka.consumer.parallel.ordering");
+        int kafkaParallelMaxPending =
+                config.getInt("kafka.consumer.parallel.max-pending-per-partition");
+        int kafkaProducerLingerMs = config.getInt("kafka.producer.linger-ms");
+        int kafkaProducerBatchSize = config.getInt("kafka.producer.batch-size");
+        String kafkaProducerCompressionType = config.getString("kafka.producer.compression-type");
 
         int processorThreadPoolSize = config.getInt("processor.thread.pool.size");
         logger.info("Configuration - Redis Host: {}, Redis Port: {}", redisHost, redisPort);
@@ -57,6 +71,16 @@ public class Application {
         logger.info("Push Topic: {}", pushTopic);
         logger.info("Consumer Group ID: {}", consumerGroupId);
         logger.info("Consumer Client ID: {}", consumerClientId);
+        logger.info(
+                "Kafka Consumer Parallel Config - Lane Size: {}, Ordering: {}, Max Pending Per Partition: {}",
+                kafkaParallelLaneSize,
+                kafkaParallelOrdering,
+                kafkaParallelMaxPending);
+        logger.info(
+                "Kafka Producer Config - Linger (ms): {}, Batch Size: {}, Compression Type: {}",
+                kafkaProducerLingerMs,
+                kafkaProducerBatchSize,
+                kafkaProducerCompressionType);
 
         RippleStorageFacade storageFacade = RippleStorageLoader.load(System::getenv);
 
@@ -65,7 +89,11 @@ public class Application {
                 createExecutorService(cpuSize, cpuSize * 2, processorThreadPoolSize);
 
         GenericProducer<String, PushMessage> pushMessageProducer =
-                createPushMessageProducer(brokerServer);
+                createPushMessageProducer(
+                        brokerServer,
+                        kafkaProducerLingerMs,
+                        kafkaProducerBatchSize,
+                        kafkaProducerCompressionType);
 
         RedisUserProfileStorage userProfileCache =
                 new RedisUserProfileStorage(
@@ -78,7 +106,8 @@ public class Application {
                                 executorService,
                                 pushMessageProducer,
                                 pushTopic,
-                                userProfileCache));
+                                userProfileCache),
+                        List.of(pushMessageProducer));
 
         GenericConsumer<String, StorageUpdatePayload> kafkaConsumer =
                 createStorageUpdateTopicConsumer(
@@ -89,6 +118,12 @@ public class Application {
                         kafkaMaxPollRecords,
                         kafkaFetchMinBytes,
                         kafkaFetchMaxWaitMs,
+                        kafkaParallelLaneSize > 0
+                                ? new ParallelConsumerConfig(
+                                        kafkaParallelLaneSize,
+                                        kafkaParallelOrdering,
+                                        kafkaParallelMaxPending)
+                                : null,
                         storageUpdateConsumer);
 
         Thread consumerThread = new Thread(kafkaConsumer);
@@ -113,17 +148,21 @@ public class Application {
             int maxPollRecords,
             int fetchMinBytes,
             int fetchMaxWaitMs,
+            ParallelConsumerConfig parallelConfig,
             StorageUpdateConsumer storageUpdateConsumer) {
+        KafkaConsumerConfig consumerConfig =
+                KafkaConsumerConfigFactory.createStorageUpdatePayloadConsumerConfig(
+                        topic,
+                        brokerServer,
+                        groupId,
+                        clientId,
+                        maxPollRecords,
+                        fetchMinBytes,
+                        fetchMaxWaitMs);
         GenericConsumer<String, StorageUpdatePayload> consumer =
-                new KafkaGenericConsumer<>(
-                        KafkaConsumerConfigFactory.createStorageUpdatePayloadConsumerConfig(
-                                topic,
-                                brokerServer,
-                                groupId,
-                                clientId,
-                                maxPollRecords,
-                                fetchMinBytes,
-                                fetchMaxWaitMs));
+                parallelConfig != null
+                        ? new KafkaParallelConsumer<>(consumerConfig, parallelConfig)
+                        : new KafkaGenericConsumer<>(consumerConfig);
         consumer.subscribe(storageUpdateConsumer::consumeBatch);
         return consumer;
     }
@@ -162,8 +201,10 @@ public class Application {
                 coreSize, maxSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity));
     }
 
-    private GenericProducer<String, PushMessage> createPushMessageProducer(String brokerServer) {
+    private GenericProducer<String, PushMessage> createPushMessageProducer(
+            String brokerServer, int lingerMs, int batchSize, String compressionType) {
         return new KafkaGenericProducer<>(
-                KafkaProducerConfigFactory.createPushMessageProducerConfig(brokerServer));
+                KafkaProducerConfigFactory.createPushMessageProducerConfig(
+                        brokerServer, lingerMs, batchSize, compressionType));
     }
 }
@@ -1,6 +1,8 @@
 package com.fanaujie.ripple.storageupdater.consumer;
 
+import com.fanaujie.ripple.communication.msgqueue.GenericProducer;
 import com.fanaujie.ripple.communication.msgqueue.MessageRecord;
+import com.fanaujie.ripple.communication.msgqueue.exception.ProducerException;
 import com.fanaujie.ripple.communication.processor.ProcessorDispatcher;
 import com.fanaujie.ripple.protobuf.storageupdater.StorageUpdatePayload;
 import org.slf4j.Logger;
@@ -13,11 +15,14 @@ public class StorageUpdateConsumer {
 
     private final ProcessorDispatcher<StorageUpdatePayload.PayloadCase, StorageUpdatePayload, Void>
             payloadRouter;
+    private final List<GenericProducer<?, ?>> producers;
 
     public StorageUpdateConsumer(
             ProcessorDispatcher<StorageUpdatePayload.PayloadCase, StorageUpdatePayload, Void>
-                    payloadRouter) {
+                    payloadRouter,
+            List<GenericProducer<?, ?>> producers) {
         this.payloadRouter = payloadRouter;
+        this.producers = producers;
     }
 
     public void consumeBatch(List<MessageRecord<String, StorageUpdatePayload>> records)
@@ -29,6 +34,17 @@ public class StorageUpdateConsumer {
                 logger.error("Error consuming message with key: {}", record.key(), e);
             }
         }
+        // Wait for every record sent while processing this batch before offsets are committed.
+        // Like a record that fails to process, a failed send is logged and the batch is still
+        // committed, so one unreachable topic doesn't stop the storage updates.
+        for (GenericProducer<?, ?> producer : producers) {
+            try {
+                producer.flush();
+            } catch (ProducerException e) {
+                logger.error(
+                        "consumeBatch: Failed to send messages of {} records", records.size(), e);
+            }
+        }
     }
 
     public void consume(String key, StorageUpdatePayload payload) throws Exception {
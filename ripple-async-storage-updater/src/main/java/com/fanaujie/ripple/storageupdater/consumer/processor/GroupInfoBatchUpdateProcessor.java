@@ -127,6 +127,6 @@ public class GroupInfoBatchUpdateProcessor implements Processor<StorageUpdatePay
                         .build();
 
         PushMessage pushMessage = PushMessage.newBuilder().setMessageData(messageData).build();
-        pushMessageProducer.send(pushTopic, String.valueOf(groupId), pushMessage);
+        pushMessageProducer.sendAsync(pushTopic, String.valueOf(groupId), pushMessage);
     }
 }
@@ -106,6 +106,6 @@ public class GroupMemberBatchInsertProcessor implements Processor<StorageUpdateP
                         .build();
 
         PushMessage pushMessage = PushMessage.newBuilder().setMessageData(messageData).build();
-        pushMessageProducer.send(pushTopic, String.valueOf(groupId), pushMessage);
+        pushMessageProducer.sendAsync(pushTopic, String.valueOf(groupId), pushMessage);
     }
 }
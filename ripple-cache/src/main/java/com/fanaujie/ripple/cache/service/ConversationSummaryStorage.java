@@ -7,14 +7,16 @@ import java.util.Map;
 
 public interface ConversationSummaryStorage {
 
-    void updateConversationSummary(
+    /** @return the recipient's unread count after the update, empty if it could not be read. */
+    Map<Long, Integer> updateConversationSummary(
             long recipientUserId,
             String conversationId,
             String messageText,
             long timestamp,
             long messageId);
 
-    void updateGroupConversationSummary(
+    /** @return the unread counts of the recipients other than the sender after the update. */
+    Map<Long, Integer> updateGroupConversationSummary(
             long senderId,
             List<Long> recipientUserIds,
             String conversationId,
@@ -24,6 +26,8 @@ public interface ConversationSummaryStorage {
 
     int getUnreadCount(long userId, String conversationId);
 
+    Map<Long, Integer> batchGetUnreadCounts(String conversationId, List<Long> userIds);
+
     void resetUnreadCount(long userId, String conversationId);
 
     Map<String, ConversationSummaryInfo> batchGetConversationSummary(
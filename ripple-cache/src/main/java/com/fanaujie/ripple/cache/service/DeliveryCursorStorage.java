@@ -0,0 +1,15 @@
+package com.fanaujie.ripple.cache.service;
+
+import java.util.Map;
+
+public interface DeliveryCursorStorage {
+
+    /** Remembers a message that could not be delivered to a device. */
+    void recordUndelivered(String userId, String deviceId, String conversationId, long messageId);
+
+    /**
+     * @return the oldest undelivered message id of each conversation, the device's cursor is
+     *     cleared.
+     */
+    Map<String, Long> takeUndelivered(String userId, String deviceId);
+}
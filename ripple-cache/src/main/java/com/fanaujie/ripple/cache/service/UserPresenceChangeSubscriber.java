@@ -0,0 +1,15 @@
+package com.fanaujie.ripple.cache.service;
+
+import java.util.function.Consumer;
+
+public interface UserPresenceChangeSubscriber {
+
+    /**
+     * onUserChanged receives the id of every user whose devices came, went or moved to another
+     * gateway. onSubscribed runs whenever the subscription is established again, changes may have
+     * been missed in between.
+     */
+    void subscribe(Consumer<String> onUserChanged, Runnable onSubscribed);
+
+    void unsubscribe();
+}
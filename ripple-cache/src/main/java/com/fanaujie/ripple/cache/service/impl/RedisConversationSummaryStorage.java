@@ -22,25 +22,25 @@ public class RedisConversationSummaryStorage implements ConversationSummaryStora
     }
 
     @Override
-    public void updateConversationSummary(
+    public Map<Long, Integer> updateConversationSummary(
             long receiverId,
             String conversationId,
             String messageText,
             long timestamp,
             long messageId) {
-        redisOps.updateUserConversationSummary(
+        return redisOps.updateUserConversationSummary(
                 receiverId, conversationId, messageText, timestamp, messageId, true);
     }
 
     @Override
-    public void updateGroupConversationSummary(
+    public Map<Long, Integer> updateGroupConversationSummary(
             long senderId,
             List<Long> recipientUserIds,
             String conversationId,
             String messageText,
             long timestamp,
             long messageId) {
-        redisOps.batchUpdateConversationSummary(
+        return redisOps.batchUpdateConversationSummary(
                 senderId, recipientUserIds, conversationId, messageText, timestamp, messageId);
     }
 
@@ -54,6 +54,11 @@ public class RedisConversationSummaryStorage implements ConversationSummaryStora
         return unreadCountCacheAside.getUnreadCount(userId, conversationId);
     }
 
+    @Override
+    public Map<Long, Integer> batchGetUnreadCounts(String conversationId, List<Long> userIds) {
+        return unreadCountCacheAside.batchGetUnreadCounts(conversationId, userIds);
+    }
+
     @Override
     public Map<String, ConversationSummaryInfo> batchGetConversationSummary(
             long userId, List<String> conversationIds) {
@@ -0,0 +1,73 @@
+package com.fanaujie.ripple.cache.service.impl;
+
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
+import com.fanaujie.ripple.cache.utils.LuaUtils;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps one hash per device mapping a conversation to its oldest undelivered message. A device
+ * that reconnects reads the messages after each cursor instead of resyncing every conversation.
+ */
+public class RedisDeliveryCursorStorage implements DeliveryCursorStorage {
+
+    private static final String CURSOR_KEY_FORMAT = "delivery_cursor:{%s}:%s";
+
+    private final RedissonClient redissonClient;
+    private final String recordCursorLuaScript;
+    private final String takeCursorLuaScript;
+    private final long cursorTtlMs;
+
+    public RedisDeliveryCursorStorage(RedissonClient redissonClient, int cursorTtlSeconds) {
+        this.redissonClient = redissonClient;
+        this.recordCursorLuaScript = LuaUtils.loadScript("lua/record_delivery_cursor.lua");
+        this.takeCursorLuaScript = LuaUtils.loadScript("lua/take_delivery_cursor.lua");
+        this.cursorTtlMs = cursorTtlSeconds * 1000L;
+    }
+
+    @Override
+    public void recordUndelivered(
+            String userId, String deviceId, String conversationId, long messageId) {
+        redissonClient
+                .getScript(StringCodec.INSTANCE)
+                .eval(
+                        RScript.Mode.READ_WRITE,
+                        recordCursorLuaScript,
+                        RScript.ReturnType.INTEGER,
+                        List.of(getCursorKey(userId, deviceId)),
+                        conversationId,
+                        String.valueOf(messageId),
+                        String.valueOf(cursorTtlMs));
+    }
+
+    @Override
+    public Map<String, Long> takeUndelivered(String userId, String deviceId) {
+        List<Object> cursor =
+                redissonClient
+                        .getScript(StringCodec.INSTANCE)
+                        .eval(
+                                RScript.Mode.READ_WRITE,
+                                takeCursorLuaScript,
+                                RScript.ReturnType.MULTI,
+                                List.of(getCursorKey(userId, deviceId)));
+        Map<String, Long> undelivered = new HashMap<>();
+        if (cursor == null) {
+            return undelivered;
+        }
+        for (int i = 0; i + 1 < cursor.size(); i += 2) {
+            undelivered.put(
+                    String.valueOf(cursor.get(i)),
+                    Long.parseLong(String.valueOf(cursor.get(i + 1))));
+        }
+        return undelivered;
+    }
+
+    private String getCursorKey(String userId, String deviceId) {
+        return String.format(CURSOR_KEY_FORMAT, userId, deviceId);
+    }
+}
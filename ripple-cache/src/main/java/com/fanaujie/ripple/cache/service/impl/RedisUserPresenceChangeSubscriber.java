@@ -0,0 +1,38 @@
+package com.fanaujie.ripple.cache.service.impl;
+
+import com.fanaujie.ripple.cache.service.UserPresenceChangeSubscriber;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.function.Consumer;
+
+/** Listens to the changes RedisUserPresenceStorage publishes along with its writes. */
+public class RedisUserPresenceChangeSubscriber implements UserPresenceChangeSubscriber {
+
+    private final RTopic topic;
+
+    public RedisUserPresenceChangeSubscriber(RedissonClient redissonClient) {
+        this.topic =
+                redissonClient.getTopic(
+                        RedisUserPresenceStorage.PRESENCE_CHANGE_CHANNEL, StringCodec.INSTANCE);
+    }
+
+    @Override
+    public void subscribe(Consumer<String> onUserChanged, Runnable onSubscribed) {
+        topic.addListener(
+                new BaseStatusListener() {
+                    @Override
+                    public void onSubscribe(String channel) {
+                        onSubscribed.run();
+                    }
+                });
+        topic.addListener(String.class, (channel, userId) -> onUserChanged.accept(userId));
+    }
+
+    @Override
+    public void unsubscribe() {
+        topic.removeAllListeners();
+    }
+}
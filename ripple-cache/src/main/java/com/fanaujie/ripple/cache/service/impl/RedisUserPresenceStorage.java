@@ -6,42 +6,55 @@ import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
 import com.fanaujie.ripple.protobuf.userpresence.UserOnlineReq;
 import com.fanaujie.ripple.cache.service.UserPresenceStorage;
 import com.fanaujie.ripple.cache.utils.LuaUtils;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RFuture;
 import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
 import org.redisson.api.RedissonClient;
 import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 public class RedisUserPresenceStorage implements UserPresenceStorage {
+    private static final Logger logger = LoggerFactory.getLogger(RedisUserPresenceStorage.class);
+
+    // Hash tags keep both keys of a user in the same cluster slot for the Lua script
+    private static final String PRESENCE_KEY_FORMAT = "user_presence:{%s}";
+    private static final String DEADLINE_KEY_FORMAT = "user_presence_deadline:{%s}";
+    // Layout before the per-user index: one bucket per device, user_presence:<userId>:<deviceId>
+    private static final String LEGACY_PRESENCE_KEY_PATTERN = "user_presence:*:*";
+    private static final int LEGACY_SCAN_CHUNK_SIZE = 100;
+    // The user id is published here whenever a device comes, goes or moves to another gateway
+    public static final String PRESENCE_CHANGE_CHANNEL = "user_presence_changes";
+
     private final RedissonClient redissonClient;
-    private final String userOnlineLuaScript;
+    private final String setUserPresenceLuaScript;
     private final int presenceTimeoutSeconds;
 
     public RedisUserPresenceStorage(RedissonClient redissonClient, int presenceTimeoutSeconds) {
         this.redissonClient = redissonClient;
-        this.userOnlineLuaScript = LuaUtils.loadScript("lua/get_user_online.lua");
+        this.setUserPresenceLuaScript = LuaUtils.loadScript("lua/set_user_presence.lua");
         this.presenceTimeoutSeconds = presenceTimeoutSeconds;
     }
 
     @Override
     public void setUserOnline(UserOnlineReq request) {
-        if (request.getIsOnline()) {
-            redissonClient
-                    .getBucket(
-                            getUserPresenceKey(request.getUserId(), request.getDeviceId()),
-                            StringCodec.INSTANCE)
-                    .set(
-                            request.getServerLocation(),
-                            Duration.ofSeconds(this.presenceTimeoutSeconds));
-        } else {
-            redissonClient
-                    .getBucket(
-                            getUserPresenceKey(request.getUserId(), request.getDeviceId()),
-                            StringCodec.INSTANCE)
-                    .delete();
-        }
+        RBatch batch = redissonClient.createBatch();
+        setDevicePresenceAsync(
+                batch.getScript(StringCodec.INSTANCE),
+                request,
+                System.currentTimeMillis(),
+                presenceTimeoutSeconds * 1000L);
+        batch.execute();
     }
 
     @Override
@@ -51,18 +64,12 @@ public class RedisUserPresenceStorage implements UserPresenceStorage {
         }
 
         // Use batch operations for better performance
-        var batch = redissonClient.createBatch();
-
+        RBatch batch = redissonClient.createBatch();
+        RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
+        long now = System.currentTimeMillis();
+        long ttlMs = presenceTimeoutSeconds * 1000L;
         for (UserOnlineReq request : requests) {
-            String key = getUserPresenceKey(request.getUserId(), request.getDeviceId());
-            if (request.getIsOnline()) {
-                batch.getBucket(key, StringCodec.INSTANCE)
-                        .setAsync(
-                                request.getServerLocation(),
-                                Duration.ofSeconds(this.presenceTimeoutSeconds));
-            } else {
-                batch.getBucket(key, StringCodec.INSTANCE).deleteAsync();
-            }
+            setDevicePresenceAsync(script, request, now, ttlMs);
         }
 
         // Execute all operations in a single batch
@@ -76,49 +83,116 @@ public class RedisUserPresenceStorage implements UserPresenceStorage {
             return builder.build();
         }
 
-        // Convert user IDs to string array for Lua script
-        List<Object> keys = new ArrayList<>();
+        // One pipelined round trip: device hash and live deadlines for every user
+        long now = System.currentTimeMillis();
+        RBatch batch = redissonClient.createBatch();
+        List<RFuture<Map<String, String>>> deviceFutures = new ArrayList<>();
+        List<RFuture<Collection<String>>> aliveFutures = new ArrayList<>();
         for (String userId : request.getUserIdsList()) {
-            keys.add(getUserPresenceKeyPattern(userId));
+            deviceFutures.add(
+                    batch.<String, String>getMap(getUserPresenceKey(userId), StringCodec.INSTANCE)
+                            .readAllMapAsync());
+            aliveFutures.add(
+                    batch.<String>getScoredSortedSet(
+                                    getUserPresenceDeadlineKey(userId), StringCodec.INSTANCE)
+                            .valueRangeAsync(now, false, Double.POSITIVE_INFINITY, true));
         }
+        batch.execute();
 
-        // Execute Lua script
-        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
-        List<String> result =
-                script.eval(
-                        RScript.Mode.READ_ONLY,
-                        userOnlineLuaScript,
-                        RScript.ReturnType.MULTI,
-                        keys);
-
-        // Parse result: [userId1, deviceId1, serverLocation1, userId2, deviceId2, serverLocation2,
-        // ...]
-        if (result != null) {
-            for (int i = 0; i < result.size(); i += 3) {
-                if (i + 2 < result.size()) {
-                    String userId = result.get(i);
-                    String deviceId = result.get(i + 1);
-                    String serverLocation = result.get(i + 2);
-
-                    UserOnlineInfo info =
-                            UserOnlineInfo.newBuilder()
-                                    .setUserId(userId)
-                                    .setDeviceId(deviceId)
-                                    .setServerLocation(serverLocation)
-                                    .build();
-                    builder.addUserOnlineInfos(info);
+        try {
+            for (int i = 0; i < request.getUserIdsCount(); i++) {
+                String userId = request.getUserIds(i);
+                Map<String, String> devices = deviceFutures.get(i).get();
+                if (devices == null || devices.isEmpty()) {
+                    continue;
+                }
+                // Devices past their heartbeat deadline are pruned lazily on the next write
+                Set<String> aliveDevices = new HashSet<>(aliveFutures.get(i).get());
+                for (Map.Entry<String, String> device : devices.entrySet()) {
+                    if (aliveDevices.contains(device.getKey())) {
+                        builder.addUserOnlineInfos(
+                                UserOnlineInfo.newBuilder()
+                                        .setUserId(userId)
+                                        .setDeviceId(device.getKey())
+                                        .setServerLocation(device.getValue())
+                                        .build());
+                    }
                 }
             }
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
         }
-
         return builder.build();
     }
 
-    private String getUserPresenceKey(String userId, String deviceId) {
-        return String.format("user_presence:%s:%s", userId, deviceId);
+    /**
+     * Moves presence entries written in the bucket-per-device layout into the per-user device
+     * index, keeping their remaining TTL. Keys are walked with SCAN, so this is safe to run
+     * against a live Redis while gateways already write the new layout.
+     *
+     * @return the number of devices that were migrated.
+     */
+    public int migrateLegacyPresence() {
+        int migrated = 0;
+        long now = System.currentTimeMillis();
+        for (String key :
+                redissonClient
+                        .getKeys()
+                        .getKeysByPattern(LEGACY_PRESENCE_KEY_PATTERN, LEGACY_SCAN_CHUNK_SIZE)) {
+            String[] parts = key.split(":", 3);
+            if (parts.length != 3) {
+                continue;
+            }
+            RBucket<String> bucket = redissonClient.getBucket(key, StringCodec.INSTANCE);
+            String serverLocation = bucket.get();
+            long remainingTtlMs = bucket.remainTimeToLive();
+            // A device that already heartbeated into the new layout has the fresher location
+            boolean alreadyIndexed =
+                    redissonClient
+                            .getMap(getUserPresenceKey(parts[1]), StringCodec.INSTANCE)
+                            .containsKey(parts[2]);
+            if (serverLocation != null && remainingTtlMs > 0 && !alreadyIndexed) {
+                UserOnlineReq request =
+                        UserOnlineReq.newBuilder()
+                                .setUserId(parts[1])
+                                .setDeviceId(parts[2])
+                                .setIsOnline(true)
+                                .setServerLocation(serverLocation)
+                                .build();
+                RBatch batch = redissonClient.createBatch();
+                setDevicePresenceAsync(
+                        batch.getScript(StringCodec.INSTANCE), request, now, remainingTtlMs);
+                batch.execute();
+                migrated++;
+            }
+            bucket.delete();
+        }
+        logger.info("migrateLegacyPresence: Migrated {} device presence entries", migrated);
+        return migrated;
+    }
+
+    private void setDevicePresenceAsync(
+            RScriptAsync script, UserOnlineReq request, long now, long ttlMs) {
+        script.evalAsync(
+                RScript.Mode.READ_WRITE,
+                setUserPresenceLuaScript,
+                RScript.ReturnType.INTEGER,
+                List.of(
+                        getUserPresenceKey(request.getUserId()),
+                        getUserPresenceDeadlineKey(request.getUserId())),
+                request.getDeviceId(),
+                request.getIsOnline() ? request.getServerLocation() : "",
+                String.valueOf(now),
+                String.valueOf(ttlMs),
+                PRESENCE_CHANGE_CHANNEL,
+                request.getUserId());
+    }
+
+    private String getUserPresenceKey(String userId) {
+        return String.format(PRESENCE_KEY_FORMAT, userId);
     }
 
-    private String getUserPresenceKeyPattern(String userId) {
-        return String.format("user_presence:%s:*", userId);
+    private String getUserPresenceDeadlineKey(String userId) {
+        return String.format(DEADLINE_KEY_FORMAT, userId);
     }
 }
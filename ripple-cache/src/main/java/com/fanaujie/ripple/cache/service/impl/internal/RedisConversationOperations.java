@@ -101,6 +101,49 @@ public class RedisConversationOperations {
         }
     }
 
+    /**
+     * Reads the unread counters of several users in one pipelined round trip. Users without a
+     * cached counter are left out of the result.
+     */
+    public Map<Long, Integer> batchGetUnreadCounts(String conversationId, List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> result = new HashMap<>();
+        try {
+            RBatch batch = redissonClient.createBatch();
+            List<RFuture<Object>> futures = new ArrayList<>(userIds.size());
+            for (long userId : userIds) {
+                futures.add(
+                        batch.getMap(buildUnreadKey(userId, conversationId), StringCodec.INSTANCE)
+                                .getAsync(FIELD_COUNT));
+            }
+            batch.execute();
+
+            for (int i = 0; i < userIds.size(); i++) {
+                Object value = futures.get(i).get();
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    result.put(userIds.get(i), Integer.parseInt(value.toString()));
+                } catch (NumberFormatException e) {
+                    logger.error(
+                            "Invalid unread count format for user {} conversation {}: {}",
+                            userIds.get(i),
+                            conversationId,
+                            e.getMessage());
+                }
+            }
+        } catch (RedisException e) {
+            throw new UnreadCountCacheException(
+                    "Redis batch get failed for conversation " + conversationId, e);
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
+
     public void setUnreadCount(long userId, String conversationId, int count, long timestamp) {
         String key = buildUnreadKey(userId, conversationId);
         try {
@@ -117,7 +160,7 @@ public class RedisConversationOperations {
         }
     }
 
-    public void updateUserConversationSummary(
+    public Map<Long, Integer> updateUserConversationSummary(
             long receiverId,
             String conversationId,
             String messageText,
@@ -127,15 +170,17 @@ public class RedisConversationOperations {
         try {
             RBatch batch = redissonClient.createBatch();
 
+            RFuture<Long> unreadFuture = null;
             if (incrementUnread) {
                 String unreadKey = buildUnreadKey(receiverId, conversationId);
                 RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
-                script.evalAsync(
-                        RScript.Mode.READ_WRITE,
-                        incrementScript,
-                        RScript.ReturnType.INTEGER,
-                        Collections.singletonList(unreadKey),
-                        String.valueOf(timestamp));
+                unreadFuture =
+                        script.evalAsync(
+                                RScript.Mode.READ_WRITE,
+                                incrementScript,
+                                RScript.ReturnType.INTEGER,
+                                Collections.singletonList(unreadKey),
+                                String.valueOf(timestamp));
             }
             String lastMsgKey = buildLastMsgKey(conversationId);
             Map<String, String> fields = new HashMap<>();
@@ -144,16 +189,24 @@ public class RedisConversationOperations {
             fields.put(FIELD_MESSAGE_ID, String.valueOf(messageId));
             batch.getMap(lastMsgKey, StringCodec.INSTANCE).putAllAsync(fields);
             batch.execute();
+
+            if (unreadFuture == null) {
+                return Collections.emptyMap();
+            }
+            return Map.of(receiverId, unreadFuture.get().intValue());
         } catch (RedisException e) {
             logger.warn(
                     "Redis update conversation failed for user {} conversation {}: {}",
                     receiverId,
                     conversationId,
                     e.getMessage());
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
         }
+        return Collections.emptyMap();
     }
 
-    public void batchUpdateConversationSummary(
+    public Map<Long, Integer> batchUpdateConversationSummary(
             long senderId,
             List<Long> receiverIds,
             String conversationId,
@@ -163,15 +216,18 @@ public class RedisConversationOperations {
         try {
             RBatch batch = redissonClient.createBatch();
             RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
+            Map<Long, RFuture<Long>> unreadFutures = new HashMap<>();
             for (long userId : receiverIds) {
                 if (userId != senderId) {
                     String unreadKey = buildUnreadKey(userId, conversationId);
-                    script.evalAsync(
-                            RScript.Mode.READ_WRITE,
-                            incrementScript,
-                            RScript.ReturnType.INTEGER,
-                            Collections.singletonList(unreadKey),
-                            String.valueOf(timestamp));
+                    unreadFutures.put(
+                            userId,
+                            script.evalAsync(
+                                    RScript.Mode.READ_WRITE,
+                                    incrementScript,
+                                    RScript.ReturnType.INTEGER,
+                                    Collections.singletonList(unreadKey),
+                                    String.valueOf(timestamp)));
                 }
             }
 
@@ -182,12 +238,21 @@ public class RedisConversationOperations {
             fields.put(FIELD_MESSAGE_ID, String.valueOf(messageId));
             batch.getMap(lastMsgKey, StringCodec.INSTANCE).putAllAsync(fields);
             batch.execute();
+
+            Map<Long, Integer> unreadCounts = new HashMap<>();
+            for (Map.Entry<Long, RFuture<Long>> entry : unreadFutures.entrySet()) {
+                unreadCounts.put(entry.getKey(), entry.getValue().get().intValue());
+            }
+            return unreadCounts;
         } catch (RedisException e) {
             logger.warn(
                     "Redis update group conversation failed for conversation {}: {}",
                     conversationId,
                     e.getMessage());
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
         }
+        return Collections.emptyMap();
     }
 
     public Map<String, ConversationSummaryInfo> batchGetConversationSummary(
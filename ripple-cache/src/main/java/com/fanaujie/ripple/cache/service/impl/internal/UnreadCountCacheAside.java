@@ -50,7 +50,10 @@ public class UnreadCountCacheAside {
                     conversationId,
                     e.getMessage());
         }
+        return loadFromStorage(userId, conversationId);
+    }
 
+    private int loadFromStorage(long userId, String conversationId) {
         try {
             int calculatedCount = storageFacade.calculateUnreadCount(userId, conversationId);
             try {
@@ -73,4 +76,27 @@ public class UnreadCountCacheAside {
             throw new UnreadCountStorageException(errorMsg, e);
         }
     }
+
+    public Map<Long, Integer> batchGetUnreadCounts(String conversationId, List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> result = new HashMap<>();
+        try {
+            result.putAll(redisOps.batchGetUnreadCounts(conversationId, userIds));
+        } catch (UnreadCountCacheException e) {
+            logger.warn(
+                    "Redis cache error for conversation {}, falling back to storage: {}",
+                    conversationId,
+                    e.getMessage());
+        }
+
+        // Only cache misses are recalculated from storage and written back
+        for (long userId : userIds) {
+            if (!result.containsKey(userId)) {
+                result.put(userId, loadFromStorage(userId, conversationId));
+            }
+        }
+        return result;
+    }
 }
@@ -1,7 +1,7 @@
 -- Atomically increment unread count if timestamp is greater than stored value
 -- KEYS[1]: unread key (e.g., unread_12345:conv_123)
 -- ARGV[1]: new timestamp (epoch milliseconds)
--- Returns: 1 if incremented, 0 if not (timestamp not greater)
+-- Returns: the unread count after the call, unchanged if the timestamp is not greater
 
 local key = KEYS[1]
 local newTimestamp = tonumber(ARGV[1])
@@ -10,9 +10,10 @@ local currentTimestamp = redis.call('HGET', key, 'timestamp')
 currentTimestamp = currentTimestamp and tonumber(currentTimestamp) or 0
 
 if newTimestamp > currentTimestamp then
-    redis.call('HINCRBY', key, 'count', 1)
+    local count = redis.call('HINCRBY', key, 'count', 1)
     redis.call('HSET', key, 'timestamp', newTimestamp)
-    return 1
+    return count
 end
 
-return 0
+local count = redis.call('HGET', key, 'count')
+return count and tonumber(count) or 0
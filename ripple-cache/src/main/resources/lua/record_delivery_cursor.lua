@@ -0,0 +1,17 @@
+-- Keep the oldest undelivered message of a conversation in a device's redelivery cursor
+-- KEYS[1]: cursor key (e.g., delivery_cursor:{12345}:device_1)
+-- ARGV[1]: conversation id
+-- ARGV[2]: undelivered message id
+-- ARGV[3]: ttl in milliseconds
+-- Message ids are compared as decimal strings, snowflake ids don't fit a Lua number exactly
+
+local key = KEYS[1]
+local conversationId = ARGV[1]
+local messageId = ARGV[2]
+
+local current = redis.call('HGET', key, conversationId)
+if not current or #messageId < #current or (#messageId == #current and messageId < current) then
+    redis.call('HSET', key, conversationId, messageId)
+end
+redis.call('PEXPIRE', key, ARGV[3])
+return 1
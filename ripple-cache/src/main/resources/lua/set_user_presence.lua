@@ -0,0 +1,55 @@
+-- Set or clear the presence of one device in the per-user device index
+-- KEYS[1]: device hash (e.g., user_presence:{12345}), field deviceId -> serverLocation
+-- KEYS[2]: heartbeat deadline zset (e.g., user_presence_deadline:{12345}), member deviceId
+-- ARGV[1]: deviceId
+-- ARGV[2]: serverLocation, empty when the device goes offline
+-- ARGV[3]: now (epoch milliseconds)
+-- ARGV[4]: presence ttl (milliseconds)
+-- ARGV[5]: channel the user id is published on when its devices changed, empty to not publish
+-- ARGV[6]: userId
+-- Returns: number of devices still registered for the user
+
+local hashKey = KEYS[1]
+local deadlineKey = KEYS[2]
+local deviceId = ARGV[1]
+local serverLocation = ARGV[2]
+local now = tonumber(ARGV[3])
+local ttl = tonumber(ARGV[4])
+local changeChannel = ARGV[5] or ''
+local userId = ARGV[6]
+
+-- Drop devices whose heartbeat deadline has passed
+local expired = redis.call('ZRANGEBYSCORE', deadlineKey, '-inf', now)
+local changed = #expired > 0
+if #expired > 0 then
+    redis.call('HDEL', hashKey, unpack(expired))
+    redis.call('ZREMRANGEBYSCORE', deadlineKey, '-inf', now)
+end
+
+if serverLocation ~= '' then
+    -- A heartbeat of a device on the same gateway is no change
+    if redis.call('HGET', hashKey, deviceId) ~= serverLocation then
+        changed = true
+    end
+    redis.call('HSET', hashKey, deviceId, serverLocation)
+    redis.call('ZADD', deadlineKey, now + ttl, deviceId)
+    -- Only extend the key ttl, other devices of the user may have later deadlines
+    if redis.call('PTTL', hashKey) < ttl then
+        redis.call('PEXPIRE', hashKey, ttl)
+        redis.call('PEXPIRE', deadlineKey, ttl)
+    end
+else
+    if redis.call('HDEL', hashKey, deviceId) == 1 then
+        changed = true
+    end
+    redis.call('ZREM', deadlineKey, deviceId)
+end
+
+local remaining = redis.call('HLEN', hashKey)
+if remaining == 0 then
+    redis.call('DEL', hashKey, deadlineKey)
+end
+if changed and changeChannel ~= '' then
+    redis.call('PUBLISH', changeChannel, userId)
+end
+return remaining
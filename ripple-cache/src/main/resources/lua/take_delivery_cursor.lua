@@ -0,0 +1,8 @@
+-- Read and remove a device's redelivery cursor in one step
+-- KEYS[1]: cursor key (e.g., delivery_cursor:{12345}:device_1)
+-- Returns: flat list of conversation ids and their oldest undelivered message ids
+
+local key = KEYS[1]
+local cursor = redis.call('HGETALL', key)
+redis.call('DEL', key)
+return cursor
@@ -0,0 +1,174 @@
+package com.fanaujie.ripple.cache.service.impl;
+
+import com.fanaujie.ripple.protobuf.userpresence.QueryUserOnlineReq;
+import com.fanaujie.ripple.protobuf.userpresence.QueryUserOnlineResp;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineReq;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class RedisUserPresenceStorageTest {
+
+    private static final int PRESENCE_TIMEOUT_SECONDS = 1;
+
+    @Container
+    static GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.2-alpine").withExposedPorts(6379);
+
+    private RedissonClient redissonClient;
+    private RedisUserPresenceStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        Config config = new Config();
+        config.useSingleServer()
+                .setAddress(
+                        "redis://"
+                                + redisContainer.getHost()
+                                + ":"
+                                + redisContainer.getMappedPort(6379));
+        redissonClient = Redisson.create(config);
+        storage = new RedisUserPresenceStorage(redissonClient, PRESENCE_TIMEOUT_SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (redissonClient != null) {
+            redissonClient.getKeys().flushall();
+            redissonClient.shutdown();
+        }
+    }
+
+    @Test
+    void testMultipleDevicesPerUser() {
+        storage.setUserOnline(online("100", "phone", "gateway-1"));
+        storage.setUserOnline(online("100", "laptop", "gateway-2"));
+        storage.setUserOnline(online("200", "phone", "gateway-1"));
+
+        Map<String, String> devices = devicesOf(query("100"));
+        assertEquals(Map.of("phone", "gateway-1", "laptop", "gateway-2"), devices);
+
+        QueryUserOnlineResp both = query("100", "200", "300");
+        assertEquals(3, both.getUserOnlineInfosCount());
+        assertTrue(
+                both.getUserOnlineInfosList().stream()
+                        .noneMatch(info -> info.getUserId().equals("300")));
+    }
+
+    @Test
+    void testHeartbeatMovesDeviceToNewGateway() {
+        storage.setUserOnline(online("100", "phone", "gateway-1"));
+        storage.setUserOnline(online("100", "phone", "gateway-2"));
+
+        assertEquals(Map.of("phone", "gateway-2"), devicesOf(query("100")));
+    }
+
+    @Test
+    void testExplicitOffline() {
+        storage.setUserOnlineBatch(
+                List.of(online("100", "phone", "gateway-1"), online("100", "laptop", "gateway-1")));
+
+        storage.setUserOnline(offline("100", "phone"));
+        assertEquals(Map.of("laptop", "gateway-1"), devicesOf(query("100")));
+
+        // The last device going offline removes both index keys
+        storage.setUserOnline(offline("100", "laptop"));
+        assertEquals(0, query("100").getUserOnlineInfosCount());
+        assertEquals(0, redissonClient.getKeys().countExists("user_presence:{100}"));
+        assertEquals(0, redissonClient.getKeys().countExists("user_presence_deadline:{100}"));
+    }
+
+    @Test
+    void testDeviceExpiresByDeadline() throws InterruptedException {
+        storage.setUserOnline(online("100", "phone", "gateway-1"));
+        Thread.sleep(600);
+        // The second heartbeat keeps the user keys alive past the first device's deadline
+        storage.setUserOnline(online("100", "laptop", "gateway-2"));
+        Thread.sleep(600);
+
+        // Reads skip the expired device although it is only pruned on the next write
+        assertEquals(
+                2, redissonClient.getMap("user_presence:{100}", StringCodec.INSTANCE).size());
+        assertEquals(Map.of("laptop", "gateway-2"), devicesOf(query("100")));
+
+        // The next write prunes the expired device from the hash
+        storage.setUserOnline(online("100", "laptop", "gateway-2"));
+        assertEquals(
+                Map.of("laptop", "gateway-2"),
+                redissonClient.getMap("user_presence:{100}", StringCodec.INSTANCE).readAllMap());
+    }
+
+    @Test
+    void testMigrateLegacyPresence() {
+        redissonClient
+                .getBucket("user_presence:100:phone", StringCodec.INSTANCE)
+                .set("gateway-1", 30, TimeUnit.SECONDS);
+        redissonClient
+                .getBucket("user_presence:200:laptop", StringCodec.INSTANCE)
+                .set("gateway-2", 30, TimeUnit.SECONDS);
+        // This device already heartbeated into the new layout, its fresher location wins
+        redissonClient
+                .getBucket("user_presence:300:phone", StringCodec.INSTANCE)
+                .set("gateway-old", 30, TimeUnit.SECONDS);
+        storage.setUserOnline(online("300", "phone", "gateway-new"));
+
+        assertEquals(2, storage.migrateLegacyPresence());
+
+        assertEquals(Map.of("phone", "gateway-1"), devicesOf(query("100")));
+        assertEquals(Map.of("laptop", "gateway-2"), devicesOf(query("200")));
+        assertEquals(Map.of("phone", "gateway-new"), devicesOf(query("300")));
+        assertEquals(
+                0,
+                redissonClient
+                        .getKeys()
+                        .countExists(
+                                "user_presence:100:phone",
+                                "user_presence:200:laptop",
+                                "user_presence:300:phone"));
+    }
+
+    private QueryUserOnlineResp query(String... userIds) {
+        return storage.getUserOnline(
+                QueryUserOnlineReq.newBuilder().addAllUserIds(List.of(userIds)).build());
+    }
+
+    private static Map<String, String> devicesOf(QueryUserOnlineResp response) {
+        return response.getUserOnlineInfosList().stream()
+                .collect(
+                        Collectors.toMap(
+                                UserOnlineInfo::getDeviceId, UserOnlineInfo::getServerLocation));
+    }
+
+    private static UserOnlineReq online(String userId, String deviceId, String serverLocation) {
+        return UserOnlineReq.newBuilder()
+                .setUserId(userId)
+                .setDeviceId(deviceId)
+                .setIsOnline(true)
+                .setServerLocation(serverLocation)
+                .build();
+    }
+
+    private static UserOnlineReq offline(String userId, String deviceId) {
+        return UserOnlineReq.newBuilder()
+                .setUserId(userId)
+                .setDeviceId(deviceId)
+                .setIsOnline(false)
+                .build();
+    }
+}
@@ -3,30 +3,73 @@ package com.fanaujie.ripple.communication.batch;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 public class BatchExecutorService<T> {
     private final ExecutorService executorService;
-    private final BlockingQueue<T> queue;
+    private final List<BatchQueue<T>> queues;
     private final List<BatchWorker<T>> workers;
+    private final Function<T, ?> ringKey;
 
     public BatchExecutorService(Config config, BatchProcessorFactory<T> processorFactory) {
-        this.queue = new LinkedBlockingQueue<>(config.queueSize());
+        this(config, processorFactory, null);
+    }
+
+    /**
+     * @param ringKey picks the ring of an item, items with the same key keep their order. Without
+     *     it an item goes to the ring of its producer thread.
+     */
+    public BatchExecutorService(
+            Config config, BatchProcessorFactory<T> processorFactory, Function<T, ?> ringKey) {
+        this.ringKey = ringKey;
+        this.queues = createQueues(config);
         this.executorService = Executors.newFixedThreadPool(config.workerSize());
         this.workers = new ArrayList<>();
+        BatchMetrics metrics = new BatchMetrics(config.queueType());
         for (int i = 0; i < config.workerSize(); i++) {
             BatchWorker<T> w =
                     new BatchWorker<>(
-                            this.queue,
+                            this.queues.get(i % this.queues.size()),
                             config.batchMaxSize(),
                             config.queueTimeoutMs(),
-                            processorFactory.create());
+                            processorFactory.create(),
+                            metrics);
             this.workers.add(w);
             this.executorService.submit(w);
         }
     }
 
+    // A ring has a single consumer, so every worker gets its own ring sharing the queue size
+    private static <T> List<BatchQueue<T>> createQueues(Config config) {
+        List<BatchQueue<T>> queues = new ArrayList<>();
+        switch (config.queueType()) {
+            case MPSC_RING:
+                int ringCapacity = Math.max(1, config.queueSize() / config.workerSize());
+                for (int i = 0; i < config.workerSize(); i++) {
+                    queues.add(new MpscArrayBatchQueue<>(ringCapacity, config.waitStrategy()));
+                }
+                break;
+            default:
+                queues.add(new LinkedBatchQueue<>(config.queueSize()));
+        }
+        return queues;
+    }
+
     public void push(T item) throws InterruptedException {
-        this.queue.put(item);
+        this.queues.get(ringOf(item)).put(item);
+    }
+
+    // Few producer threads, like a handful of event loops, load their rings unevenly, a key
+    // spreads the items of every producer over all rings
+    private int ringOf(T item) {
+        if (queues.size() == 1) {
+            return 0;
+        }
+        if (ringKey == null) {
+            return (int) (Thread.currentThread().getId() % queues.size());
+        }
+        int h = ringKey.apply(item).hashCode();
+        return Math.floorMod(h ^ (h >>> 16), queues.size());
     }
 
     public void shutdown() {
@@ -0,0 +1,30 @@
+package com.fanaujie.ripple.communication.batch;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
+
+import java.util.Locale;
+
+class BatchMetrics {
+    private static final AttributeKey<String> QUEUE = AttributeKey.stringKey("queue");
+
+    private final LongHistogram batchSizeHistogram;
+    private final Attributes attributes;
+
+    BatchMetrics(BatchQueueType queueType) {
+        this.batchSizeHistogram =
+                GlobalOpenTelemetry.getMeter("ripple-communication")
+                        .histogramBuilder("batch_executor_batch_size")
+                        .ofLongs()
+                        .setDescription("Items a batch worker handed to its processor at once")
+                        .setUnit("1")
+                        .build();
+        this.attributes = Attributes.of(QUEUE, queueType.name().toLowerCase(Locale.ROOT));
+    }
+
+    void batchProcessed(int size) {
+        batchSizeHistogram.record(size, attributes);
+    }
+}
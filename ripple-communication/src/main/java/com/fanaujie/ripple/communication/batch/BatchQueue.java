@@ -0,0 +1,24 @@
+package com.fanaujie.ripple.communication.batch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** The queue between the producers of a BatchExecutorService and its workers. */
+public interface BatchQueue<T> {
+
+    /** @return false when the queue is full. */
+    boolean offer(T item);
+
+    /** Waits while the queue is full. */
+    void put(T item) throws InterruptedException;
+
+    /**
+     * Moves up to maxItems queued items to batch, waiting up to timeout for the first one.
+     *
+     * @return the number of items moved, 0 when the timeout elapsed.
+     */
+    int drainTo(List<? super T> batch, int maxItems, long timeout, TimeUnit unit)
+            throws InterruptedException;
+
+    int size();
+}
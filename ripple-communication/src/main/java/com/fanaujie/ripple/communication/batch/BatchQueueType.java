@@ -0,0 +1,8 @@
+package com.fanaujie.ripple.communication.batch;
+
+public enum BatchQueueType {
+    // One LinkedBlockingQueue shared by all workers
+    LINKED_BLOCKING,
+    // A pre-allocated MpscArrayBatchQueue per worker, producers stick to one of them
+    MPSC_RING
+}
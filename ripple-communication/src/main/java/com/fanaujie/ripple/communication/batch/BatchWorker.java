@@ -2,27 +2,29 @@ package com.fanaujie.ripple.communication.batch;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BatchWorker<T> implements Runnable {
 
-    private final BlockingQueue<T> queue;
+    private final BatchQueue<T> queue;
     private final int batchMaxSize;
     private final long batchTimeoutMs;
     private final BatchProcessorFactory.BatchProcessor<T> processor;
+    private final BatchMetrics metrics;
     private final AtomicBoolean runningFlag = new AtomicBoolean(true);
 
-    public BatchWorker(
-            BlockingQueue<T> queue,
+    BatchWorker(
+            BatchQueue<T> queue,
             int batchMaxSize,
             long batchTimeoutMs,
-            BatchProcessorFactory.BatchProcessor<T> processor) {
+            BatchProcessorFactory.BatchProcessor<T> processor,
+            BatchMetrics metrics) {
         this.queue = queue;
         this.batchMaxSize = batchMaxSize;
         this.batchTimeoutMs = batchTimeoutMs;
         this.processor = processor;
+        this.metrics = metrics;
     }
 
     public void stop() {
@@ -31,35 +33,39 @@ public class BatchWorker<T> implements Runnable {
 
     @Override
     public void run() {
-        List<T> batch = new ArrayList<>();
-        boolean isRunning = true;
-        while (runningFlag.get() && isRunning) {
-            while (true) {
-                T item = null;
-                try {
-                    item = queue.poll(this.batchTimeoutMs, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    isRunning = false;
-                    break;
-                }
-                if (item == null) {
-                    break;
-                } else {
-                    batch.add(item);
-                    if (batch.size() == this.batchMaxSize) {
-                        break;
-                    }
-                }
+        List<T> batch = new ArrayList<>(batchMaxSize);
+        while (runningFlag.get()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
-            if (isRunning && !batch.isEmpty()) {
+            if (!batch.isEmpty()) {
                 processBatch(batch);
                 batch.clear();
             }
         }
     }
 
+    // Items are drained in bulk, the batch is closed once full or once no item came within the
+    // timeout
+    private void fillBatch(List<T> batch) throws InterruptedException {
+        while (batch.size() < batchMaxSize) {
+            int drained =
+                    queue.drainTo(
+                            batch,
+                            batchMaxSize - batch.size(),
+                            batchTimeoutMs,
+                            TimeUnit.MILLISECONDS);
+            if (drained == 0) {
+                return;
+            }
+        }
+    }
+
     private void processBatch(List<T> batch) {
+        this.metrics.batchProcessed(batch.size());
         this.processor.process(batch);
     }
 }
@@ -1,3 +1,20 @@
 package com.fanaujie.ripple.communication.batch;
 
-public record Config(int queueSize, int workerSize, int batchMaxSize, long queueTimeoutMs) {}
+public record Config(
+        int queueSize,
+        int workerSize,
+        int batchMaxSize,
+        long queueTimeoutMs,
+        BatchQueueType queueType,
+        WaitStrategy waitStrategy) {
+
+    public Config(int queueSize, int workerSize, int batchMaxSize, long queueTimeoutMs) {
+        this(
+                queueSize,
+                workerSize,
+                batchMaxSize,
+                queueTimeoutMs,
+                BatchQueueType.LINKED_BLOCKING,
+                WaitStrategy.PARK);
+    }
+}
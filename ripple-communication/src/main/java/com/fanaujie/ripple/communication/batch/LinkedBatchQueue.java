@@ -0,0 +1,40 @@
+package com.fanaujie.ripple.communication.batch;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class LinkedBatchQueue<T> implements BatchQueue<T> {
+    private final BlockingQueue<T> queue;
+
+    public LinkedBatchQueue(int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean offer(T item) {
+        return queue.offer(item);
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    @Override
+    public int drainTo(List<? super T> batch, int maxItems, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        T first = queue.poll(timeout, unit);
+        if (first == null) {
+            return 0;
+        }
+        batch.add(first);
+        return 1 + queue.drainTo(batch, maxItems - 1);
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
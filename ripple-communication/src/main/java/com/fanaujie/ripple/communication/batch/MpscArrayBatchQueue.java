@@ -0,0 +1,164 @@
+package com.fanaujie.ripple.communication.batch;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer single-consumer ring over a pre-allocated array, so queuing allocates
+ * nothing and takes no lock. Producers claim a slot by advancing the producer index and then
+ * publish the item into it. The consumer takes items until it meets a slot that is not published
+ * yet, and hands the drained slots back with a single update of the consumer index.
+ *
+ * <p>Only one thread may drain the queue at a time. The capacity is rounded up to a power of two.
+ */
+public final class MpscArrayBatchQueue<T> implements BatchQueue<T> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    // How long a producer parks while the ring is full
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final PaddedIndex producerIndex = new PaddedIndex();
+    private final PaddedIndex consumerIndex = new PaddedIndex();
+    // Set while the consumer is parked waiting for items
+    private volatile Thread parkedConsumer;
+
+    public MpscArrayBatchQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        Objects.requireNonNull(item, "item");
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex.get() >= buffer.length()) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        int offset = (int) index & mask;
+        if (waitStrategy == WaitStrategy.PARK) {
+            // A volatile store, so either the consumer sees the item or we see it parked
+            buffer.set(offset, item);
+            Thread consumer = parkedConsumer;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        } else {
+            buffer.lazySet(offset, item);
+        }
+        return true;
+    }
+
+    @Override
+    public void put(T item) throws InterruptedException {
+        while (!offer(item)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            switch (waitStrategy) {
+                case SPIN:
+                    Thread.onSpinWait();
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                default:
+                    LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            }
+        }
+    }
+
+    @Override
+    public int drainTo(List<? super T> batch, int maxItems, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        int drained = drain(batch, maxItems);
+        if (drained > 0) {
+            return drained;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (awaitItem(deadline)) {
+            drained = drain(batch, maxItems);
+            if (drained > 0) {
+                return drained;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        // Read the consumer first so the difference never goes negative
+        long consumed = consumerIndex.get();
+        return (int) (producerIndex.get() - consumed);
+    }
+
+    private int drain(List<? super T> batch, int maxItems) {
+        long index = consumerIndex.getPlain();
+        int drained = 0;
+        while (drained < maxItems) {
+            int offset = (int) index & mask;
+            // Null when the ring is empty or the producer of the slot hasn't published yet
+            T item = buffer.getAcquire(offset);
+            if (item == null) {
+                break;
+            }
+            buffer.lazySet(offset, null);
+            batch.add(item);
+            index++;
+            drained++;
+        }
+        if (drained > 0) {
+            consumerIndex.lazySet(index);
+        }
+        return drained;
+    }
+
+    // @return false once the deadline passed without an item at the consumer index
+    private boolean awaitItem(long deadline) throws InterruptedException {
+        int offset = (int) consumerIndex.getPlain() & mask;
+        while (buffer.get(offset) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            switch (waitStrategy) {
+                case SPIN:
+                    Thread.onSpinWait();
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                default:
+                    parkedConsumer = Thread.currentThread();
+                    if (buffer.get(offset) == null) {
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                    parkedConsumer = null;
+            }
+        }
+        return true;
+    }
+
+    // Keeps the producer and consumer indexes off each other's cache line
+    @SuppressWarnings("unused")
+    private static final class PaddedIndex extends AtomicLong {
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,11 @@
+package com.fanaujie.ripple.communication.batch;
+
+// How a thread waits for an MpscArrayBatchQueue to have items or room
+public enum WaitStrategy {
+    // Parks the thread, producers unpark a waiting consumer. Costs a wake-up per idle period
+    PARK,
+    // Busy spins, the lowest latency at the price of a core per waiting thread
+    SPIN,
+    // Yields between checks, for when there are spare cores but not one per waiting thread
+    YIELD
+}
@@ -0,0 +1,99 @@
+package com.fanaujie.ripple.communication.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent map whose entries expire at a time given on put, read from clock in whatever unit the
+ * caller uses. Expired entries are dropped when they are read. Once maxEntries is reached the
+ * expired entries are swept, at most once per sweepInterval, and new keys are refused while the
+ * map stays full. Keys already in the map can always be replaced.
+ */
+public class ExpiringMap<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {}
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long sweepInterval;
+    private final LongSupplier clock;
+    private final AtomicLong lastSweep;
+
+    public ExpiringMap(int maxEntries, long sweepInterval, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.sweepInterval = sweepInterval;
+        this.clock = clock;
+        this.lastSweep = new AtomicLong(clock.getAsLong() - sweepInterval);
+    }
+
+    /** @return the current time of the map's clock, to derive expiry times from. */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /** @return the value of key, null when it is absent or expired. */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, clock.getAsLong())) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    /**
+     * @return whether the value was stored, it is not when already expired or when key is new and
+     *     the map is full.
+     */
+    public boolean put(K key, V value, long expiresAt) {
+        Entry<V> entry = new Entry<>(value, expiresAt);
+        long now = clock.getAsLong();
+        if (isExpired(entry, now)) {
+            return false;
+        }
+        if (entries.replace(key, entry) != null) {
+            return true;
+        }
+        if (!hasRoom(now)) {
+            return false;
+        }
+        entries.put(key, entry);
+        return true;
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean hasRoom(long now) {
+        if (entries.size() < maxEntries) {
+            return true;
+        }
+        long last = lastSweep.get();
+        if (now - last >= sweepInterval && lastSweep.compareAndSet(last, now)) {
+            entries.values().removeIf(entry -> isExpired(entry, now));
+        }
+        return entries.size() < maxEntries;
+    }
+
+    // Compared by difference, so System.nanoTime readings are safe too
+    private static boolean isExpired(Entry<?> entry, long now) {
+        return now - entry.expiresAt() >= 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.fanaujie.ripple.communication.msgapi;
+
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageResp;
+
+import java.util.concurrent.CompletableFuture;
+
+/** Non-blocking MessageAPI client, calls are pipelined on the shared gRPC channel. */
+public interface AsyncMessageAPISender {
+    CompletableFuture<SendMessageResp> sendMessage(SendMessageReq sendMessageReq);
+}
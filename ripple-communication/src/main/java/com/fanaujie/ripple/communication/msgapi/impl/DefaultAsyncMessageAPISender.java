@@ -0,0 +1,43 @@
+package com.fanaujie.ripple.communication.msgapi.impl;
+
+import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
+import com.fanaujie.ripple.communication.msgapi.AsyncMessageAPISender;
+import com.fanaujie.ripple.protobuf.msgapiserver.MessageAPIGrpc;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageResp;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CompletableFuture;
+
+public class DefaultAsyncMessageAPISender implements AsyncMessageAPISender {
+
+    private final GrpcClient<MessageAPIGrpc.MessageAPIStub> msgAPIClient;
+
+    public DefaultAsyncMessageAPISender(GrpcClient<MessageAPIGrpc.MessageAPIStub> msgAPIClient) {
+        this.msgAPIClient = msgAPIClient;
+    }
+
+    @Override
+    public CompletableFuture<SendMessageResp> sendMessage(SendMessageReq req) {
+        CompletableFuture<SendMessageResp> future = new CompletableFuture<>();
+        this.msgAPIClient
+                .getStub()
+                .sendMessage(
+                        req,
+                        new StreamObserver<>() {
+                            @Override
+                            public void onNext(SendMessageResp resp) {
+                                future.complete(resp);
+                            }
+
+                            @Override
+                            public void onError(Throwable throwable) {
+                                future.completeExceptionally(throwable);
+                            }
+
+                            @Override
+                            public void onCompleted() {}
+                        });
+        return future;
+    }
+}
@@ -1,7 +1,19 @@
 package com.fanaujie.ripple.communication.msgqueue;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface GenericProducer<K, V> {
     void send(String topic, K key, V value);
 
+    CompletableFuture<Void> sendAsync(String topic, K key, V value);
+
+    /**
+     * Blocks until every record sent by the calling thread is acknowledged.
+     *
+     * @throws com.fanaujie.ripple.communication.msgqueue.exception.ProducerException if any of
+     *     those records failed since the previous flush.
+     */
+    void flush();
+
     void close();
 }
@@ -23,6 +23,11 @@ public class KafkaGenericConsumer<K, V> implements GenericConsumer<K, V> {
     private ThrowingBiConsumer<K, V> processor;
 
     public KafkaGenericConsumer(KafkaConsumerConfig config) {
+        this.consumer = new KafkaConsumer<>(createProperties(config));
+        this.topic = config.getTopic();
+    }
+
+    static Properties createProperties(KafkaConsumerConfig config) {
         Properties props = new Properties();
         props.put(
                 org.apache.kafka.clients.consumer.ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,
@@ -48,8 +53,7 @@ public class KafkaGenericConsumer<K, V> implements GenericConsumer<K, V> {
         props.put(
                 org.apache.kafka.clients.consumer.ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG,
                 config.getFetchMaxWaitMs());
-        this.consumer = new KafkaConsumer<>(props);
-        this.topic = config.getTopic();
+        return props;
     }
 
     @Override
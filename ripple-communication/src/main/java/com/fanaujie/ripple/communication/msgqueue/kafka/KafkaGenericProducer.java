@@ -3,16 +3,30 @@ package com.fanaujie.ripple.communication.msgqueue.kafka;
 import com.fanaujie.ripple.communication.msgqueue.GenericProducer;
 import com.fanaujie.ripple.communication.msgqueue.exception.ProducerException;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
 import java.util.Properties;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class KafkaGenericProducer<K, V> implements GenericProducer<K, V> {
-    private final KafkaProducer<K, V> producer;
+    private final Producer<K, V> producer;
+    // First failed async send per calling thread, reported by the next flush() on that thread
+    private final ThreadLocal<AtomicReference<Exception>> pendingFailure =
+            ThreadLocal.withInitial(AtomicReference::new);
 
     public KafkaGenericProducer(KafkaProducerConfig config) {
+        this(createProducer(config));
+    }
+
+    KafkaGenericProducer(Producer<K, V> producer) {
+        this.producer = producer;
+    }
+
+    private static <K, V> KafkaProducer<K, V> createProducer(KafkaProducerConfig config) {
         Properties props = new Properties();
         props.put(
                 org.apache.kafka.clients.producer.ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
@@ -23,7 +37,22 @@ public class KafkaGenericProducer<K, V> implements GenericProducer<K, V> {
         props.put(
                 org.apache.kafka.clients.producer.ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
                 config.getValueSerializer());
-        this.producer = new KafkaProducer<>(props);
+        if (config.getLingerMs() != null) {
+            props.put(
+                    org.apache.kafka.clients.producer.ProducerConfig.LINGER_MS_CONFIG,
+                    config.getLingerMs());
+        }
+        if (config.getBatchSize() != null) {
+            props.put(
+                    org.apache.kafka.clients.producer.ProducerConfig.BATCH_SIZE_CONFIG,
+                    config.getBatchSize());
+        }
+        if (config.getCompressionType() != null) {
+            props.put(
+                    org.apache.kafka.clients.producer.ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                    config.getCompressionType());
+        }
+        return new KafkaProducer<>(props);
     }
 
     @Override
@@ -36,6 +65,40 @@ public class KafkaGenericProducer<K, V> implements GenericProducer<K, V> {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, K key, V value) {
+        AtomicReference<Exception> failure = pendingFailure.get();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            producer.send(
+                    new ProducerRecord<>(topic, key, value),
+                    (metadata, e) -> {
+                        if (e != null) {
+                            failure.compareAndSet(null, e);
+                            future.completeExceptionally(
+                                    new ProducerException(
+                                            "Failed to send message to topic: " + topic, e));
+                        } else {
+                            future.complete(null);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+            future.completeExceptionally(
+                    new ProducerException("Failed to send message to topic: " + topic, e));
+        }
+        return future;
+    }
+
+    @Override
+    public void flush() {
+        producer.flush();
+        Exception e = pendingFailure.get().getAndSet(null);
+        if (e != null) {
+            throw new ProducerException("Failed to send pending messages", e);
+        }
+    }
+
     @Override
     public void close() {
         if (producer != null) {
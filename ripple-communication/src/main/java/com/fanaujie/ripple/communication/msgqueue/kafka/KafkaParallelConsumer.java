@@ -0,0 +1,301 @@
+package com.fanaujie.ripple.communication.msgqueue.kafka;
+
+import com.fanaujie.ripple.communication.msgqueue.GenericConsumer;
+import com.fanaujie.ripple.communication.msgqueue.MessageRecord;
+import com.fanaujie.ripple.communication.msgqueue.ThrowingBiConsumer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Consumer that fans polled records out to ordered lanes by key (or partition). Offsets are
+ * committed up to the lowest in-flight record per partition.
+ */
+public class KafkaParallelConsumer<K, V> implements GenericConsumer<K, V> {
+    private static final Logger logger = LoggerFactory.getLogger(KafkaParallelConsumer.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+    private static final long LANE_POLL_TIMEOUT_MS = 100;
+    private static final long DRAIN_TIMEOUT_MS = 10000;
+
+    private final Consumer<K, V> consumer;
+    private final String topic;
+    private final ParallelConsumerConfig parallelConfig;
+    private final ExecutorService executorService;
+    private final List<Lane> lanes;
+    private final Map<TopicPartition, PartitionOffsetTracker> trackers = new ConcurrentHashMap<>();
+    private final AtomicBoolean runningFlag = new AtomicBoolean(true);
+    private final AtomicReference<Exception> laneFailure = new AtomicReference<>();
+    private ThrowingBiConsumer<K, V> processor;
+
+    public KafkaParallelConsumer(
+            KafkaConsumerConfig config, ParallelConsumerConfig parallelConfig) {
+        this(createConsumer(config), config.getTopic(), parallelConfig);
+    }
+
+    KafkaParallelConsumer(
+            Consumer<K, V> consumer, String topic, ParallelConsumerConfig parallelConfig) {
+        this.consumer = consumer;
+        this.topic = topic;
+        this.parallelConfig = parallelConfig;
+        this.executorService = Executors.newFixedThreadPool(parallelConfig.laneSize());
+        this.lanes = new ArrayList<>(parallelConfig.laneSize());
+        for (int i = 0; i < parallelConfig.laneSize(); i++) {
+            this.lanes.add(new Lane());
+        }
+    }
+
+    private static <K, V> KafkaConsumer<K, V> createConsumer(KafkaConsumerConfig config) {
+        Properties props = KafkaGenericConsumer.createProperties(config);
+        // Offsets are committed manually once lanes finished the records
+        props.put(
+                org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG,
+                false);
+        return new KafkaConsumer<>(props);
+    }
+
+    @Override
+    public void subscribe(ThrowingBiConsumer<K, V> processor) {
+        this.processor = processor;
+        consumer.subscribe(List.of(topic), new RebalanceListener());
+    }
+
+    @Override
+    public void run() {
+        if (processor == null) {
+            throw new IllegalStateException(
+                    "Processor must be set before running. Call subscribe() first.");
+        }
+        for (Lane lane : lanes) {
+            executorService.submit(lane);
+        }
+        try {
+            while (laneFailure.get() == null) {
+                ConsumerRecords<K, V> records = consumer.poll(POLL_TIMEOUT);
+                dispatch(records);
+                commitAsync();
+                applyBackpressure();
+            }
+        } catch (WakeupException e) {
+            // Ignore, we're shutting down
+        } catch (Exception e) {
+            logger.error("Unexpected error in consumer", e);
+        }
+        Exception failure = laneFailure.get();
+        if (failure != null) {
+            logger.error("Lane failed to process records, stopping consumer", failure);
+        }
+        stopLanes();
+        try {
+            commitSync(trackers.keySet());
+        } catch (Exception e) {
+            logger.warn("Failed to commit offsets on shutdown", e);
+        }
+        consumer.close();
+    }
+
+    @Override
+    public void close() {
+        consumer.wakeup();
+    }
+
+    private void dispatch(ConsumerRecords<K, V> records) {
+        for (TopicPartition partition : records.partitions()) {
+            PartitionOffsetTracker tracker =
+                    trackers.computeIfAbsent(partition, p -> new PartitionOffsetTracker());
+            Map<Integer, List<ConsumerRecord<K, V>>> laneRecords = new HashMap<>();
+            for (ConsumerRecord<K, V> record : records.records(partition)) {
+                tracker.track(record.offset());
+                laneRecords
+                        .computeIfAbsent(laneIndex(record), i -> new ArrayList<>())
+                        .add(record);
+            }
+            for (Map.Entry<Integer, List<ConsumerRecord<K, V>>> entry : laneRecords.entrySet()) {
+                lanes.get(entry.getKey()).submit(new LaneTask<>(tracker, entry.getValue()));
+            }
+        }
+    }
+
+    private int laneIndex(ConsumerRecord<K, V> record) {
+        int hash =
+                parallelConfig.ordering() == ParallelConsumerConfig.LaneOrdering.KEY
+                                && record.key() != null
+                        ? record.key().hashCode()
+                        : record.partition();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.size());
+    }
+
+    private void commitAsync() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (Map.Entry<TopicPartition, PartitionOffsetTracker> entry : trackers.entrySet()) {
+            long offset = entry.getValue().pollCommittableOffset();
+            if (offset >= 0) {
+                offsets.put(entry.getKey(), new OffsetAndMetadata(offset));
+            }
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitAsync(
+                    offsets,
+                    (committed, e) -> {
+                        if (e != null) {
+                            logger.warn("Failed to commit offsets {}", committed, e);
+                        }
+                    });
+        }
+    }
+
+    private void commitSync(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            PartitionOffsetTracker tracker = trackers.get(partition);
+            if (tracker != null && tracker.committableOffset() >= 0) {
+                offsets.put(partition, new OffsetAndMetadata(tracker.committableOffset()));
+            }
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    private void applyBackpressure() {
+        Set<TopicPartition> paused = consumer.paused();
+        List<TopicPartition> toPause = new ArrayList<>();
+        List<TopicPartition> toResume = new ArrayList<>();
+        int maxPending = parallelConfig.maxPendingPerPartition();
+        for (Map.Entry<TopicPartition, PartitionOffsetTracker> entry : trackers.entrySet()) {
+            int pending = entry.getValue().pendingCount();
+            boolean isPaused = paused.contains(entry.getKey());
+            if (!isPaused && pending >= maxPending) {
+                toPause.add(entry.getKey());
+            } else if (isPaused && pending <= maxPending / 2) {
+                toResume.add(entry.getKey());
+            }
+        }
+        if (!toPause.isEmpty()) {
+            logger.debug("applyBackpressure: Pausing partitions {}", toPause);
+            consumer.pause(toPause);
+        }
+        if (!toResume.isEmpty()) {
+            logger.debug("applyBackpressure: Resuming partitions {}", toResume);
+            consumer.resume(toResume);
+        }
+    }
+
+    private void awaitDrained(Collection<TopicPartition> partitions) {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        for (TopicPartition partition : partitions) {
+            PartitionOffsetTracker tracker = trackers.get(partition);
+            while (tracker != null
+                    && tracker.pendingCount() > 0
+                    && laneFailure.get() == null
+                    && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stopLanes() {
+        runningFlag.set(false);
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record LaneTask<K, V>(
+            PartitionOffsetTracker tracker, List<ConsumerRecord<K, V>> records) {}
+
+    private class Lane implements Runnable {
+        private final BlockingQueue<LaneTask<K, V>> queue = new LinkedBlockingQueue<>();
+
+        void submit(LaneTask<K, V> task) {
+            queue.add(task);
+        }
+
+        @Override
+        public void run() {
+            List<LaneTask<K, V>> tasks = new ArrayList<>();
+            List<MessageRecord<K, V>> msgRecords = new ArrayList<>();
+            while (runningFlag.get()) {
+                try {
+                    LaneTask<K, V> task = queue.poll(LANE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (task == null) {
+                        continue;
+                    }
+                    tasks.add(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                queue.drainTo(tasks);
+                for (LaneTask<K, V> task : tasks) {
+                    for (ConsumerRecord<K, V> record : task.records()) {
+                        msgRecords.add(new MessageRecord<>(record.key(), record.value()));
+                    }
+                }
+                try {
+                    processor.processBatch(msgRecords);
+                } catch (Exception e) {
+                    // Offsets of the failed records stay pending, so they are never committed
+                    laneFailure.compareAndSet(null, e);
+                    consumer.wakeup();
+                    break;
+                }
+                for (LaneTask<K, V> task : tasks) {
+                    for (ConsumerRecord<K, V> record : task.records()) {
+                        task.tracker().complete(record.offset());
+                    }
+                }
+                tasks.clear();
+                msgRecords.clear();
+            }
+        }
+    }
+
+    private class RebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            awaitDrained(partitions);
+            try {
+                commitSync(partitions);
+            } catch (Exception e) {
+                logger.warn("Failed to commit offsets of revoked partitions {}", partitions, e);
+            }
+            partitions.forEach(trackers::remove);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            for (TopicPartition partition : partitions) {
+                trackers.put(partition, new PartitionOffsetTracker());
+            }
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> partitions) {
+            partitions.forEach(trackers::remove);
+        }
+    }
+}
@@ -4,11 +4,18 @@ public class KafkaProducerConfig {
     private final String bootstrapServers;
     private final String keySerializer;
     private final String valueSerializer;
+    // Left null to keep the Kafka producer defaults
+    private final Integer lingerMs;
+    private final Integer batchSize;
+    private final String compressionType;
 
     private KafkaProducerConfig(Builder builder) {
         this.bootstrapServers = builder.bootstrapServers;
         this.keySerializer = builder.keySerializer;
         this.valueSerializer = builder.valueSerializer;
+        this.lingerMs = builder.lingerMs;
+        this.batchSize = builder.batchSize;
+        this.compressionType = builder.compressionType;
     }
 
     public String getBootstrapServers() {
@@ -23,6 +30,18 @@ public class KafkaProducerConfig {
         return valueSerializer;
     }
 
+    public Integer getLingerMs() {
+        return lingerMs;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -31,6 +50,9 @@ public class KafkaProducerConfig {
         private String bootstrapServers;
         private String keySerializer;
         private String valueSerializer;
+        private Integer lingerMs;
+        private Integer batchSize;
+        private String compressionType;
 
         public Builder bootstrapServers(String bootstrapServers) {
             this.bootstrapServers = bootstrapServers;
@@ -47,6 +69,21 @@ public class KafkaProducerConfig {
             return this;
         }
 
+        public Builder lingerMs(int lingerMs) {
+            this.lingerMs = lingerMs;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder compressionType(String compressionType) {
+            this.compressionType = compressionType;
+            return this;
+        }
+
         public KafkaProducerConfig build() {
             if (bootstrapServers == null || bootstrapServers.isEmpty()) {
                 throw new IllegalArgumentException("bootstrapServers is required");
@@ -57,6 +94,15 @@ public class KafkaProducerConfig {
             if (valueSerializer == null || valueSerializer.isEmpty()) {
                 throw new IllegalArgumentException("valueSerializer is required");
             }
+            if (lingerMs != null && lingerMs < 0) {
+                throw new IllegalArgumentException("lingerMs must be non-negative");
+            }
+            if (batchSize != null && batchSize < 0) {
+                throw new IllegalArgumentException("batchSize must be non-negative");
+            }
+            if (compressionType != null && compressionType.isEmpty()) {
+                throw new IllegalArgumentException("compressionType must not be empty");
+            }
             return new KafkaProducerConfig(this);
         }
     }
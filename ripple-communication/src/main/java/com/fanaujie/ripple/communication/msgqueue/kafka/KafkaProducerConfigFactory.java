@@ -28,6 +28,18 @@ public class KafkaProducerConfigFactory {
                 .build();
     }
 
+    public static KafkaProducerConfig createPushMessageProducerConfig(
+            String bootstrapServers, int lingerMs, int batchSize, String compressionType) {
+        return KafkaProducerConfig.builder()
+                .bootstrapServers(bootstrapServers)
+                .keySerializer(STRING_SERIALIZER)
+                .valueSerializer(PUSH_MESSAGE_SERIALIZER)
+                .lingerMs(lingerMs)
+                .batchSize(batchSize)
+                .compressionType(compressionType)
+                .build();
+    }
+
     public static KafkaProducerConfig createStorageUpdatePayloadProducerConfig(
             String bootstrapServers) {
         return KafkaProducerConfig.builder()
@@ -36,4 +48,16 @@ public class KafkaProducerConfigFactory {
                 .valueSerializer(STORAGE_UPDATE_PAYLOAD_SERIALIZER)
                 .build();
     }
+
+    public static KafkaProducerConfig createStorageUpdatePayloadProducerConfig(
+            String bootstrapServers, int lingerMs, int batchSize, String compressionType) {
+        return KafkaProducerConfig.builder()
+                .bootstrapServers(bootstrapServers)
+                .keySerializer(STRING_SERIALIZER)
+                .valueSerializer(STORAGE_UPDATE_PAYLOAD_SERIALIZER)
+                .lingerMs(lingerMs)
+                .batchSize(batchSize)
+                .compressionType(compressionType)
+                .build();
+    }
 }
@@ -0,0 +1,24 @@
+package com.fanaujie.ripple.communication.msgqueue.kafka;
+
+public record ParallelConsumerConfig(
+        int laneSize, LaneOrdering ordering, int maxPendingPerPartition) {
+
+    public enum LaneOrdering {
+        // records with the same key are processed in order, falls back to partition for null keys
+        KEY,
+        // records of the same partition are processed in order
+        PARTITION
+    }
+
+    public ParallelConsumerConfig {
+        if (laneSize <= 0) {
+            throw new IllegalArgumentException("laneSize must be greater than 0");
+        }
+        if (ordering == null) {
+            throw new IllegalArgumentException("ordering is required");
+        }
+        if (maxPendingPerPartition <= 0) {
+            throw new IllegalArgumentException("maxPendingPerPartition must be greater than 0");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.fanaujie.ripple.communication.msgqueue.kafka;
+
+import java.util.TreeSet;
+
+// Tracks in-flight offsets of one partition. Lanes complete records out of order, so the
+// committable offset is the lowest offset that is still pending.
+class PartitionOffsetTracker {
+    private final TreeSet<Long> pending = new TreeSet<>();
+    private long nextOffset = -1;
+    private long lastCommittedOffset = -1;
+
+    synchronized void track(long offset) {
+        pending.add(offset);
+        nextOffset = offset + 1;
+    }
+
+    synchronized void complete(long offset) {
+        pending.remove(offset);
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    synchronized long committableOffset() {
+        return pending.isEmpty() ? nextOffset : pending.first();
+    }
+
+    // Returns the committable offset if it advanced since the last call, otherwise -1.
+    synchronized long pollCommittableOffset() {
+        long offset = committableOffset();
+        if (offset > lastCommittedOffset) {
+            lastCommittedOffset = offset;
+            return offset;
+        }
+        return -1;
+    }
+}
@@ -4,6 +4,8 @@ import com.fanaujie.ripple.protobuf.msgdispatcher.GroupCommandData;
 import com.fanaujie.ripple.protobuf.msgdispatcher.MessageData;
 import com.fanaujie.ripple.protobuf.push.*;
 
+import java.util.Map;
+
 public class MessageConverter {
 
     public static PushMessage toPushMessage(long senderId, UserNotifications userNotifications) {
@@ -19,12 +21,18 @@ public class MessageConverter {
     }
 
     public static PushMessage toPushMessage(MessageData messageData) {
+        return toPushMessage(messageData, Map.of());
+    }
+
+    public static PushMessage toPushMessage(
+            MessageData messageData, Map<Long, Integer> unreadCounts) {
         PushMessageData.Builder builder =
                 PushMessageData.newBuilder()
                         .setMessageType(MessageType.MESSAGE_TYPE_SINGLE_MESSAGE)
                         .setSendUserId(messageData.getSendUserId())
                         .addAllReceiveUserIds(messageData.getReceiveUserIdsList())
-                        .setData(messageData.getData());
+                        .setData(messageData.getData())
+                        .putAllUnreadCounts(unreadCounts);
         return PushMessage.newBuilder().setMessageData(builder).build();
     }
 
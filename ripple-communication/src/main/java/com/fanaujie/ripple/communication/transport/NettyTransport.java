@@ -0,0 +1,149 @@
+package com.fanaujie.ripple.communication.transport;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringChannelOption;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Netty I/O transport shared by the Netty based servers and clients. Native transports are only
+ * used when their library loads on the host, otherwise the selection falls back to NIO.
+ */
+public enum NettyTransport {
+    NIO,
+    EPOLL,
+    IO_URING;
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyTransport.class);
+
+    public static final String AUTO = "auto";
+
+    /**
+     * @param name one of auto, nio, epoll or io_uring. auto prefers epoll, io_uring has to be
+     *     requested explicitly and falls back to epoll.
+     */
+    public static NettyTransport select(String name) {
+        String normalized = name == null ? AUTO : name.trim().toLowerCase(Locale.ROOT);
+        NettyTransport selected =
+                switch (normalized) {
+                    case AUTO, "" -> EPOLL.isAvailable() ? EPOLL : NIO;
+                    case "nio" -> NIO;
+                    case "epoll" -> fallback(EPOLL, NIO);
+                    case "io_uring", "iouring" -> fallback(IO_URING, fallback(EPOLL, NIO));
+                    default ->
+                            throw new IllegalArgumentException(
+                                    "Unknown netty transport: "
+                                            + name
+                                            + ", expected auto, nio, epoll or io_uring");
+                };
+        logger.info("select: Using {} transport (requested: {})", selected, normalized);
+        return selected;
+    }
+
+    private static NettyTransport fallback(NettyTransport preferred, NettyTransport fallback) {
+        if (preferred.isAvailable()) {
+            return preferred;
+        }
+        logger.warn(
+                "fallback: {} transport is not available, falling back to {}",
+                preferred,
+                fallback,
+                preferred.unavailabilityCause());
+        return fallback;
+    }
+
+    public boolean isAvailable() {
+        return switch (this) {
+            case NIO -> true;
+            case EPOLL -> Epoll.isAvailable();
+            case IO_URING -> IoUring.isAvailable();
+        };
+    }
+
+    private Throwable unavailabilityCause() {
+        return switch (this) {
+            case NIO -> null;
+            case EPOLL -> Epoll.unavailabilityCause();
+            case IO_URING -> IoUring.unavailabilityCause();
+        };
+    }
+
+    public IoHandlerFactory ioHandlerFactory() {
+        return switch (this) {
+            case NIO -> NioIoHandler.newFactory();
+            case EPOLL -> EpollIoHandler.newFactory();
+            case IO_URING -> IoUringIoHandler.newFactory();
+        };
+    }
+
+    public Class<? extends ServerSocketChannel> serverChannelClass() {
+        return switch (this) {
+            case NIO -> NioServerSocketChannel.class;
+            case EPOLL -> EpollServerSocketChannel.class;
+            case IO_URING -> IoUringServerSocketChannel.class;
+        };
+    }
+
+    public Class<? extends SocketChannel> channelClass() {
+        return switch (this) {
+            case NIO -> NioSocketChannel.class;
+            case EPOLL -> EpollSocketChannel.class;
+            case IO_URING -> IoUringSocketChannel.class;
+        };
+    }
+
+    public boolean supportsReusePort() {
+        return this != NIO;
+    }
+
+    /**
+     * Binds acceptorCount server channels to the same port with SO_REUSEPORT, so the kernel
+     * spreads incoming connections over them. NIO can't share a port and always binds once. The
+     * boss group needs at least acceptorCount threads for the accepts to run in parallel.
+     */
+    public List<Channel> bind(ServerBootstrap bootstrap, int port, int acceptorCount)
+            throws InterruptedException {
+        if (acceptorCount < 1) {
+            throw new IllegalArgumentException("acceptorCount must be greater than 0");
+        }
+        int count = acceptorCount;
+        if (count > 1 && !supportsReusePort()) {
+            logger.warn(
+                    "bind: {} transport doesn't support SO_REUSEPORT, binding a single acceptor",
+                    this);
+            count = 1;
+        }
+        if (count > 1) {
+            switch (this) {
+                case EPOLL -> bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+                case IO_URING -> bootstrap.option(IoUringChannelOption.SO_REUSEPORT, true);
+                default -> {}
+            }
+        }
+        List<Channel> channels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            channels.add(bootstrap.bind(port).sync().channel());
+        }
+        return channels;
+    }
+}
@@ -5,6 +5,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -265,4 +267,83 @@ class BatchExecutorServiceTest {
         assertTrue(latch.await(1, TimeUnit.SECONDS));
         assertEquals(2, batches.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testMpscRing_ProcessesItemsOfAllProducers() throws InterruptedException {
+        // Given
+        Config config =
+                new Config(64, 2, 8, 100, BatchQueueType.MPSC_RING, WaitStrategy.PARK);
+        CountDownLatch latch = new CountDownLatch(200);
+        CopyOnWriteArrayList<String> processedItems = new CopyOnWriteArrayList<>();
+
+        doAnswer(invocation -> {
+            List<String> batch = invocation.getArgument(0);
+            assertTrue(batch.size() <= 8);
+            processedItems.addAll(batch);
+            batch.forEach(item -> latch.countDown());
+            return null;
+        }).when(mockProcessor).process(any());
+
+        executorService = new BatchExecutorService<>(config, processorFactory);
+
+        // When
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    executorService.push("producer-" + i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < 100; i++) {
+            executorService.push("main-" + i);
+        }
+        producer.join(2000);
+
+        // Then
+        assertTrue(latch.await(3, TimeUnit.SECONDS));
+        assertEquals(200, processedItems.size());
+    }
+
+    @Test
+    void testMpscRing_RingKeySpreadsOneProducerAndKeepsKeyOrder() throws InterruptedException {
+        // Given
+        Config config =
+                new Config(64, 4, 8, 100, BatchQueueType.MPSC_RING, WaitStrategy.PARK);
+        CountDownLatch latch = new CountDownLatch(200);
+        CopyOnWriteArrayList<String> processedItems = new CopyOnWriteArrayList<>();
+        Set<String> workerThreads = ConcurrentHashMap.newKeySet();
+
+        doAnswer(invocation -> {
+            List<String> batch = invocation.getArgument(0);
+            workerThreads.add(Thread.currentThread().getName());
+            processedItems.addAll(batch);
+            batch.forEach(item -> latch.countDown());
+            return null;
+        }).when(mockProcessor).process(any());
+
+        executorService =
+                new BatchExecutorService<>(
+                        config, processorFactory, item -> item.substring(0, item.indexOf('-')));
+
+        // When - a single producer thread
+        for (int i = 0; i < 200; i++) {
+            executorService.push("key" + (i % 8) + "-" + i);
+        }
+
+        // Then
+        assertTrue(latch.await(3, TimeUnit.SECONDS));
+        assertTrue(workerThreads.size() > 1);
+        for (int key = 0; key < 8; key++) {
+            String prefix = "key" + key + "-";
+            List<String> itemsOfKey =
+                    processedItems.stream().filter(item -> item.startsWith(prefix)).toList();
+            assertEquals(25, itemsOfKey.size());
+            for (int i = 0; i < itemsOfKey.size(); i++) {
+                assertEquals(prefix + (key + i * 8), itemsOfKey.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fanaujie.ripple.communication.batch;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Four producers offering to one draining consumer, the MPSC ring with each wait strategy against
+// the LinkedBlockingQueue workers used before. Run main() with the test classpath.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class BatchQueueBenchmark {
+
+    private static final int CAPACITY = 1024;
+    private static final int BATCH_MAX_SIZE = 50;
+    private static final Object ITEM = new Object();
+
+    @Param({"LINKED_BLOCKING", "MPSC_RING_PARK", "MPSC_RING_SPIN", "MPSC_RING_YIELD"})
+    public String queueType;
+
+    private BatchQueue<Object> queue;
+
+    @Setup
+    public void setUp() {
+        switch (queueType) {
+            case "MPSC_RING_PARK":
+                queue = new MpscArrayBatchQueue<>(CAPACITY, WaitStrategy.PARK);
+                break;
+            case "MPSC_RING_SPIN":
+                queue = new MpscArrayBatchQueue<>(CAPACITY, WaitStrategy.SPIN);
+                break;
+            case "MPSC_RING_YIELD":
+                queue = new MpscArrayBatchQueue<>(CAPACITY, WaitStrategy.YIELD);
+                break;
+            default:
+                queue = new LinkedBatchQueue<>(CAPACITY);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConsumerState {
+        final List<Object> batch = new ArrayList<>(BATCH_MAX_SIZE);
+    }
+
+    // Offers instead of put, a producer blocked on a full queue would outlive the iteration
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public boolean offer() {
+        return queue.offer(ITEM);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void drain(ConsumerState consumer, Blackhole blackhole) throws InterruptedException {
+        blackhole.consume(
+                queue.drainTo(consumer.batch, BATCH_MAX_SIZE, 1, TimeUnit.MILLISECONDS));
+        consumer.batch.clear();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options =
+                new OptionsBuilder().include(BatchQueueBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.fanaujie.ripple.communication.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscArrayBatchQueueTest {
+
+    @Test
+    void testOffer_FullRingRejectsUntilDrained() throws InterruptedException {
+        // Rounded up to 4
+        MpscArrayBatchQueue<Integer> queue = new MpscArrayBatchQueue<>(3, WaitStrategy.SPIN);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        List<Integer> batch = new ArrayList<>();
+        assertEquals(3, queue.drainTo(batch, 3, 0, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(0, 1, 2), batch);
+        assertTrue(queue.offer(4));
+        assertEquals(2, queue.drainTo(batch, 10, 0, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(0, 1, 2, 3, 4), batch);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testDrainTo_ReturnsZeroAfterTimeout() throws InterruptedException {
+        MpscArrayBatchQueue<Integer> queue = new MpscArrayBatchQueue<>(8, WaitStrategy.PARK);
+        long start = System.nanoTime();
+
+        assertEquals(0, queue.drainTo(new ArrayList<>(), 8, 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void testPut_WaitsForRoom() throws InterruptedException {
+        MpscArrayBatchQueue<Integer> queue = new MpscArrayBatchQueue<>(1, WaitStrategy.PARK);
+        queue.put(0);
+        AtomicBoolean putCompleted = new AtomicBoolean();
+        Thread producer =
+                new Thread(
+                        () -> {
+                            try {
+                                queue.put(1);
+                                putCompleted.set(true);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+        producer.start();
+        Thread.sleep(100);
+        assertFalse(putCompleted.get());
+
+        List<Integer> batch = new ArrayList<>();
+        queue.drainTo(batch, 1, 0, TimeUnit.MILLISECONDS);
+        producer.join(2000);
+
+        assertTrue(putCompleted.get());
+        queue.drainTo(batch, 1, 0, TimeUnit.MILLISECONDS);
+        assertEquals(List.of(0, 1), batch);
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void testDrainTo_ConcurrentProducersKeepTheirOrder(WaitStrategy waitStrategy)
+            throws InterruptedException {
+        int producers = 4;
+        int itemsPerProducer = 5_000;
+        MpscArrayBatchQueue<long[]> queue = new MpscArrayBatchQueue<>(64, waitStrategy);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                    for (long i = 0; i < itemsPerProducer; i++) {
+                                        queue.put(new long[] {producer, i});
+                                    }
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        long[] nextOfProducer = new long[producers];
+        List<long[]> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * itemsPerProducer) {
+            int drained = queue.drainTo(batch, 16, 5, TimeUnit.SECONDS);
+            assertTrue(drained > 0, "no item within the timeout");
+            for (long[] item : batch) {
+                assertEquals(nextOfProducer[(int) item[0]]++, item[1]);
+            }
+            received += drained;
+            batch.clear();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, queue.size());
+    }
+}
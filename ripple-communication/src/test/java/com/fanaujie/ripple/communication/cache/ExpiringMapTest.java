@@ -0,0 +1,88 @@
+package com.fanaujie.ripple.communication.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringMapTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000L);
+
+    @Test
+    void testGet_HitUntilExpired() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(10, 100, clock::get);
+
+        assertTrue(map.put("key", "value", clock.get() + 50));
+        assertEquals("value", map.get("key"));
+
+        clock.addAndGet(50);
+        assertNull(map.get("key"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void testPut_AlreadyExpiredIsRefused() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(10, 100, clock::get);
+
+        assertFalse(map.put("key", "value", clock.get()));
+        assertNull(map.get("key"));
+    }
+
+    @Test
+    void testPut_FullMapSweepsExpiredEntriesOncePerInterval() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(1, 100, clock::get);
+        assertTrue(map.put("first", "1", clock.get() + 10));
+
+        // Nothing expired yet, the sweep frees no room
+        assertFalse(map.put("second", "2", clock.get() + 500));
+
+        // Expired, but the last sweep is too recent
+        clock.addAndGet(50);
+        assertFalse(map.put("second", "2", clock.get() + 500));
+
+        clock.addAndGet(50);
+        assertTrue(map.put("second", "2", clock.get() + 500));
+        assertEquals(1, map.size());
+        assertEquals("2", map.get("second"));
+    }
+
+    @Test
+    void testPut_FullMapReplacesExistingKey() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(1, 100, clock::get);
+        assertTrue(map.put("first", "1", clock.get() + 500));
+        assertFalse(map.put("second", "2", clock.get() + 500));
+
+        assertTrue(map.put("first", "refreshed", clock.get() + 1000));
+        assertEquals(1, map.size());
+
+        clock.addAndGet(500);
+        assertEquals("refreshed", map.get("first"));
+    }
+
+    @Test
+    void testRemoveAndClear() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(10, 100, clock::get);
+        map.put("first", "1", clock.get() + 50);
+        map.put("second", "2", clock.get() + 50);
+
+        map.remove("first");
+        assertNull(map.get("first"));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void testExpiryComparesByDifference() {
+        // nanoTime readings may be negative or wrap around
+        clock.set(Long.MAX_VALUE - 10);
+        ExpiringMap<String, String> map = new ExpiringMap<>(10, 100, clock::get);
+
+        assertTrue(map.put("key", "value", clock.get() + 20));
+        clock.addAndGet(15);
+        assertEquals("value", map.get("key"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.fanaujie.ripple.communication.msgqueue.kafka;
+
+import com.fanaujie.ripple.communication.msgqueue.exception.ProducerException;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaGenericProducerTest {
+
+    private static final String TOPIC = "test-topic";
+
+    private final MockProducer<String, String> mockProducer =
+            new MockProducer<>(false, new StringSerializer(), new StringSerializer());
+    private final KafkaGenericProducer<String, String> producer =
+            new KafkaGenericProducer<>(mockProducer);
+
+    @Test
+    void flushSucceedsWhenAllAsyncSendsSucceed() {
+        CompletableFuture<Void> first = producer.sendAsync(TOPIC, "k1", "v1");
+        CompletableFuture<Void> second = producer.sendAsync(TOPIC, "k2", "v2");
+
+        producer.flush();
+
+        assertTrue(first.isDone() && !first.isCompletedExceptionally());
+        assertTrue(second.isDone() && !second.isCompletedExceptionally());
+        assertEquals(2, mockProducer.history().size());
+    }
+
+    @Test
+    void flushRethrowsFailedAsyncSend() {
+        CompletableFuture<Void> failed = producer.sendAsync(TOPIC, "k1", "v1");
+        CompletableFuture<Void> succeeded = producer.sendAsync(TOPIC, "k2", "v2");
+        RuntimeException cause = new RuntimeException("broker unavailable");
+        mockProducer.errorNext(cause);
+
+        ProducerException e = assertThrows(ProducerException.class, producer::flush);
+
+        assertSame(cause, e.getCause());
+        CompletionException sendFailure = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(ProducerException.class, sendFailure.getCause());
+        assertTrue(succeeded.isDone() && !succeeded.isCompletedExceptionally());
+    }
+
+    @Test
+    void failureIsClearedOnceReported() {
+        producer.sendAsync(TOPIC, "k1", "v1");
+        mockProducer.errorNext(new RuntimeException("broker unavailable"));
+        assertThrows(ProducerException.class, producer::flush);
+
+        assertDoesNotThrow(producer::flush);
+
+        producer.sendAsync(TOPIC, "k2", "v2");
+        assertDoesNotThrow(producer::flush);
+    }
+
+    @Test
+    void failureIsReportedOnlyToTheSendingThread() throws InterruptedException {
+        Thread sender =
+                new Thread(
+                        () -> {
+                            producer.sendAsync(TOPIC, "k1", "v1");
+                            mockProducer.errorNext(new RuntimeException("broker unavailable"));
+                        });
+        sender.start();
+        sender.join();
+
+        assertDoesNotThrow(producer::flush);
+    }
+}
@@ -0,0 +1,218 @@
+package com.fanaujie.ripple.communication.msgqueue.kafka;
+
+import com.fanaujie.ripple.communication.msgqueue.MessageRecord;
+import com.fanaujie.ripple.communication.msgqueue.ThrowingBiConsumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaParallelConsumerTest {
+
+    private static final String TOPIC = "test-topic";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+    // Offsets committed so far, MockConsumer hides them once a partition is revoked or closed
+    private final Map<TopicPartition, Long> committedOffsets = new ConcurrentHashMap<>();
+    private final MockConsumer<String, String> mockConsumer =
+            new MockConsumer<>("earliest") {
+                @Override
+                public synchronized void commitAsync(
+                        Map<TopicPartition, OffsetAndMetadata> offsets,
+                        OffsetCommitCallback callback) {
+                    offsets.forEach(
+                            (partition, offset) ->
+                                    committedOffsets.put(partition, offset.offset()));
+                    super.commitAsync(offsets, callback);
+                }
+            };
+    private KafkaParallelConsumer<String, String> consumer;
+    private Thread pollThread;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pollThread != null) {
+            consumer.close();
+            pollThread.join(15000);
+        }
+    }
+
+    private void start(
+            ParallelConsumerConfig.LaneOrdering ordering,
+            ThrowingBiConsumer<String, String> processor,
+            List<ConsumerRecord<String, String>> records) {
+        consumer =
+                new KafkaParallelConsumer<>(
+                        mockConsumer, TOPIC, new ParallelConsumerConfig(4, ordering, 1000));
+        consumer.subscribe(processor);
+        List<TopicPartition> partitions = List.of(PARTITION_0, PARTITION_1);
+        mockConsumer.updateBeginningOffsets(Map.of(PARTITION_0, 0L, PARTITION_1, 0L));
+        mockConsumer.schedulePollTask(
+                () -> {
+                    mockConsumer.rebalance(partitions);
+                    records.forEach(mockConsumer::addRecord);
+                });
+        pollThread = new Thread(consumer);
+        pollThread.start();
+    }
+
+    private static ConsumerRecord<String, String> record(
+            TopicPartition partition, long offset, String key, String value) {
+        return new ConsumerRecord<>(partition.topic(), partition.partition(), offset, key, value);
+    }
+
+    private long committedOffset(TopicPartition partition) {
+        return committedOffsets.getOrDefault(partition, -1L);
+    }
+
+    private void awaitCommitted(TopicPartition partition, long offset) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (committedOffset(partition) != offset && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(offset, committedOffset(partition));
+    }
+
+    @Test
+    void testRun_RecordsOfAKeyStayOrderedAcrossLanes() throws InterruptedException {
+        // Given - one partition holding eight interleaved keys
+        Map<String, List<Integer>> processedByKey = new ConcurrentHashMap<>();
+        Set<String> laneThreads = ConcurrentHashMap.newKeySet();
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(record(PARTITION_0, i, "key-" + (i % 8), String.valueOf(i)));
+        }
+
+        // When
+        start(
+                ParallelConsumerConfig.LaneOrdering.KEY,
+                batch -> {
+                    laneThreads.add(Thread.currentThread().getName());
+                    for (MessageRecord<String, String> record : batch) {
+                        processedByKey
+                                .computeIfAbsent(
+                                        record.key(),
+                                        k -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(Integer.parseInt(record.value()));
+                    }
+                },
+                records);
+
+        // Then
+        awaitCommitted(PARTITION_0, 200);
+        assertTrue(laneThreads.size() > 1);
+        assertEquals(8, processedByKey.size());
+        processedByKey.forEach(
+                (key, values) -> {
+                    assertEquals(25, values.size());
+                    for (int i = 1; i < values.size(); i++) {
+                        assertEquals(values.get(i - 1) + 8, values.get(i), key);
+                    }
+                });
+    }
+
+    @Test
+    void testRun_CommitsOnlyRecordsWhoseLaneFinished() throws InterruptedException {
+        // Given - partition 0 is held up in its lane while partition 1 completes
+        CountDownLatch partition0Processing = new CountDownLatch(1);
+        CountDownLatch releasePartition0 = new CountDownLatch(1);
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(record(PARTITION_0, i, "key", "p0-" + i));
+            records.add(record(PARTITION_1, i, "key", "p1-" + i));
+        }
+
+        // When
+        start(
+                ParallelConsumerConfig.LaneOrdering.PARTITION,
+                batch -> {
+                    if (batch.get(0).value().startsWith("p0")) {
+                        partition0Processing.countDown();
+                        releasePartition0.await();
+                    }
+                },
+                records);
+
+        // Then - nothing of partition 0 is committed past the record still in its lane
+        assertTrue(partition0Processing.await(5, TimeUnit.SECONDS));
+        awaitCommitted(PARTITION_1, 5);
+        assertTrue(committedOffset(PARTITION_0) <= 0);
+
+        releasePartition0.countDown();
+        awaitCommitted(PARTITION_0, 5);
+    }
+
+    @Test
+    void testRevoke_WaitsForLanesAndCommitsBeforeHandingOver() throws InterruptedException {
+        // Given - a record of partition 0 is in its lane when the partitions are revoked
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        start(
+                ParallelConsumerConfig.LaneOrdering.PARTITION,
+                batch -> {
+                    processing.countDown();
+                    release.await();
+                },
+                List.of(record(PARTITION_0, 0, "key", "value")));
+        assertTrue(processing.await(5, TimeUnit.SECONDS));
+
+        // When
+        CountDownLatch revoking = new CountDownLatch(1);
+        CountDownLatch revoked = new CountDownLatch(1);
+        AtomicReference<Long> committedOnRevoke = new AtomicReference<>();
+        mockConsumer.schedulePollTask(
+                () -> {
+                    revoking.countDown();
+                    mockConsumer.rebalance(List.of());
+                    committedOnRevoke.set(committedOffset(PARTITION_0));
+                    revoked.countDown();
+                });
+        assertTrue(revoking.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, revoked.getCount());
+        release.countDown();
+
+        // Then - the revoke returned only once the record was processed and committed
+        assertTrue(revoked.await(5, TimeUnit.SECONDS));
+        assertEquals(1L, committedOnRevoke.get());
+    }
+
+    @Test
+    void testRun_LaneFailureStopsWithoutCommittingFailedRecords() throws InterruptedException {
+        // Given
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            records.add(record(PARTITION_0, i, "key", "value-" + i));
+        }
+
+        // When
+        start(
+                ParallelConsumerConfig.LaneOrdering.PARTITION,
+                batch -> {
+                    throw new IllegalStateException("processing failed");
+                },
+                records);
+
+        // Then
+        pollThread.join(15000);
+        assertFalse(pollThread.isAlive());
+        assertTrue(mockConsumer.closed());
+        assertTrue(committedOffset(PARTITION_0) <= 0);
+    }
+}
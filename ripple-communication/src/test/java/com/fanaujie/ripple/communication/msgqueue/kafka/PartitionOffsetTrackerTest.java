@@ -0,0 +1,66 @@
+package com.fanaujie.ripple.communication.msgqueue.kafka;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionOffsetTrackerTest {
+
+    @Test
+    void testCommittableOffset_NothingTracked() {
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+
+        assertEquals(-1, tracker.committableOffset());
+        assertEquals(-1, tracker.pollCommittableOffset());
+    }
+
+    @Test
+    void testCommittableOffset_StopsAtLowestPendingOffset() {
+        // Given
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.track(10);
+        tracker.track(11);
+        tracker.track(12);
+
+        // When - later offsets complete before the first one
+        tracker.complete(11);
+        tracker.complete(12);
+
+        // Then
+        assertEquals(10, tracker.committableOffset());
+        assertEquals(1, tracker.pendingCount());
+    }
+
+    @Test
+    void testCommittableOffset_AllCompleted() {
+        // Given
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.track(10);
+        tracker.track(11);
+
+        // When
+        tracker.complete(11);
+        tracker.complete(10);
+
+        // Then
+        assertEquals(12, tracker.committableOffset());
+        assertEquals(0, tracker.pendingCount());
+    }
+
+    @Test
+    void testPollCommittableOffset_OnlyReturnsAdvancedOffsets() {
+        // Given
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.track(5);
+        tracker.complete(5);
+
+        // When & Then
+        assertEquals(6, tracker.pollCommittableOffset());
+        assertEquals(-1, tracker.pollCommittableOffset());
+
+        tracker.track(6);
+        assertEquals(-1, tracker.pollCommittableOffset());
+        tracker.complete(6);
+        assertEquals(7, tracker.pollCommittableOffset());
+    }
+}
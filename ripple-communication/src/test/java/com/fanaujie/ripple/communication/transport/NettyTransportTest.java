@@ -0,0 +1,88 @@
+package com.fanaujie.ripple.communication.transport;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NettyTransportTest {
+
+    @Test
+    void testSelect_Nio() {
+        assertEquals(NettyTransport.NIO, NettyTransport.select("nio"));
+        assertEquals(NettyTransport.NIO, NettyTransport.select(" NIO "));
+    }
+
+    @Test
+    void testSelect_AutoPrefersEpoll() {
+        NettyTransport expected =
+                NettyTransport.EPOLL.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO;
+
+        assertEquals(expected, NettyTransport.select("auto"));
+        assertEquals(expected, NettyTransport.select(null));
+    }
+
+    @Test
+    void testSelect_FallsBackToAvailableTransport() {
+        NettyTransport ioUring = NettyTransport.select("io_uring");
+        NettyTransport epoll = NettyTransport.select("epoll");
+
+        assertTrue(ioUring.isAvailable());
+        assertTrue(epoll.isAvailable());
+        if (!NettyTransport.IO_URING.isAvailable()) {
+            assertEquals(epoll, ioUring);
+        }
+    }
+
+    @Test
+    void testSelect_UnknownTransport() {
+        assertThrows(IllegalArgumentException.class, () -> NettyTransport.select("kqueue"));
+    }
+
+    @Test
+    void testBind_AcceptorsShareThePort() throws Exception {
+        NettyTransport transport = NettyTransport.select("auto");
+        EventLoopGroup group = new MultiThreadIoEventLoopGroup(2, transport.ioHandlerFactory());
+        try {
+            ServerBootstrap bootstrap =
+                    new ServerBootstrap()
+                            .group(group)
+                            .channel(transport.serverChannelClass())
+                            .childHandler(new ChannelInboundHandlerAdapter());
+
+            int port = freePort();
+            List<Channel> channels = transport.bind(bootstrap, port, 2);
+
+            // NIO can't share a port, so it falls back to a single acceptor
+            assertEquals(transport.supportsReusePort() ? 2 : 1, channels.size());
+            for (Channel channel : channels) {
+                assertEquals(port, ((InetSocketAddress) channel.localAddress()).getPort());
+                channel.close().sync();
+            }
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void testBind_InvalidAcceptorCount() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> NettyTransport.NIO.bind(new ServerBootstrap(), 0, 0));
+    }
+}
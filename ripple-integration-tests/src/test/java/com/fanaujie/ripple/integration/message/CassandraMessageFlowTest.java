@@ -36,7 +36,10 @@ public class CassandraMessageFlowTest extends AbstractMessageFlowTest {
             session.execute("TRUNCATE ripple.user_blocked_by");
             session.execute("TRUNCATE ripple.user_conversations");
             session.execute("TRUNCATE ripple.user_conversations_version");
+            session.execute("TRUNCATE ripple.user_conversation_unread_state");
             session.execute("TRUNCATE ripple.user_messages");
+            session.execute("TRUNCATE ripple.user_messages_by_bucket");
+            session.execute("TRUNCATE ripple.user_message_buckets");
             session.execute("TRUNCATE ripple.group_members");
             session.execute("TRUNCATE ripple.group_members_version");
             session.execute("TRUNCATE ripple.user_group");
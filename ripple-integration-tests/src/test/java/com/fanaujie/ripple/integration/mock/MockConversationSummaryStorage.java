@@ -18,7 +18,7 @@ public class MockConversationSummaryStorage implements ConversationSummaryStorag
     private final Map<String, ConversationSummaryInfo> summaries = new ConcurrentHashMap<>();
 
     @Override
-    public void updateConversationSummary(
+    public Map<Long, Integer> updateConversationSummary(
             long recipientUserId,
             String conversationId,
             String messageText,
@@ -29,20 +29,23 @@ public class MockConversationSummaryStorage implements ConversationSummaryStorag
         LastMessageInfo lastMessage =
                 new LastMessageInfo(messageText, timestamp, String.valueOf(messageId));
         summaries.put(key, new ConversationSummaryInfo(unreadCounts.get(key), lastMessage));
+        return Map.of(recipientUserId, unreadCounts.get(key));
     }
 
     @Override
-    public void updateGroupConversationSummary(
+    public Map<Long, Integer> updateGroupConversationSummary(
             long senderId,
             List<Long> recipientUserIds,
             String conversationId,
             String messageText,
             long timestamp,
             long messageId) {
+        Map<Long, Integer> result = new HashMap<>();
         for (long userId : recipientUserIds) {
             if (userId != senderId) {
-                updateConversationSummary(
-                        userId, conversationId, messageText, timestamp, messageId);
+                result.putAll(
+                        updateConversationSummary(
+                                userId, conversationId, messageText, timestamp, messageId));
             }
         }
         // Sender gets the summary but no unread count
@@ -50,6 +53,7 @@ public class MockConversationSummaryStorage implements ConversationSummaryStorag
         LastMessageInfo lastMessage =
                 new LastMessageInfo(messageText, timestamp, String.valueOf(messageId));
         summaries.put(senderKey, new ConversationSummaryInfo(0, lastMessage));
+        return result;
     }
 
     @Override
@@ -57,6 +61,15 @@ public class MockConversationSummaryStorage implements ConversationSummaryStorag
         return unreadCounts.getOrDefault(buildKey(userId, conversationId), 0);
     }
 
+    @Override
+    public Map<Long, Integer> batchGetUnreadCounts(String conversationId, List<Long> userIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (long userId : userIds) {
+            result.put(userId, getUnreadCount(userId, conversationId));
+        }
+        return result;
+    }
+
     @Override
     public void resetUnreadCount(long userId, String conversationId) {
         String key = buildKey(userId, conversationId);
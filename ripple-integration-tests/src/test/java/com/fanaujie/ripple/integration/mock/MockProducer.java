@@ -4,6 +4,7 @@ import com.fanaujie.ripple.communication.msgqueue.GenericProducer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MockProducer<K, V> implements GenericProducer<K, V> {
@@ -15,6 +16,17 @@ public class MockProducer<K, V> implements GenericProducer<K, V> {
         capturedMessages.add(new CapturedMessage<>(topic, key, value));
     }
 
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, K key, V value) {
+        capturedMessages.add(new CapturedMessage<>(topic, key, value));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void flush() {
+        // No-op for mock
+    }
+
     @Override
     public void close() {
         // No-op for mock
@@ -6,10 +6,13 @@ import com.fanaujie.ripple.cache.service.impl.RedisConversationSummaryStorage;
 import com.fanaujie.ripple.cache.service.impl.RedisUserProfileStorage;
 import com.fanaujie.ripple.communication.msgqueue.GenericConsumer;
 import com.fanaujie.ripple.communication.msgqueue.GenericProducer;
+import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaConsumerConfig;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaConsumerConfigFactory;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaGenericConsumer;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaGenericProducer;
+import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaParallelConsumer;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaProducerConfigFactory;
+import com.fanaujie.ripple.communication.msgqueue.kafka.ParallelConsumerConfig;
 import com.fanaujie.ripple.communication.processor.DefaultProcessorDispatcher;
 import com.fanaujie.ripple.communication.processor.ProcessorDispatcher;
 import com.fanaujie.ripple.msgdispatcher.consumer.MessageConsumer;
@@ -33,6 +36,7 @@ import com.typesafe.config.ConfigFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -55,6 +59,16 @@ public class Application {
         int kafkaMaxPollRecords = config.getInt("kafka.consumer.max-poll-records");
         int kafkaFetchMinBytes = config.getInt("kafka.consumer.fetch-min-bytes");
         int kafkaFetchMaxWaitMs = config.getInt("kafka.consumer.fetch-max-wait-ms");
+        int kafkaParallelLaneSize = config.getInt("kafka.consumer.parallel.lane-size");
+        ParallelConsumerConfig.LaneOrdering kafkaParallelOrdering =
+                config.getEnum(
+                        ParallelConsumerConfig.LaneOrdering.class,
+                        "kafka.consumer.parallel.ordering");
+        int kafkaParallelMaxPending =
+                config.getInt("kafka.consumer.parallel.max-pending-per-partition");
+        int kafkaProducerLingerMs = config.getInt("kafka.producer.linger-ms");
+        int kafkaProducerBatchSize = config.getInt("kafka.producer.batch-size");
+        String kafkaProducerCompressionType = config.getString("kafka.producer.compression-type");
 
         // Load processor configuration
         logger.info("Configuration - Redis Host: {}, Redis Port: {}", redisHost, redisPort);
@@ -70,6 +84,16 @@ public class Application {
                 kafkaMaxPollRecords,
                 kafkaFetchMinBytes,
                 kafkaFetchMaxWaitMs);
+        logger.info(
+                "Kafka Consumer Parallel Config - Lane Size: {}, Ordering: {}, Max Pending Per Partition: {}",
+                kafkaParallelLaneSize,
+                kafkaParallelOrdering,
+                kafkaParallelMaxPending);
+        logger.info(
+                "Kafka Producer Config - Linger (ms): {}, Batch Size: {}, Compression Type: {}",
+                kafkaProducerLingerMs,
+                kafkaProducerBatchSize,
+                kafkaProducerCompressionType);
 
         RippleStorageFacade userStorageFacade = RippleStorageLoader.load(System::getenv);
         RedissonClient redissonClient = RedisDriver.createRedissonClient(redisHost, redisPort);
@@ -80,16 +104,30 @@ public class Application {
         ConversationSummaryStorage conversationStorage =
                 new RedisConversationSummaryStorage(redissonClient, userStorageFacade);
 
+        GenericProducer<String, PushMessage> pushMessageProducer =
+                createPushMessageProducer(
+                        brokerServer,
+                        kafkaProducerLingerMs,
+                        kafkaProducerBatchSize,
+                        kafkaProducerCompressionType);
+        GenericProducer<String, StorageUpdatePayload> storageUpdateProducer =
+                createStorageUpdateProducer(
+                        brokerServer,
+                        kafkaProducerLingerMs,
+                        kafkaProducerBatchSize,
+                        kafkaProducerCompressionType);
         DefaultKeyedPayloadHandler payloadRouter =
                 createKeyedPayloadHandler(
                         pushTopic,
                         storageUpdateTopic,
-                        createPushMessageProducer(brokerServer),
-                        createStorageUpdateProducer(brokerServer),
+                        pushMessageProducer,
+                        storageUpdateProducer,
                         userStorageFacade,
                         userProfileCache,
                         conversationStorage);
-        MessageConsumer msgProcessor = new MessageConsumer(payloadRouter);
+        MessageConsumer msgProcessor =
+                new MessageConsumer(
+                        payloadRouter, List.of(pushMessageProducer, storageUpdateProducer));
         GenericConsumer<String, MessagePayload> messageTopicConsumer =
                 createMessageTopicConsumer(
                         messageTopic,
@@ -99,6 +137,12 @@ public class Application {
                         kafkaMaxPollRecords,
                         kafkaFetchMinBytes,
                         kafkaFetchMaxWaitMs,
+                        kafkaParallelLaneSize > 0
+                                ? new ParallelConsumerConfig(
+                                        kafkaParallelLaneSize,
+                                        kafkaParallelOrdering,
+                                        kafkaParallelMaxPending)
+                                : null,
                         msgProcessor);
 
         Thread messageConsumerThread = new Thread(messageTopicConsumer);
@@ -123,31 +167,38 @@ public class Application {
             int maxPollRecords,
             int fetchMinBytes,
             int fetchMaxWaitMs,
+            ParallelConsumerConfig parallelConfig,
             MessageConsumer msgProcessor) {
 
+        KafkaConsumerConfig consumerConfig =
+                KafkaConsumerConfigFactory.createMessagePayloadConsumerConfig(
+                        topic,
+                        brokerServer,
+                        groupId,
+                        clientId,
+                        maxPollRecords,
+                        fetchMinBytes,
+                        fetchMaxWaitMs);
         GenericConsumer<String, MessagePayload> c =
-                new KafkaGenericConsumer<>(
-                        KafkaConsumerConfigFactory.createMessagePayloadConsumerConfig(
-                                topic,
-                                brokerServer,
-                                groupId,
-                                clientId,
-                                maxPollRecords,
-                                fetchMinBytes,
-                                fetchMaxWaitMs));
+                parallelConfig != null
+                        ? new KafkaParallelConsumer<>(consumerConfig, parallelConfig)
+                        : new KafkaGenericConsumer<>(consumerConfig);
         c.subscribe(msgProcessor::consumeBatch);
         return c;
     }
 
-    private GenericProducer<String, PushMessage> createPushMessageProducer(String brokerServer) {
+    private GenericProducer<String, PushMessage> createPushMessageProducer(
+            String brokerServer, int lingerMs, int batchSize, String compressionType) {
         return new KafkaGenericProducer<String, PushMessage>(
-                KafkaProducerConfigFactory.createPushMessageProducerConfig(brokerServer));
+                KafkaProducerConfigFactory.createPushMessageProducerConfig(
+                        brokerServer, lingerMs, batchSize, compressionType));
     }
 
     private GenericProducer<String, StorageUpdatePayload> createStorageUpdateProducer(
-            String brokerServer) {
+            String brokerServer, int lingerMs, int batchSize, String compressionType) {
         return new KafkaGenericProducer<String, StorageUpdatePayload>(
-                KafkaProducerConfigFactory.createStorageUpdatePayloadProducerConfig(brokerServer));
+                KafkaProducerConfigFactory.createStorageUpdatePayloadProducerConfig(
+                        brokerServer, lingerMs, batchSize, compressionType));
     }
 
     private DefaultKeyedPayloadHandler createKeyedPayloadHandler(
@@ -1,5 +1,6 @@
 package com.fanaujie.ripple.msgdispatcher.consumer;
 
+import com.fanaujie.ripple.communication.msgqueue.GenericProducer;
 import com.fanaujie.ripple.communication.msgqueue.KeyedPayloadHandler;
 import com.fanaujie.ripple.communication.msgqueue.MessageRecord;
 import com.fanaujie.ripple.protobuf.msgdispatcher.MessagePayload;
@@ -9,15 +10,23 @@ import java.util.List;
 public class MessageConsumer {
 
     private final KeyedPayloadHandler<MessagePayload> payloadRouter;
+    private final List<GenericProducer<?, ?>> producers;
 
-    public MessageConsumer(KeyedPayloadHandler<MessagePayload> payloadRouter) {
+    public MessageConsumer(
+            KeyedPayloadHandler<MessagePayload> payloadRouter,
+            List<GenericProducer<?, ?>> producers) {
         this.payloadRouter = payloadRouter;
+        this.producers = producers;
     }
 
     public void consumeBatch(List<MessageRecord<String, MessagePayload>> records) throws Exception {
         for (MessageRecord<String, MessagePayload> record : records) {
             consume(record.key(), record.value());
         }
+        // Wait for every record sent while processing this batch before offsets are committed
+        for (GenericProducer<?, ?> producer : producers) {
+            producer.flush();
+        }
     }
 
     public void consume(String key, MessagePayload payload) throws Exception {
@@ -20,6 +20,7 @@ import static com.fanaujie.ripple.protobuf.msgapiserver.SendGroupCommandReq.Comm
 import static com.fanaujie.ripple.storage.model.GroupCommandType.GROUP_COMMAND_TYPE_MEMBER_QUIT;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class QuitGroupCommandPayloadProcessor implements Processor<GroupCommandData, Void> {
@@ -87,13 +88,14 @@ public class QuitGroupCommandPayloadProcessor implements Processor<GroupCommandD
                         .map(GroupMemberInfo::getUserId)
                         .filter(id -> id != userId)
                         .collect(Collectors.toList());
-        this.groupHelper.updateGroupUnreadCount(
-                userId,
-                remainingMemberIds,
-                conversationId,
-                commandText,
-                sendGroupCommandReq.getSendTimestamp(),
-                sendGroupCommandReq.getMessageId());
+        Map<Long, Integer> unreadCounts =
+                this.groupHelper.updateGroupUnreadCount(
+                        userId,
+                        remainingMemberIds,
+                        conversationId,
+                        commandText,
+                        sendGroupCommandReq.getSendTimestamp(),
+                        sendGroupCommandReq.getMessageId());
 
         GroupCommandMessageContent.Builder commandContentBuilder =
                 GroupCommandMessageContent.newBuilder()
@@ -117,8 +119,9 @@ public class QuitGroupCommandPayloadProcessor implements Processor<GroupCommandD
                         .setSendUserId(userId)
                         .addAllReceiveUserIds(recipientIds)
                         .setData(sendMessageReq)
+                        .putAllUnreadCounts(unreadCounts)
                         .build();
         PushMessage pushMessage = PushMessage.newBuilder().setMessageData(messageData).build();
-        this.pushMessageProducer.send(this.pushTopic, String.valueOf(groupId), pushMessage);
+        this.pushMessageProducer.sendAsync(this.pushTopic, String.valueOf(groupId), pushMessage);
     }
 }
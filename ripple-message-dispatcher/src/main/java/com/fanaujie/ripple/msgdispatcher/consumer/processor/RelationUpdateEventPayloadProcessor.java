@@ -58,7 +58,7 @@ public class RelationUpdateEventPayloadProcessor implements Processor<EventData,
             pushEventDataBuilder.setSendUserId(eventData.getSendUserId());
             UserNotifications userNotifications =
                     this.updateRelationStorage(receiverId, sendEventReq);
-            this.pushProducer.send(
+            this.pushProducer.sendAsync(
                     this.pushTopic,
                     String.valueOf(eventData.getSendUserId()),
                     MessageConverter.toPushMessage(eventData.getSendUserId(), userNotifications));
@@ -103,7 +103,7 @@ public class RelationUpdateEventPayloadProcessor implements Processor<EventData,
                             StorageUpdatePayload.newBuilder()
                                     .setFriendStorageUpdateData(friendStorageBuilder.build())
                                     .build();
-                    storageUpdateProducer.send(
+                    storageUpdateProducer.sendAsync(
                             storageUpdateTopic,
                             String.valueOf(event.getUserId()),
                             storageUpdatePayload);
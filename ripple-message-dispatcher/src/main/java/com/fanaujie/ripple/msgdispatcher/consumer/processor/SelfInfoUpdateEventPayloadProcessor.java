@@ -51,7 +51,7 @@ public class SelfInfoUpdateEventPayloadProcessor implements Processor<EventData,
         SendEventReq sendEventReq = eventData.getData();
         if (sendEventReq.getEventCase() == SELF_INFO_UPDATE_EVENT) {
             UserNotifications userNotifications = updateUserStorage(sendEventReq);
-            this.pushMessageGenericProducer.send(
+            this.pushMessageGenericProducer.sendAsync(
                     this.pushTopic,
                     String.valueOf(eventData.getSendUserId()),
                     MessageConverter.toPushMessage(eventData.getSendUserId(), userNotifications));
@@ -154,7 +154,7 @@ public class SelfInfoUpdateEventPayloadProcessor implements Processor<EventData,
                     StorageUpdatePayload.newBuilder()
                             .setRelationBatchUpdateData(batchBuilder.build())
                             .build();
-            storageUpdateProducer.send(storageUpdateTopic, String.valueOf(userId), payload);
+            storageUpdateProducer.sendAsync(storageUpdateTopic, String.valueOf(userId), payload);
         }
     }
 
@@ -196,7 +196,7 @@ public class SelfInfoUpdateEventPayloadProcessor implements Processor<EventData,
                     StorageUpdatePayload.newBuilder()
                             .setUserGroupBatchUpdateData(batchBuilder.build())
                             .build();
-            storageUpdateProducer.send(storageUpdateTopic, String.valueOf(userId), payload);
+            storageUpdateProducer.sendAsync(storageUpdateTopic, String.valueOf(userId), payload);
         }
     }
 }
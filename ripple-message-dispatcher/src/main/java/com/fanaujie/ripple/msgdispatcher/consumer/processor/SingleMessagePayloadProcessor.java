@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Map;
 
 import static com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq.MessageCase.SINGLE_MESSAGE_CONTENT;
 
@@ -40,22 +41,25 @@ public class SingleMessagePayloadProcessor implements Processor<MessageData, Voi
         SendMessageReq sendMessageReq = messageData.getData();
         if (sendMessageReq.getMessageCase() == SINGLE_MESSAGE_CONTENT) {
             long groupId = sendMessageReq.getGroupId();
+            Map<Long, Integer> unreadCounts;
             if (groupId > 0) {
-                this.updateGroupConversationStorage(sendMessageReq, messageData);
+                unreadCounts = this.updateGroupConversationStorage(sendMessageReq, messageData);
             } else {
-                this.updateSingleConversationStorage(sendMessageReq);
+                unreadCounts = this.updateSingleConversationStorage(sendMessageReq);
             }
-            this.pushMessageGenericProducer.send(
+            // The push server reads the counters again only for recipients missing here
+            this.pushMessageGenericProducer.sendAsync(
                     this.pushTopic,
                     String.valueOf(messageData.getSendUserId()),
-                    MessageConverter.toPushMessage(messageData));
+                    MessageConverter.toPushMessage(messageData, unreadCounts));
             return null;
         }
         throw new IllegalArgumentException(
                 "Unknown message type for SingleMessagePayloadProcessor {}");
     }
 
-    private void updateSingleConversationStorage(SendMessageReq sendMessageReq) throws Exception {
+    private Map<Long, Integer> updateSingleConversationStorage(SendMessageReq sendMessageReq)
+            throws Exception {
         if (!this.storageFacade.existsByConversationId(
                 sendMessageReq.getConversationId(), sendMessageReq.getSenderId())) {
 
@@ -91,8 +95,12 @@ public class SingleMessagePayloadProcessor implements Processor<MessageData, Voi
                 sendMessageReq.getSingleMessageContent().getText(),
                 sendMessageReq.getSingleMessageContent().getFileUrl(),
                 sendMessageReq.getSingleMessageContent().getFileName());
+        this.storageFacade.incrementUnreadCounts(
+                sendMessageReq.getConversationId(),
+                List.of(sendMessageReq.getReceiverId()),
+                sendMessageReq.getMessageId());
 
-        cachingConversationStateFacade.updateConversationSummary(
+        return cachingConversationStateFacade.updateConversationSummary(
                 sendMessageReq.getReceiverId(),
                 sendMessageReq.getConversationId(),
                 sendMessageReq.getSingleMessageContent().getText(),
@@ -100,7 +108,7 @@ public class SingleMessagePayloadProcessor implements Processor<MessageData, Voi
                 sendMessageReq.getMessageId());
     }
 
-    private void updateGroupConversationStorage(
+    private Map<Long, Integer> updateGroupConversationStorage(
             SendMessageReq sendMessageReq, MessageData messageData) throws Exception {
         long senderId = sendMessageReq.getSenderId();
         long groupId = sendMessageReq.getGroupId();
@@ -117,7 +125,11 @@ public class SingleMessagePayloadProcessor implements Processor<MessageData, Voi
                 sendMessageReq.getSingleMessageContent().getFileName());
 
         List<Long> allReceiversId = messageData.getReceiveUserIdsList();
-        cachingConversationStateFacade.updateGroupConversationSummary(
+        this.storageFacade.incrementUnreadCounts(
+                conversationId,
+                allReceiversId.stream().filter(id -> id != senderId).toList(),
+                sendMessageReq.getMessageId());
+        return cachingConversationStateFacade.updateGroupConversationSummary(
                 senderId,
                 allReceiversId,
                 conversationId,
@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.fanaujie.ripple.storage.model.GroupCommandType.GROUP_COMMAND_TYPE_MEMBER_JOIN;
@@ -70,7 +71,7 @@ public class GroupHelper {
                     StorageUpdatePayload.newBuilder()
                             .setGroupMemberBatchInsertData(batchData)
                             .build();
-            this.storageUpdateProducer.send(
+            this.storageUpdateProducer.sendAsync(
                     this.storageUpdateTopic, String.valueOf(groupId), payload);
         }
     }
@@ -112,7 +113,7 @@ public class GroupHelper {
                     StorageUpdatePayload.newBuilder()
                             .setGroupInfoBatchUpdateData(builder.build())
                             .build();
-            this.storageUpdateProducer.send(
+            this.storageUpdateProducer.sendAsync(
                     this.storageUpdateTopic, String.valueOf(groupId), payload);
         }
     }
@@ -135,14 +136,18 @@ public class GroupHelper {
                 conversationId, messageId, senderId, groupId, timestamp, commandType, commandText);
     }
 
-    public void updateGroupUnreadCount(
+    public Map<Long, Integer> updateGroupUnreadCount(
             long senderId,
             List<Long> recipientUserIds,
             String conversationId,
             String messageText,
             long timestamp,
             long messageId) {
-        this.conversationStorage.updateGroupConversationSummary(
+        this.storageFacade.incrementUnreadCounts(
+                conversationId,
+                recipientUserIds.stream().filter(id -> id != senderId).toList(),
+                messageId);
+        return this.conversationStorage.updateGroupConversationSummary(
                 senderId, recipientUserIds, conversationId, messageText, timestamp, messageId);
     }
 }
@@ -1,17 +1,23 @@
 package com.fanaujie.ripple.msggateway;
 
 import com.fanaujie.ripple.communication.batch.BatchExecutorService;
+import com.fanaujie.ripple.communication.batch.BatchQueueType;
+import com.fanaujie.ripple.communication.batch.WaitStrategy;
 import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
+import com.fanaujie.ripple.communication.msgapi.impl.DefaultAsyncMessageAPISender;
 import com.fanaujie.ripple.communication.zookeeper.ZookeeperDiscoverService;
 import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchProcessorFactory;
 import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchTask;
 import com.fanaujie.ripple.msggateway.server.grpc.GrpcServer;
+import com.fanaujie.ripple.msggateway.server.jwt.CachingJwtDecoder;
 import com.fanaujie.ripple.msggateway.server.jwt.DefaultJwtDecoder;
 import com.fanaujie.ripple.msggateway.server.users.DefaultOnlineUser;
 import com.fanaujie.ripple.msggateway.server.users.DefaultUserNotifier;
 import com.fanaujie.ripple.msggateway.server.ws.WsService;
 import com.fanaujie.ripple.msggateway.server.ws.config.WsConfig;
+import com.fanaujie.ripple.protobuf.msgapiserver.MessageAPIGrpc;
 import com.fanaujie.ripple.protobuf.userpresence.UserPresenceGrpc;
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIdClient;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.Config;
 import org.slf4j.Logger;
@@ -30,9 +36,29 @@ public class Application {
         int wsPort = config.getInt("server.websocket.port");
         String wsPath = config.getString("server.websocket.path");
         int idleSeconds = config.getInt("ripple.heartbeat.idleSeconds");
+        int presenceTtlSeconds = config.getInt("ripple.heartbeat.presence-ttl-seconds");
+        int presenceRefreshThresholdSeconds =
+                config.getInt("ripple.heartbeat.presence-refresh-threshold-seconds");
+        String nettyTransport = config.getString("server.netty.transport");
+        int wsAcceptorCount = config.getInt("server.websocket.acceptor-count");
+        int wsWriteBufferLowWaterMark =
+                config.getInt("server.websocket.write-buffer.low-water-mark");
+        int wsWriteBufferHighWaterMark =
+                config.getInt("server.websocket.write-buffer.high-water-mark");
+        int wsMaxPendingPushFrames = config.getInt("server.websocket.push.max-pending-frames");
+        int wsMaxSendsInFlight = config.getInt("server.websocket.send.max-in-flight");
+        int wsMaxPendingDeliveries = config.getInt("server.websocket.delivery.max-pending");
+        long wsDeliveryAckTimeoutMs = config.getLong("server.websocket.delivery.ack-timeout-ms");
         int grpcPort = config.getInt("server.grpc.port");
+        int grpcPushStreamMaxInFlightFrames =
+                config.getInt("server.grpc.push-stream.max-in-flight-frames");
         String jwtSecret = config.getString("oauth2.jwk.secret");
+        int wsAuthThreads = config.getInt("server.websocket.auth.threads");
+        int wsAuthCacheSize = config.getInt("server.websocket.auth.cache-size");
         String userPresenceServer = config.getString("server.user-presence.address");
+        String messageApiServer = config.getString("server.message-api.address");
+        String snowflakeIdHost = config.getString("server.snowflakeid.host");
+        int snowflakeIdPort = config.getInt("server.snowflakeid.port");
         String zookeeperAddress = config.getString("zookeeper.address");
         String discoveryPath = config.getString("zookeeper.message-gateway.discovery-path");
         int zookeeperSessionTimeoutMs = config.getInt("zookeeper.session-timeout-ms");
@@ -43,19 +69,36 @@ public class Application {
         int batchWorkerSize = config.getInt("batch.user-online.worker-size");
         int batchMaxSize = config.getInt("batch.user-online.max-size");
         long batchTimeoutMs = config.getLong("batch.user-online.timeout-ms");
+        BatchQueueType batchQueueType =
+                config.getEnum(BatchQueueType.class, "batch.user-online.queue-type");
+        WaitStrategy batchWaitStrategy =
+                config.getEnum(WaitStrategy.class, "batch.user-online.wait-strategy");
 
         logger.info("Starting Message Gateway server and gRPC service...");
         logger.info("WebSocket Port: {}", wsPort);
         logger.info("WebSocket Path: {}", wsPath);
         logger.info("WebSocket Idle Seconds: {}", idleSeconds);
-        logger.info("gRPC Port: {}", grpcPort);
+        logger.info(
+                "Presence TTL Seconds: {}, refresh threshold seconds: {}",
+                presenceTtlSeconds,
+                presenceRefreshThresholdSeconds);
+        logger.info(
+                "gRPC Port: {}, push stream max in-flight frames: {}",
+                grpcPort,
+                grpcPushStreamMaxInFlightFrames);
+        logger.info(
+                "WebSocket Auth - threads: {}, cache size: {}", wsAuthThreads, wsAuthCacheSize);
         logger.info("User Presence Server: {}", userPresenceServer);
+        logger.info("Message API Server: {}", messageApiServer);
+        logger.info("Snowflake ID Server: {}:{}", snowflakeIdHost, snowflakeIdPort);
         logger.info(
-                "User Online Batch Config - queueSize: {}, workerSize: {}, maxSize: {}, timeoutMs: {}",
+                "User Online Batch Config - queueSize: {}, workerSize: {}, maxSize: {}, timeoutMs: {}, queueType: {}, waitStrategy: {}",
                 batchQueueSize,
                 batchWorkerSize,
                 batchMaxSize,
-                batchTimeoutMs);
+                batchTimeoutMs,
+                batchQueueType,
+                batchWaitStrategy);
         logger.info(
                 "Zookeeper Config - Address: {}, Discovery Path: {}, Session Timeout: {}ms, Connection Timeout: {}ms",
                 zookeeperAddress,
@@ -87,27 +130,56 @@ public class Application {
         GrpcClient<UserPresenceGrpc.UserPresenceStub> userPresenceGrpcClient =
                 new GrpcClient<>(userPresenceServer, UserPresenceGrpc::newStub);
 
+        // Messages sent over the WebSocket are forwarded without blocking the event loops
+        GrpcClient<MessageAPIGrpc.MessageAPIStub> messageApiGrpcClient =
+                new GrpcClient<>(messageApiServer, MessageAPIGrpc::newStub);
+        SnowflakeIdClient snowflakeIdClient =
+                new SnowflakeIdClient(snowflakeIdHost, snowflakeIdPort);
+
         // Initialize BatchExecutorService for user online status updates
         com.fanaujie.ripple.communication.batch.Config batchConfig =
                 new com.fanaujie.ripple.communication.batch.Config(
-                        batchQueueSize, batchWorkerSize, batchMaxSize, batchTimeoutMs);
+                        batchQueueSize,
+                        batchWorkerSize,
+                        batchMaxSize,
+                        batchTimeoutMs,
+                        batchQueueType,
+                        batchWaitStrategy);
         UserOnlineBatchProcessorFactory processorFactory =
                 new UserOnlineBatchProcessorFactory(userPresenceGrpcClient);
         BatchExecutorService<UserOnlineBatchTask> batchExecutorService =
-                new BatchExecutorService<>(batchConfig, processorFactory);
+                new BatchExecutorService<>(
+                        batchConfig, processorFactory, UserOnlineBatchTask::userId);
         logger.info("User Online BatchExecutorService initialized successfully with async stub");
 
         // Initialize services with batch executor
         DefaultOnlineUser onlineUser = new DefaultOnlineUser(grpcPort, batchExecutorService);
         DefaultUserNotifier userNotifier = new DefaultUserNotifier();
-        GrpcServer grpcServer = new GrpcServer(grpcPort, onlineUser, userNotifier);
+        GrpcServer grpcServer =
+                new GrpcServer(grpcPort, onlineUser, userNotifier, grpcPushStreamMaxInFlightFrames);
         WsService wsService =
                 new WsService(
-                        new WsConfig(wsPort, wsPath, idleSeconds),
-                        new DefaultJwtDecoder(jwtSecret),
+                        new WsConfig(
+                                wsPort,
+                                wsPath,
+                                idleSeconds,
+                                nettyTransport,
+                                wsAcceptorCount,
+                                wsWriteBufferLowWaterMark,
+                                wsWriteBufferHighWaterMark,
+                                wsMaxPendingPushFrames,
+                                wsMaxSendsInFlight,
+                                wsMaxPendingDeliveries,
+                                wsDeliveryAckTimeoutMs,
+                                presenceTtlSeconds,
+                                presenceRefreshThresholdSeconds,
+                                wsAuthThreads),
+                        new CachingJwtDecoder(new DefaultJwtDecoder(jwtSecret), wsAuthCacheSize),
                         onlineUser,
                         batchExecutorService,
-                        serverLocation);
+                        serverLocation,
+                        snowflakeIdClient,
+                        new DefaultAsyncMessageAPISender(messageApiGrpcClient));
 
         CompletableFuture<Void> grpcFuture = grpcServer.startAsync();
         CompletableFuture<Void> wsFuture = wsService.startAsync();
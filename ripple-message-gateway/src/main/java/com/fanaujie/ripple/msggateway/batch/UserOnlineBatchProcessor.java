@@ -10,13 +10,17 @@ import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class UserOnlineBatchProcessor
         implements BatchProcessorFactory.BatchProcessor<UserOnlineBatchTask> {
 
     private static final Logger logger = LoggerFactory.getLogger(UserOnlineBatchProcessor.class);
 
+    private record DeviceKey(String userId, String deviceId) {}
+
     private final GrpcClient<UserPresenceGrpc.UserPresenceStub> userPresenceGrpcClient;
 
     public UserOnlineBatchProcessor(
@@ -29,10 +33,14 @@ public class UserOnlineBatchProcessor
         if (batch == null || batch.isEmpty()) {
             return;
         }
-        // Convert batch tasks to UserOnlineReq list
+        // Only the latest status of a device within the batch is sent
+        Map<DeviceKey, UserOnlineBatchTask> latest = new LinkedHashMap<>();
+        for (UserOnlineBatchTask task : batch) {
+            latest.put(new DeviceKey(task.userId(), task.deviceId()), task);
+        }
         BatchUserOnlineReq.Builder requestBuilder = BatchUserOnlineReq.newBuilder();
 
-        for (UserOnlineBatchTask task : batch) {
+        for (UserOnlineBatchTask task : latest.values()) {
             UserOnlineReq req =
                     UserOnlineReq.newBuilder()
                             .setUserId(task.userId())
@@ -44,7 +52,7 @@ public class UserOnlineBatchProcessor
         }
 
         BatchUserOnlineReq batchRequest = requestBuilder.build();
-        final int batchSize = batch.size();
+        final int batchSize = latest.size();
         // Call the batch gRPC method asynchronously (fire-and-forget)
         userPresenceGrpcClient
                 .getStub()
@@ -4,16 +4,16 @@ import com.fanaujie.ripple.msggateway.server.uitls.HttpHeader;
 import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatRequest;
 import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatResponse;
 import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
-import com.fanaujie.ripple.shaded.netty.bootstrap.Bootstrap;
-import com.fanaujie.ripple.shaded.netty.channel.*;
-import com.fanaujie.ripple.shaded.netty.channel.nio.NioIoHandler;
-import com.fanaujie.ripple.shaded.netty.channel.socket.SocketChannel;
-import com.fanaujie.ripple.shaded.netty.channel.socket.nio.NioSocketChannel;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.DefaultHttpHeaders;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpClientCodec;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpObjectAggregator;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.*;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
+import com.fanaujie.ripple.shaded.io.netty.bootstrap.Bootstrap;
+import com.fanaujie.ripple.shaded.io.netty.channel.*;
+import com.fanaujie.ripple.shaded.io.netty.channel.nio.NioIoHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.socket.SocketChannel;
+import com.fanaujie.ripple.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.DefaultHttpHeaders;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpClientCodec;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpObjectAggregator;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.*;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -2,11 +2,11 @@ package com.fanaujie.ripple.msggateway.client;
 
 import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatResponse;
 import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
-import com.fanaujie.ripple.shaded.netty.channel.*;
-import com.fanaujie.ripple.shaded.netty.buffer.*;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.FullHttpResponse;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.*;
-import com.fanaujie.ripple.shaded.netty.util.CharsetUtil;
+import com.fanaujie.ripple.shaded.io.netty.channel.*;
+import com.fanaujie.ripple.shaded.io.netty.buffer.*;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.FullHttpResponse;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.*;
+import com.fanaujie.ripple.shaded.io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
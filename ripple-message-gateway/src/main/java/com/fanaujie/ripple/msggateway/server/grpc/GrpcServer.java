@@ -19,12 +19,15 @@ public class GrpcServer {
     private final int port;
     private final OnlineUser onlineUser;
     private final UserNotifier userNotifier;
+    private final int maxInFlightPushFrames;
     private Server server;
 
-    public GrpcServer(int port, OnlineUser onlineUser, UserNotifier userNotifier) {
+    public GrpcServer(
+            int port, OnlineUser onlineUser, UserNotifier userNotifier, int maxInFlightPushFrames) {
         this.port = port;
         this.onlineUser = onlineUser;
         this.userNotifier = userNotifier;
+        this.maxInFlightPushFrames = maxInFlightPushFrames;
     }
 
     public CompletableFuture<Void> startAsync() {
@@ -32,7 +35,8 @@ public class GrpcServer {
                 () -> {
                     try {
                         MessageGatewayServiceImpl messageGatewayService =
-                                new MessageGatewayServiceImpl(onlineUser, userNotifier);
+                                new MessageGatewayServiceImpl(
+                                        onlineUser, userNotifier, maxInFlightPushFrames);
 
                         server =
                                 ServerBuilder.forPort(port)
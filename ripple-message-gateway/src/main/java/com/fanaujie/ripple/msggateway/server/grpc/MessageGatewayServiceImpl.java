@@ -1,62 +1,177 @@
 package com.fanaujie.ripple.msggateway.server.grpc;
 
 import com.fanaujie.ripple.msggateway.server.users.UserNotifier;
+import com.fanaujie.ripple.msggateway.server.ws.delivery.PushDelivery;
 import com.fanaujie.ripple.protobuf.msggateway.*;
 import com.fanaujie.ripple.msggateway.server.users.OnlineUser;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 public class MessageGatewayServiceImpl extends MessageGatewayGrpc.MessageGatewayImplBase {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageGatewayServiceImpl.class);
 
     private final OnlineUser onlineUser;
     private final UserNotifier pushToUser;
+    private final int maxInFlightFrames;
 
-    public MessageGatewayServiceImpl(OnlineUser onlineUser, UserNotifier pushToUser) {
+    public MessageGatewayServiceImpl(
+            OnlineUser onlineUser, UserNotifier pushToUser, int maxInFlightFrames) {
+        if (maxInFlightFrames <= 0) {
+            throw new IllegalArgumentException("maxInFlightFrames must be positive");
+        }
         this.onlineUser = onlineUser;
         this.pushToUser = pushToUser;
+        this.maxInFlightFrames = maxInFlightFrames;
     }
 
+    // Responses are sent once every push was delivered or failed, message pushes to clients that
+    // ack wait for the ack
     @Override
     public void pushMessageToUser(
             BatchPushMessageRequest batchRequest,
             StreamObserver<BatchPushMessageResponse> responseObserver) {
-        BatchPushMessageResponse.Builder batchResponseBuilder =
-                BatchPushMessageResponse.newBuilder();
+        respondWhenDone(push(batchRequest).response(), responseObserver);
+    }
+
+    @Override
+    public void fanoutPushMessage(
+            FanoutPushMessageRequest request,
+            StreamObserver<BatchPushMessageResponse> responseObserver) {
+        respondWhenDone(pushFanout(request).response(), responseObserver);
+    }
+
+    @Override
+    public StreamObserver<PushFrame> pushStream(StreamObserver<PushFrameAck> responseObserver) {
+        return new PushStreamHandler(
+                this::push,
+                (ServerCallStreamObserver<PushFrameAck>) responseObserver,
+                maxInFlightFrames);
+    }
 
+    PushStreamHandler.PushedFrame push(PushFrame frame) {
+        switch (frame.getBodyCase()) {
+            case BATCH:
+                return push(frame.getBatch());
+            case FANOUT:
+                return pushFanout(frame.getFanout());
+            default:
+                throw new IllegalArgumentException("Unknown push frame body: " + frame.getBodyCase());
+        }
+    }
+
+    private PushStreamHandler.PushedFrame push(BatchPushMessageRequest batchRequest) {
+        List<CompletableFuture<Boolean>> written = new ArrayList<>();
+        List<CompletableFuture<PushMessageResponse>> responses = new ArrayList<>();
         for (PushMessageRequest request : batchRequest.getRequestsList()) {
-            PushMessageResponse response =
+            PushDelivery delivery =
                     onlineUser
                             .get(request.getReceiveUserId(), request.getReceiveDeviceId())
-                            .map(
-                                    userSession -> {
-                                        pushToUser.push(userSession, request);
-                                        return PushMessageResponse.newBuilder()
-                                                .setSendUserId(request.getSendUserId())
-                                                .setReceiveUserId(request.getReceiveUserId())
-                                                .setIsSuccess(true)
-                                                .build();
-                                    })
+                            .map(userSession -> pushToUser.push(userSession, request))
                             .orElseGet(
                                     () -> {
                                         logger.warn(
                                                 "pushMessageToUser: User {} on device {} is offline. Cannot push message.",
                                                 request.getReceiveUserId(),
                                                 request.getReceiveDeviceId());
-                                        return PushMessageResponse.newBuilder()
-                                                .setSendUserId(request.getSendUserId())
-                                                .setReceiveUserId(request.getReceiveUserId())
-                                                .setIsSuccess(false)
-                                                .build();
+                                        return PushDelivery.undelivered();
                                     });
+            written.add(delivery.written());
+            responses.add(
+                    delivery.delivered()
+                            .thenApply(
+                                    isSuccess ->
+                                            createResponse(
+                                                    request.getSendUserId(),
+                                                    request.getReceiveUserId(),
+                                                    request.getReceiveDeviceId(),
+                                                    isSuccess)));
+        }
+        return whenDone(written, responses);
+    }
 
-            batchResponseBuilder.addResponses(response);
+    private PushStreamHandler.PushedFrame pushFanout(FanoutPushMessageRequest request) {
+        Map<PushTarget, Channel> onlineTargets = new LinkedHashMap<>();
+        for (PushTarget target : request.getTargetsList()) {
+            onlineUser
+                    .get(target.getReceiveUserId(), target.getReceiveDeviceId())
+                    .ifPresentOrElse(
+                            c -> onlineTargets.put(target, c),
+                            () ->
+                                    logger.warn(
+                                            "fanoutPushMessage: User {} on device {} is offline. Cannot push message.",
+                                            target.getReceiveUserId(),
+                                            target.getReceiveDeviceId()));
         }
+        Map<PushTarget, PushDelivery> deliveries = pushToUser.pushFanout(request, onlineTargets);
+
+        List<CompletableFuture<Boolean>> written = new ArrayList<>();
+        List<CompletableFuture<PushMessageResponse>> responses = new ArrayList<>();
+        for (PushTarget target : request.getTargetsList()) {
+            PushDelivery delivery = deliveries.getOrDefault(target, PushDelivery.undelivered());
+            written.add(delivery.written());
+            responses.add(
+                    delivery.delivered()
+                            .thenApply(
+                                    isSuccess ->
+                                            createResponse(
+                                                    request.getSendUserId(),
+                                                    target.getReceiveUserId(),
+                                                    target.getReceiveDeviceId(),
+                                                    isSuccess)));
+        }
+        return whenDone(written, responses);
+    }
+
+    private static PushStreamHandler.PushedFrame whenDone(
+            List<CompletableFuture<Boolean>> written,
+            List<CompletableFuture<PushMessageResponse>> responses) {
+        CompletableFuture<BatchPushMessageResponse> batchResponse =
+                CompletableFuture.allOf(responses.toArray(new CompletableFuture[0]))
+                        .thenApply(
+                                ignored -> {
+                                    BatchPushMessageResponse.Builder batchResponseBuilder =
+                                            BatchPushMessageResponse.newBuilder();
+                                    for (CompletableFuture<PushMessageResponse> response :
+                                            responses) {
+                                        batchResponseBuilder.addResponses(response.join());
+                                    }
+                                    return batchResponseBuilder.build();
+                                });
+        return new PushStreamHandler.PushedFrame(
+                CompletableFuture.allOf(written.toArray(new CompletableFuture[0])), batchResponse);
+    }
+
+    private static void respondWhenDone(
+            CompletableFuture<BatchPushMessageResponse> response,
+            StreamObserver<BatchPushMessageResponse> responseObserver) {
+        response.whenComplete(
+                (batchResponse, e) -> {
+                    if (e != null) {
+                        responseObserver.onError(e);
+                        return;
+                    }
+                    responseObserver.onNext(batchResponse);
+                    responseObserver.onCompleted();
+                });
+    }
 
-        BatchPushMessageResponse batchResponse = batchResponseBuilder.build();
-        responseObserver.onNext(batchResponse);
-        responseObserver.onCompleted();
+    private static PushMessageResponse createResponse(
+            String sendUserId, String receiveUserId, String receiveDeviceId, boolean isSuccess) {
+        return PushMessageResponse.newBuilder()
+                .setSendUserId(sendUserId)
+                .setReceiveUserId(receiveUserId)
+                .setReceiveDeviceId(receiveDeviceId)
+                .setIsSuccess(isSuccess)
+                .build();
     }
 }
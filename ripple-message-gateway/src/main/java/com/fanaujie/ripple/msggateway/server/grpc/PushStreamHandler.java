@@ -0,0 +1,110 @@
+package com.fanaujie.ripple.msggateway.server.grpc;
+
+import com.fanaujie.ripple.protobuf.msggateway.BatchPushMessageResponse;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrame;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrameAck;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Serves the push stream of one push server. Only maxInFlightFrames frames are read before their
+ * pushes are written, the frames beyond that stay in the stream's flow control window until the
+ * push server stops being ready to send. A frame is acked once its pushes were delivered, waiting
+ * for device acks doesn't hold back the next frames.
+ */
+class PushStreamHandler implements StreamObserver<PushFrame> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushStreamHandler.class);
+
+    /** The pushes of a frame, written completes once every push was written or failed to be. */
+    record PushedFrame(
+            CompletableFuture<?> written, CompletableFuture<BatchPushMessageResponse> response) {}
+
+    private final Function<PushFrame, PushedFrame> pusher;
+    private final ServerCallStreamObserver<PushFrameAck> responseObserver;
+
+    // Guarded by this, acks complete on the connections' event loops
+    private int unackedFrames;
+    private boolean halfClosed;
+    private boolean done;
+
+    PushStreamHandler(
+            Function<PushFrame, PushedFrame> pusher,
+            ServerCallStreamObserver<PushFrameAck> responseObserver,
+            int maxInFlightFrames) {
+        this.pusher = pusher;
+        this.responseObserver = responseObserver;
+        responseObserver.disableAutoRequest();
+        responseObserver.request(maxInFlightFrames);
+    }
+
+    @Override
+    public void onNext(PushFrame frame) {
+        PushedFrame pushed;
+        synchronized (this) {
+            unackedFrames++;
+        }
+        try {
+            pushed = pusher.apply(frame);
+        } catch (Exception e) {
+            CompletableFuture<BatchPushMessageResponse> failed = CompletableFuture.failedFuture(e);
+            pushed = new PushedFrame(failed, failed);
+        }
+        pushed.written().whenComplete((ignored, e) -> onWritten());
+        pushed.response().whenComplete((response, e) -> onPushed(frame.getSequence(), response, e));
+    }
+
+    private synchronized void onWritten() {
+        if (!done && !halfClosed && !responseObserver.isCancelled()) {
+            responseObserver.request(1);
+        }
+    }
+
+    private synchronized void onPushed(
+            long sequence, BatchPushMessageResponse response, Throwable throwable) {
+        unackedFrames--;
+        if (done || responseObserver.isCancelled()) {
+            return;
+        }
+        if (throwable != null) {
+            // The push server redelivers every frame it has no ack for
+            logger.error("onPushed: Failed to push frame {}, closing the stream", sequence, throwable);
+            done = true;
+            responseObserver.onError(
+                    Status.INTERNAL.withDescription("Failed to push frame " + sequence)
+                            .withCause(throwable)
+                            .asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(
+                PushFrameAck.newBuilder().setSequence(sequence).setResponse(response).build());
+        if (halfClosed) {
+            completeIfDrained();
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        logger.debug("onError: Push stream closed by the push server", throwable);
+        done = true;
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        halfClosed = true;
+        completeIfDrained();
+    }
+
+    private void completeIfDrained() {
+        if (unackedFrames == 0 && !done) {
+            done = true;
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.fanaujie.ripple.msggateway.server.jwt;
+
+import com.fanaujie.ripple.communication.cache.ExpiringMap;
+import com.fanaujie.ripple.msggateway.exception.WsJwtDecodedException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+
+/**
+ * Remembers verified tokens until their exp, so clients reconnecting with the same token skip the
+ * signature check. Entries are keyed by the SHA-256 digest of the token rather than the token.
+ * Tokens without exp and failed verifications are never cached, and at most maxEntries tokens
+ * are remembered.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final JwtDecoder delegate;
+    private final ExpiringMap<ByteBuffer, DecodedJwtClaims> verified;
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxEntries) {
+        this(delegate, maxEntries, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, int maxEntries, Clock clock) {
+        this.delegate = delegate;
+        this.verified = new ExpiringMap<>(maxEntries, SWEEP_INTERVAL_MILLIS, clock::millis);
+    }
+
+    @Override
+    public DecodedJwtClaims decodeJwtClaims(String token) throws WsJwtDecodedException {
+        ByteBuffer key = digest(token);
+        DecodedJwtClaims claims = verified.get(key);
+        if (claims != null) {
+            return claims;
+        }
+        claims = delegate.decodeJwtClaims(token);
+        verified.put(key, claims, claims.getExpiresAtMillis());
+        return claims;
+    }
+
+    int size() {
+        return verified.size();
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(
+                    MessageDigest.getInstance("SHA-256")
+                            .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.auth0.jwt.interfaces.DecodedJWT;
 import com.fanaujie.ripple.msggateway.exception.WsJwtDecodedException;
 
 import java.util.Base64;
+import java.util.Date;
 
 public class DefaultJwtDecoder implements JwtDecoder {
     private final JWTVerifier verifier;
@@ -24,7 +25,10 @@ public class DefaultJwtDecoder implements JwtDecoder {
     @Override
     public DecodedJwtClaims decodeJwtClaims(String token) throws WsJwtDecodedException {
         try {
-            return new DecodedJwtClaims(verifier.verify(token).getSubject());
+            DecodedJWT jwt = verifier.verify(token);
+            Date expiresAt = jwt.getExpiresAt();
+            return new DecodedJwtClaims(
+                    jwt.getSubject(), expiresAt == null ? 0 : expiresAt.getTime());
         } catch (JWTVerificationException e) {
             throw new WsJwtDecodedException("Failed to decode JWT: " + e.getMessage());
         }
@@ -11,6 +11,8 @@ public interface JwtDecoder {
     @Data
     class DecodedJwtClaims {
         private String subject;
+        // Epoch millis of the exp claim, 0 when the token has none
+        private long expiresAtMillis;
     }
 
     DecodedJwtClaims decodeJwtClaims(String token) throws WsJwtDecodedException;
@@ -1,6 +1,6 @@
 package com.fanaujie.ripple.msggateway.server.uitls;
 
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpHeaders;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpHeaders;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
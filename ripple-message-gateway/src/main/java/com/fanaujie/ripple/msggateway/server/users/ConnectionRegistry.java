@@ -0,0 +1,289 @@
+package com.fanaujie.ripple.msggateway.server.users;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Connections of the online devices, keyed by the primitive user id. Users are spread over
+ * shards, each an open addressing table from user id to a small immutable array of the user's
+ * devices, so a lookup neither boxes the id nor allocates a key. Lookups are optimistic reads
+ * that only take the shard's lock when they raced with a write.
+ */
+public final class ConnectionRegistry<C> {
+
+    private static final int INITIAL_SHARD_CAPACITY = 16;
+
+    private final Shard<C>[] shards;
+    private final int shardMask;
+
+    public ConnectionRegistry(int shardCount) {
+        if (shardCount < 1 || Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("shardCount must be a power of two");
+        }
+        @SuppressWarnings("unchecked")
+        Shard<C>[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>();
+        }
+        this.shards = shards;
+        this.shardMask = shardCount - 1;
+    }
+
+    /** @return the connection the device had before, null if it had none. */
+    public C put(long userId, String deviceId, C connection) {
+        long hash = mix(userId);
+        return shard(hash).put(userId, hash, deviceId, connection);
+    }
+
+    public C get(long userId, String deviceId) {
+        long hash = mix(userId);
+        Devices<C> devices = shard(hash).find(userId, hash);
+        return devices == null ? null : devices.get(deviceId);
+    }
+
+    /**
+     * Removes the device's connection unless it was replaced by a newer one.
+     *
+     * @return whether the connection was removed.
+     */
+    public boolean remove(long userId, String deviceId, C connection) {
+        long hash = mix(userId);
+        return shard(hash).remove(userId, hash, deviceId, connection);
+    }
+
+    /** @return the number of online users. */
+    public int size() {
+        int size = 0;
+        for (Shard<C> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    private Shard<C> shard(long hash) {
+        return shards[(int) (hash >>> 32) & shardMask];
+    }
+
+    // MurmurHash3 finalizer, the high bits pick the shard and the low bits the slot
+    private static long mix(long userId) {
+        long h = userId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // The devices of one user, replaced on every change so readers never see a partial update
+    private static final class Devices<C> {
+        private final String[] deviceIds;
+        private final Object[] connections;
+
+        Devices(String[] deviceIds, Object[] connections) {
+            this.deviceIds = deviceIds;
+            this.connections = connections;
+        }
+
+        @SuppressWarnings("unchecked")
+        C get(String deviceId) {
+            int i = indexOf(deviceId);
+            return i < 0 ? null : (C) connections[i];
+        }
+
+        int indexOf(String deviceId) {
+            for (int i = 0; i < deviceIds.length; i++) {
+                if (deviceIds[i].equals(deviceId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Devices<C> with(String deviceId, C connection) {
+            int i = indexOf(deviceId);
+            if (i >= 0) {
+                Object[] connections = this.connections.clone();
+                connections[i] = connection;
+                return new Devices<>(deviceIds, connections);
+            }
+            String[] deviceIds = Arrays.copyOf(this.deviceIds, this.deviceIds.length + 1);
+            Object[] connections = Arrays.copyOf(this.connections, this.connections.length + 1);
+            deviceIds[deviceIds.length - 1] = deviceId;
+            connections[connections.length - 1] = connection;
+            return new Devices<>(deviceIds, connections);
+        }
+
+        // Null when the last device is removed
+        Devices<C> without(int index) {
+            if (deviceIds.length == 1) {
+                return null;
+            }
+            String[] deviceIds = new String[this.deviceIds.length - 1];
+            Object[] connections = new Object[this.connections.length - 1];
+            System.arraycopy(this.deviceIds, 0, deviceIds, 0, index);
+            System.arraycopy(this.connections, 0, connections, 0, index);
+            System.arraycopy(
+                    this.deviceIds, index + 1, deviceIds, index, deviceIds.length - index);
+            System.arraycopy(
+                    this.connections, index + 1, connections, index, connections.length - index);
+            return new Devices<>(deviceIds, connections);
+        }
+
+        static <C> Devices<C> of(String deviceId, C connection) {
+            return new Devices<>(new String[] {deviceId}, new Object[] {connection});
+        }
+    }
+
+    // Keys and values are replaced together on resize, a reader sees both of one generation
+    private static final class Table<C> {
+        final long[] userIds;
+        final Devices<C>[] devices;
+
+        @SuppressWarnings("unchecked")
+        Table(int capacity) {
+            this.userIds = new long[capacity];
+            this.devices = new Devices[capacity];
+        }
+    }
+
+    private static final class Shard<C> {
+        private final StampedLock lock = new StampedLock();
+        private Table<C> table = new Table<>(INITIAL_SHARD_CAPACITY);
+        private int size;
+
+        Devices<C> find(long userId, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            Devices<C> devices = probe(table, userId, hash);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    devices = probe(table, userId, hash);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return devices;
+        }
+
+        C put(long userId, long hash, String deviceId, C connection) {
+            long stamp = lock.writeLock();
+            try {
+                Table<C> t = table;
+                int slot = slotOf(t, userId, hash);
+                Devices<C> devices = t.devices[slot];
+                if (devices == null) {
+                    if ((size + 1) * 4 > t.devices.length * 3) {
+                        resize();
+                        t = table;
+                        slot = slotOf(t, userId, hash);
+                    }
+                    t.userIds[slot] = userId;
+                    t.devices[slot] = Devices.of(deviceId, connection);
+                    size++;
+                    return null;
+                }
+                C previous = devices.get(deviceId);
+                t.devices[slot] = devices.with(deviceId, connection);
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long userId, long hash, String deviceId, C connection) {
+            long stamp = lock.writeLock();
+            try {
+                Table<C> t = table;
+                int slot = slotOf(t, userId, hash);
+                Devices<C> devices = t.devices[slot];
+                if (devices == null) {
+                    return false;
+                }
+                int index = devices.indexOf(deviceId);
+                if (index < 0 || devices.connections[index] != connection) {
+                    return false;
+                }
+                Devices<C> remaining = devices.without(index);
+                if (remaining != null) {
+                    t.devices[slot] = remaining;
+                } else {
+                    deleteSlot(t, slot);
+                    size--;
+                }
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // May run concurrently with a writer, the caller validates the result. The probe is
+        // bounded since a racing write can leave the table without the expected empty slot.
+        private static <C> Devices<C> probe(Table<C> t, long userId, long hash) {
+            int mask = t.devices.length - 1;
+            int slot = (int) hash & mask;
+            for (int i = 0; i <= mask; i++) {
+                Devices<C> devices = t.devices[slot];
+                if (devices == null) {
+                    return null;
+                }
+                if (t.userIds[slot] == userId) {
+                    return devices;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        // The user's slot, or the empty slot it would be inserted at
+        private static <C> int slotOf(Table<C> t, long userId, long hash) {
+            int mask = t.devices.length - 1;
+            int slot = (int) hash & mask;
+            while (t.devices[slot] != null && t.userIds[slot] != userId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        // Backward shift deletion keeps every remaining user reachable from its home slot
+        private static <C> void deleteSlot(Table<C> t, int slot) {
+            int mask = t.devices.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (t.devices[next] != null) {
+                int home = (int) mix(t.userIds[next]) & mask;
+                // Move the entry if its home is not within (hole, next]
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    t.userIds[hole] = t.userIds[next];
+                    t.devices[hole] = t.devices[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            t.devices[hole] = null;
+            t.userIds[hole] = 0;
+        }
+
+        private void resize() {
+            Table<C> old = table;
+            Table<C> resized = new Table<>(old.devices.length * 2);
+            for (int i = 0; i < old.devices.length; i++) {
+                if (old.devices[i] != null) {
+                    int slot = slotOf(resized, old.userIds[i], mix(old.userIds[i]));
+                    resized.userIds[slot] = old.userIds[i];
+                    resized.devices[slot] = old.devices[i];
+                }
+            }
+            table = resized;
+        }
+    }
+}
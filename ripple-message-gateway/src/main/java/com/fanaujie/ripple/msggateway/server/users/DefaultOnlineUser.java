@@ -2,24 +2,31 @@ package com.fanaujie.ripple.msggateway.server.users;
 
 import com.fanaujie.ripple.communication.batch.BatchExecutorService;
 import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchTask;
-import com.fanaujie.ripple.shaded.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class DefaultOnlineUser implements OnlineUser {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultOnlineUser.class);
 
-    private record Key(String userId, String deviceId) {}
+    private static final int SHARD_COUNT = 64;
 
-    private final Map<Key, Channel> userChannelMap = new ConcurrentHashMap<>();
-    private final Map<Channel, Key> channelUserMap = new ConcurrentHashMap<>();
+    // The reverse mapping lives on the channel itself rather than in a second map
+    private record Registration(long userId, String deviceId) {}
+
+    private static final AttributeKey<Registration> REGISTRATION_KEY =
+            AttributeKey.valueOf(DefaultOnlineUser.class, "registration");
+
+    private final ConnectionRegistry<Channel> registry = new ConnectionRegistry<>(SHARD_COUNT);
     private final BatchExecutorService<UserOnlineBatchTask> batchExecutorService;
     private final String serverLocation;
 
@@ -35,26 +42,17 @@ public class DefaultOnlineUser implements OnlineUser {
 
     @Override
     public void add(String userId, String deviceId, Channel channel) {
-        logger.debug(
-                "add: Adding online user - userId: {}, deviceId: {}, channel: {}",
-                userId,
-                deviceId,
-                channel);
-        Key key = new Key(userId, deviceId);
-        userChannelMap.put(key, channel);
-        channelUserMap.put(channel, key);
+        long id = Long.parseLong(userId);
+        channel.attr(REGISTRATION_KEY).set(new Registration(id, deviceId));
+        Channel replaced = registry.put(id, deviceId, channel);
+        if (replaced != null && replaced != channel) {
+            logger.debug("add: Device {} of user {} reconnected", deviceId, userId);
+        }
 
         // Push user online status to batch queue
         try {
-            UserOnlineBatchTask task =
-                    new UserOnlineBatchTask(userId, deviceId, true, this.serverLocation);
-            batchExecutorService.push(task);
-            logger.debug(
-                    "add: User online task pushed to batch queue - userId: {}, deviceId: {}",
-                    userId,
-                    deviceId);
-            logger.debug(
-                    "add: User added successfully, total online users: {}", userChannelMap.size());
+            batchExecutorService.push(
+                    new UserOnlineBatchTask(userId, deviceId, true, this.serverLocation));
         } catch (InterruptedException e) {
             logger.error(
                     "add: Failed to push user online task to batch queue - userId: {}, deviceId: {}",
@@ -67,44 +65,61 @@ public class DefaultOnlineUser implements OnlineUser {
 
     @Override
     public Optional<Channel> get(String userId, String deviceId) {
-        logger.debug("get: Querying channel for userId: {}, deviceId: {}", userId, deviceId);
-        Key key = new Key(userId, deviceId);
-        Channel c = userChannelMap.get(key);
-        if (c != null) {
-            logger.debug("get: Channel found for userId: {}, deviceId: {}", userId, deviceId);
-        } else {
-            logger.debug("get: Channel not found for userId: {}, deviceId: {}", userId, deviceId);
+        long id;
+        try {
+            id = Long.parseLong(userId);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
         }
-        return Optional.ofNullable(c);
+        return Optional.ofNullable(registry.get(id, deviceId));
     }
 
     @Override
     public void remove(Channel channel) {
-        logger.debug("remove: Removing online user with channel: {}", channel);
-        Key key = channelUserMap.remove(channel);
-        if (key != null) {
-            userChannelMap.remove(key);
+        UserOnlineBatchTask offline = unregister(channel);
+        if (offline != null) {
+            pushOffline(List.of(offline));
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<Channel> channels) {
+        List<UserOnlineBatchTask> offline = new ArrayList<>(channels.size());
+        for (Channel channel : channels) {
+            UserOnlineBatchTask task = unregister(channel);
+            if (task != null) {
+                offline.add(task);
+            }
+        }
+        pushOffline(offline);
+    }
+
+    // The device's offline status, null if the channel was not registered or got replaced
+    private UserOnlineBatchTask unregister(Channel channel) {
+        Registration registration = channel.attr(REGISTRATION_KEY).getAndSet(null);
+        // A device that reconnected on a new channel stays online
+        if (registration == null
+                || !registry.remove(registration.userId(), registration.deviceId(), channel)) {
+            return null;
+        }
+        return new UserOnlineBatchTask(
+                Long.toString(registration.userId()), registration.deviceId(), false, "");
+    }
 
-            // Push user offline status to batch queue
+    // Push user offline status to batch queue
+    private void pushOffline(List<UserOnlineBatchTask> tasks) {
+        for (UserOnlineBatchTask task : tasks) {
             try {
-                UserOnlineBatchTask task =
-                        new UserOnlineBatchTask(key.userId(), key.deviceId(), false, "");
                 batchExecutorService.push(task);
-                logger.debug(
-                        "remove: User removed successfully - userId: {}, deviceId: {}, remaining online users: {}",
-                        key.userId(),
-                        key.deviceId(),
-                        userChannelMap.size());
             } catch (InterruptedException e) {
                 logger.error(
-                        "remove: Failed to push user offline task to batch queue - userId: {}, deviceId: {}",
-                        key.userId(),
-                        key.deviceId(),
+                        "pushOffline: Failed to push user offline task to batch queue - userId: {}, deviceId: {}",
+                        task.userId(),
+                        task.deviceId(),
                         e);
                 Thread.currentThread().interrupt();
+                return;
             }
-        } else {
-            logger.debug("remove: No user mapping found for channel: {}", channel);
         }
     }
 }
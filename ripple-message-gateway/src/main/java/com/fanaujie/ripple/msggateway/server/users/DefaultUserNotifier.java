@@ -1,24 +1,42 @@
 package com.fanaujie.ripple.msggateway.server.users;
 
+import com.fanaujie.ripple.msggateway.server.ws.codec.PushFanoutEncoder;
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
+import com.fanaujie.ripple.msggateway.server.ws.delivery.DeliveryTracker;
+import com.fanaujie.ripple.msggateway.server.ws.delivery.PushDelivery;
+import com.fanaujie.ripple.msggateway.server.ws.outbound.PushChannelWriter;
+import com.fanaujie.ripple.protobuf.msggateway.FanoutPushMessageRequest;
 import com.fanaujie.ripple.protobuf.msggateway.PushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.PushTarget;
 import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
-import com.fanaujie.ripple.shaded.netty.channel.Channel;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class DefaultUserNotifier implements UserNotifier {
 
     private final Logger logger = LoggerFactory.getLogger(DefaultUserNotifier.class);
 
     @Override
-    public void push(Channel channel, PushMessageRequest request) {
-        // Create a BinaryWebSocketFrame with the WsMessage bytes
+    public PushDelivery push(Channel channel, PushMessageRequest request) {
+        if (request.hasMessagePayload()) {
+            return DeliveryTracker.track(
+                    channel,
+                    request.getMessagePayload().getMessageData().getMessageId(),
+                    () -> write(channel, request));
+        }
+        return DeliveryTracker.untracked(write(channel, request));
+    }
+
+    private ChannelFuture write(Channel channel, PushMessageRequest request) {
         WsMessage wsMessage = WsMessage.newBuilder().setPushMessageRequest(request).build();
-        BinaryWebSocketFrame respFrame =
-                new BinaryWebSocketFrame(
-                        channel.alloc().buffer().writeBytes(wsMessage.toByteArray()));
-        var f = channel.writeAndFlush(respFrame);
+        var f =
+                PushChannelWriter.write(
+                        channel, WsMessageCodec.encode(channel.alloc(), wsMessage));
         f.addListener(
                 future -> {
                     if (!future.isSuccess()) {
@@ -35,5 +53,45 @@ public class DefaultUserNotifier implements UserNotifier {
                                 request.getReceiveDeviceId());
                     }
                 });
+        return f;
+    }
+
+    @Override
+    public Map<PushTarget, PushDelivery> pushFanout(
+            FanoutPushMessageRequest request, Map<PushTarget, Channel> targets) {
+        Map<PushTarget, PushDelivery> deliveries = new LinkedHashMap<>();
+        if (targets.isEmpty()) {
+            return deliveries;
+        }
+        long messageId = request.getMessageData().getMessageId();
+        try (PushFanoutEncoder encoder =
+                new PushFanoutEncoder(
+                        targets.values().iterator().next().alloc(), request)) {
+            for (Map.Entry<PushTarget, Channel> entry : targets.entrySet()) {
+                PushTarget target = entry.getKey();
+                Channel channel = entry.getValue();
+                deliveries.put(
+                        target,
+                        DeliveryTracker.track(
+                                channel, messageId, () -> write(channel, encoder, target)));
+            }
+        }
+        return deliveries;
+    }
+
+    private ChannelFuture write(Channel channel, PushFanoutEncoder encoder, PushTarget target) {
+        ChannelFuture f = PushChannelWriter.write(channel, encoder.encode(target));
+        f.addListener(
+                future -> {
+                    if (!future.isSuccess()) {
+                        logger.error(
+                                "pushFanout: Failed to push message to user {} on device {} - {}",
+                                target.getReceiveUserId(),
+                                target.getReceiveDeviceId(),
+                                future.cause().getMessage(),
+                                future.cause());
+                    }
+                });
+        return f;
     }
 }
@@ -1,7 +1,8 @@
 package com.fanaujie.ripple.msggateway.server.users;
 
-import com.fanaujie.ripple.shaded.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
 
+import java.util.Collection;
 import java.util.Optional;
 
 public interface OnlineUser {
@@ -10,4 +11,7 @@ public interface OnlineUser {
     Optional<Channel> get(String userId, String deviceId);
 
     void remove(Channel session);
+
+    /** Takes the channels offline together, like remove on each of them. */
+    void removeAll(Collection<Channel> channels);
 }
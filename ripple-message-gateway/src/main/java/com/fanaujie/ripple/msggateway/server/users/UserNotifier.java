@@ -1,8 +1,19 @@
 package com.fanaujie.ripple.msggateway.server.users;
 
+import com.fanaujie.ripple.msggateway.server.ws.delivery.PushDelivery;
+import com.fanaujie.ripple.protobuf.msggateway.FanoutPushMessageRequest;
 import com.fanaujie.ripple.protobuf.msggateway.PushMessageRequest;
-import com.fanaujie.ripple.shaded.netty.channel.Channel;
+import com.fanaujie.ripple.protobuf.msggateway.PushTarget;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+
+import java.util.Map;
 
 public interface UserNotifier {
-    void push(Channel channel, PushMessageRequest request);
+    // Completes with whether the push was written and delivered, message pushes are delivered
+    // once the client acked them
+    PushDelivery push(Channel channel, PushMessageRequest request);
+
+    // Encodes the shared message body once, only the target fields are encoded per channel
+    Map<PushTarget, PushDelivery> pushFanout(
+            FanoutPushMessageRequest request, Map<PushTarget, Channel> targets);
 }
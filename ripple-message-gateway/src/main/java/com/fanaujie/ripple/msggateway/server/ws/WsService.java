@@ -1,27 +1,36 @@
 package com.fanaujie.ripple.msggateway.server.ws;
 
 import com.fanaujie.ripple.communication.batch.BatchExecutorService;
+import com.fanaujie.ripple.communication.msgapi.AsyncMessageAPISender;
+import com.fanaujie.ripple.communication.transport.NettyTransport;
 import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchTask;
 import com.fanaujie.ripple.msggateway.server.jwt.JwtDecoder;
 import com.fanaujie.ripple.msggateway.server.users.OnlineUser;
 import com.fanaujie.ripple.msggateway.server.ws.config.WsConfig;
+import com.fanaujie.ripple.msggateway.server.ws.delivery.DeliveryAckHandler;
 import com.fanaujie.ripple.msggateway.server.ws.handler.HeartbeatHandler;
+import com.fanaujie.ripple.msggateway.server.ws.handler.SendMessageHandler;
 import com.fanaujie.ripple.msggateway.server.ws.handler.WebSocketRouterHandler;
-import com.fanaujie.ripple.shaded.netty.bootstrap.ServerBootstrap;
-import com.fanaujie.ripple.shaded.netty.channel.*;
-import com.fanaujie.ripple.shaded.netty.channel.nio.NioIoHandler;
-import com.fanaujie.ripple.shaded.netty.channel.socket.nio.NioServerSocketChannel;
-import com.fanaujie.ripple.shaded.netty.channel.socket.nio.NioSocketChannel;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpObjectAggregator;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpServerCodec;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
-import com.fanaujie.ripple.shaded.netty.handler.stream.ChunkedWriteHandler;
-import com.fanaujie.ripple.shaded.netty.handler.timeout.IdleStateHandler;
+import com.fanaujie.ripple.msggateway.server.ws.idle.IdleConnectionHandler;
+import com.fanaujie.ripple.msggateway.server.ws.outbound.PushOutboundHandler;
+import com.fanaujie.ripple.msggateway.server.ws.outbound.PushOutboundMetrics;
+import com.fanaujie.ripple.shaded.io.netty.bootstrap.ServerBootstrap;
+import com.fanaujie.ripple.shaded.io.netty.channel.*;
+import com.fanaujie.ripple.shaded.io.netty.channel.socket.SocketChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpObjectAggregator;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpServerCodec;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import com.fanaujie.ripple.shaded.io.netty.handler.stream.ChunkedWriteHandler;
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIdClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WsService {
 
@@ -34,22 +43,29 @@ public class WsService {
     private final OnlineUser onlineUser;
     private final BatchExecutorService<UserOnlineBatchTask> batchExecutorService;
     private final String serverLocation;
+    private final SnowflakeIdClient snowflakeIdClient;
+    private final AsyncMessageAPISender messageAPISender;
 
     public WsService(
             WsConfig config,
             JwtDecoder jwtDecoder,
             OnlineUser onlineUser,
             BatchExecutorService<UserOnlineBatchTask> batchExecutorService,
-            String serverLocation) {
+            String serverLocation,
+            SnowflakeIdClient snowflakeIdClient,
+            AsyncMessageAPISender messageAPISender) {
         this.wsConfig = config;
         this.jwtDecoder = jwtDecoder;
         this.onlineUser = onlineUser;
         this.batchExecutorService = batchExecutorService;
         this.serverLocation = serverLocation;
+        this.snowflakeIdClient = snowflakeIdClient;
+        this.messageAPISender = messageAPISender;
     }
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private ExecutorService authExecutor;
 
     public CompletableFuture<Void> startAsync() {
         return CompletableFuture.runAsync(
@@ -64,23 +80,51 @@ public class WsService {
     }
 
     public void start() {
-        bossGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
-        workerGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
+        NettyTransport transport = NettyTransport.select(wsConfig.getTransport());
+        int acceptorCount = transport.supportsReusePort() ? wsConfig.getAcceptorCount() : 1;
+        bossGroup =
+                new MultiThreadIoEventLoopGroup(acceptorCount, transport.ioHandlerFactory());
+        workerGroup = new MultiThreadIoEventLoopGroup(transport.ioHandlerFactory());
+        AtomicInteger authThreadCount = new AtomicInteger();
+        authExecutor =
+                Executors.newFixedThreadPool(
+                        wsConfig.getAuthThreads(),
+                        r -> new Thread(r, "ws-auth-" + authThreadCount.incrementAndGet()));
         WebSocketRouterHandler webSocketRouterHandler =
-                new WebSocketRouterHandler(jwtDecoder, onlineUser);
+                new WebSocketRouterHandler(jwtDecoder, onlineUser, authExecutor);
+        IdleConnectionHandler idleConnectionHandler =
+                new IdleConnectionHandler(wsConfig.getIdleSeconds(), onlineUser);
         HeartbeatHandler heartbeatHandler =
-                new HeartbeatHandler(batchExecutorService, serverLocation);
+                new HeartbeatHandler(
+                        batchExecutorService,
+                        serverLocation,
+                        wsConfig.getPresenceTtlSeconds(),
+                        wsConfig.getPresenceRefreshThresholdSeconds());
+        SendMessageHandler sendMessageHandler =
+                new SendMessageHandler(
+                        snowflakeIdClient, messageAPISender, wsConfig.getMaxSendsInFlight());
+        DeliveryAckHandler deliveryAckHandler =
+                new DeliveryAckHandler(
+                        wsConfig.getMaxPendingDeliveries(), wsConfig.getDeliveryAckTimeoutMs());
+        PushOutboundHandler pushOutboundHandler =
+                new PushOutboundHandler(
+                        wsConfig.getMaxPendingPushFrames(), new PushOutboundMetrics());
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap
                 .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(transport.serverChannelClass())
+                .childOption(
+                        ChannelOption.WRITE_BUFFER_WATER_MARK,
+                        new WriteBufferWaterMark(
+                                wsConfig.getWriteBufferLowWaterMark(),
+                                wsConfig.getWriteBufferHighWaterMark()))
                 .childHandler(
-                        new ChannelInitializer<NioSocketChannel>() {
+                        new ChannelInitializer<SocketChannel>() {
                             @Override
-                            protected void initChannel(NioSocketChannel ch) {
+                            protected void initChannel(SocketChannel ch) {
                                 ChannelPipeline pipeline = ch.pipeline();
-                                pipeline.addLast(
-                                        new IdleStateHandler(wsConfig.getIdleSeconds(), 0, 0));
+                                pipeline.addLast(idleConnectionHandler);
+                                pipeline.addLast(pushOutboundHandler);
                                 pipeline.addLast(new HttpServerCodec());
                                 pipeline.addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
                                 pipeline.addLast(new ChunkedWriteHandler());
@@ -90,13 +134,22 @@ public class WsService {
                                         new WebSocketServerProtocolHandler(
                                                 wsConfig.getWsPath(), null, true));
                                 pipeline.addLast(webSocketRouterHandler);
+                                pipeline.addLast(deliveryAckHandler);
                                 pipeline.addLast(heartbeatHandler);
+                                pipeline.addLast(sendMessageHandler);
                             }
                         });
         try {
-            ChannelFuture serverChannelFuture = serverBootstrap.bind(wsConfig.getPort()).sync();
-            logger.info("WsServer started on port: {}", wsConfig.getPort());
-            serverChannelFuture.channel().closeFuture().sync();
+            List<Channel> serverChannels =
+                    transport.bind(serverBootstrap, wsConfig.getPort(), acceptorCount);
+            logger.info(
+                    "WsServer started on port: {} with {} transport and {} acceptors",
+                    wsConfig.getPort(),
+                    transport,
+                    serverChannels.size());
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -110,6 +163,9 @@ public class WsService {
             if (bossGroup != null) {
                 bossGroup.shutdownGracefully().sync();
             }
+            if (authExecutor != null) {
+                authExecutor.shutdownNow();
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.error("Error stopping the WsServer", e);
@@ -0,0 +1,176 @@
+package com.fanaujie.ripple.msggateway.server.ws.codec;
+
+import com.fanaujie.ripple.protobuf.msggateway.FanoutPushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessagePayload;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.PushTarget;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBuf;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBufAllocator;
+import com.fanaujie.ripple.shaded.io.netty.buffer.CompositeByteBuf;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+
+/**
+ * Builds the per-recipient WsMessage frames of a fan-out push. The shared message body is
+ * serialized once, every frame is a composite of a small recipient specific header, a retained
+ * slice of the body and the unread count trailer. The bytes are identical to serializing the
+ * equivalent WsMessage with a PushMessageRequest.
+ */
+public final class PushFanoutEncoder implements AutoCloseable {
+
+    private final ByteBufAllocator alloc;
+    private final FanoutPushMessageRequest request;
+    private final ByteBuf body;
+
+    public PushFanoutEncoder(ByteBufAllocator alloc, FanoutPushMessageRequest request) {
+        this.alloc = alloc;
+        this.request = request;
+        this.body = WsMessageCodec.serialize(alloc, request.getMessageData());
+    }
+
+    public BinaryWebSocketFrame encode(PushTarget target) {
+        int bodySize = body.readableBytes();
+        int messageType = request.getMessageTypeValue();
+        int unreadCount = target.getUnreadCount();
+
+        // Sizes of the enclosing messages, proto3 leaves fields with default values out
+        int payloadSize =
+                (messageType != 0
+                                ? CodedOutputStream.computeEnumSize(
+                                        PushMessagePayload.MESSAGE_TYPE_FIELD_NUMBER, messageType)
+                                : 0)
+                        + lengthDelimitedSize(
+                                PushMessagePayload.MESSAGE_DATA_FIELD_NUMBER, bodySize)
+                        + unreadCountSize(unreadCount);
+        int requestSize =
+                stringSize(PushMessageRequest.SEND_USER_ID_FIELD_NUMBER, request.getSendUserId())
+                        + stringSize(
+                                PushMessageRequest.RECEIVE_USER_ID_FIELD_NUMBER,
+                                target.getReceiveUserId())
+                        + stringSize(
+                                PushMessageRequest.RECEIVE_DEVICE_ID_FIELD_NUMBER,
+                                target.getReceiveDeviceId())
+                        + lengthDelimitedSize(
+                                PushMessageRequest.MESSAGE_PAYLOAD_FIELD_NUMBER, payloadSize);
+        // The frame is header, shared body and the unread count trailer
+        int headerSize =
+                lengthDelimitedSize(WsMessage.PUSH_MESSAGE_REQUEST_FIELD_NUMBER, requestSize)
+                        - bodySize
+                        - unreadCountSize(unreadCount);
+
+        CompositeByteBuf content = alloc.compositeDirectBuffer(3);
+        try {
+            content.addComponent(
+                    true,
+                    write(
+                            headerSize,
+                            out -> {
+                                writeLengthDelimitedTag(
+                                        out,
+                                        WsMessage.PUSH_MESSAGE_REQUEST_FIELD_NUMBER,
+                                        requestSize);
+                                writeString(
+                                        out,
+                                        PushMessageRequest.SEND_USER_ID_FIELD_NUMBER,
+                                        request.getSendUserId());
+                                writeString(
+                                        out,
+                                        PushMessageRequest.RECEIVE_USER_ID_FIELD_NUMBER,
+                                        target.getReceiveUserId());
+                                writeString(
+                                        out,
+                                        PushMessageRequest.RECEIVE_DEVICE_ID_FIELD_NUMBER,
+                                        target.getReceiveDeviceId());
+                                writeLengthDelimitedTag(
+                                        out,
+                                        PushMessageRequest.MESSAGE_PAYLOAD_FIELD_NUMBER,
+                                        payloadSize);
+                                if (messageType != 0) {
+                                    out.writeEnum(
+                                            PushMessagePayload.MESSAGE_TYPE_FIELD_NUMBER,
+                                            messageType);
+                                }
+                                writeLengthDelimitedTag(
+                                        out,
+                                        PushMessagePayload.MESSAGE_DATA_FIELD_NUMBER,
+                                        bodySize);
+                            }));
+            content.addComponent(true, body.retainedDuplicate());
+            if (unreadCount != 0) {
+                int trailerSize = unreadCountSize(unreadCount);
+                content.addComponent(
+                        true,
+                        write(
+                                trailerSize,
+                                out ->
+                                        out.writeInt32(
+                                                PushMessagePayload.UNREAD_COUNT_FIELD_NUMBER,
+                                                unreadCount)));
+            }
+            return new BinaryWebSocketFrame(content);
+        } catch (RuntimeException e) {
+            content.release();
+            throw e;
+        }
+    }
+
+    /** Releases the shared body, frames that were already encoded keep their own reference. */
+    @Override
+    public void close() {
+        body.release();
+    }
+
+    private static int stringSize(int fieldNumber, String value) {
+        return value.isEmpty() ? 0 : CodedOutputStream.computeStringSize(fieldNumber, value);
+    }
+
+    private static int lengthDelimitedSize(int fieldNumber, int length) {
+        return CodedOutputStream.computeTagSize(fieldNumber)
+                + CodedOutputStream.computeUInt32SizeNoTag(length)
+                + length;
+    }
+
+    private static int unreadCountSize(int unreadCount) {
+        return unreadCount != 0
+                ? CodedOutputStream.computeInt32Size(
+                        PushMessagePayload.UNREAD_COUNT_FIELD_NUMBER, unreadCount)
+                : 0;
+    }
+
+    private static void writeString(CodedOutputStream out, int fieldNumber, String value)
+            throws IOException {
+        if (!value.isEmpty()) {
+            out.writeString(fieldNumber, value);
+        }
+    }
+
+    private static void writeLengthDelimitedTag(CodedOutputStream out, int fieldNumber, int length)
+            throws IOException {
+        out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(length);
+    }
+
+    private interface FieldWriter {
+        void writeTo(CodedOutputStream out) throws IOException;
+    }
+
+    // Components are added to the composite once they are written, with their final size
+    private ByteBuf write(int size, FieldWriter writer) {
+        ByteBuf buffer = alloc.directBuffer(size, size);
+        try {
+            CodedOutputStream out =
+                    CodedOutputStream.newInstance(buffer.nioBuffer(buffer.writerIndex(), size));
+            writer.writeTo(out);
+            out.checkNoSpaceLeft();
+            buffer.writerIndex(buffer.writerIndex() + size);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw new IllegalStateException("Failed to encode fan-out push header", e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.fanaujie.ripple.msggateway.server.ws.codec;
+
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBuf;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBufAllocator;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBufInputStream;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+
+import java.io.IOException;
+
+/** Encodes and decodes WsMessage frames without copying through intermediate byte arrays. */
+public final class WsMessageCodec {
+
+    private WsMessageCodec() {}
+
+    public static WsMessage decode(ByteBuf content) throws IOException {
+        if (content.nioBufferCount() == 1) {
+            // Direct buffers are parsed in place
+            return WsMessage.parseFrom(content.nioBuffer());
+        }
+        try (ByteBufInputStream in = new ByteBufInputStream(content.duplicate())) {
+            return WsMessage.parseFrom(in);
+        }
+    }
+
+    public static BinaryWebSocketFrame encode(ByteBufAllocator alloc, WsMessage message) {
+        return new BinaryWebSocketFrame(serialize(alloc, message));
+    }
+
+    /** Serializes a message into a pooled direct buffer of exactly its serialized size. */
+    public static ByteBuf serialize(ByteBufAllocator alloc, MessageLite message) {
+        int size = message.getSerializedSize();
+        ByteBuf buffer = alloc.directBuffer(size, size);
+        try {
+            CodedOutputStream out =
+                    CodedOutputStream.newInstance(buffer.nioBuffer(buffer.writerIndex(), size));
+            message.writeTo(out);
+            out.checkNoSpaceLeft();
+            buffer.writerIndex(buffer.writerIndex() + size);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw new IllegalStateException("Failed to serialize " + message.getClass(), e);
+        }
+    }
+}
@@ -11,4 +11,22 @@ public class WsConfig {
     private int port;
     private String wsPath;
     private int idleSeconds;
+    private String transport;
+    // Server channels bound to the port with SO_REUSEPORT, native transports only
+    private int acceptorCount;
+    // Channels stop being writable above the high water mark and resume below the low one
+    private int writeBufferLowWaterMark;
+    private int writeBufferHighWaterMark;
+    // Push frames kept per channel while it isn't writable, the oldest are dropped beyond this
+    private int maxPendingPushFrames;
+    // Upstream messages of a connection waiting for the message API, further sends are rejected
+    private int maxSendsInFlight;
+    // Message pushes waiting for the client's ack, pushes beyond it count as undelivered
+    private int maxPendingDeliveries;
+    private long deliveryAckTimeoutMs;
+    // Heartbeats refresh the presence once less than the threshold of its TTL is left
+    private int presenceTtlSeconds;
+    private int presenceRefreshThresholdSeconds;
+    // Threads verifying handshake tokens off the event loops
+    private int authThreads;
 }
@@ -0,0 +1,39 @@
+package com.fanaujie.ripple.msggateway.server.ws.delivery;
+
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelInboundHandlerAdapter;
+
+/** Attaches a DeliveryTracker to every channel and hands it the client's push acks. */
+@ChannelHandler.Sharable
+public class DeliveryAckHandler extends ChannelInboundHandlerAdapter {
+
+    private final int maxPendingDeliveries;
+    private final long ackTimeoutMs;
+
+    public DeliveryAckHandler(int maxPendingDeliveries, long ackTimeoutMs) {
+        this.maxPendingDeliveries = maxPendingDeliveries;
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        ctx.channel()
+                .attr(DeliveryTracker.KEY)
+                .setIfAbsent(
+                        new DeliveryTracker(ctx.channel(), maxPendingDeliveries, ackTimeoutMs));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof WsMessage message && message.hasPushMessageAck()) {
+            DeliveryTracker tracker = ctx.channel().attr(DeliveryTracker.KEY).get();
+            if (tracker != null) {
+                tracker.onAck(message.getPushMessageAck().getMessageIdsList());
+            }
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.fanaujie.ripple.msggateway.server.ws.delivery;
+
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelFuture;
+import com.fanaujie.ripple.shaded.io.netty.channel.EventLoop;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the message pushes of one WebSocket channel until the client acknowledges them. A push
+ * is undelivered when its write fails, no ack arrives within the timeout or the channel closes,
+ * the push server then redelivers it. When the window of unacknowledged pushes is full the push
+ * is not written at all and is undelivered too, so a redelivery never duplicates a written frame.
+ *
+ * <p>Tracking starts with the client's first PushMessageAck. Until then a push counts as
+ * delivered once it was written, so clients that don't ack keep working.
+ */
+public final class DeliveryTracker {
+
+    static final AttributeKey<DeliveryTracker> KEY =
+            AttributeKey.valueOf(DeliveryTracker.class, "deliveryTracker");
+
+    private record PendingDelivery(
+            CompletableFuture<Boolean> delivered, ScheduledFuture<?> timeout) {}
+
+    private final Channel channel;
+    private final int maxPendingDeliveries;
+    private final long ackTimeoutMs;
+
+    // Only accessed on the channel's event loop
+    private final Map<Long, PendingDelivery> pending = new HashMap<>();
+    // Set on the event loop, read by the threads starting pushes
+    private volatile boolean ackEnabled;
+    // Window slots taken by pushes, reserved before writing by the threads starting pushes
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    DeliveryTracker(Channel channel, int maxPendingDeliveries, long ackTimeoutMs) {
+        if (maxPendingDeliveries < 1) {
+            throw new IllegalArgumentException("maxPendingDeliveries must be greater than 0");
+        }
+        if (ackTimeoutMs < 1) {
+            throw new IllegalArgumentException("ackTimeoutMs must be greater than 0");
+        }
+        this.channel = channel;
+        this.maxPendingDeliveries = maxPendingDeliveries;
+        this.ackTimeoutMs = ackTimeoutMs;
+        channel.closeFuture().addListener(f -> onClosed());
+    }
+
+    /**
+     * Writes the push unless the window of unacknowledged pushes is full. The delivery completes
+     * with true once the message pushed by the write was delivered to the channel's client, with
+     * false if it was not.
+     */
+    public static PushDelivery track(
+            Channel channel, long messageId, Supplier<ChannelFuture> write) {
+        DeliveryTracker tracker = channel.attr(KEY).get();
+        if (tracker == null || !tracker.ackEnabled) {
+            return untracked(write.get());
+        }
+        if (!tracker.reserve()) {
+            return PushDelivery.undelivered();
+        }
+        ChannelFuture writeFuture;
+        CompletableFuture<Boolean> delivered;
+        try {
+            writeFuture = write.get();
+            delivered = tracker.track(messageId, writeFuture);
+        } catch (RuntimeException e) {
+            tracker.reserved.decrementAndGet();
+            throw e;
+        }
+        delivered.whenComplete((result, e) -> tracker.reserved.decrementAndGet());
+        return new PushDelivery(whenWritten(writeFuture), delivered);
+    }
+
+    /** @return a delivery that completes with the write, for pushes that are not acked. */
+    public static PushDelivery untracked(ChannelFuture writeFuture) {
+        CompletableFuture<Boolean> written = whenWritten(writeFuture);
+        return new PushDelivery(written, written);
+    }
+
+    private static CompletableFuture<Boolean> whenWritten(ChannelFuture writeFuture) {
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        writeFuture.addListener(f -> written.complete(f.isSuccess()));
+        return written;
+    }
+
+    private boolean reserve() {
+        if (reserved.incrementAndGet() > maxPendingDeliveries) {
+            reserved.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private CompletableFuture<Boolean> track(long messageId, ChannelFuture writeFuture) {
+        CompletableFuture<Boolean> delivered = new CompletableFuture<>();
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            add(messageId, delivered);
+        } else {
+            try {
+                eventLoop.execute(() -> add(messageId, delivered));
+            } catch (RejectedExecutionException e) {
+                delivered.complete(false);
+            }
+        }
+        // Listeners run on the event loop, possibly before the delivery was added
+        writeFuture.addListener(
+                f -> {
+                    if (!f.isSuccess()) {
+                        fail(messageId, delivered);
+                    }
+                });
+        return delivered;
+    }
+
+    private void add(long messageId, CompletableFuture<Boolean> delivered) {
+        if (delivered.isDone()) {
+            return;
+        }
+        if (!channel.isActive()) {
+            delivered.complete(false);
+            return;
+        }
+        PendingDelivery existing = pending.get(messageId);
+        if (existing != null) {
+            // A redelivery of a message still waiting for its ack
+            existing.delivered().thenAccept(delivered::complete);
+            return;
+        }
+        ScheduledFuture<?> timeout =
+                channel.eventLoop()
+                        .schedule(
+                                () -> complete(messageId, false),
+                                ackTimeoutMs,
+                                TimeUnit.MILLISECONDS);
+        pending.put(messageId, new PendingDelivery(delivered, timeout));
+    }
+
+    private void fail(long messageId, CompletableFuture<Boolean> delivered) {
+        PendingDelivery delivery = pending.get(messageId);
+        if (delivery != null && delivery.delivered() == delivered) {
+            complete(messageId, false);
+        } else {
+            delivered.complete(false);
+        }
+    }
+
+    private void complete(long messageId, boolean delivered) {
+        PendingDelivery delivery = pending.remove(messageId);
+        if (delivery != null) {
+            delivery.timeout().cancel(false);
+            delivery.delivered().complete(delivered);
+        }
+    }
+
+    void onAck(List<Long> messageIds) {
+        ackEnabled = true;
+        for (long messageId : messageIds) {
+            complete(messageId, true);
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private void onClosed() {
+        for (long messageId : new ArrayList<>(pending.keySet())) {
+            complete(messageId, false);
+        }
+    }
+}
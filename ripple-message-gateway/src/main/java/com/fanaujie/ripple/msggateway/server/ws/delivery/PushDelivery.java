@@ -0,0 +1,17 @@
+package com.fanaujie.ripple.msggateway.server.ws.delivery;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Progress of one push. written completes once the frame left for the client or could not be
+ * written, delivered once the client received it, for message pushes to acking clients that is
+ * when the ack arrived.
+ */
+public record PushDelivery(
+        CompletableFuture<Boolean> written, CompletableFuture<Boolean> delivered) {
+
+    public static PushDelivery undelivered() {
+        CompletableFuture<Boolean> undelivered = CompletableFuture.completedFuture(false);
+        return new PushDelivery(undelivered, undelivered);
+    }
+}
@@ -2,32 +2,77 @@ package com.fanaujie.ripple.msggateway.server.ws.handler;
 
 import com.fanaujie.ripple.communication.batch.BatchExecutorService;
 import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchTask;
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
 import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatRequest;
 import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatResponse;
 import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandler;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandlerContext;
-import com.fanaujie.ripple.shaded.netty.channel.SimpleChannelInboundHandler;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
-import com.fanaujie.ripple.shaded.netty.util.AttributeKey;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.SimpleChannelInboundHandler;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 @ChannelHandler.Sharable
 public class HeartbeatHandler extends SimpleChannelInboundHandler<WsMessage> {
 
     private static final Logger logger = LoggerFactory.getLogger(HeartbeatHandler.class);
     private static final AttributeKey<String> DEVICE_ID_KEY = AttributeKey.valueOf("deviceId");
+    // When the channel's presence was last written, in nanoTime
+    private static final AttributeKey<Long> LAST_PRESENCE_REFRESH_KEY =
+            AttributeKey.valueOf(HeartbeatHandler.class, "lastPresenceRefresh");
 
     private final BatchExecutorService<UserOnlineBatchTask> batchExecutorService;
     private final String serverLocation;
+    private final long refreshIntervalNanos;
+    private final LongSupplier nanoClock;
 
+    /**
+     * A heartbeat only refreshes the presence once less than refreshThresholdSeconds of the
+     * presence TTL are left, the heartbeats in between are answered without touching it.
+     */
     public HeartbeatHandler(
-            BatchExecutorService<UserOnlineBatchTask> batchExecutorService, String serverLocation) {
+            BatchExecutorService<UserOnlineBatchTask> batchExecutorService,
+            String serverLocation,
+            int presenceTtlSeconds,
+            int refreshThresholdSeconds) {
+        this(
+                batchExecutorService,
+                serverLocation,
+                presenceTtlSeconds,
+                refreshThresholdSeconds,
+                System::nanoTime);
+    }
+
+    HeartbeatHandler(
+            BatchExecutorService<UserOnlineBatchTask> batchExecutorService,
+            String serverLocation,
+            int presenceTtlSeconds,
+            int refreshThresholdSeconds,
+            LongSupplier nanoClock) {
+        if (refreshThresholdSeconds <= 0 || refreshThresholdSeconds > presenceTtlSeconds) {
+            throw new IllegalArgumentException(
+                    "refreshThresholdSeconds must be between 1 and presenceTtlSeconds");
+        }
         this.batchExecutorService = batchExecutorService;
         this.serverLocation = serverLocation;
+        this.refreshIntervalNanos =
+                TimeUnit.SECONDS.toNanos(presenceTtlSeconds - refreshThresholdSeconds);
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        // The router reported the device online when it authenticated the handshake
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            ctx.channel().attr(LAST_PRESENCE_REFRESH_KEY).set(nanoClock.getAsLong());
+        }
+        super.userEventTriggered(ctx, evt);
     }
 
     @Override
@@ -38,9 +83,13 @@ public class HeartbeatHandler extends SimpleChannelInboundHandler<WsMessage> {
             long clientTimestamp = request.getTimestamp();
             long serverTimestamp = Instant.now().getEpochSecond();
             long timeDifference = serverTimestamp - clientTimestamp;
-            // Push user online status to batch queue for periodic refresh
+            // Refresh the online status only when the presence is about to expire
             String deviceId = ctx.channel().attr(DEVICE_ID_KEY).get();
-            if (deviceId != null) {
+            if (deviceId == null) {
+                logger.warn(
+                        "channelRead0: Device ID not found in channel attributes for userId: {}",
+                        userId);
+            } else if (isPresenceRefreshDue(ctx)) {
                 try {
                     UserOnlineBatchTask task =
                             new UserOnlineBatchTask(userId, deviceId, true, this.serverLocation);
@@ -53,10 +102,6 @@ public class HeartbeatHandler extends SimpleChannelInboundHandler<WsMessage> {
                             e);
                     Thread.currentThread().interrupt();
                 }
-            } else {
-                logger.warn(
-                        "channelRead0: Device ID not found in channel attributes for userId: {}",
-                        userId);
             }
 
             HeartbeatResponse heartbeatResponse =
@@ -67,17 +112,25 @@ public class HeartbeatHandler extends SimpleChannelInboundHandler<WsMessage> {
                             .build();
             WsMessage response =
                     WsMessage.newBuilder().setHeartbeatResponse(heartbeatResponse).build();
-            BinaryWebSocketFrame respFrame =
-                    new BinaryWebSocketFrame(
-                            ctx.alloc().buffer().writeBytes(response.toByteArray()));
-            ctx.writeAndFlush(respFrame);
+            ctx.writeAndFlush(WsMessageCodec.encode(ctx.alloc(), response));
         } else {
-            logger.warn(
+            logger.debug(
                     "channelRead0: Message is not a heartbeat request, passing to next handler");
             ctx.fireChannelRead(rippleMessage);
         }
     }
 
+    // Channel reads run on its event loop, so the attribute needs no atomic update
+    private boolean isPresenceRefreshDue(ChannelHandlerContext ctx) {
+        long now = nanoClock.getAsLong();
+        Long lastRefresh = ctx.channel().attr(LAST_PRESENCE_REFRESH_KEY).get();
+        if (lastRefresh != null && now - lastRefresh < refreshIntervalNanos) {
+            return false;
+        }
+        ctx.channel().attr(LAST_PRESENCE_REFRESH_KEY).set(now);
+        return true;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         logger.error(
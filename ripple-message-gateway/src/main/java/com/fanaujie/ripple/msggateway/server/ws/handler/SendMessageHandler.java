@@ -0,0 +1,186 @@
+package com.fanaujie.ripple.msggateway.server.ws.handler;
+
+import com.fanaujie.ripple.communication.msgapi.AsyncMessageAPISender;
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
+import com.fanaujie.ripple.msggateway.server.ws.outbound.PushChannelWriter;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.msgapiserver.SingleMessageContent;
+import com.fanaujie.ripple.protobuf.wsmessage.ClientSendMessageAck;
+import com.fanaujie.ripple.protobuf.wsmessage.ClientSendMessageRequest;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.SimpleChannelInboundHandler;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIdClient;
+import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
+import com.fanaujie.ripple.storage.service.utils.FileTypeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends chat messages received on the WebSocket to the message API. Sends are pipelined, every
+ * request is acknowledged with the server assigned message id once the message API accepted it.
+ */
+@ChannelHandler.Sharable
+public class SendMessageHandler extends SimpleChannelInboundHandler<WsMessage> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SendMessageHandler.class);
+    private static final AttributeKey<String> USER_ID_KEY = AttributeKey.valueOf("userId");
+    private static final AttributeKey<AtomicInteger> IN_FLIGHT_KEY =
+            AttributeKey.valueOf("sendMessagesInFlight");
+
+    private final SnowflakeIdClient snowflakeIdClient;
+    private final AsyncMessageAPISender messageAPISender;
+    private final int maxInFlight;
+
+    public SendMessageHandler(
+            SnowflakeIdClient snowflakeIdClient,
+            AsyncMessageAPISender messageAPISender,
+            int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be greater than 0");
+        }
+        this.snowflakeIdClient = snowflakeIdClient;
+        this.messageAPISender = messageAPISender;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WsMessage message) {
+        if (!message.hasClientSendMessageRequest()) {
+            logger.warn(
+                    "channelRead0: Unsupported message type: {}", message.getMessageTypeCase());
+            return;
+        }
+        Channel channel = ctx.channel();
+        ClientSendMessageRequest request = message.getClientSendMessageRequest();
+        String userId = channel.attr(USER_ID_KEY).get();
+        if (userId == null) {
+            reply(channel, failure(request, "Connection is not authenticated"));
+            return;
+        }
+        SendMessageReq.Builder builder;
+        try {
+            builder = toSendMessageReq(Long.parseLong(userId), request);
+        } catch (IllegalArgumentException e) {
+            reply(channel, failure(request, "Invalid request data: " + e.getMessage()));
+            return;
+        }
+        AtomicInteger inFlight = channel.attr(IN_FLIGHT_KEY).get();
+        if (inFlight == null) {
+            inFlight = new AtomicInteger();
+            channel.attr(IN_FLIGHT_KEY).set(inFlight);
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            reply(channel, failure(request, "Too many messages in flight"));
+            return;
+        }
+        AtomicInteger counter = inFlight;
+        snowflakeIdClient
+                .requestSnowflakeId()
+                .thenCompose(
+                        id -> {
+                            SendMessageReq req = builder.setMessageId(id.getId()).build();
+                            return messageAPISender.sendMessage(req).thenApply(resp -> req);
+                        })
+                .whenComplete(
+                        (req, e) -> {
+                            counter.decrementAndGet();
+                            if (e != null) {
+                                logger.error(
+                                        "channelRead0: Failed to send message of user {} - {}",
+                                        userId,
+                                        e.getMessage(),
+                                        e);
+                                reply(channel, failure(request, "Failed to send message"));
+                            } else {
+                                reply(channel, success(request, req));
+                            }
+                        });
+    }
+
+    // Same conversion as the REST send in the API gateway
+    static SendMessageReq.Builder toSendMessageReq(
+            long senderId, ClientSendMessageRequest request) {
+        boolean hasReceiverId = request.getReceiverId() != 0;
+        boolean hasGroupId = request.getGroupId() != 0;
+        if (hasReceiverId && hasGroupId) {
+            throw new IllegalArgumentException(
+                    "Only one of receiverId or groupId should be provided, not both");
+        }
+        if (!hasReceiverId && !hasGroupId) {
+            throw new IllegalArgumentException("Either receiverId or groupId is required");
+        }
+        String text =
+                request.getFileName().isEmpty()
+                        ? request.getText()
+                        : FileTypeUtils.generateFilePreviewText(
+                                String.valueOf(senderId), request.getFileName());
+        SendMessageReq.Builder builder =
+                SendMessageReq.newBuilder()
+                        .setSenderId(senderId)
+                        .setSendTimestamp(Instant.now().toEpochMilli())
+                        .setSingleMessageContent(
+                                SingleMessageContent.newBuilder()
+                                        .setText(text)
+                                        .setFileUrl(request.getFileUrl())
+                                        .setFileName(request.getFileName())
+                                        .build());
+        String conversationId = request.getConversationId();
+        if (hasGroupId) {
+            if (conversationId.isEmpty()) {
+                conversationId =
+                        ConversationUtils.generateGroupConversationId(request.getGroupId());
+            }
+            builder.setConversationId(conversationId).setGroupId(request.getGroupId());
+        } else {
+            if (conversationId.isEmpty()) {
+                conversationId =
+                        ConversationUtils.generateConversationId(
+                                senderId, request.getReceiverId());
+            }
+            builder.setConversationId(conversationId).setReceiverId(request.getReceiverId());
+        }
+        return builder;
+    }
+
+    private static ClientSendMessageAck success(
+            ClientSendMessageRequest request, SendMessageReq sent) {
+        return ClientSendMessageAck.newBuilder()
+                .setClientMessageId(request.getClientMessageId())
+                .setIsSuccess(true)
+                .setMessageId(sent.getMessageId())
+                .setConversationId(sent.getConversationId())
+                .setSendTimestamp(sent.getSendTimestamp())
+                .build();
+    }
+
+    private static ClientSendMessageAck failure(
+            ClientSendMessageRequest request, String errorMessage) {
+        return ClientSendMessageAck.newBuilder()
+                .setClientMessageId(request.getClientMessageId())
+                .setIsSuccess(false)
+                .setErrorMessage(errorMessage)
+                .build();
+    }
+
+    private static void reply(Channel channel, ClientSendMessageAck ack) {
+        WsMessage message = WsMessage.newBuilder().setClientSendMessageAck(ack).build();
+        PushChannelWriter.write(channel, WsMessageCodec.encode(channel.alloc(), message));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        logger.error(
+                "exceptionCaught: Exception occurred in SendMessageHandler - {}",
+                cause.getMessage(),
+                cause);
+        ctx.close();
+    }
+}
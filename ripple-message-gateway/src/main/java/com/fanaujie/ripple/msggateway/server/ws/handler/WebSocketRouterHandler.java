@@ -5,48 +5,80 @@ import com.fanaujie.ripple.msggateway.exception.WsUnauthorizedException;
 import com.fanaujie.ripple.msggateway.server.jwt.JwtDecoder;
 import com.fanaujie.ripple.msggateway.server.uitls.HttpHeader;
 import com.fanaujie.ripple.msggateway.server.users.OnlineUser;
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
 import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
-import com.fanaujie.ripple.shaded.netty.buffer.ByteBufUtil;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelFutureListener;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandler;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandlerContext;
-import com.fanaujie.ripple.shaded.netty.channel.SimpleChannelInboundHandler;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.DefaultFullHttpResponse;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpHeaders;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpResponseStatus;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.HttpVersion;
-import com.fanaujie.ripple.shaded.netty.handler.codec.http.websocketx.*;
-import com.fanaujie.ripple.shaded.netty.handler.timeout.IdleState;
-import com.fanaujie.ripple.shaded.netty.handler.timeout.IdleStateEvent;
-import com.fanaujie.ripple.shaded.netty.util.AttributeKey;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelFutureListener;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.SimpleChannelInboundHandler;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.DefaultFullHttpResponse;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpHeaders;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpResponseStatus;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpVersion;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.*;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 @ChannelHandler.Sharable
 public class WebSocketRouterHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketRouterHandler.class);
     private static final AttributeKey<String> DEVICE_ID_KEY = AttributeKey.valueOf("deviceId");
+    private static final AttributeKey<String> USER_ID_KEY = AttributeKey.valueOf("userId");
+    // Frames that arrived while the connection was being authenticated
+    private static final AttributeKey<Queue<WebSocketFrame>> PENDING_FRAMES_KEY =
+            AttributeKey.valueOf("pendingFrames");
+    static final int MAX_PENDING_FRAMES = 16;
 
     private final JwtDecoder jwtDecoder;
     private final OnlineUser onlineUser;
+    // Tokens are verified here so handshake storms don't stall the event loops
+    private final Executor authExecutor;
 
-    public WebSocketRouterHandler(JwtDecoder jwtDecoder, OnlineUser onlineUser) {
+    public WebSocketRouterHandler(
+            JwtDecoder jwtDecoder, OnlineUser onlineUser, Executor authExecutor) {
         this.jwtDecoder = jwtDecoder;
         this.onlineUser = onlineUser;
+        this.authExecutor = authExecutor;
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePendingFrames(ctx);
         this.onlineUser.remove(ctx.channel());
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame webSocketFrame)
             throws Exception {
+        // Auto read is off while authenticating, but frames decoded from the same read still
+        // arrive. They are held back until the connection is authenticated.
+        Queue<WebSocketFrame> pendingFrames = ctx.channel().attr(PENDING_FRAMES_KEY).get();
+        if (pendingFrames != null) {
+            if (pendingFrames.size() >= MAX_PENDING_FRAMES) {
+                logger.error("channelRead0: Too many frames before authentication");
+                releasePendingFrames(ctx);
+                ctx.close();
+                return;
+            }
+            pendingFrames.add(webSocketFrame.retain());
+            return;
+        }
+        route(ctx, webSocketFrame);
+    }
+
+    private void route(ChannelHandlerContext ctx, WebSocketFrame webSocketFrame)
+            throws Exception {
         if (webSocketFrame instanceof BinaryWebSocketFrame frame) {
-            byte[] data = ByteBufUtil.getBytes(frame.content());
-            WsMessage message = WsMessage.parseFrom(data);
+            WsMessage message = WsMessageCodec.decode(frame.content());
             ctx.fireChannelRead(message);
         } else if (webSocketFrame instanceof PingWebSocketFrame frame) {
             ctx.writeAndFlush(new PongWebSocketFrame(frame.content().copy()));
@@ -77,24 +109,20 @@ public class WebSocketRouterHandler extends SimpleChannelInboundHandler<WebSocke
                                             return new WsUnauthorizedException(
                                                     "Ripple Header Not Found");
                                         });
-                JwtDecoder.DecodedJwtClaims jwtClaims =
-                        this.jwtDecoder.decodeJwtClaims(rippleHeader.getToken());
-                String userId = jwtClaims.getSubject();
-                // Store deviceId in channel attributes for heartbeat handler
-                ctx.channel().attr(DEVICE_ID_KEY).set(rippleHeader.getDeviceId());
-                this.onlineUser.add(userId, rippleHeader.getDeviceId(), ctx.channel());
-            } catch (WsUnauthorizedException | WsJwtDecodedException e) {
+                // Nothing is read from the connection until it is authenticated
+                ctx.channel().attr(PENDING_FRAMES_KEY).set(new ArrayDeque<>());
+                ctx.channel().config().setAutoRead(false);
+                CompletableFuture.supplyAsync(
+                                () -> decodeJwtClaims(rippleHeader.getToken()), authExecutor)
+                        .whenCompleteAsync(
+                                (jwtClaims, cause) ->
+                                        onAuthenticated(
+                                                ctx, evt, rippleHeader, jwtClaims, cause),
+                                ctx.executor());
+            } catch (WsUnauthorizedException | RejectedExecutionException e) {
                 logger.error("userEventTriggered: Authentication failed - {}", e.getMessage());
-                DefaultFullHttpResponse response =
-                        new DefaultFullHttpResponse(
-                                HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED);
-                response.headers().set("WWW-Authenticate", "Bearer realm=\"Netty WebSocket\"");
-                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
-            }
-        } else if (evt instanceof IdleStateEvent event) {
-            if (event.state() == IdleState.READER_IDLE) {
-                this.onlineUser.remove(ctx.channel());
-                ctx.close();
+                releasePendingFrames(ctx);
+                rejectUnauthorized(ctx);
             }
         } else {
             logger.warn("userEventTriggered: Passing event to next handler");
@@ -102,6 +130,75 @@ public class WebSocketRouterHandler extends SimpleChannelInboundHandler<WebSocke
         }
     }
 
+    private JwtDecoder.DecodedJwtClaims decodeJwtClaims(String token) {
+        try {
+            return this.jwtDecoder.decodeJwtClaims(token);
+        } catch (WsJwtDecodedException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void onAuthenticated(
+            ChannelHandlerContext ctx,
+            Object handshakeCompleted,
+            HttpHeader.RippleHeader rippleHeader,
+            JwtDecoder.DecodedJwtClaims jwtClaims,
+            Throwable cause) {
+        if (cause != null) {
+            releasePendingFrames(ctx);
+            Throwable error = cause instanceof CompletionException ? cause.getCause() : cause;
+            logger.error("onAuthenticated: Authentication failed - {}", error.getMessage());
+            rejectUnauthorized(ctx);
+            return;
+        }
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        String userId = jwtClaims.getSubject();
+        // Store deviceId in channel attributes for heartbeat handler
+        ctx.channel().attr(DEVICE_ID_KEY).set(rippleHeader.getDeviceId());
+        // The authenticated user is the sender of upstream messages
+        ctx.channel().attr(USER_ID_KEY).set(userId);
+        this.onlineUser.add(userId, rippleHeader.getDeviceId(), ctx.channel());
+        ctx.channel().config().setAutoRead(true);
+        // Later handlers learn that the connection is authenticated
+        ctx.fireUserEventTriggered(handshakeCompleted);
+        Queue<WebSocketFrame> pendingFrames =
+                ctx.channel().attr(PENDING_FRAMES_KEY).getAndSet(null);
+        if (pendingFrames == null) {
+            return;
+        }
+        WebSocketFrame frame;
+        while ((frame = pendingFrames.poll()) != null) {
+            try {
+                route(ctx, frame);
+            } catch (Exception e) {
+                exceptionCaught(ctx, e);
+            } finally {
+                frame.release();
+            }
+        }
+    }
+
+    // The queue stays attached, so frames arriving until the channel closes are not routed
+    private static void releasePendingFrames(ChannelHandlerContext ctx) {
+        Queue<WebSocketFrame> pendingFrames = ctx.channel().attr(PENDING_FRAMES_KEY).get();
+        if (pendingFrames == null) {
+            return;
+        }
+        WebSocketFrame frame;
+        while ((frame = pendingFrames.poll()) != null) {
+            frame.release();
+        }
+    }
+
+    private static void rejectUnauthorized(ChannelHandlerContext ctx) {
+        DefaultFullHttpResponse response =
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED);
+        response.headers().set("WWW-Authenticate", "Bearer realm=\"Netty WebSocket\"");
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         logger.error("exceptionCaught: Exception occurred - {}", cause.getMessage(), cause);
@@ -0,0 +1,81 @@
+package com.fanaujie.ripple.msggateway.server.ws.idle;
+
+import com.fanaujie.ripple.msggateway.server.users.OnlineUser;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelInboundHandlerAdapter;
+import com.fanaujie.ripple.shaded.io.netty.channel.EventLoop;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Closes connections that read nothing for idleSeconds. Every event loop has one
+ * IdleTimingWheel for all its channels, the connections that went idle in the same tick are
+ * taken offline together.
+ */
+@ChannelHandler.Sharable
+public class IdleConnectionHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdleConnectionHandler.class);
+
+    private static final long TICK_MILLIS = 1000;
+    private static final AttributeKey<IdleTimingWheel.Entry> ENTRY_KEY =
+            AttributeKey.valueOf(IdleConnectionHandler.class, "idleEntry");
+
+    private final int idleSeconds;
+    private final OnlineUser onlineUser;
+    private final Map<EventLoop, IdleTimingWheel> wheels = new ConcurrentHashMap<>();
+
+    public IdleConnectionHandler(int idleSeconds, OnlineUser onlineUser) {
+        if (idleSeconds <= 0) {
+            throw new IllegalArgumentException("idleSeconds must be positive");
+        }
+        this.idleSeconds = idleSeconds;
+        this.onlineUser = onlineUser;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        EventLoop eventLoop = ctx.channel().eventLoop();
+        IdleTimingWheel wheel =
+                wheels.computeIfAbsent(
+                        eventLoop,
+                        loop ->
+                                new IdleTimingWheel(
+                                        loop, idleSeconds, TICK_MILLIS, this::expire));
+        ctx.channel().attr(ENTRY_KEY).set(wheel.register(ctx.channel()));
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        IdleTimingWheel.Entry entry = ctx.channel().attr(ENTRY_KEY).get();
+        if (entry != null) {
+            entry.onRead();
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        IdleTimingWheel.Entry entry = ctx.channel().attr(ENTRY_KEY).getAndSet(null);
+        if (entry != null) {
+            entry.deregister();
+        }
+        super.channelInactive(ctx);
+    }
+
+    private void expire(List<Channel> channels) {
+        logger.debug("expire: Closing {} idle connections", channels.size());
+        onlineUser.removeAll(channels);
+        for (Channel channel : channels) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.fanaujie.ripple.msggateway.server.ws.idle;
+
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.EventLoop;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel of the channels of one event loop, driven by a single periodic task instead
+ * of a timer per channel. A read only records the current tick. A channel's slot is checked once
+ * its idle time could have passed, a channel read since then is moved to the slot of its new
+ * deadline and the idle ones are expired together. Only used from its event loop.
+ */
+final class IdleTimingWheel {
+
+    final class Entry {
+        private final Channel channel;
+        private long lastReadTick;
+        private boolean closed;
+
+        private Entry(Channel channel) {
+            this.channel = channel;
+            this.lastReadTick = currentTick;
+        }
+
+        void onRead() {
+            lastReadTick = currentTick;
+        }
+
+        // Dropped when its slot comes up
+        void deregister() {
+            closed = true;
+        }
+    }
+
+    private final long idleTicks;
+    private final ArrayDeque<Entry>[] slots;
+    private final int mask;
+    private final Consumer<List<Channel>> onExpired;
+    private long currentTick;
+
+    IdleTimingWheel(
+            EventLoop eventLoop,
+            int idleTicks,
+            long tickMillis,
+            Consumer<List<Channel>> onExpired) {
+        this.idleTicks = idleTicks;
+        // More slots than ticks to a deadline, so a moved entry never lands in the current slot
+        int slotCount = Integer.highestOneBit(idleTicks + 1) << 1;
+        @SuppressWarnings("unchecked")
+        ArrayDeque<Entry>[] slots = new ArrayDeque[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.slots = slots;
+        this.mask = slotCount - 1;
+        this.onExpired = onExpired;
+        eventLoop.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    Entry register(Channel channel) {
+        Entry entry = new Entry(channel);
+        schedule(entry);
+        return entry;
+    }
+
+    void tick() {
+        currentTick++;
+        ArrayDeque<Entry> slot = slots[(int) currentTick & mask];
+        List<Channel> expired = null;
+        Entry entry;
+        while ((entry = slot.poll()) != null) {
+            if (entry.closed) {
+                continue;
+            }
+            if (currentTick - entry.lastReadTick > idleTicks) {
+                entry.closed = true;
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(entry.channel);
+            } else {
+                schedule(entry);
+            }
+        }
+        if (expired != null) {
+            onExpired.accept(expired);
+        }
+    }
+
+    // Idle once more than idleTicks full ticks passed without a read
+    private void schedule(Entry entry) {
+        slots[(int) (entry.lastReadTick + idleTicks + 1) & mask].add(entry);
+    }
+}
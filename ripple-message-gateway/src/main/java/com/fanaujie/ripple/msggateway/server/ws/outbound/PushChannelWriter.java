@@ -0,0 +1,138 @@
+package com.fanaujie.ripple.msggateway.server.ws.outbound;
+
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelFuture;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelPromise;
+import com.fanaujie.ripple.shaded.io.netty.channel.EventLoop;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Coalesces the push frames of one WebSocket channel. Frames are written on the event loop and
+ * a single flush is scheduled after the tasks already queued there, so a burst of pushes costs
+ * one flush instead of one per frame, similar to Netty's FlushConsolidationHandler.
+ *
+ * <p>While the channel is not writable frames wait in a bounded queue instead of growing the
+ * outbound buffer. When the queue is full the oldest frame is dropped, the client catches up on
+ * missed messages through the message API.
+ */
+public final class PushChannelWriter {
+
+    static final AttributeKey<PushChannelWriter> KEY =
+            AttributeKey.valueOf(PushChannelWriter.class, "pushChannelWriter");
+
+    // Same bound as FlushConsolidationHandler's default, keeps a long burst from holding back
+    // every frame until its end
+    static final int MAX_WRITES_BEFORE_FLUSH = 256;
+
+    private record PendingWrite(WebSocketFrame frame, ChannelPromise promise) {}
+
+    private final Channel channel;
+    private final int maxPendingFrames;
+    private final PushOutboundMetrics metrics;
+    private final Runnable flushTask = this::flush;
+
+    // Only accessed on the channel's event loop
+    private final ArrayDeque<PendingWrite> pending = new ArrayDeque<>();
+    private boolean flushScheduled;
+    private int writesSinceFlush;
+
+    PushChannelWriter(Channel channel, int maxPendingFrames, PushOutboundMetrics metrics) {
+        if (maxPendingFrames < 1) {
+            throw new IllegalArgumentException("maxPendingFrames must be greater than 0");
+        }
+        this.channel = channel;
+        this.maxPendingFrames = maxPendingFrames;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Writes a frame through the channel's PushChannelWriter. Channels without a
+     * PushOutboundHandler are written and flushed directly.
+     */
+    public static ChannelFuture write(Channel channel, WebSocketFrame frame) {
+        PushChannelWriter writer = channel.attr(KEY).get();
+        return writer != null ? writer.write(frame) : channel.writeAndFlush(frame);
+    }
+
+    public ChannelFuture write(WebSocketFrame frame) {
+        ChannelPromise promise = channel.newPromise();
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            enqueue(frame, promise);
+        } else {
+            try {
+                eventLoop.execute(() -> enqueue(frame, promise));
+            } catch (RejectedExecutionException e) {
+                frame.release();
+                promise.tryFailure(e);
+            }
+        }
+        return promise;
+    }
+
+    private void enqueue(WebSocketFrame frame, ChannelPromise promise) {
+        if (!channel.isActive()) {
+            frame.release();
+            metrics.frameDroppedChannelClosed();
+            promise.tryFailure(new ClosedChannelException());
+            return;
+        }
+        if (pending.isEmpty() && channel.isWritable()) {
+            writeFrame(frame, promise);
+            return;
+        }
+        if (pending.size() >= maxPendingFrames) {
+            PendingWrite dropped = pending.poll();
+            metrics.frameDequeued();
+            dropped.frame().release();
+            metrics.frameDroppedQueueFull();
+            dropped.promise()
+                    .tryFailure(new IllegalStateException("Push queue of the channel is full"));
+        }
+        pending.add(new PendingWrite(frame, promise));
+        metrics.frameQueued();
+    }
+
+    private void writeFrame(WebSocketFrame frame, ChannelPromise promise) {
+        channel.write(frame, promise);
+        if (++writesSinceFlush >= MAX_WRITES_BEFORE_FLUSH) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            channel.eventLoop().execute(flushTask);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        if (writesSinceFlush == 0) {
+            return;
+        }
+        writesSinceFlush = 0;
+        channel.flush();
+        metrics.flushed();
+    }
+
+    void onWritabilityChanged() {
+        while (!pending.isEmpty() && channel.isWritable()) {
+            PendingWrite next = pending.poll();
+            metrics.frameDequeued();
+            writeFrame(next.frame(), next.promise());
+        }
+    }
+
+    void onInactive() {
+        PendingWrite next;
+        while ((next = pending.poll()) != null) {
+            metrics.frameDequeued();
+            next.frame().release();
+            metrics.frameDroppedChannelClosed();
+            next.promise().tryFailure(new ClosedChannelException());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.fanaujie.ripple.msggateway.server.ws.outbound;
+
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelInboundHandlerAdapter;
+
+/** Attaches a PushChannelWriter to every channel and feeds it the channel's writability. */
+@ChannelHandler.Sharable
+public class PushOutboundHandler extends ChannelInboundHandlerAdapter {
+
+    private final int maxPendingFrames;
+    private final PushOutboundMetrics metrics;
+
+    public PushOutboundHandler(int maxPendingFrames, PushOutboundMetrics metrics) {
+        this.maxPendingFrames = maxPendingFrames;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        ctx.channel()
+                .attr(PushChannelWriter.KEY)
+                .setIfAbsent(new PushChannelWriter(ctx.channel(), maxPendingFrames, metrics));
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        PushChannelWriter writer = ctx.channel().attr(PushChannelWriter.KEY).get();
+        if (writer != null) {
+            writer.onWritabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        PushChannelWriter writer = ctx.channel().attr(PushChannelWriter.KEY).get();
+        if (writer != null) {
+            writer.onInactive();
+        }
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,57 @@
+package com.fanaujie.ripple.msggateway.server.ws.outbound;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class PushOutboundMetrics {
+    private static final AttributeKey<String> REASON = AttributeKey.stringKey("reason");
+    private static final Attributes QUEUE_FULL = Attributes.of(REASON, "queue_full");
+    private static final Attributes CHANNEL_CLOSED = Attributes.of(REASON, "channel_closed");
+
+    private final LongAdder pendingFrames = new LongAdder();
+    private final LongCounter droppedFrameCounter;
+    private final LongCounter flushCounter;
+
+    public PushOutboundMetrics() {
+        Meter meter = GlobalOpenTelemetry.getMeter("message-gateway");
+        meter.upDownCounterBuilder("gateway_push_pending_frames")
+                .setDescription("Push frames held back until their channel is writable again")
+                .setUnit("1")
+                .buildWithCallback(m -> m.record(pendingFrames.sum()));
+        this.droppedFrameCounter =
+                meter.counterBuilder("gateway_push_dropped_frames")
+                        .setDescription("Push frames dropped because a slow channel fell behind")
+                        .setUnit("1")
+                        .build();
+        this.flushCounter =
+                meter.counterBuilder("gateway_push_flushes")
+                        .setDescription("Flushes of coalesced push frames")
+                        .setUnit("1")
+                        .build();
+    }
+
+    void frameQueued() {
+        pendingFrames.increment();
+    }
+
+    void frameDequeued() {
+        pendingFrames.decrement();
+    }
+
+    void frameDroppedQueueFull() {
+        droppedFrameCounter.add(1, QUEUE_FULL);
+    }
+
+    void frameDroppedChannelClosed() {
+        droppedFrameCounter.add(1, CHANNEL_CLOSED);
+    }
+
+    void flushed() {
+        flushCounter.add(1);
+    }
+}
@@ -0,0 +1,43 @@
+package com.fanaujie.ripple.msggateway.batch;
+
+import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
+import com.fanaujie.ripple.protobuf.userpresence.BatchUserOnlineReq;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineReq;
+import com.fanaujie.ripple.protobuf.userpresence.UserPresenceGrpc;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserOnlineBatchProcessorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProcess_OnlyLatestStatusOfDeviceIsSent() {
+        GrpcClient<UserPresenceGrpc.UserPresenceStub> grpcClient = mock(GrpcClient.class);
+        UserPresenceGrpc.UserPresenceStub stub = mock(UserPresenceGrpc.UserPresenceStub.class);
+        when(grpcClient.getStub()).thenReturn(stub);
+
+        new UserOnlineBatchProcessor(grpcClient)
+                .process(
+                        List.of(
+                                new UserOnlineBatchTask("1001", "phone", true, "gw-1"),
+                                new UserOnlineBatchTask("1001", "laptop", true, "gw-1"),
+                                new UserOnlineBatchTask("1001", "phone", true, "gw-1"),
+                                new UserOnlineBatchTask("1001", "phone", false, "")));
+
+        ArgumentCaptor<BatchUserOnlineReq> request =
+                ArgumentCaptor.forClass(BatchUserOnlineReq.class);
+        verify(stub).setUserOnlineBatch(request.capture(), any());
+        List<UserOnlineReq> requests = request.getValue().getRequestsList();
+        assertEquals(2, requests.size());
+        assertEquals("phone", requests.get(0).getDeviceId());
+        assertFalse(requests.get(0).getIsOnline());
+        assertEquals("laptop", requests.get(1).getDeviceId());
+        assertTrue(requests.get(1).getIsOnline());
+    }
+}
@@ -0,0 +1,127 @@
+package com.fanaujie.ripple.msggateway.server.grpc;
+
+import com.fanaujie.ripple.protobuf.msggateway.BatchPushMessageResponse;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrame;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrameAck;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessageResponse;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PushStreamHandlerTest {
+
+    private final Map<Long, CompletableFuture<Void>> writes = new HashMap<>();
+    private final Map<Long, CompletableFuture<BatchPushMessageResponse>> pushes = new HashMap<>();
+    private ServerCallStreamObserver<PushFrameAck> responseObserver;
+    private PushStreamHandler handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        responseObserver = mock(ServerCallStreamObserver.class);
+        handler =
+                new PushStreamHandler(
+                        frame -> {
+                            CompletableFuture<Void> written = new CompletableFuture<>();
+                            CompletableFuture<BatchPushMessageResponse> pushed =
+                                    new CompletableFuture<>();
+                            writes.put(frame.getSequence(), written);
+                            pushes.put(frame.getSequence(), pushed);
+                            return new PushStreamHandler.PushedFrame(written, pushed);
+                        },
+                        responseObserver,
+                        8);
+    }
+
+    private static BatchPushMessageResponse response(String receiveUserId) {
+        return BatchPushMessageResponse.newBuilder()
+                .addResponses(
+                        PushMessageResponse.newBuilder()
+                                .setReceiveUserId(receiveUserId)
+                                .setIsSuccess(true))
+                .build();
+    }
+
+    @Test
+    void testOnNext_AcksInCompletionOrderAndReadsOneMoreFrame() {
+        InOrder inOrder = inOrder(responseObserver);
+        inOrder.verify(responseObserver).disableAutoRequest();
+        inOrder.verify(responseObserver).request(8);
+
+        handler.onNext(PushFrame.newBuilder().setSequence(0).build());
+        handler.onNext(PushFrame.newBuilder().setSequence(1).build());
+        writes.values().forEach(written -> written.complete(null));
+        pushes.get(1L).complete(response("1003"));
+        pushes.get(0L).complete(response("1002"));
+
+        ArgumentCaptor<PushFrameAck> acks = ArgumentCaptor.forClass(PushFrameAck.class);
+        verify(responseObserver, times(2)).onNext(acks.capture());
+        assertEquals(1L, acks.getAllValues().get(0).getSequence());
+        assertEquals(response("1003"), acks.getAllValues().get(0).getResponse());
+        assertEquals(0L, acks.getAllValues().get(1).getSequence());
+        verify(responseObserver, times(2)).request(1);
+    }
+
+    @Test
+    void testOnNext_FramesWaitingForDeviceAcksDontHoldTheirSlot() {
+        handler.onNext(PushFrame.newBuilder().setSequence(0).build());
+        verify(responseObserver, never()).request(1);
+
+        writes.get(0L).complete(null);
+
+        // The next frame is read while the frame still waits for its device acks
+        verify(responseObserver).request(1);
+        verify(responseObserver, never()).onNext(any());
+        pushes.get(0L).complete(response("1002"));
+        verify(responseObserver).onNext(any());
+        verify(responseObserver).request(1);
+    }
+
+    @Test
+    void testOnCompleted_WaitsForPendingFrames() {
+        handler.onNext(PushFrame.newBuilder().setSequence(0).build());
+        handler.onCompleted();
+        verify(responseObserver, never()).onCompleted();
+
+        pushes.get(0L).complete(response("1002"));
+
+        verify(responseObserver).onNext(any());
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void testOnNext_FailedPushClosesTheStream() {
+        handler.onNext(PushFrame.newBuilder().setSequence(0).build());
+        handler.onNext(PushFrame.newBuilder().setSequence(1).build());
+
+        pushes.get(0L).completeExceptionally(new IllegalStateException("failed"));
+        pushes.get(1L).complete(response("1002"));
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(error.capture());
+        assertEquals(Status.Code.INTERNAL, Status.fromThrowable(error.getValue()).getCode());
+        verify(responseObserver, never()).onNext(any());
+    }
+
+    @Test
+    void testOnNext_NoAcksAfterPushServerLeft() {
+        handler.onNext(PushFrame.newBuilder().setSequence(0).build());
+        handler.onError(Status.CANCELLED.asRuntimeException());
+
+        pushes.get(0L).complete(response("1002"));
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+}
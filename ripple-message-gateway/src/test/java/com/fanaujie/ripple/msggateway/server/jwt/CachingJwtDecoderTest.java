@@ -0,0 +1,75 @@
+package com.fanaujie.ripple.msggateway.server.jwt;
+
+import com.fanaujie.ripple.msggateway.exception.WsJwtDecodedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingJwtDecoderTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private JwtDecoder delegate;
+    private Clock clock;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(NOW);
+    }
+
+    @Test
+    void testDecode_VerifiedTokenIsCachedUntilExpiry() throws Exception {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, clock);
+        when(delegate.decodeJwtClaims("token"))
+                .thenReturn(new JwtDecoder.DecodedJwtClaims("1001", NOW + 1000));
+
+        assertEquals("1001", decoder.decodeJwtClaims("token").getSubject());
+        assertEquals("1001", decoder.decodeJwtClaims("token").getSubject());
+        verify(delegate, times(1)).decodeJwtClaims("token");
+
+        when(clock.millis()).thenReturn(NOW + 1000);
+        decoder.decodeJwtClaims("token");
+        verify(delegate, times(2)).decodeJwtClaims("token");
+    }
+
+    @Test
+    void testDecode_FailuresAndTokensWithoutExpiryAreNotCached() throws Exception {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, clock);
+        when(delegate.decodeJwtClaims("bad")).thenThrow(new WsJwtDecodedException("invalid"));
+        when(delegate.decodeJwtClaims("no-exp"))
+                .thenReturn(new JwtDecoder.DecodedJwtClaims("1001", 0));
+
+        assertThrows(WsJwtDecodedException.class, () -> decoder.decodeJwtClaims("bad"));
+        assertThrows(WsJwtDecodedException.class, () -> decoder.decodeJwtClaims("bad"));
+        decoder.decodeJwtClaims("no-exp");
+
+        assertEquals(0, decoder.size());
+    }
+
+    @Test
+    void testDecode_FullCacheSweepsExpiredEntries() throws Exception {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 1, clock);
+        when(delegate.decodeJwtClaims("first"))
+                .thenReturn(new JwtDecoder.DecodedJwtClaims("1001", NOW + 500));
+        when(delegate.decodeJwtClaims("second"))
+                .thenReturn(new JwtDecoder.DecodedJwtClaims("1002", NOW + 5000));
+        decoder.decodeJwtClaims("first");
+
+        // Full of a valid entry, the new token is not cached
+        decoder.decodeJwtClaims("second");
+        decoder.decodeJwtClaims("second");
+        verify(delegate, times(2)).decodeJwtClaims("second");
+
+        when(clock.millis()).thenReturn(NOW + 1000);
+        decoder.decodeJwtClaims("second");
+        decoder.decodeJwtClaims("second");
+        verify(delegate, times(3)).decodeJwtClaims("second");
+        assertEquals(1, decoder.size());
+    }
+}
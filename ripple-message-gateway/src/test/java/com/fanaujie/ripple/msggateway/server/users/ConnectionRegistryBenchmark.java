@@ -0,0 +1,112 @@
+package com.fanaujie.ripple.msggateway.server.users;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Add, get and remove on a registry holding 1M connections against the previous pair of
+// ConcurrentHashMaps, run main() with the test classpath.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ConnectionRegistryBenchmark {
+
+    private static final int CONNECTIONS = 1_000_000;
+    private static final long FIRST_USER_ID = 1_000_000_000L;
+    private static final String DEVICE_ID = "device-1";
+    private static final String CHURN_DEVICE_ID = "device-2";
+
+    private ConnectionRegistry<Object> registry;
+    private MapRegistry mapRegistry;
+    private Object[] connections;
+    private String[] userIds;
+
+    @Setup
+    public void setUp() {
+        registry = new ConnectionRegistry<>(64);
+        mapRegistry = new MapRegistry();
+        connections = new Object[CONNECTIONS];
+        userIds = new String[CONNECTIONS];
+        for (int i = 0; i < CONNECTIONS; i++) {
+            long userId = FIRST_USER_ID + i;
+            connections[i] = new Object();
+            userIds[i] = Long.toString(userId);
+            registry.put(userId, DEVICE_ID, connections[i]);
+            mapRegistry.add(userIds[i], DEVICE_ID, connections[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object registryGet() {
+        int i = ThreadLocalRandom.current().nextInt(CONNECTIONS);
+        return registry.get(FIRST_USER_ID + i, DEVICE_ID);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object mapsGet() {
+        int i = ThreadLocalRandom.current().nextInt(CONNECTIONS);
+        return mapRegistry.get(userIds[i], DEVICE_ID);
+    }
+
+    // A second device of an online user connects and disconnects
+    @Benchmark
+    @Threads(8)
+    public boolean registryAddRemove() {
+        int i = ThreadLocalRandom.current().nextInt(CONNECTIONS);
+        Object connection = new Object();
+        registry.put(FIRST_USER_ID + i, CHURN_DEVICE_ID, connection);
+        return registry.remove(FIRST_USER_ID + i, CHURN_DEVICE_ID, connection);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean mapsAddRemove() {
+        int i = ThreadLocalRandom.current().nextInt(CONNECTIONS);
+        Object connection = new Object();
+        mapRegistry.add(userIds[i], CHURN_DEVICE_ID, connection);
+        return mapRegistry.remove(connection);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options =
+                new OptionsBuilder()
+                        .include(ConnectionRegistryBenchmark.class.getSimpleName())
+                        .build();
+        new Runner(options).run();
+    }
+
+    // The maps DefaultOnlineUser kept before the registry, kept as the baseline
+    static class MapRegistry {
+        private record Key(String userId, String deviceId) {}
+
+        private final Map<Key, Object> userChannelMap = new ConcurrentHashMap<>();
+        private final Map<Object, Key> channelUserMap = new ConcurrentHashMap<>();
+
+        void add(String userId, String deviceId, Object channel) {
+            Key key = new Key(userId, deviceId);
+            userChannelMap.put(key, channel);
+            channelUserMap.put(channel, key);
+        }
+
+        Object get(String userId, String deviceId) {
+            return userChannelMap.get(new Key(userId, deviceId));
+        }
+
+        boolean remove(Object channel) {
+            Key key = channelUserMap.remove(channel);
+            return key != null && userChannelMap.remove(key) != null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.fanaujie.ripple.msggateway.server.users;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionRegistryTest {
+
+    @Test
+    void testPut_DevicesOfOneUserAreKeptApart() {
+        ConnectionRegistry<String> registry = new ConnectionRegistry<>(4);
+
+        assertNull(registry.put(1001L, "phone", "c1"));
+        assertNull(registry.put(1001L, "laptop", "c2"));
+
+        assertEquals("c1", registry.get(1001L, "phone"));
+        assertEquals("c2", registry.get(1001L, "laptop"));
+        assertNull(registry.get(1001L, "tablet"));
+        assertNull(registry.get(1002L, "phone"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void testRemove_ReplacedConnectionIsKept() {
+        ConnectionRegistry<String> registry = new ConnectionRegistry<>(4);
+        registry.put(1001L, "phone", "old");
+
+        assertEquals("old", registry.put(1001L, "phone", "new"));
+        assertFalse(registry.remove(1001L, "phone", "old"));
+        assertEquals("new", registry.get(1001L, "phone"));
+
+        assertTrue(registry.remove(1001L, "phone", "new"));
+        assertNull(registry.get(1001L, "phone"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testRemove_ManyUsersStayReachable() {
+        ConnectionRegistry<Object> registry = new ConnectionRegistry<>(2);
+        Object[] connections = new Object[10_000];
+        for (int userId = 0; userId < connections.length; userId++) {
+            connections[userId] = new Object();
+            registry.put(userId, "d", connections[userId]);
+        }
+        // Removing every other user shifts the probe chains of the rest
+        for (int userId = 0; userId < connections.length; userId += 2) {
+            assertTrue(registry.remove(userId, "d", connections[userId]));
+        }
+
+        assertEquals(connections.length / 2, registry.size());
+        for (int userId = 0; userId < connections.length; userId++) {
+            assertEquals(
+                    userId % 2 == 0 ? null : connections[userId], registry.get(userId, "d"));
+        }
+    }
+
+    @Test
+    void testConstructor_ShardCountMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionRegistry<>(3));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionRegistry<>(0));
+    }
+}
@@ -0,0 +1,77 @@
+package com.fanaujie.ripple.msggateway.server.users;
+
+import com.fanaujie.ripple.communication.batch.BatchExecutorService;
+import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchTask;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DefaultOnlineUserTest {
+
+    private BatchExecutorService<UserOnlineBatchTask> batchExecutorService;
+    private DefaultOnlineUser onlineUser;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        batchExecutorService = mock(BatchExecutorService.class);
+        onlineUser = new DefaultOnlineUser(10103, batchExecutorService);
+    }
+
+    @Test
+    void testRemove_ReportsOfflineOnce() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        onlineUser.add("1001", "phone", channel);
+        assertEquals(Optional.of(channel), onlineUser.get("1001", "phone"));
+
+        onlineUser.remove(channel);
+        onlineUser.remove(channel);
+
+        assertEquals(Optional.empty(), onlineUser.get("1001", "phone"));
+        ArgumentCaptor<UserOnlineBatchTask> tasks =
+                ArgumentCaptor.forClass(UserOnlineBatchTask.class);
+        verify(batchExecutorService, times(2)).push(tasks.capture());
+        assertTrue(tasks.getAllValues().get(0).isOnline());
+        assertFalse(tasks.getAllValues().get(1).isOnline());
+    }
+
+    @Test
+    void testRemove_ReconnectedDeviceStaysOnline() throws Exception {
+        EmbeddedChannel oldChannel = new EmbeddedChannel();
+        EmbeddedChannel newChannel = new EmbeddedChannel();
+        onlineUser.add("1001", "phone", oldChannel);
+        onlineUser.add("1001", "phone", newChannel);
+
+        onlineUser.remove(oldChannel);
+
+        assertEquals(Optional.of(newChannel), onlineUser.get("1001", "phone"));
+        verify(batchExecutorService, times(2)).push(any());
+    }
+
+    @Test
+    void testRemoveAll_SkipsUnregisteredChannels() throws Exception {
+        EmbeddedChannel phone = new EmbeddedChannel();
+        EmbeddedChannel laptop = new EmbeddedChannel();
+        onlineUser.add("1001", "phone", phone);
+        onlineUser.add("1002", "laptop", laptop);
+        onlineUser.remove(laptop);
+
+        onlineUser.removeAll(List.of(phone, laptop, new EmbeddedChannel()));
+
+        assertEquals(Optional.empty(), onlineUser.get("1001", "phone"));
+        verify(batchExecutorService).push(new UserOnlineBatchTask("1001", "phone", false, ""));
+        verify(batchExecutorService, times(4)).push(any());
+    }
+
+    @Test
+    void testGet_MalformedUserIdIsNotOnline() {
+        assertEquals(Optional.empty(), onlineUser.get("not-a-number", "phone"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.fanaujie.ripple.msggateway.server.users;
+
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.msggateway.FanoutPushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.PushTarget;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultUserNotifierTest {
+
+    @Test
+    void testPushFanout_EachTargetReceivesItsOwnFields() throws Exception {
+        DefaultUserNotifier notifier = new DefaultUserNotifier();
+        FanoutPushMessageRequest request =
+                FanoutPushMessageRequest.newBuilder()
+                        .setSendUserId("1001")
+                        .setMessageData(
+                                SendMessageReq.newBuilder()
+                                        .setConversationId("g_2001")
+                                        .setMessageId(1L)
+                                        .build())
+                        .build();
+        Map<PushTarget, Channel> targets = new LinkedHashMap<>();
+        for (String userId : List.of("1002", "1003")) {
+            targets.put(
+                    PushTarget.newBuilder()
+                            .setReceiveUserId(userId)
+                            .setReceiveDeviceId("device-" + userId)
+                            .setUnreadCount(Integer.parseInt(userId) - 1000)
+                            .build(),
+                    new EmbeddedChannel());
+        }
+
+        notifier.pushFanout(request, targets);
+
+        for (Map.Entry<PushTarget, Channel> entry : targets.entrySet()) {
+            BinaryWebSocketFrame frame = ((EmbeddedChannel) entry.getValue()).readOutbound();
+            try {
+                var pushRequest = WsMessageCodec.decode(frame.content()).getPushMessageRequest();
+                assertEquals("1001", pushRequest.getSendUserId());
+                assertEquals(entry.getKey().getReceiveUserId(), pushRequest.getReceiveUserId());
+                assertEquals(
+                        entry.getKey().getReceiveDeviceId(), pushRequest.getReceiveDeviceId());
+                assertEquals(
+                        entry.getKey().getUnreadCount(),
+                        pushRequest.getMessagePayload().getUnreadCount());
+                assertEquals(
+                        request.getMessageData(), pushRequest.getMessagePayload().getMessageData());
+            } finally {
+                frame.release();
+            }
+        }
+    }
+}
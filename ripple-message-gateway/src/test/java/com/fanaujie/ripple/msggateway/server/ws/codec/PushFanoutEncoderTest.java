@@ -0,0 +1,111 @@
+package com.fanaujie.ripple.msggateway.server.ws.codec;
+
+import com.fanaujie.ripple.protobuf.msggateway.FanoutPushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessagePayload;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessageType;
+import com.fanaujie.ripple.protobuf.msggateway.PushTarget;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.msgapiserver.SingleMessageContent;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBufUtil;
+import com.fanaujie.ripple.shaded.io.netty.buffer.PooledByteBufAllocator;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PushFanoutEncoderTest {
+
+    private static final FanoutPushMessageRequest REQUEST =
+            FanoutPushMessageRequest.newBuilder()
+                    .setSendUserId("1001")
+                    .setMessageType(PushMessageType.PUSH_MESSAGE_TYPE_GROUP)
+                    .setMessageData(
+                            SendMessageReq.newBuilder()
+                                    .setSenderId(1001)
+                                    .setConversationId("g_2001")
+                                    .setGroupId(2001)
+                                    .setMessageId(123456789L)
+                                    .setSendTimestamp(1735689600L)
+                                    .setSingleMessageContent(
+                                            SingleMessageContent.newBuilder()
+                                                    .setText("x".repeat(300))
+                                                    .build())
+                                    .build())
+                    .build();
+
+    @Test
+    void testEncode_MatchesRegularSerialization() throws Exception {
+        assertSpliced(REQUEST, target("1002", "device-a", 3));
+        assertSpliced(REQUEST, target("1003", "device-b", 200));
+    }
+
+    @Test
+    void testEncode_DefaultValuesAreLeftOut() throws Exception {
+        // A zero unread count, empty ids and the default message type aren't on the wire
+        FanoutPushMessageRequest request =
+                REQUEST.toBuilder()
+                        .clearSendUserId()
+                        .setMessageType(PushMessageType.PUSH_MESSAGE_TYPE_UNSPECIFIED)
+                        .build();
+        assertSpliced(request, target("1002", "", 0));
+    }
+
+    @Test
+    void testClose_FramesOutliveTheEncoder() throws Exception {
+        BinaryWebSocketFrame frame;
+        try (PushFanoutEncoder encoder =
+                new PushFanoutEncoder(PooledByteBufAllocator.DEFAULT, REQUEST)) {
+            frame = encoder.encode(target("1002", "device-a", 1));
+        }
+        try {
+            assertEquals(
+                    expected(REQUEST, target("1002", "device-a", 1)),
+                    WsMessageCodec.decode(frame.content()));
+        } finally {
+            assertTrue(frame.release());
+        }
+    }
+
+    private static void assertSpliced(FanoutPushMessageRequest request, PushTarget target)
+            throws Exception {
+        WsMessage expected = expected(request, target);
+        try (PushFanoutEncoder encoder =
+                new PushFanoutEncoder(PooledByteBufAllocator.DEFAULT, request)) {
+            BinaryWebSocketFrame frame = encoder.encode(target);
+            try {
+                assertArrayEquals(
+                        expected.toByteArray(), ByteBufUtil.getBytes(frame.content()));
+                assertEquals(expected, WsMessageCodec.decode(frame.content()));
+            } finally {
+                frame.release();
+            }
+        }
+    }
+
+    private static WsMessage expected(FanoutPushMessageRequest request, PushTarget target) {
+        return WsMessage.newBuilder()
+                .setPushMessageRequest(
+                        PushMessageRequest.newBuilder()
+                                .setSendUserId(request.getSendUserId())
+                                .setReceiveUserId(target.getReceiveUserId())
+                                .setReceiveDeviceId(target.getReceiveDeviceId())
+                                .setMessagePayload(
+                                        PushMessagePayload.newBuilder()
+                                                .setMessageType(request.getMessageType())
+                                                .setMessageData(request.getMessageData())
+                                                .setUnreadCount(target.getUnreadCount())
+                                                .build())
+                                .build())
+                .build();
+    }
+
+    private static PushTarget target(String userId, String deviceId, int unreadCount) {
+        return PushTarget.newBuilder()
+                .setReceiveUserId(userId)
+                .setReceiveDeviceId(deviceId)
+                .setUnreadCount(unreadCount)
+                .build();
+    }
+}
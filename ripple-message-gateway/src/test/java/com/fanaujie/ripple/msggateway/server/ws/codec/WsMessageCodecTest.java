@@ -0,0 +1,62 @@
+package com.fanaujie.ripple.msggateway.server.ws.codec;
+
+import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatRequest;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.buffer.ByteBuf;
+import com.fanaujie.ripple.shaded.io.netty.buffer.CompositeByteBuf;
+import com.fanaujie.ripple.shaded.io.netty.buffer.PooledByteBufAllocator;
+import com.fanaujie.ripple.shaded.io.netty.buffer.Unpooled;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WsMessageCodecTest {
+
+    private static final WsMessage HEARTBEAT =
+            WsMessage.newBuilder()
+                    .setHeartbeatRequest(
+                            HeartbeatRequest.newBuilder()
+                                    .setUserId("1001")
+                                    .setTimestamp(1735689600L)
+                                    .build())
+                    .build();
+
+    @Test
+    void testEncode_WritesExactlySerializedSizeIntoDirectBuffer() {
+        BinaryWebSocketFrame frame = WsMessageCodec.encode(PooledByteBufAllocator.DEFAULT, HEARTBEAT);
+        try {
+            ByteBuf content = frame.content();
+            assertTrue(content.isDirect());
+            assertEquals(HEARTBEAT.getSerializedSize(), content.readableBytes());
+            assertEquals(HEARTBEAT.getSerializedSize(), content.capacity());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void testDecode_RoundTrip() throws Exception {
+        BinaryWebSocketFrame frame = WsMessageCodec.encode(PooledByteBufAllocator.DEFAULT, HEARTBEAT);
+        try {
+            assertEquals(HEARTBEAT, WsMessageCodec.decode(frame.content()));
+            // Decoding doesn't consume the frame
+            assertEquals(HEARTBEAT.getSerializedSize(), frame.content().readableBytes());
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void testDecode_CompositeBuffer() throws Exception {
+        byte[] bytes = HEARTBEAT.toByteArray();
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(bytes, 0, 3));
+        composite.addComponent(true, Unpooled.wrappedBuffer(bytes, 3, bytes.length - 3));
+        try {
+            assertEquals(HEARTBEAT, WsMessageCodec.decode(composite));
+        } finally {
+            composite.release();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.fanaujie.ripple.msggateway.server.ws.delivery;
+
+import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatRequest;
+import com.fanaujie.ripple.protobuf.wsmessage.PushMessageAck;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryTrackerTest {
+
+    private static final long ACK_TIMEOUT_MS = 1000;
+
+    private static EmbeddedChannel channel(int maxPendingDeliveries) {
+        EmbeddedChannel channel =
+                new EmbeddedChannel(new DeliveryAckHandler(maxPendingDeliveries, ACK_TIMEOUT_MS));
+        channel.freezeTime();
+        return channel;
+    }
+
+    private static void ack(EmbeddedChannel channel, Long... messageIds) {
+        channel.writeInbound(
+                WsMessage.newBuilder()
+                        .setPushMessageAck(
+                                PushMessageAck.newBuilder().addAllMessageIds(List.of(messageIds)))
+                        .build());
+    }
+
+    private static CompletableFuture<Boolean> track(EmbeddedChannel channel, long messageId) {
+        return DeliveryTracker.track(channel, messageId, channel::newSucceededFuture).delivered();
+    }
+
+    @Test
+    void testTrack_ClientWithoutAcksIsDeliveredOnWrite() {
+        EmbeddedChannel channel = channel(4);
+
+        assertTrue(track(channel, 1L).join());
+        assertFalse(
+                DeliveryTracker.track(
+                                channel,
+                                2L,
+                                () -> channel.newFailedFuture(new IllegalStateException()))
+                        .delivered()
+                        .join());
+    }
+
+    @Test
+    void testTrack_DeliveredOnAck() {
+        EmbeddedChannel channel = channel(4);
+        ack(channel);
+
+        CompletableFuture<Boolean> first = track(channel, 1L);
+        CompletableFuture<Boolean> second = track(channel, 2L);
+        assertFalse(first.isDone());
+
+        ack(channel, 1L);
+        assertTrue(first.join());
+        assertFalse(second.isDone());
+        assertEquals(1, channel.attr(DeliveryTracker.KEY).get().pendingCount());
+    }
+
+    @Test
+    void testTrack_WrittenBeforeTheAck() {
+        EmbeddedChannel channel = channel(4);
+        ack(channel);
+
+        PushDelivery delivery = DeliveryTracker.track(channel, 1L, channel::newSucceededFuture);
+
+        assertTrue(delivery.written().join());
+        assertFalse(delivery.delivered().isDone());
+        ack(channel, 1L);
+        assertTrue(delivery.delivered().join());
+    }
+
+    @Test
+    void testTrack_UndeliveredAfterAckTimeout() {
+        EmbeddedChannel channel = channel(4);
+        ack(channel);
+
+        CompletableFuture<Boolean> delivered = track(channel, 1L);
+        channel.advanceTimeBy(ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        channel.runScheduledPendingTasks();
+
+        assertFalse(delivered.join());
+        // A late ack is ignored
+        ack(channel, 1L);
+        assertEquals(0, channel.attr(DeliveryTracker.KEY).get().pendingCount());
+    }
+
+    @Test
+    void testTrack_FullWindowIsNotWritten() {
+        EmbeddedChannel channel = channel(1);
+        ack(channel);
+
+        CompletableFuture<Boolean> first = track(channel, 1L);
+        AtomicBoolean written = new AtomicBoolean();
+        CompletableFuture<Boolean> refused =
+                DeliveryTracker.track(
+                                channel,
+                                2L,
+                                () -> {
+                                    written.set(true);
+                                    return channel.newSucceededFuture();
+                                })
+                        .delivered();
+        assertFalse(refused.join());
+        assertFalse(written.get());
+
+        // The slot is free again once the first push was acked
+        ack(channel, 1L);
+        assertTrue(first.join());
+        CompletableFuture<Boolean> next = track(channel, 3L);
+        ack(channel, 3L);
+        assertTrue(next.join());
+    }
+
+    @Test
+    void testTrack_FailedWritesAreUndelivered() {
+        EmbeddedChannel channel = channel(1);
+        ack(channel);
+
+        assertFalse(
+                DeliveryTracker.track(
+                                channel,
+                                1L,
+                                () -> channel.newFailedFuture(new IllegalStateException()))
+                        .delivered()
+                        .join());
+        // A failed write frees its slot
+        CompletableFuture<Boolean> next = track(channel, 2L);
+        ack(channel, 2L);
+        assertTrue(next.join());
+    }
+
+    @Test
+    void testTrack_RedeliveryFollowsPendingDelivery() {
+        EmbeddedChannel channel = channel(4);
+        ack(channel);
+
+        CompletableFuture<Boolean> first = track(channel, 1L);
+        CompletableFuture<Boolean> redelivery = track(channel, 1L);
+        ack(channel, 1L);
+
+        assertTrue(first.join());
+        assertTrue(redelivery.join());
+    }
+
+    @Test
+    void testClose_PendingDeliveriesAreUndelivered() {
+        EmbeddedChannel channel = channel(4);
+        ack(channel);
+
+        CompletableFuture<Boolean> delivered = track(channel, 1L);
+        channel.close();
+
+        assertFalse(delivered.join());
+        assertFalse(track(channel, 2L).join());
+    }
+
+    @Test
+    void testChannelRead_OtherMessagesArePassedOn() {
+        EmbeddedChannel channel = channel(4);
+        WsMessage heartbeat =
+                WsMessage.newBuilder()
+                        .setHeartbeatRequest(HeartbeatRequest.newBuilder().setUserId("1001"))
+                        .build();
+
+        channel.writeInbound(heartbeat);
+
+        assertEquals(heartbeat, channel.readInbound());
+    }
+}
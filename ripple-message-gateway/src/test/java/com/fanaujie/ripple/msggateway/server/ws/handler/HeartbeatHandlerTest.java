@@ -0,0 +1,92 @@
+package com.fanaujie.ripple.msggateway.server.ws.handler;
+
+import com.fanaujie.ripple.communication.batch.BatchExecutorService;
+import com.fanaujie.ripple.msggateway.batch.UserOnlineBatchTask;
+import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatRequest;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.DefaultHttpHeaders;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class HeartbeatHandlerTest {
+
+    private static final AttributeKey<String> DEVICE_ID_KEY = AttributeKey.valueOf("deviceId");
+    private static final int PRESENCE_TTL_SECONDS = 20;
+    private static final int REFRESH_THRESHOLD_SECONDS = 5;
+
+    private BatchExecutorService<UserOnlineBatchTask> batchExecutorService;
+    private AtomicLong nanoClock;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        batchExecutorService = mock(BatchExecutorService.class);
+        nanoClock = new AtomicLong();
+        channel =
+                new EmbeddedChannel(
+                        new HeartbeatHandler(
+                                batchExecutorService,
+                                "10.0.0.1:10103",
+                                PRESENCE_TTL_SECONDS,
+                                REFRESH_THRESHOLD_SECONDS,
+                                nanoClock::get));
+        channel.attr(DEVICE_ID_KEY).set("phone");
+    }
+
+    private void heartbeatAfterSeconds(long seconds) {
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+        channel.writeInbound(
+                WsMessage.newBuilder()
+                        .setHeartbeatRequest(HeartbeatRequest.newBuilder().setUserId("1001"))
+                        .build());
+        assertNotNull(channel.readOutbound());
+    }
+
+    @Test
+    void testHeartbeat_RefreshesOnlyWhenPresenceIsAboutToExpire() throws Exception {
+        channel.pipeline()
+                .fireUserEventTriggered(
+                        new WebSocketServerProtocolHandler.HandshakeComplete(
+                                "/ws", new DefaultHttpHeaders(), null));
+
+        heartbeatAfterSeconds(10);
+        heartbeatAfterSeconds(4);
+        verify(batchExecutorService, never()).push(any());
+
+        heartbeatAfterSeconds(1);
+        verify(batchExecutorService)
+                .push(new UserOnlineBatchTask("1001", "phone", true, "10.0.0.1:10103"));
+
+        heartbeatAfterSeconds(10);
+        verify(batchExecutorService, times(1)).push(any());
+    }
+
+    @Test
+    void testHeartbeat_WithoutHandshakeStampRefreshesFirst() throws Exception {
+        heartbeatAfterSeconds(1);
+        heartbeatAfterSeconds(1);
+
+        verify(batchExecutorService, times(1)).push(any());
+    }
+
+    @Test
+    void testConstructor_ThresholdMustFitTtl() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HeartbeatHandler(batchExecutorService, "gw", 20, 21));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new HeartbeatHandler(batchExecutorService, "gw", 20, 0));
+    }
+}
@@ -0,0 +1,149 @@
+package com.fanaujie.ripple.msggateway.server.ws.handler;
+
+import com.fanaujie.ripple.communication.msgapi.AsyncMessageAPISender;
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageResp;
+import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
+import com.fanaujie.ripple.protobuf.wsmessage.ClientSendMessageAck;
+import com.fanaujie.ripple.protobuf.wsmessage.ClientSendMessageRequest;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import com.fanaujie.ripple.shaded.io.netty.util.AttributeKey;
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIdClient;
+import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SendMessageHandlerTest {
+
+    private static final AttributeKey<String> USER_ID_KEY = AttributeKey.valueOf("userId");
+
+    private SnowflakeIdClient snowflakeIdClient;
+    private AsyncMessageAPISender messageAPISender;
+
+    @BeforeEach
+    void setUp() {
+        snowflakeIdClient = mock(SnowflakeIdClient.class);
+        messageAPISender = mock(AsyncMessageAPISender.class);
+        when(snowflakeIdClient.requestSnowflakeId())
+                .thenReturn(
+                        CompletableFuture.completedFuture(
+                                GenerateIdResponse.newBuilder().setId(42L).build()));
+    }
+
+    private EmbeddedChannel channel(int maxInFlight) {
+        EmbeddedChannel channel =
+                new EmbeddedChannel(
+                        new SendMessageHandler(snowflakeIdClient, messageAPISender, maxInFlight));
+        channel.attr(USER_ID_KEY).set("1001");
+        return channel;
+    }
+
+    private static WsMessage sendRequest(String clientMessageId, long receiverId, long groupId) {
+        return WsMessage.newBuilder()
+                .setClientSendMessageRequest(
+                        ClientSendMessageRequest.newBuilder()
+                                .setClientMessageId(clientMessageId)
+                                .setReceiverId(receiverId)
+                                .setGroupId(groupId)
+                                .setText("hello")
+                                .build())
+                .build();
+    }
+
+    private static ClientSendMessageAck readAck(EmbeddedChannel channel) throws Exception {
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        assertNotNull(frame);
+        try {
+            WsMessage message = WsMessageCodec.decode(frame.content());
+            assertTrue(message.hasClientSendMessageAck());
+            return message.getClientSendMessageAck();
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    void testSend_AcknowledgedWithMessageId() throws Exception {
+        when(messageAPISender.sendMessage(any()))
+                .thenReturn(
+                        CompletableFuture.completedFuture(SendMessageResp.getDefaultInstance()));
+        EmbeddedChannel channel = channel(4);
+
+        channel.writeInbound(sendRequest("c-1", 2002L, 0L));
+
+        ArgumentCaptor<SendMessageReq> captor = ArgumentCaptor.forClass(SendMessageReq.class);
+        verify(messageAPISender).sendMessage(captor.capture());
+        SendMessageReq sent = captor.getValue();
+        assertEquals(42L, sent.getMessageId());
+        assertEquals(1001L, sent.getSenderId());
+        assertEquals(2002L, sent.getReceiverId());
+        assertEquals(
+                ConversationUtils.generateConversationId(1001L, 2002L), sent.getConversationId());
+        assertEquals("hello", sent.getSingleMessageContent().getText());
+
+        ClientSendMessageAck ack = readAck(channel);
+        assertTrue(ack.getIsSuccess());
+        assertEquals("c-1", ack.getClientMessageId());
+        assertEquals(42L, ack.getMessageId());
+        assertEquals(sent.getConversationId(), ack.getConversationId());
+        assertEquals(sent.getSendTimestamp(), ack.getSendTimestamp());
+    }
+
+    @Test
+    void testSend_InvalidRequestIsRejected() throws Exception {
+        EmbeddedChannel channel = channel(4);
+
+        channel.writeInbound(sendRequest("c-1", 2002L, 3003L));
+
+        ClientSendMessageAck ack = readAck(channel);
+        assertFalse(ack.getIsSuccess());
+        assertEquals("c-1", ack.getClientMessageId());
+        verifyNoInteractions(snowflakeIdClient, messageAPISender);
+    }
+
+    @Test
+    void testSend_MessageApiFailureIsAcknowledged() throws Exception {
+        when(messageAPISender.sendMessage(any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("unavailable")));
+        EmbeddedChannel channel = channel(4);
+
+        channel.writeInbound(sendRequest("c-1", 0L, 3003L));
+
+        ClientSendMessageAck ack = readAck(channel);
+        assertFalse(ack.getIsSuccess());
+        assertEquals("c-1", ack.getClientMessageId());
+    }
+
+    @Test
+    void testSend_InFlightLimitRejectsFurtherSends() throws Exception {
+        CompletableFuture<SendMessageResp> pending = new CompletableFuture<>();
+        when(messageAPISender.sendMessage(any())).thenReturn(pending);
+        EmbeddedChannel channel = channel(1);
+
+        channel.writeInbound(sendRequest("c-1", 2002L, 0L));
+        channel.writeInbound(sendRequest("c-2", 2002L, 0L));
+
+        ClientSendMessageAck rejected = readAck(channel);
+        assertFalse(rejected.getIsSuccess());
+        assertEquals("c-2", rejected.getClientMessageId());
+
+        pending.complete(SendMessageResp.getDefaultInstance());
+        ClientSendMessageAck accepted = readAck(channel);
+        assertTrue(accepted.getIsSuccess());
+        assertEquals("c-1", accepted.getClientMessageId());
+
+        // The completed send frees its slot
+        channel.writeInbound(sendRequest("c-3", 2002L, 0L));
+        assertTrue(readAck(channel).getIsSuccess());
+    }
+}
@@ -0,0 +1,140 @@
+package com.fanaujie.ripple.msggateway.server.ws.handler;
+
+import com.fanaujie.ripple.msggateway.exception.WsJwtDecodedException;
+import com.fanaujie.ripple.msggateway.server.jwt.JwtDecoder;
+import com.fanaujie.ripple.msggateway.server.uitls.HttpHeader;
+import com.fanaujie.ripple.msggateway.server.users.OnlineUser;
+import com.fanaujie.ripple.msggateway.server.ws.codec.WsMessageCodec;
+import com.fanaujie.ripple.protobuf.wsmessage.HeartbeatRequest;
+import com.fanaujie.ripple.protobuf.wsmessage.WsMessage;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.DefaultHttpHeaders;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.FullHttpResponse;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpHeaders;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.HttpResponseStatus;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class WebSocketRouterHandlerTest {
+
+    private JwtDecoder jwtDecoder;
+    private OnlineUser onlineUser;
+    private List<Runnable> authTasks;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        jwtDecoder = mock(JwtDecoder.class);
+        onlineUser = mock(OnlineUser.class);
+        authTasks = new ArrayList<>();
+        Executor authExecutor = authTasks::add;
+        channel =
+                new EmbeddedChannel(
+                        new WebSocketRouterHandler(jwtDecoder, onlineUser, authExecutor));
+    }
+
+    private void completeHandshake() {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.set(HttpHeader.HEADER_AUTHORIZATION, "Bearer token");
+        headers.set(HttpHeader.HEADER_RIPPLE_DEVICE_ID, "phone");
+        channel.pipeline()
+                .fireUserEventTriggered(
+                        new WebSocketServerProtocolHandler.HandshakeComplete("/ws", headers, null));
+    }
+
+    private BinaryWebSocketFrame heartbeatFrame() {
+        WsMessage message =
+                WsMessage.newBuilder()
+                        .setHeartbeatRequest(HeartbeatRequest.newBuilder().setUserId("1001"))
+                        .build();
+        return WsMessageCodec.encode(channel.alloc(), message);
+    }
+
+    private void runAuthentication() {
+        assertEquals(1, authTasks.size());
+        authTasks.remove(0).run();
+        channel.runPendingTasks();
+    }
+
+    @Test
+    void testHandshake_TokenIsVerifiedOffTheEventLoop() throws Exception {
+        when(jwtDecoder.decodeJwtClaims("token"))
+                .thenReturn(new JwtDecoder.DecodedJwtClaims("1001", 0));
+
+        completeHandshake();
+        assertFalse(channel.config().isAutoRead());
+        verify(jwtDecoder, never()).decodeJwtClaims(anyString());
+
+        runAuthentication();
+        verify(onlineUser).add("1001", "phone", channel);
+        assertTrue(channel.config().isAutoRead());
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    void testHandshake_InvalidTokenIsRejected() throws Exception {
+        when(jwtDecoder.decodeJwtClaims("token")).thenThrow(new WsJwtDecodedException("invalid"));
+
+        completeHandshake();
+        runAuthentication();
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.UNAUTHORIZED, response.status());
+        response.release();
+        assertFalse(channel.isOpen());
+        verify(onlineUser, never()).add(anyString(), anyString(), any());
+    }
+
+    @Test
+    void testHandshake_FramesBeforeAuthenticationAreHeldBack() throws Exception {
+        when(jwtDecoder.decodeJwtClaims("token"))
+                .thenReturn(new JwtDecoder.DecodedJwtClaims("1001", 0));
+        completeHandshake();
+
+        BinaryWebSocketFrame frame = heartbeatFrame();
+        channel.writeInbound(frame);
+        assertNull(channel.readInbound());
+
+        runAuthentication();
+        WsMessage message = channel.readInbound();
+        assertEquals("1001", message.getHeartbeatRequest().getUserId());
+        assertEquals(0, frame.refCnt());
+    }
+
+    @Test
+    void testHandshake_FramesBeforeFailedAuthenticationAreDropped() throws Exception {
+        when(jwtDecoder.decodeJwtClaims("token")).thenThrow(new WsJwtDecodedException("invalid"));
+        completeHandshake();
+
+        BinaryWebSocketFrame frame = heartbeatFrame();
+        channel.writeInbound(frame);
+        runAuthentication();
+
+        assertNull(channel.readInbound());
+        assertEquals(0, frame.refCnt());
+        ((FullHttpResponse) channel.readOutbound()).release();
+    }
+
+    @Test
+    void testHandshake_TooManyFramesBeforeAuthenticationCloseTheConnection() {
+        completeHandshake();
+
+        for (int i = 0; i <= WebSocketRouterHandler.MAX_PENDING_FRAMES; i++) {
+            channel.writeInbound(heartbeatFrame());
+        }
+
+        assertFalse(channel.isOpen());
+        assertNull(channel.readInbound());
+    }
+}
@@ -0,0 +1,68 @@
+package com.fanaujie.ripple.msggateway.server.ws.idle;
+
+import com.fanaujie.ripple.msggateway.server.users.OnlineUser;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdleConnectionHandlerTest {
+
+    private static final int IDLE_SECONDS = 3;
+
+    private OnlineUser onlineUser;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        onlineUser = mock(OnlineUser.class);
+        channel = new EmbeddedChannel(new IdleConnectionHandler(IDLE_SECONDS, onlineUser));
+        channel.freezeTime();
+    }
+
+    private void advanceSeconds(int seconds) {
+        for (int i = 0; i < seconds; i++) {
+            channel.advanceTimeBy(1, TimeUnit.SECONDS);
+            channel.runScheduledPendingTasks();
+        }
+    }
+
+    @Test
+    void testIdleChannelIsTakenOfflineAndClosed() {
+        advanceSeconds(IDLE_SECONDS);
+        assertTrue(channel.isOpen());
+
+        advanceSeconds(1);
+        verify(onlineUser).removeAll(List.of(channel));
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void testReadsKeepChannelOpen() {
+        for (int i = 0; i < 4; i++) {
+            advanceSeconds(IDLE_SECONDS);
+            channel.writeInbound("frame");
+            assertEquals("frame", channel.readInbound());
+        }
+
+        assertTrue(channel.isOpen());
+        verify(onlineUser, never()).removeAll(any());
+
+        advanceSeconds(IDLE_SECONDS + 1);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void testClosedChannelIsNotExpired() {
+        channel.close();
+
+        advanceSeconds(IDLE_SECONDS * 2);
+        verify(onlineUser, never()).removeAll(any());
+    }
+}
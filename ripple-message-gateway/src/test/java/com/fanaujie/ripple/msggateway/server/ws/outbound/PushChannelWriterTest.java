@@ -0,0 +1,198 @@
+package com.fanaujie.ripple.msggateway.server.ws.outbound;
+
+import com.fanaujie.ripple.shaded.io.netty.bootstrap.Bootstrap;
+import com.fanaujie.ripple.shaded.io.netty.bootstrap.ServerBootstrap;
+import com.fanaujie.ripple.shaded.io.netty.buffer.Unpooled;
+import com.fanaujie.ripple.shaded.io.netty.channel.Channel;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelFuture;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelInboundHandlerAdapter;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelInitializer;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelOption;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelOutboundHandlerAdapter;
+import com.fanaujie.ripple.shaded.io.netty.channel.DefaultEventLoopGroup;
+import com.fanaujie.ripple.shaded.io.netty.channel.EventLoopGroup;
+import com.fanaujie.ripple.shaded.io.netty.channel.WriteBufferWaterMark;
+import com.fanaujie.ripple.shaded.io.netty.channel.local.LocalAddress;
+import com.fanaujie.ripple.shaded.io.netty.channel.local.LocalChannel;
+import com.fanaujie.ripple.shaded.io.netty.channel.local.LocalServerChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PushChannelWriterTest {
+
+    private static final PushOutboundMetrics METRICS = new PushOutboundMetrics();
+
+    private EventLoopGroup group;
+    private LocalAddress address;
+    private final BlockingQueue<Integer> received = new LinkedBlockingQueue<>();
+    private final AtomicInteger flushes = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        address = new LocalAddress("push-channel-writer-" + UUID.randomUUID());
+        new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(
+                        new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                BinaryWebSocketFrame frame = (BinaryWebSocketFrame) msg;
+                                received.add(frame.content().getInt(0));
+                                frame.release();
+                            }
+                        })
+                .bind(address)
+                .sync();
+    }
+
+    @AfterEach
+    void tearDown() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private Channel connect(int maxPendingFrames, WriteBufferWaterMark waterMark)
+            throws Exception {
+        return new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark)
+                .handler(
+                        new ChannelInitializer<LocalChannel>() {
+                            @Override
+                            protected void initChannel(LocalChannel ch) {
+                                ch.pipeline()
+                                        .addLast(
+                                                new ChannelOutboundHandlerAdapter() {
+                                                    @Override
+                                                    public void flush(ChannelHandlerContext ctx) {
+                                                        flushes.incrementAndGet();
+                                                        ctx.flush();
+                                                    }
+                                                },
+                                                new PushOutboundHandler(
+                                                        maxPendingFrames, METRICS));
+                            }
+                        })
+                .connect(address)
+                .sync()
+                .channel();
+    }
+
+    private static BinaryWebSocketFrame frame(int id, int size) {
+        return new BinaryWebSocketFrame(Unpooled.buffer(size).writeInt(id).writerIndex(size));
+    }
+
+    private List<Integer> receive(int count) throws InterruptedException {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Integer id = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(id, "Timed out waiting for frame " + i);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Test
+    void testWrite_BurstIsFlushedOnce() throws Exception {
+        Channel channel = connect(16, WriteBufferWaterMark.DEFAULT);
+        flushes.set(0);
+
+        // A burst from one event loop task, as a fan-out over channels sharing the loop
+        channel.eventLoop()
+                .submit(
+                        () -> {
+                            for (int i = 0; i < 10; i++) {
+                                PushChannelWriter.write(channel, frame(i, 8));
+                            }
+                        })
+                .sync();
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), receive(10));
+        assertEquals(1, flushes.get());
+    }
+
+    @Test
+    void testWrite_LongBurstIsFlushedEveryMaxWrites() throws Exception {
+        Channel channel = connect(16, WriteBufferWaterMark.DEFAULT);
+        flushes.set(0);
+        int count = PushChannelWriter.MAX_WRITES_BEFORE_FLUSH + 1;
+
+        channel.eventLoop()
+                .submit(
+                        () -> {
+                            for (int i = 0; i < count; i++) {
+                                PushChannelWriter.write(channel, frame(i, 8));
+                            }
+                        })
+                .sync();
+
+        assertEquals(count, receive(count).size());
+        assertEquals(2, flushes.get());
+    }
+
+    @Test
+    void testWrite_UnwritableChannelQueuesBoundedAndDropsOldest() throws Exception {
+        Channel channel = connect(2, new WriteBufferWaterMark(16, 32));
+        List<ChannelFuture> futures = new ArrayList<>();
+
+        channel.eventLoop()
+                .submit(
+                        () -> {
+                            // The unflushed first frame pushes the channel above its high water
+                            // mark, the rest wait until the flush makes it writable again
+                            futures.add(PushChannelWriter.write(channel, frame(0, 64)));
+                            assertFalse(channel.isWritable());
+                            for (int i = 1; i <= 3; i++) {
+                                futures.add(PushChannelWriter.write(channel, frame(i, 8)));
+                            }
+                        })
+                .sync();
+
+        assertEquals(List.of(0, 2, 3), receive(3));
+        for (ChannelFuture future : futures) {
+            future.await(5, TimeUnit.SECONDS);
+        }
+        assertTrue(futures.get(0).isSuccess());
+        assertInstanceOf(IllegalStateException.class, futures.get(1).cause());
+        assertTrue(futures.get(2).isSuccess());
+        assertTrue(futures.get(3).isSuccess());
+    }
+
+    @Test
+    void testClose_ReleasesQueuedFrames() throws Exception {
+        Channel channel = connect(4, new WriteBufferWaterMark(16, 32));
+        BinaryWebSocketFrame queued = frame(1, 8);
+        List<ChannelFuture> futures = new ArrayList<>();
+
+        channel.eventLoop()
+                .submit(
+                        () -> {
+                            PushChannelWriter.write(channel, frame(0, 64));
+                            futures.add(PushChannelWriter.write(channel, queued));
+                            channel.close();
+                        })
+                .sync();
+
+        futures.get(0).await(5, TimeUnit.SECONDS);
+        assertEquals(0, queued.refCnt());
+        assertInstanceOf(ClosedChannelException.class, futures.get(0).cause());
+        ChannelFuture afterClose = PushChannelWriter.write(channel, frame(2, 8)).await();
+        assertInstanceOf(ClosedChannelException.class, afterClose.cause());
+    }
+}
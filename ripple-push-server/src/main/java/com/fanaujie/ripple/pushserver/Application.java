@@ -2,9 +2,11 @@ package com.fanaujie.ripple.pushserver;
 
 import com.fanaujie.ripple.cache.driver.RedisDriver;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
 import com.fanaujie.ripple.cache.service.impl.RedisConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.impl.RedisDeliveryCursorStorage;
+import com.fanaujie.ripple.cache.service.impl.RedisUserPresenceChangeSubscriber;
 import com.fanaujie.ripple.cache.service.impl.RedisUserProfileStorage;
-import com.fanaujie.ripple.communication.batch.Config;
 import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
 import com.fanaujie.ripple.communication.msgqueue.GenericConsumer;
 import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaConsumerConfigFactory;
@@ -12,7 +14,10 @@ import com.fanaujie.ripple.communication.msgqueue.kafka.KafkaGenericConsumer;
 import com.fanaujie.ripple.protobuf.push.PushMessage;
 import com.fanaujie.ripple.protobuf.userpresence.UserPresenceGrpc;
 import com.fanaujie.ripple.pushserver.service.PushService;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayDispatchConfig;
+import com.fanaujie.ripple.pushserver.service.delivery.DeliveryRetryConfig;
 import com.fanaujie.ripple.pushserver.service.grpc.MessageGatewayClientManager;
+import com.fanaujie.ripple.pushserver.service.route.RouteCache;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.storage.spi.RippleStorageLoader;
 import com.typesafe.config.ConfigFactory;
@@ -36,18 +41,27 @@ public class Application {
                 config.getString("zookeeper.message-gateway.discovery-path");
         int zookeeperSessionTimeoutMs = config.getInt("zookeeper.session-timeout-ms");
         int zookeeperConnectionTimeoutMs = config.getInt("zookeeper.connection-timeout-ms");
+        long pushStreamReadyTimeoutMs = config.getLong("gateway.push-stream.ready-timeout-ms");
+        long pushStreamAckTimeoutMs = config.getLong("gateway.push-stream.ack-timeout-ms");
 
-        // Load batch executor configuration
-        int batchQueueSize = config.getInt("batch.executor.queue-size");
-        int batchWorkerSize = config.getInt("batch.executor.worker-size");
-        int batchMaxSize = config.getInt("batch.executor.max-size");
-        long batchTimeoutMs = config.getLong("batch.executor.timeout-ms");
+        // Load gateway push dispatch configuration
+        int dispatchQueueSize = config.getInt("push.dispatch.queue-size");
+        int dispatchBatchMaxSize = config.getInt("push.dispatch.max-batch-size");
+        long dispatchLingerMs = config.getLong("push.dispatch.linger-ms");
 
         // Load Kafka consumer batch configuration
         int kafkaMaxPollRecords = config.getInt("kafka.consumer.max-poll-records");
         int kafkaFetchMinBytes = config.getInt("kafka.consumer.fetch-min-bytes");
         int kafkaFetchMaxWaitMs = config.getInt("kafka.consumer.fetch-max-wait-ms");
 
+        // Load delivery retry configuration
+        int deliveryMaxRetries = config.getInt("delivery.retry.max-retries");
+        long deliveryInitialBackoffMs = config.getLong("delivery.retry.initial-backoff-ms");
+        long deliveryExpiryMs = config.getLong("delivery.retry.expiry-ms");
+        int deliveryCursorTtlSeconds = config.getInt("delivery.cursor.ttl-seconds");
+        long routeCacheTtlMs = config.getLong("route-cache.ttl-ms");
+        int routeCacheMaxEntries = config.getInt("route-cache.max-entries");
+
         // Load Redis configuration
         String redisHost = config.getString("redis.host");
         int redisPort = config.getInt("redis.port");
@@ -65,20 +79,36 @@ public class Application {
                 zookeeperSessionTimeoutMs,
                 zookeeperConnectionTimeoutMs);
         logger.info(
-                "Batch Executor Config - Queue Size: {}, Worker Size: {}, Max Size: {}, Timeout (ms): {}",
-                batchQueueSize,
-                batchWorkerSize,
-                batchMaxSize,
-                batchTimeoutMs);
+                "Push Dispatch Config - Queue Size per Gateway: {}, Max Batch Size: {}, Linger (ms): {}",
+                dispatchQueueSize,
+                dispatchBatchMaxSize,
+                dispatchLingerMs);
         logger.info(
                 "Kafka Consumer Batch Config - Max Poll Records: {}, Fetch Min Bytes: {}, Fetch Max Wait (ms): {}",
                 kafkaMaxPollRecords,
                 kafkaFetchMinBytes,
                 kafkaFetchMaxWaitMs);
+        logger.info(
+                "Delivery Retry Config - Max Retries: {}, Initial Backoff (ms): {}, Expiry (ms): {}, Cursor TTL (s): {}",
+                deliveryMaxRetries,
+                deliveryInitialBackoffMs,
+                deliveryExpiryMs,
+                deliveryCursorTtlSeconds);
+        logger.info(
+                "Gateway Push Stream Config - Ready Timeout (ms): {}, Ack Timeout (ms): {}",
+                pushStreamReadyTimeoutMs,
+                pushStreamAckTimeoutMs);
+        logger.info(
+                "Route Cache Config - TTL (ms): {}, Max Entries: {}",
+                routeCacheTtlMs,
+                routeCacheMaxEntries);
         logger.info("Redis Config - Host: {}, Port: {}", redisHost, redisPort);
 
-        Config batchConfig =
-                new Config(batchQueueSize, batchWorkerSize, batchMaxSize, batchTimeoutMs);
+        GatewayDispatchConfig dispatchConfig =
+                new GatewayDispatchConfig(dispatchQueueSize, dispatchBatchMaxSize, dispatchLingerMs);
+        DeliveryRetryConfig retryConfig =
+                new DeliveryRetryConfig(
+                        deliveryMaxRetries, deliveryInitialBackoffMs, deliveryExpiryMs);
 
         MessageGatewayClientManager messageGatewayManager = null;
         PushService pushService = null;
@@ -95,16 +125,27 @@ public class Application {
                             zookeeperAddress,
                             messageGatewayDiscoveryPath,
                             zookeeperSessionTimeoutMs,
-                            zookeeperConnectionTimeoutMs);
+                            zookeeperConnectionTimeoutMs,
+                            pushStreamReadyTimeoutMs,
+                            pushStreamAckTimeoutMs);
             messageGatewayManager.start();
             logger.info("MessageGatewayClientManager initialized with ZooKeeper connection monitoring");
 
+            // Presence writes publish the users whose devices changed
+            RouteCache routeCache = new RouteCache(routeCacheTtlMs, routeCacheMaxEntries);
+            new RedisUserPresenceChangeSubscriber(redissonClient)
+                    .subscribe(routeCache::invalidate, routeCache::clear);
+
             pushService =
                     createPushService(
                             userPresenceServer,
                             messageGatewayManager,
-                            batchConfig,
-                            conversationStorage);
+                            dispatchConfig,
+                            conversationStorage,
+                            retryConfig,
+                            new RedisDeliveryCursorStorage(
+                                    redissonClient, deliveryCursorTtlSeconds),
+                            routeCache);
 
             GenericConsumer<String, PushMessage> pushTopicConsumer =
                     createPushTopicConsumer(
@@ -168,12 +209,21 @@ public class Application {
     private PushService createPushService(
             String userPresenceServer,
             MessageGatewayClientManager messageGatewayManager,
-            Config batchConfig,
-            ConversationSummaryStorage conversationStorage) {
+            GatewayDispatchConfig dispatchConfig,
+            ConversationSummaryStorage conversationStorage,
+            DeliveryRetryConfig retryConfig,
+            DeliveryCursorStorage cursorStorage,
+            RouteCache routeCache) {
         GrpcClient<UserPresenceGrpc.UserPresenceBlockingStub> userPresenceClient =
                 new GrpcClient<>(userPresenceServer, UserPresenceGrpc::newBlockingStub);
         return new PushService(
-                userPresenceClient, messageGatewayManager, batchConfig, conversationStorage);
+                userPresenceClient,
+                messageGatewayManager,
+                dispatchConfig,
+                conversationStorage,
+                retryConfig,
+                cursorStorage,
+                routeCache);
     }
 
     private GenericConsumer<String, PushMessage> createPushTopicConsumer(
@@ -1,7 +1,5 @@
 package com.fanaujie.ripple.pushserver.service;
 
-import com.fanaujie.ripple.communication.batch.BatchExecutorService;
-import com.fanaujie.ripple.communication.batch.Config;
 import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
 import com.fanaujie.ripple.communication.msgqueue.MessageRecord;
 import com.fanaujie.ripple.protobuf.push.PushMessage;
@@ -9,93 +7,226 @@ import com.fanaujie.ripple.protobuf.userpresence.QueryUserOnlineReq;
 import com.fanaujie.ripple.protobuf.userpresence.QueryUserOnlineResp;
 import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
 import com.fanaujie.ripple.protobuf.userpresence.UserPresenceGrpc;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayDispatchConfig;
 import com.fanaujie.ripple.pushserver.service.batch.GatewayPushBatchProcessorFactory;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayPushDispatcher;
 import com.fanaujie.ripple.pushserver.service.batch.GatewayPushTask;
+import com.fanaujie.ripple.pushserver.service.delivery.DeliveryRetryConfig;
+import com.fanaujie.ripple.pushserver.service.delivery.DeliveryRetryScheduler;
+import com.fanaujie.ripple.pushserver.service.delivery.DeviceKey;
 import com.fanaujie.ripple.pushserver.service.grpc.MessageGatewayClientManager;
+import com.fanaujie.ripple.pushserver.service.route.RouteCache;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class PushService {
     private static final Logger logger = LoggerFactory.getLogger(PushService.class);
+    private static final int MAX_USER_IDS_PER_QUERY = 1000;
 
     private final GrpcClient<UserPresenceGrpc.UserPresenceBlockingStub> userPresenceClient;
-    private final BatchExecutorService<GatewayPushTask> batchExecutor;
+    private final GatewayPushDispatcher pushDispatcher;
+    private final DeliveryRetryScheduler retryScheduler;
+    private final RouteCache routeCache;
 
     public PushService(
             GrpcClient<UserPresenceGrpc.UserPresenceBlockingStub> userPresenceClientPool,
             MessageGatewayClientManager messageGatewayManager,
-            Config batchConfig,
-            ConversationSummaryStorage conversationStorage) {
+            GatewayDispatchConfig dispatchConfig,
+            ConversationSummaryStorage conversationStorage,
+            DeliveryRetryConfig retryConfig,
+            DeliveryCursorStorage cursorStorage,
+            RouteCache routeCache) {
         this.userPresenceClient = userPresenceClientPool;
-        this.batchExecutor =
-                new BatchExecutorService<>(
-                        batchConfig,
+        this.routeCache = routeCache;
+        this.retryScheduler =
+                new DeliveryRetryScheduler(retryConfig, cursorStorage, this::redeliver);
+        this.pushDispatcher =
+                new GatewayPushDispatcher(
+                        dispatchConfig,
                         new GatewayPushBatchProcessorFactory(
-                                messageGatewayManager, conversationStorage));
+                                messageGatewayManager, conversationStorage, retryScheduler),
+                        this::onShed);
         logger.info(
-                "PushService initialized with batch config: queueSize={}, workerSize={}, "
-                        + "batchMaxSize={}, timeoutMs={}",
-                batchConfig.queueSize(),
-                batchConfig.workerSize(),
-                batchConfig.batchMaxSize(),
-                batchConfig.queueTimeoutMs());
+                "PushService initialized with dispatch config: queueSize={}, batchMaxSize={}, "
+                        + "lingerMs={}",
+                dispatchConfig.queueSize(),
+                dispatchConfig.batchMaxSize(),
+                dispatchConfig.lingerMs());
     }
 
+    PushService(
+            GrpcClient<UserPresenceGrpc.UserPresenceBlockingStub> userPresenceClient,
+            GatewayPushDispatcher pushDispatcher,
+            DeliveryRetryScheduler retryScheduler,
+            RouteCache routeCache) {
+        this.userPresenceClient = userPresenceClient;
+        this.pushDispatcher = pushDispatcher;
+        this.retryScheduler = retryScheduler;
+        this.routeCache = routeCache;
+    }
+
+    /**
+     * Resolves the recipients of the whole poll with as few presence queries as possible, then
+     * submits the pushes in record order so every recipient still gets its messages in order.
+     */
     public void processPushMessageBatch(List<MessageRecord<String, PushMessage>> records) {
+        List<PushMessage> messages = new ArrayList<>(records.size());
+        List<List<String>> receiveUserIdsOfMessages = new ArrayList<>(records.size());
+        Set<String> receiveUserIds = new LinkedHashSet<>();
         for (MessageRecord<String, PushMessage> record : records) {
-            processMessage(record.key(), record.value());
+            try {
+                List<String> userIds = getReceiveUserIds(record.value());
+                messages.add(record.value());
+                receiveUserIdsOfMessages.add(userIds);
+                receiveUserIds.addAll(userIds);
+            } catch (Exception e) {
+                logger.error(
+                        "processPushMessageBatch: Error processing message payload with key: {}",
+                        record.key(),
+                        e);
+            }
+        }
+        Map<String, List<UserOnlineInfo>> devicesByUser = queryUserOnline(receiveUserIds);
+        for (int i = 0; i < messages.size(); i++) {
+            List<UserOnlineInfo> onlineDevices = new ArrayList<>();
+            for (String userId : receiveUserIdsOfMessages.get(i)) {
+                onlineDevices.addAll(devicesByUser.getOrDefault(userId, List.of()));
+            }
+            if (!onlineDevices.isEmpty()) {
+                submitTasks(messages.get(i), onlineDevices, 0);
+            }
         }
     }
 
-    public void processMessage(String key, PushMessage value) {
-        try {
-            List<String> receiveUserIds = getReceiveUserIds(value);
-
-            if (receiveUserIds.isEmpty()) {
-                return;
+    // Cached users skip the query. Users of a failed query are treated as offline, they catch up
+    // when they sync.
+    private Map<String, List<UserOnlineInfo>> queryUserOnline(Collection<String> userIds) {
+        Map<String, List<UserOnlineInfo>> devicesByUser = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String userId : userIds) {
+            List<UserOnlineInfo> devices = routeCache.get(userId);
+            if (devices != null) {
+                devicesByUser.put(userId, devices);
+            } else {
+                misses.add(userId);
+            }
+        }
+        for (int from = 0; from < misses.size(); from += MAX_USER_IDS_PER_QUERY) {
+            List<String> chunk =
+                    misses.subList(from, Math.min(misses.size(), from + MAX_USER_IDS_PER_QUERY));
+            long[] versions = new long[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                versions[i] = routeCache.version(chunk.get(i));
             }
-            QueryUserOnlineReq req =
-                    QueryUserOnlineReq.newBuilder().addAllUserIds(receiveUserIds).build();
-            QueryUserOnlineResp resp = userPresenceClient.getStub().queryUserOnline(req);
-            // Group users by their gateway server location
-            Map<String, List<UserOnlineInfo>> usersByServer =
-                    resp.getUserOnlineInfosList().stream()
-                            .collect(Collectors.groupingBy(UserOnlineInfo::getServerLocation));
-            // Submit push tasks to batch executor
-            for (Map.Entry<String, List<UserOnlineInfo>> entry : usersByServer.entrySet()) {
-                String serverAddress = entry.getKey();
-                List<UserOnlineInfo> userInfos = entry.getValue();
+            try {
+                QueryUserOnlineResp resp =
+                        userPresenceClient
+                                .getStub()
+                                .queryUserOnline(
+                                        QueryUserOnlineReq.newBuilder()
+                                                .addAllUserIds(chunk)
+                                                .build());
+                Map<String, List<UserOnlineInfo>> queried =
+                        resp.getUserOnlineInfosList().stream()
+                                .collect(Collectors.groupingBy(UserOnlineInfo::getUserId));
+                for (int i = 0; i < chunk.size(); i++) {
+                    String userId = chunk.get(i);
+                    List<UserOnlineInfo> devices = queried.getOrDefault(userId, List.of());
+                    devicesByUser.put(userId, devices);
+                    routeCache.put(userId, devices, versions[i]);
+                }
+            } catch (Exception e) {
+                logger.error(
+                        "queryUserOnline: Failed to query presence of {} users", chunk.size(), e);
+            }
+        }
+        return devicesByUser;
+    }
 
-                if (userInfos.isEmpty()) {
-                    continue;
+    // Devices are looked up again, they may have moved to another gateway since the last attempt.
+    // Retries that fell due together share one chunked presence query.
+    private void redeliver(List<DeliveryRetryScheduler.Redelivery> redeliveries) {
+        Set<String> userIds = new LinkedHashSet<>();
+        for (DeliveryRetryScheduler.Redelivery redelivery : redeliveries) {
+            for (UserOnlineInfo userInfo : redelivery.userInfos()) {
+                // The cached route may be why the push failed
+                if (userIds.add(userInfo.getUserId())) {
+                    routeCache.invalidate(userInfo.getUserId());
                 }
-                GatewayPushTask task = new GatewayPushTask(serverAddress, userInfos, value);
-                try {
-                    batchExecutor.push(task);
-                } catch (InterruptedException e) {
-                    logger.error(
-                            "processMessagePayload: Interrupted while pushing task for server: {}",
-                            serverAddress,
-                            e);
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException(e);
+            }
+        }
+        Map<DeviceKey, UserOnlineInfo> onlineDevices = new HashMap<>();
+        for (List<UserOnlineInfo> devices : queryUserOnline(userIds).values()) {
+            devices.forEach(device -> onlineDevices.put(DeviceKey.of(device), device));
+        }
+        for (DeliveryRetryScheduler.Redelivery redelivery : redeliveries) {
+            try {
+                List<UserOnlineInfo> online = new ArrayList<>();
+                List<UserOnlineInfo> offline = new ArrayList<>();
+                for (UserOnlineInfo userInfo : redelivery.userInfos()) {
+                    UserOnlineInfo device = onlineDevices.get(DeviceKey.of(userInfo));
+                    if (device != null) {
+                        online.add(device);
+                    } else {
+                        offline.add(userInfo);
+                    }
                 }
+                retryScheduler.giveUp(redelivery.pushMessage(), offline);
+                submitTasks(redelivery.pushMessage(), online, redelivery.attempt());
+            } catch (Exception e) {
+                logger.error(
+                        "redeliver: Error redelivering message, attempt {}",
+                        redelivery.attempt(),
+                        e);
+                retryScheduler.giveUp(redelivery.pushMessage(), redelivery.userInfos());
             }
-        } catch (Exception e) {
-            logger.error(
-                    "processMessagePayload: Error processing message payload with key: {}", key, e);
+        }
+    }
+
+    private void submitTasks(PushMessage value, List<UserOnlineInfo> onlineUsers, int attempt) {
+        // Group users by their gateway server location
+        Map<String, List<UserOnlineInfo>> usersByServer =
+                onlineUsers.stream()
+                        .collect(Collectors.groupingBy(UserOnlineInfo::getServerLocation));
+        // Submit push tasks to the queues of their gateways
+        for (Map.Entry<String, List<UserOnlineInfo>> entry : usersByServer.entrySet()) {
+            String serverAddress = entry.getKey();
+            List<UserOnlineInfo> userInfos = entry.getValue();
+
+            if (userInfos.isEmpty()) {
+                continue;
+            }
+            pushDispatcher.push(new GatewayPushTask(serverAddress, userInfos, value, attempt));
+        }
+    }
+
+    // Shed message pushes take the retry path, shed events are synced on the next event
+    private void onShed(GatewayPushTask task) {
+        logger.debug(
+                "onShed: Queue of gateway {} is full, shedding push to {} devices",
+                task.serverAddress(),
+                task.userInfos().size());
+        if (task.pushMessage().getPayloadCase() == PushMessage.PayloadCase.MESSAGE_DATA) {
+            retryScheduler.onUndelivered(task, task.userInfos());
         }
     }
 
     public void close() throws InterruptedException {
         logger.info("Shutting down PushService...");
-        batchExecutor.shutdown();
-        batchExecutor.awaitTermination();
+        retryScheduler.close();
+        pushDispatcher.shutdown();
+        pushDispatcher.awaitTermination();
         logger.info("close: PushService shutdown complete");
     }
 
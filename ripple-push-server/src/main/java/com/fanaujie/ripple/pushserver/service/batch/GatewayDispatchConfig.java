@@ -0,0 +1,4 @@
+package com.fanaujie.ripple.pushserver.service.batch;
+
+// queueSize bounds the pending tasks of each gateway, lingerMs how long a drain waits to fill a batch
+public record GatewayDispatchConfig(int queueSize, int batchMaxSize, long lingerMs) {}
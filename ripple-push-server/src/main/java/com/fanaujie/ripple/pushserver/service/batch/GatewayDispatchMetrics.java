@@ -0,0 +1,55 @@
+package com.fanaujie.ripple.pushserver.service.batch;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+class GatewayDispatchMetrics {
+    private static final AttributeKey<String> GATEWAY = AttributeKey.stringKey("gateway");
+
+    private final LongCounter shedTaskCounter;
+    private final LongHistogram batchSizeHistogram;
+
+    GatewayDispatchMetrics(Supplier<Map<String, Integer>> queueDepths) {
+        Meter meter = GlobalOpenTelemetry.getMeter("push-server");
+        meter.gaugeBuilder("push_gateway_queue_depth")
+                .ofLongs()
+                .setDescription("Push tasks waiting in the queue of a gateway")
+                .setUnit("1")
+                .buildWithCallback(
+                        m ->
+                                queueDepths
+                                        .get()
+                                        .forEach(
+                                                (serverAddress, depth) ->
+                                                        m.record(
+                                                                depth,
+                                                                Attributes.of(
+                                                                        GATEWAY, serverAddress))));
+        this.shedTaskCounter =
+                meter.counterBuilder("push_gateway_shed_tasks")
+                        .setDescription("Push tasks shed because the queue of their gateway was full")
+                        .setUnit("1")
+                        .build();
+        this.batchSizeHistogram =
+                meter.histogramBuilder("push_gateway_batch_size")
+                        .ofLongs()
+                        .setDescription("Push tasks handed to a gateway in one batch")
+                        .setUnit("1")
+                        .build();
+    }
+
+    void taskShed(String serverAddress) {
+        shedTaskCounter.add(1, Attributes.of(GATEWAY, serverAddress));
+    }
+
+    void batchProcessed(int size) {
+        batchSizeHistogram.record(size);
+    }
+}
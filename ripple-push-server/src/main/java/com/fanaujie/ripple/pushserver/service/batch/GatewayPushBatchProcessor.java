@@ -6,16 +6,24 @@ import com.fanaujie.ripple.protobuf.msggateway.*;
 import com.fanaujie.ripple.protobuf.push.MultiNotifications;
 import com.fanaujie.ripple.protobuf.push.PushEventData;
 import com.fanaujie.ripple.protobuf.push.PushMessage;
+import com.fanaujie.ripple.protobuf.push.PushMessageData;
 import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.pushserver.service.delivery.DeliveryRetryScheduler;
+import com.fanaujie.ripple.pushserver.service.delivery.DeviceKey;
+import com.fanaujie.ripple.pushserver.service.grpc.GatewayPushStream;
 import com.fanaujie.ripple.pushserver.service.grpc.MessageGatewayClientManager;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class GatewayPushBatchProcessor
@@ -24,12 +32,15 @@ public class GatewayPushBatchProcessor
 
     private final MessageGatewayClientManager messageGatewayManager;
     private final ConversationSummaryStorage conversationStorage;
+    private final DeliveryRetryScheduler retryScheduler;
 
     public GatewayPushBatchProcessor(
             MessageGatewayClientManager messageGatewayManager,
-            ConversationSummaryStorage conversationStorage) {
+            ConversationSummaryStorage conversationStorage,
+            DeliveryRetryScheduler retryScheduler) {
         this.messageGatewayManager = messageGatewayManager;
         this.conversationStorage = conversationStorage;
+        this.retryScheduler = retryScheduler;
     }
 
     @Override
@@ -53,11 +64,13 @@ public class GatewayPushBatchProcessor
                     "processServerTasks: No client found for MessageGateway server: {}. Skipping {} tasks.",
                     serverAddress,
                     tasks.size());
+            // The devices may have reconnected to another gateway
+            tasks.forEach(task -> onPushError(task, null));
             return;
         }
         try {
             for (GatewayPushTask task : tasks) {
-                processSingleTask(c.get().getStub(), task);
+                processSingleTask(serverAddress, c.get().getStub(), task);
             }
         } catch (Exception e) {
             logger.error(
@@ -68,30 +81,210 @@ public class GatewayPushBatchProcessor
         }
     }
 
+    // Pushes go over the gateway's push stream, the unary rpcs are kept for gateways without it
     private void processSingleTask(
-            MessageGatewayGrpc.MessageGatewayStub stub, GatewayPushTask task) {
-        // Build batch request
-        BatchPushMessageRequest.Builder batchRequestBuilder = BatchPushMessageRequest.newBuilder();
-        for (UserOnlineInfo userInfo : task.userInfos()) {
-            PushMessageRequest request = createPushRequest(task.pushMessage(), userInfo);
-            batchRequestBuilder.addRequests(request);
+            String serverAddress, MessageGatewayGrpc.MessageGatewayStub stub, GatewayPushTask task) {
+        Map<Long, Integer> unreadCounts = queryUnreadCounts(task);
+        Optional<GatewayPushStream> pushStream = messageGatewayManager.getPushStream(serverAddress);
+        if (pushStream.isPresent()) {
+            pushOverStream(pushStream.get(), stub, task, unreadCounts);
+        } else {
+            pushFanoutOrBatch(stub, task, unreadCounts);
+        }
+    }
+
+    private void pushOverStream(
+            GatewayPushStream pushStream,
+            MessageGatewayGrpc.MessageGatewayStub stub,
+            GatewayPushTask task,
+            Map<Long, Integer> unreadCounts) {
+        PushFrame.Builder frame = PushFrame.newBuilder();
+        if (task.pushMessage().getPayloadCase() == PushMessage.PayloadCase.MESSAGE_DATA) {
+            frame.setFanout(createFanoutRequest(task, unreadCounts));
+        } else {
+            frame.setBatch(createBatchRequest(task, unreadCounts));
+        }
+        pushStream
+                .send(frame)
+                .whenComplete(
+                        (batchResponse, throwable) -> {
+                            if (throwable == null) {
+                                onPushResponse(task, batchResponse);
+                            } else if (Status.fromThrowable(throwable).getCode()
+                                    == Status.Code.UNIMPLEMENTED) {
+                                pushFanoutOrBatch(stub, task, unreadCounts);
+                            } else {
+                                onPushError(task, throwable);
+                            }
+                        });
+    }
+
+    private void pushFanoutOrBatch(
+            MessageGatewayGrpc.MessageGatewayStub stub,
+            GatewayPushTask task,
+            Map<Long, Integer> unreadCounts) {
+        if (task.pushMessage().getPayloadCase() == PushMessage.PayloadCase.MESSAGE_DATA) {
+            pushFanout(stub, task, unreadCounts);
+        } else {
+            pushBatch(stub, task, unreadCounts);
         }
-        BatchPushMessageRequest batchRequest = batchRequestBuilder.build();
+    }
+
+    private void pushBatch(
+            MessageGatewayGrpc.MessageGatewayStub stub,
+            GatewayPushTask task,
+            Map<Long, Integer> unreadCounts) {
         stub.pushMessageToUser(
-                batchRequest,
+                createBatchRequest(task, unreadCounts),
                 new StreamObserver<BatchPushMessageResponse>() {
                     @Override
-                    public void onNext(BatchPushMessageResponse batchResponse) {}
+                    public void onNext(BatchPushMessageResponse batchResponse) {
+                        onPushResponse(task, batchResponse);
+                    }
 
                     @Override
-                    public void onError(Throwable throwable) {}
+                    public void onError(Throwable throwable) {
+                        onPushError(task, throwable);
+                    }
 
                     @Override
                     public void onCompleted() {}
                 });
     }
 
-    private PushMessageRequest createPushRequest(PushMessage pushMessage, UserOnlineInfo userInfo) {
+    // The message body is sent once for all recipients instead of once per device
+    private void pushFanout(
+            MessageGatewayGrpc.MessageGatewayStub stub,
+            GatewayPushTask task,
+            Map<Long, Integer> unreadCounts) {
+        stub.fanoutPushMessage(
+                createFanoutRequest(task, unreadCounts),
+                new StreamObserver<BatchPushMessageResponse>() {
+                    @Override
+                    public void onNext(BatchPushMessageResponse batchResponse) {
+                        onPushResponse(task, batchResponse);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        // Gateways that predate the fan-out rpc get one request per device
+                        if (Status.fromThrowable(throwable).getCode()
+                                == Status.Code.UNIMPLEMENTED) {
+                            pushBatch(stub, task, unreadCounts);
+                        } else {
+                            onPushError(task, throwable);
+                        }
+                    }
+
+                    @Override
+                    public void onCompleted() {}
+                });
+    }
+
+    private BatchPushMessageRequest createBatchRequest(
+            GatewayPushTask task, Map<Long, Integer> unreadCounts) {
+        BatchPushMessageRequest.Builder batchRequestBuilder = BatchPushMessageRequest.newBuilder();
+        for (UserOnlineInfo userInfo : task.userInfos()) {
+            PushMessageRequest request =
+                    createPushRequest(task.pushMessage(), userInfo, unreadCounts);
+            batchRequestBuilder.addRequests(request);
+        }
+        return batchRequestBuilder.build();
+    }
+
+    private FanoutPushMessageRequest createFanoutRequest(
+            GatewayPushTask task, Map<Long, Integer> unreadCounts) {
+        PushMessageData messageData = task.pushMessage().getMessageData();
+        FanoutPushMessageRequest.Builder fanoutBuilder =
+                FanoutPushMessageRequest.newBuilder()
+                        .setSendUserId(String.valueOf(messageData.getSendUserId()))
+                        .setMessageType(toGatewayMessageType(messageData))
+                        .setMessageData(messageData.getData());
+        for (UserOnlineInfo userInfo : task.userInfos()) {
+            fanoutBuilder.addTargets(
+                    PushTarget.newBuilder()
+                            .setReceiveUserId(userInfo.getUserId())
+                            .setReceiveDeviceId(userInfo.getDeviceId())
+                            .setUnreadCount(
+                                    unreadCounts.getOrDefault(
+                                            Long.parseLong(userInfo.getUserId()), 0))
+                            .build());
+        }
+        return fanoutBuilder.build();
+    }
+
+    // Message pushes the devices did not acknowledge are redelivered, event pushes only trigger
+    // a sync that the next event or reconnect repeats
+    private void onPushResponse(GatewayPushTask task, BatchPushMessageResponse batchResponse) {
+        if (task.pushMessage().getPayloadCase() != PushMessage.PayloadCase.MESSAGE_DATA) {
+            return;
+        }
+        Set<DeviceKey> failedDevices = new HashSet<>();
+        // Gateways that predate delivery acks don't report the device
+        Set<String> failedUsers = new HashSet<>();
+        for (PushMessageResponse response : batchResponse.getResponsesList()) {
+            if (response.getIsSuccess()) {
+                continue;
+            }
+            if (response.getReceiveDeviceId().isEmpty()) {
+                failedUsers.add(response.getReceiveUserId());
+            } else {
+                failedDevices.add(
+                        new DeviceKey(response.getReceiveUserId(), response.getReceiveDeviceId()));
+            }
+        }
+        List<UserOnlineInfo> undelivered =
+                task.userInfos().stream()
+                        .filter(
+                                userInfo ->
+                                        failedDevices.contains(DeviceKey.of(userInfo))
+                                                || failedUsers.contains(userInfo.getUserId()))
+                        .toList();
+        if (!undelivered.isEmpty()) {
+            retryScheduler.onUndelivered(task, undelivered);
+        }
+    }
+
+    private void onPushError(GatewayPushTask task, Throwable throwable) {
+        if (task.pushMessage().getPayloadCase() != PushMessage.PayloadCase.MESSAGE_DATA) {
+            return;
+        }
+        logger.warn(
+                "onPushError: Push to gateway {} failed, redelivering to {} devices",
+                task.serverAddress(),
+                task.userInfos().size(),
+                throwable);
+        retryScheduler.onUndelivered(task, task.userInfos());
+    }
+
+    // Unread counts of all recipients in the task. The dispatcher carries the counts it just
+    // incremented, only the remaining recipients (e.g. the sender's other devices) are read
+    // with one pipelined Redis call
+    private Map<Long, Integer> queryUnreadCounts(GatewayPushTask task) {
+        if (task.pushMessage().getPayloadCase() != PushMessage.PayloadCase.MESSAGE_DATA) {
+            return Map.of();
+        }
+        PushMessageData messageData = task.pushMessage().getMessageData();
+        Map<Long, Integer> carriedCounts = messageData.getUnreadCountsMap();
+        // A user with several online devices is only looked up once
+        List<Long> missingUserIds =
+                task.userInfos().stream()
+                        .map(userInfo -> Long.parseLong(userInfo.getUserId()))
+                        .distinct()
+                        .filter(userId -> !carriedCounts.containsKey(userId))
+                        .toList();
+        if (missingUserIds.isEmpty()) {
+            return carriedCounts;
+        }
+        Map<Long, Integer> unreadCounts = new HashMap<>(carriedCounts);
+        unreadCounts.putAll(
+                conversationStorage.batchGetUnreadCounts(
+                        messageData.getData().getConversationId(), missingUserIds));
+        return unreadCounts;
+    }
+
+    private PushMessageRequest createPushRequest(
+            PushMessage pushMessage, UserOnlineInfo userInfo, Map<Long, Integer> unreadCounts) {
         switch (pushMessage.getPayloadCase()) {
             case EVENT_DATA:
                 {
@@ -141,29 +334,11 @@ public class GatewayPushBatchProcessor
                 }
             case MESSAGE_DATA:
                 {
-                    PushMessageType gatewayMessageType;
-                    switch (pushMessage.getMessageData().getMessageType()) {
-                        case MESSAGE_TYPE_SINGLE_MESSAGE:
-                            gatewayMessageType = PushMessageType.PUSH_MESSAGE_TYPE_SINGLE;
-                            break;
-                        case MESSAGE_TYPE_GROUP_MESSAGE:
-                            gatewayMessageType = PushMessageType.PUSH_MESSAGE_TYPE_GROUP;
-                            break;
-                        default:
-                            logger.error(
-                                    "createPushRequest: Unknown message type: {}",
-                                    pushMessage.getMessageData().getMessageType());
-                            throw new IllegalArgumentException(
-                                    "Unknown message type: "
-                                            + pushMessage.getMessageData().getMessageType());
-                    }
+                    PushMessageType gatewayMessageType =
+                            toGatewayMessageType(pushMessage.getMessageData());
 
-                    // Query unread count for this recipient
-                    String conversationId =
-                            pushMessage.getMessageData().getData().getConversationId();
-                    long recipientUserId = Long.parseLong(userInfo.getUserId());
                     int unreadCount =
-                            conversationStorage.getUnreadCount(recipientUserId, conversationId);
+                            unreadCounts.getOrDefault(Long.parseLong(userInfo.getUserId()), 0);
 
                     // Build message payload with unread count
                     PushMessagePayload messagePayload =
@@ -189,4 +364,19 @@ public class GatewayPushBatchProcessor
                         "Unknown payload type: " + pushMessage.getPayloadCase());
         }
     }
+
+    private PushMessageType toGatewayMessageType(PushMessageData messageData) {
+        switch (messageData.getMessageType()) {
+            case MESSAGE_TYPE_SINGLE_MESSAGE:
+                return PushMessageType.PUSH_MESSAGE_TYPE_SINGLE;
+            case MESSAGE_TYPE_GROUP_MESSAGE:
+                return PushMessageType.PUSH_MESSAGE_TYPE_GROUP;
+            default:
+                logger.error(
+                        "toGatewayMessageType: Unknown message type: {}",
+                        messageData.getMessageType());
+                throw new IllegalArgumentException(
+                        "Unknown message type: " + messageData.getMessageType());
+        }
+    }
 }
@@ -2,22 +2,27 @@ package com.fanaujie.ripple.pushserver.service.batch;
 
 import com.fanaujie.ripple.communication.batch.BatchProcessorFactory;
 import com.fanaujie.ripple.cache.service.ConversationSummaryStorage;
+import com.fanaujie.ripple.pushserver.service.delivery.DeliveryRetryScheduler;
 import com.fanaujie.ripple.pushserver.service.grpc.MessageGatewayClientManager;
 
 public class GatewayPushBatchProcessorFactory implements BatchProcessorFactory<GatewayPushTask> {
 
     private final MessageGatewayClientManager messageGatewayManager;
     private final ConversationSummaryStorage conversationStorage;
+    private final DeliveryRetryScheduler retryScheduler;
 
     public GatewayPushBatchProcessorFactory(
             MessageGatewayClientManager messageGatewayManager,
-            ConversationSummaryStorage conversationStorage) {
+            ConversationSummaryStorage conversationStorage,
+            DeliveryRetryScheduler retryScheduler) {
         this.messageGatewayManager = messageGatewayManager;
         this.conversationStorage = conversationStorage;
+        this.retryScheduler = retryScheduler;
     }
 
     @Override
     public BatchProcessor<GatewayPushTask> create() {
-        return new GatewayPushBatchProcessor(messageGatewayManager, conversationStorage);
+        return new GatewayPushBatchProcessor(
+                messageGatewayManager, conversationStorage, retryScheduler);
     }
 }
@@ -0,0 +1,247 @@
+package com.fanaujie.ripple.pushserver.service.batch;
+
+import com.fanaujie.ripple.communication.batch.BatchProcessorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Queues push tasks per gateway. Every queue has a single drain at a time, so the tasks of a
+ * device are pushed in the order they were submitted, and a gateway that falls behind only holds
+ * up its own drain.
+ *
+ * <p>A drain takes whatever is queued up to batchMaxSize. It only lingers for a fuller batch while
+ * the gateway's queue ran at least half a batch deep, so light traffic is pushed right away and
+ * heavy traffic in full batches. Tasks beyond a full queue are shed to onShed instead of blocking
+ * the pushes to other gateways.
+ *
+ * <p>A queue that stayed empty for idleEvictionMs is evicted, so gateways that went away don't
+ * keep their queues. Tasks still queued at shutdown are shed as well.
+ */
+public class GatewayPushDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayPushDispatcher.class);
+
+    static final long DEFAULT_IDLE_EVICTION_MS = 60000;
+
+    private enum Offer {
+        QUEUED,
+        FULL,
+        // The queue was evicted, the task goes to the gateway's new queue
+        RETIRED
+    }
+
+    private final Map<String, GatewayQueue> queues = new ConcurrentHashMap<>();
+    private final GatewayDispatchConfig config;
+    private final BatchProcessorFactory<GatewayPushTask> processorFactory;
+    private final Consumer<GatewayPushTask> onShed;
+    private final ExecutorService drainExecutor;
+    private final GatewayDispatchMetrics metrics;
+    private final long idleEvictionNanos;
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime());
+
+    public GatewayPushDispatcher(
+            GatewayDispatchConfig config,
+            BatchProcessorFactory<GatewayPushTask> processorFactory,
+            Consumer<GatewayPushTask> onShed) {
+        this(config, processorFactory, onShed, DEFAULT_IDLE_EVICTION_MS);
+    }
+
+    GatewayPushDispatcher(
+            GatewayDispatchConfig config,
+            BatchProcessorFactory<GatewayPushTask> processorFactory,
+            Consumer<GatewayPushTask> onShed,
+            long idleEvictionMs) {
+        if (config.queueSize() <= 0 || config.batchMaxSize() <= 0 || config.lingerMs() < 0) {
+            throw new IllegalArgumentException(
+                    "queueSize and batchMaxSize must be positive, lingerMs not negative");
+        }
+        if (idleEvictionMs <= 0) {
+            throw new IllegalArgumentException("idleEvictionMs must be positive");
+        }
+        this.config = config;
+        this.idleEvictionNanos = TimeUnit.MILLISECONDS.toNanos(idleEvictionMs);
+        this.processorFactory = processorFactory;
+        this.onShed = onShed;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.drainExecutor =
+                Executors.newCachedThreadPool(
+                        r -> new Thread(r, "gateway-push-" + threadCount.incrementAndGet()));
+        this.metrics = new GatewayDispatchMetrics(this::queueDepths);
+    }
+
+    public void push(GatewayPushTask task) {
+        evictIdleQueues();
+        Offer offer;
+        do {
+            offer = queues.computeIfAbsent(task.serverAddress(), GatewayQueue::new).offer(task);
+        } while (offer == Offer.RETIRED);
+        if (offer == Offer.FULL) {
+            shed(task);
+        }
+    }
+
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+    }
+
+    /** Waits for the drains to stop, then sheds the tasks they left queued. */
+    public void awaitTermination() throws InterruptedException {
+        drainExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        queues.values()
+                .forEach(
+                        queue -> {
+                            GatewayPushTask task;
+                            while ((task = queue.tasks.poll()) != null) {
+                                shed(task);
+                            }
+                        });
+    }
+
+    private void shed(GatewayPushTask task) {
+        metrics.taskShed(task.serverAddress());
+        onShed.accept(task);
+    }
+
+    // Runs at most once per idleEvictionNanos, on the thread of a push
+    private void evictIdleQueues() {
+        long now = System.nanoTime();
+        long last = lastEvictionNanos.get();
+        if (now - last < idleEvictionNanos || !lastEvictionNanos.compareAndSet(last, now)) {
+            return;
+        }
+        queues.values()
+                .forEach(
+                        queue -> {
+                            if (queue.retireIfIdle(now)) {
+                                queues.remove(queue.serverAddress, queue);
+                                logger.debug(
+                                        "evictIdleQueues: Evicted idle queue of gateway {}",
+                                        queue.serverAddress);
+                            }
+                        });
+    }
+
+    Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new HashMap<>();
+        queues.forEach((serverAddress, queue) -> depths.put(serverAddress, queue.tasks.size()));
+        return depths;
+    }
+
+    private final class GatewayQueue implements Runnable {
+        private final String serverAddress;
+        private final BlockingQueue<GatewayPushTask> tasks;
+        private final BatchProcessorFactory.BatchProcessor<GatewayPushTask> processor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Guarded by this
+        private boolean retired;
+        private long lastOfferNanos = System.nanoTime();
+        // Only used by the drain
+        private int lastDepth;
+
+        GatewayQueue(String serverAddress) {
+            this.serverAddress = serverAddress;
+            this.tasks = new ArrayBlockingQueue<>(config.queueSize());
+            this.processor = processorFactory.create();
+        }
+
+        synchronized Offer offer(GatewayPushTask task) {
+            if (retired) {
+                return Offer.RETIRED;
+            }
+            lastOfferNanos = System.nanoTime();
+            if (!tasks.offer(task)) {
+                return Offer.FULL;
+            }
+            schedule();
+            return Offer.QUEUED;
+        }
+
+        synchronized boolean retireIfIdle(long now) {
+            if (!scheduled.get() && tasks.isEmpty() && now - lastOfferNanos >= idleEvictionNanos) {
+                retired = true;
+            }
+            return retired;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    drainExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<GatewayPushTask> batch = new ArrayList<>(config.batchMaxSize());
+                while (!Thread.currentThread().isInterrupted()) {
+                    int depth = tasks.size();
+                    tasks.drainTo(batch, config.batchMaxSize());
+                    if (lastDepth * 2 >= config.batchMaxSize()) {
+                        linger(batch);
+                    }
+                    lastDepth = depth;
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                    process(batch);
+                    batch.clear();
+                }
+            } finally {
+                scheduled.set(false);
+                // A task offered while the drain was finishing found it still scheduled
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        private void linger(List<GatewayPushTask> batch) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.lingerMs());
+            try {
+                while (batch.size() < config.batchMaxSize()) {
+                    GatewayPushTask task =
+                            tasks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (task == null) {
+                        return;
+                    }
+                    batch.add(task);
+                    tasks.drainTo(batch, config.batchMaxSize() - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(List<GatewayPushTask> batch) {
+            metrics.batchProcessed(batch.size());
+            try {
+                processor.process(batch);
+            } catch (Exception e) {
+                logger.error(
+                        "process: Failed to push {} tasks to gateway {}",
+                        batch.size(),
+                        serverAddress,
+                        e);
+            }
+        }
+    }
+}
@@ -5,5 +5,15 @@ import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
 
 import java.util.List;
 
+// attempt counts the redeliveries of the message to these devices, 0 for the first push
 public record GatewayPushTask(
-        String serverAddress, List<UserOnlineInfo> userInfos, PushMessage pushMessage) {}
+        String serverAddress,
+        List<UserOnlineInfo> userInfos,
+        PushMessage pushMessage,
+        int attempt) {
+
+    public GatewayPushTask(
+            String serverAddress, List<UserOnlineInfo> userInfos, PushMessage pushMessage) {
+        this(serverAddress, userInfos, pushMessage, 0);
+    }
+}
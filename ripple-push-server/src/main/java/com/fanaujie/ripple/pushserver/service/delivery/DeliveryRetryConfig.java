@@ -0,0 +1,3 @@
+package com.fanaujie.ripple.pushserver.service.delivery;
+
+public record DeliveryRetryConfig(int maxRetries, long initialBackoffMs, long expiryMs) {}
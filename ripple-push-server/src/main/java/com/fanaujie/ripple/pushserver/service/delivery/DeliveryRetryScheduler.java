@@ -0,0 +1,135 @@
+package com.fanaujie.ripple.pushserver.service.delivery;
+
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.push.PushMessage;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayPushTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redelivers message pushes that devices did not acknowledge, every retry waits twice as long as
+ * the one before. Once the retries are used up or the message expired, it is left in the
+ * device's redelivery cursor, which the client reads when it reconnects. Retries that fall due
+ * together are handed to the redeliverer as one batch, so their devices are looked up at once.
+ */
+public class DeliveryRetryScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryRetryScheduler.class);
+
+    public record Redelivery(PushMessage pushMessage, List<UserOnlineInfo> userInfos, int attempt) {}
+
+    public interface Redeliverer {
+        void redeliver(List<Redelivery> redeliveries);
+    }
+
+    private final DeliveryRetryConfig config;
+    private final DeliveryCursorStorage cursorStorage;
+    private final Redeliverer redeliverer;
+    private final ScheduledExecutorService scheduler;
+    // Retries that fell due and wait for the next drain, only touched on the scheduler thread
+    private final List<Redelivery> due = new ArrayList<>();
+
+    public DeliveryRetryScheduler(
+            DeliveryRetryConfig config,
+            DeliveryCursorStorage cursorStorage,
+            Redeliverer redeliverer) {
+        this(
+                config,
+                cursorStorage,
+                redeliverer,
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> new Thread(r, "delivery-retry-scheduler")));
+    }
+
+    DeliveryRetryScheduler(
+            DeliveryRetryConfig config,
+            DeliveryCursorStorage cursorStorage,
+            Redeliverer redeliverer,
+            ScheduledExecutorService scheduler) {
+        this.config = config;
+        this.cursorStorage = cursorStorage;
+        this.redeliverer = redeliverer;
+        this.scheduler = scheduler;
+    }
+
+    public void onUndelivered(GatewayPushTask task, List<UserOnlineInfo> userInfos) {
+        SendMessageReq message = task.pushMessage().getMessageData().getData();
+        int nextAttempt = task.attempt() + 1;
+        long age = System.currentTimeMillis() - message.getSendTimestamp();
+        if (nextAttempt > config.maxRetries() || age >= config.expiryMs()) {
+            giveUp(task.pushMessage(), userInfos);
+            return;
+        }
+        long backoffMs = config.initialBackoffMs() << task.attempt();
+        try {
+            scheduler.schedule(
+                    () -> onDue(new Redelivery(task.pushMessage(), userInfos, nextAttempt)),
+                    backoffMs,
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            giveUp(task.pushMessage(), userInfos);
+        }
+    }
+
+    // The drain is queued behind every retry that is already due, so those join its batch
+    private void onDue(Redelivery redelivery) {
+        due.add(redelivery);
+        if (due.size() > 1) {
+            return;
+        }
+        try {
+            scheduler.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        List<Redelivery> redeliveries = new ArrayList<>(due);
+        due.clear();
+        try {
+            redeliverer.redeliver(redeliveries);
+        } catch (Exception e) {
+            logger.error("drain: Failed to redeliver {} messages", redeliveries.size(), e);
+            for (Redelivery redelivery : redeliveries) {
+                giveUp(redelivery.pushMessage(), redelivery.userInfos());
+            }
+        }
+    }
+
+    /** Leaves the message in the redelivery cursor of every device. */
+    public void giveUp(PushMessage pushMessage, List<UserOnlineInfo> userInfos) {
+        SendMessageReq message = pushMessage.getMessageData().getData();
+        for (UserOnlineInfo userInfo : userInfos) {
+            try {
+                cursorStorage.recordUndelivered(
+                        userInfo.getUserId(),
+                        userInfo.getDeviceId(),
+                        message.getConversationId(),
+                        message.getMessageId());
+            } catch (Exception e) {
+                logger.error(
+                        "giveUp: Failed to record undelivered message {} for user {} on device {}",
+                        message.getMessageId(),
+                        userInfo.getUserId(),
+                        userInfo.getDeviceId(),
+                        e);
+            }
+        }
+    }
+
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.fanaujie.ripple.pushserver.service.delivery;
+
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+
+public record DeviceKey(String userId, String deviceId) {
+    public static DeviceKey of(UserOnlineInfo userInfo) {
+        return new DeviceKey(userInfo.getUserId(), userInfo.getDeviceId());
+    }
+}
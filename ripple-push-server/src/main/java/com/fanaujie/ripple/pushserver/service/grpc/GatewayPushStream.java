@@ -0,0 +1,226 @@
+package com.fanaujie.ripple.pushserver.service.grpc;
+
+import com.fanaujie.ripple.protobuf.msggateway.BatchPushMessageResponse;
+import com.fanaujie.ripple.protobuf.msggateway.MessageGatewayGrpc;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrame;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrameAck;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The push stream to one gateway. Frames are numbered per stream and complete with the gateway's
+ * ack. A sender waits up to readyTimeoutMs while the stream isn't ready, so a gateway that falls
+ * behind slows down the batch workers pushing to it instead of piling up frames in memory. Once
+ * the stream fails every frame without an ack fails with it.
+ *
+ * <p>A frame that isn't acked within ackTimeoutMs fails and cancels the stream, so frames sent
+ * over a half-open connection go to the retries instead of waiting forever. Frames are sent in
+ * sequence order, so a periodic sweep only has to look at the oldest pending frame.
+ */
+public class GatewayPushStream implements ClientResponseObserver<PushFrame, PushFrameAck> {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayPushStream.class);
+
+    // An ack timeout is noticed at most ackTimeoutMs / ACK_SWEEPS_PER_TIMEOUT late
+    private static final int ACK_SWEEPS_PER_TIMEOUT = 10;
+    private static final ScheduledExecutorService ackSweeper =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        Thread thread = new Thread(r, "push-stream-ack-sweeper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    private record PendingFrame(
+            CompletableFuture<BatchPushMessageResponse> acked, long sentAtNanos) {}
+
+    private final String serverAddress;
+    private final long readyTimeoutNanos;
+    private final long ackTimeoutMs;
+    private final long ackTimeoutNanos;
+    private final ConcurrentNavigableMap<Long, PendingFrame> pendingFrames =
+            new ConcurrentSkipListMap<>();
+    private ClientCallStreamObserver<PushFrame> requestStream;
+    private volatile ScheduledFuture<?> ackSweep;
+
+    // Guarded by this
+    private long nextSequence;
+    private volatile Status closedStatus;
+
+    GatewayPushStream(String serverAddress, long readyTimeoutMs, long ackTimeoutMs) {
+        if (ackTimeoutMs <= 0) {
+            throw new IllegalArgumentException("ackTimeoutMs must be positive");
+        }
+        this.serverAddress = serverAddress;
+        this.readyTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readyTimeoutMs);
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.ackTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(ackTimeoutMs);
+    }
+
+    public static GatewayPushStream open(
+            String serverAddress,
+            MessageGatewayGrpc.MessageGatewayStub stub,
+            long readyTimeoutMs,
+            long ackTimeoutMs) {
+        GatewayPushStream stream =
+                new GatewayPushStream(serverAddress, readyTimeoutMs, ackTimeoutMs);
+        stub.pushStream(stream);
+        return stream;
+    }
+
+    /** @return the gateway's responses to the frame's pushes. */
+    public CompletableFuture<BatchPushMessageResponse> send(PushFrame.Builder frame) {
+        CompletableFuture<BatchPushMessageResponse> acked = new CompletableFuture<>();
+        synchronized (this) {
+            try {
+                awaitReady();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acked.completeExceptionally(e);
+                return acked;
+            }
+            if (closedStatus != null) {
+                acked.completeExceptionally(closedStatus.asRuntimeException());
+                return acked;
+            }
+            if (!requestStream.isReady()) {
+                acked.completeExceptionally(
+                        Status.UNAVAILABLE
+                                .withDescription("Push stream to " + serverAddress + " is not ready")
+                                .asRuntimeException());
+                return acked;
+            }
+            long sequence = nextSequence++;
+            pendingFrames.put(sequence, new PendingFrame(acked, System.nanoTime()));
+            requestStream.onNext(frame.setSequence(sequence).build());
+        }
+        return acked;
+    }
+
+    private void sweepAckTimeouts() {
+        Map.Entry<Long, PendingFrame> oldest = pendingFrames.firstEntry();
+        if (oldest != null
+                && System.nanoTime() - oldest.getValue().sentAtNanos() >= ackTimeoutNanos) {
+            onAckTimeout(oldest.getKey());
+        }
+    }
+
+    private void onAckTimeout(long sequence) {
+        PendingFrame frame = pendingFrames.remove(sequence);
+        if (frame == null) {
+            return;
+        }
+        logger.warn(
+                "onAckTimeout: No ack for frame {} from {} within {}ms, cancelling the stream",
+                sequence,
+                serverAddress,
+                ackTimeoutMs);
+        Status status =
+                Status.DEADLINE_EXCEEDED.withDescription(
+                        "No ack for push frame " + sequence + " from " + serverAddress);
+        // Fails the other pending frames through onError
+        requestStream.cancel(status.getDescription(), null);
+        frame.acked().completeExceptionally(status.asRuntimeException());
+    }
+
+    public boolean isClosed() {
+        return closedStatus != null;
+    }
+
+    // Gateways that predate the push stream only serve the unary pushes
+    public boolean isUnsupported() {
+        Status status = closedStatus;
+        return status != null && status.getCode() == Status.Code.UNIMPLEMENTED;
+    }
+
+    /** Half-closes the stream, frames already sent are still acked. */
+    public synchronized void close() {
+        if (closedStatus == null) {
+            closedStatus = Status.UNAVAILABLE.withDescription("Push stream closed");
+            requestStream.onCompleted();
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<PushFrame> requestStream) {
+        this.requestStream = requestStream;
+        requestStream.setOnReadyHandler(this::onReady);
+        long sweepIntervalMs = Math.max(1, ackTimeoutMs / ACK_SWEEPS_PER_TIMEOUT);
+        ackSweep =
+                ackSweeper.scheduleWithFixedDelay(
+                        this::sweepAckTimeouts,
+                        sweepIntervalMs,
+                        sweepIntervalMs,
+                        TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onNext(PushFrameAck ack) {
+        PendingFrame frame = pendingFrames.remove(ack.getSequence());
+        if (frame != null) {
+            frame.acked().complete(ack.getResponse());
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Status status = Status.fromThrowable(throwable);
+        if (status.getCode() != Status.Code.UNIMPLEMENTED) {
+            logger.warn(
+                    "onError: Push stream to {} failed, failing {} pending frames",
+                    serverAddress,
+                    pendingFrames.size(),
+                    throwable);
+        }
+        fail(status);
+    }
+
+    @Override
+    public void onCompleted() {
+        fail(Status.UNAVAILABLE.withDescription("Push stream closed by " + serverAddress));
+    }
+
+    private synchronized void onReady() {
+        notifyAll();
+    }
+
+    private synchronized void fail(Status status) {
+        if (closedStatus == null || closedStatus.getCode() == Status.Code.UNAVAILABLE) {
+            closedStatus = status;
+        }
+        notifyAll();
+        if (ackSweep != null) {
+            ackSweep.cancel(false);
+        }
+        for (Long sequence : pendingFrames.keySet()) {
+            PendingFrame frame = pendingFrames.remove(sequence);
+            if (frame != null) {
+                frame.acked().completeExceptionally(status.asRuntimeException());
+            }
+        }
+    }
+
+    // Called holding the monitor, which onReady and fail notify
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.nanoTime() + readyTimeoutNanos;
+        while (closedStatus == null && !requestStream.isReady()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+    }
+}
@@ -20,14 +20,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class MessageGatewayClientManager implements ServiceChangeListener {
     private static final Logger logger = LoggerFactory.getLogger(MessageGatewayClientManager.class);
 
+    private static final long DEFAULT_PUSH_STREAM_READY_TIMEOUT_MS = 1000;
+    private static final long DEFAULT_PUSH_STREAM_ACK_TIMEOUT_MS = 30000;
+
     private final ZookeeperDiscoverService discoveryService;
     private final Map<String, GrpcClient<MessageGatewayGrpc.MessageGatewayStub>> clients;
+    private final Map<String, GatewayPushStream> pushStreams = new ConcurrentHashMap<>();
+    private final long pushStreamReadyTimeoutMs;
+    private final long pushStreamAckTimeoutMs;
     private final AtomicBoolean connected = new AtomicBoolean(false);
 
     public MessageGatewayClientManager(String zookeeperAddress, String discoveryPath)
             throws Exception {
         this.discoveryService = new ZookeeperDiscoverService(zookeeperAddress, discoveryPath);
         this.clients = new ConcurrentHashMap<>();
+        this.pushStreamReadyTimeoutMs = DEFAULT_PUSH_STREAM_READY_TIMEOUT_MS;
+        this.pushStreamAckTimeoutMs = DEFAULT_PUSH_STREAM_ACK_TIMEOUT_MS;
     }
 
     public MessageGatewayClientManager(
@@ -36,10 +44,29 @@ public class MessageGatewayClientManager implements ServiceChangeListener {
             int sessionTimeoutMs,
             int connectionTimeoutMs)
             throws Exception {
+        this(
+                zookeeperAddress,
+                discoveryPath,
+                sessionTimeoutMs,
+                connectionTimeoutMs,
+                DEFAULT_PUSH_STREAM_READY_TIMEOUT_MS,
+                DEFAULT_PUSH_STREAM_ACK_TIMEOUT_MS);
+    }
+
+    public MessageGatewayClientManager(
+            String zookeeperAddress,
+            String discoveryPath,
+            int sessionTimeoutMs,
+            int connectionTimeoutMs,
+            long pushStreamReadyTimeoutMs,
+            long pushStreamAckTimeoutMs)
+            throws Exception {
         this.discoveryService =
                 new ZookeeperDiscoverService(
                         zookeeperAddress, discoveryPath, sessionTimeoutMs, connectionTimeoutMs);
         this.clients = new ConcurrentHashMap<>();
+        this.pushStreamReadyTimeoutMs = pushStreamReadyTimeoutMs;
+        this.pushStreamAckTimeoutMs = pushStreamAckTimeoutMs;
     }
 
     public void start() throws Exception {
@@ -53,6 +80,32 @@ public class MessageGatewayClientManager implements ServiceChangeListener {
         return Optional.ofNullable(clients.get(serverAddress));
     }
 
+    /**
+     * The push stream to the gateway, opened again when the last one failed. Empty when there is
+     * no client for the gateway or it doesn't serve push streams.
+     */
+    public Optional<GatewayPushStream> getPushStream(String serverAddress) {
+        GrpcClient<MessageGatewayGrpc.MessageGatewayStub> c = clients.get(serverAddress);
+        if (c == null) {
+            return Optional.empty();
+        }
+        GatewayPushStream stream = pushStreams.get(serverAddress);
+        if (needsOpen(stream)) {
+            stream =
+                    pushStreams.compute(
+                            serverAddress,
+                            (address, current) ->
+                                    needsOpen(current)
+                                            ? GatewayPushStream.open(
+                                                    address,
+                                                    c.getStub(),
+                                                    pushStreamReadyTimeoutMs,
+                                                    pushStreamAckTimeoutMs)
+                                            : current);
+        }
+        return stream.isUnsupported() ? Optional.empty() : Optional.of(stream);
+    }
+
     @Override
     public void onServiceChanged(CuratorFramework client, PathChildrenCacheEvent event) {
         switch (event.getType()) {
@@ -83,6 +136,7 @@ public class MessageGatewayClientManager implements ServiceChangeListener {
     private void handleServiceRemoved(PathChildrenCacheEvent event) {
         String serverAddress = extractServerAddress(event);
         if (serverAddress != null) {
+            closePushStream(serverAddress);
             var c = clients.remove(serverAddress);
             if (c != null) {
                 c.getChannel().shutdown();
@@ -122,7 +176,19 @@ public class MessageGatewayClientManager implements ServiceChangeListener {
         }
     }
 
+    private static boolean needsOpen(GatewayPushStream stream) {
+        return stream == null || (stream.isClosed() && !stream.isUnsupported());
+    }
+
+    private void closePushStream(String serverAddress) {
+        GatewayPushStream stream = pushStreams.remove(serverAddress);
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
     private void clearAllClients() {
+        pushStreams.keySet().forEach(this::closePushStream);
         clients.forEach(
                 (address, c) -> {
                     try {
@@ -149,6 +215,7 @@ public class MessageGatewayClientManager implements ServiceChangeListener {
 
     public void close() throws IOException {
         logger.info("Closing MessageGatewayClientManager");
+        pushStreams.keySet().forEach(this::closePushStream);
         clients.forEach(
                 (address, c) -> {
                     c.getChannel().shutdown();
@@ -0,0 +1,84 @@
+package com.fanaujie.ripple.pushserver.service.route;
+
+import com.fanaujie.ripple.communication.cache.ExpiringMap;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Near-cache of the online devices of users, so pushes to active users skip the presence query.
+ * Users without online devices are cached as well. An entry lives at most ttl and is dropped as
+ * soon as the presence change stream reports its user.
+ *
+ * <p>A query that started before such a change must not fill the cache with what it read, so
+ * every user maps to a stripe whose version a change bumps, and put only succeeds with the version
+ * read before the query. At most maxEntries users are cached.
+ */
+public class RouteCache {
+
+    private static final int STRIPES = 1024;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ExpiringMap<String, List<UserOnlineInfo>> routes;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final long ttlNanos;
+
+    public RouteCache(long ttlMs, int maxEntries) {
+        this(ttlMs, maxEntries, System::nanoTime);
+    }
+
+    RouteCache(long ttlMs, int maxEntries, LongSupplier nanoClock) {
+        if (ttlMs <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("ttlMs and maxEntries must be positive");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.routes = new ExpiringMap<>(maxEntries, SWEEP_INTERVAL_NANOS, nanoClock);
+    }
+
+    /** @return the user's online devices, null when they have to be queried. */
+    public List<UserOnlineInfo> get(String userId) {
+        return routes.get(userId);
+    }
+
+    /** @return the version to hand to put once the user's devices are queried. */
+    public long version(String userId) {
+        return versions.get(stripe(userId));
+    }
+
+    public void put(String userId, List<UserOnlineInfo> devices, long version) {
+        int stripe = stripe(userId);
+        if (versions.get(stripe) != version
+                || !routes.put(userId, List.copyOf(devices), routes.now() + ttlNanos)) {
+            return;
+        }
+        // The user may have changed while the entry was put
+        if (versions.get(stripe) != version) {
+            routes.remove(userId);
+        }
+    }
+
+    public void invalidate(String userId) {
+        versions.incrementAndGet(stripe(userId));
+        routes.remove(userId);
+    }
+
+    /** Drops every entry, for when changes may have been missed. */
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        routes.clear();
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    private static int stripe(String userId) {
+        int h = userId.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
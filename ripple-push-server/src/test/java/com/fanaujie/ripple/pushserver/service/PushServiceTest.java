@@ -0,0 +1,128 @@
+package com.fanaujie.ripple.pushserver.service;
+
+import com.fanaujie.ripple.communication.grpc.client.GrpcClient;
+import com.fanaujie.ripple.communication.msgqueue.MessageRecord;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.push.PushMessage;
+import com.fanaujie.ripple.protobuf.push.PushMessageData;
+import com.fanaujie.ripple.protobuf.userpresence.QueryUserOnlineReq;
+import com.fanaujie.ripple.protobuf.userpresence.QueryUserOnlineResp;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+import com.fanaujie.ripple.protobuf.userpresence.UserPresenceGrpc;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayPushDispatcher;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayPushTask;
+import com.fanaujie.ripple.pushserver.service.delivery.DeliveryRetryScheduler;
+import com.fanaujie.ripple.pushserver.service.route.RouteCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PushServiceTest {
+
+    private UserPresenceGrpc.UserPresenceBlockingStub presenceStub;
+    private GatewayPushDispatcher pushDispatcher;
+    private RouteCache routeCache;
+    private PushService pushService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        GrpcClient<UserPresenceGrpc.UserPresenceBlockingStub> presenceClient =
+                mock(GrpcClient.class);
+        presenceStub = mock(UserPresenceGrpc.UserPresenceBlockingStub.class);
+        when(presenceClient.getStub()).thenReturn(presenceStub);
+        pushDispatcher = mock(GatewayPushDispatcher.class);
+        routeCache = new RouteCache(60000, 1000);
+        pushService =
+                new PushService(
+                        presenceClient,
+                        pushDispatcher,
+                        mock(DeliveryRetryScheduler.class),
+                        routeCache);
+    }
+
+    private static MessageRecord<String, PushMessage> record(long messageId, long... receivers) {
+        PushMessageData.Builder data =
+                PushMessageData.newBuilder()
+                        .setData(SendMessageReq.newBuilder().setMessageId(messageId));
+        for (long receiver : receivers) {
+            data.addReceiveUserIds(receiver);
+        }
+        return new MessageRecord<>(
+                Long.toString(messageId), PushMessage.newBuilder().setMessageData(data).build());
+    }
+
+    private static UserOnlineInfo device(String userId, String serverLocation) {
+        return UserOnlineInfo.newBuilder()
+                .setUserId(userId)
+                .setDeviceId("device-" + userId)
+                .setServerLocation(serverLocation)
+                .build();
+    }
+
+    @Test
+    void testProcessPushMessageBatch_OneQueryForThePoll() throws Exception {
+        when(presenceStub.queryUserOnline(any()))
+                .thenReturn(
+                        QueryUserOnlineResp.newBuilder()
+                                .addUserOnlineInfos(device("1002", "gw-1"))
+                                .addUserOnlineInfos(device("1003", "gw-2"))
+                                .build());
+
+        pushService.processPushMessageBatch(
+                List.of(record(1L, 1002L), record(2L, 1003L, 1004L), record(3L, 1002L)));
+
+        ArgumentCaptor<QueryUserOnlineReq> query =
+                ArgumentCaptor.forClass(QueryUserOnlineReq.class);
+        verify(presenceStub).queryUserOnline(query.capture());
+        assertEquals(List.of("1002", "1003", "1004"), query.getValue().getUserIdsList());
+
+        ArgumentCaptor<GatewayPushTask> tasks = ArgumentCaptor.forClass(GatewayPushTask.class);
+        verify(pushDispatcher, times(3)).push(tasks.capture());
+        List<Long> messageIds =
+                tasks.getAllValues().stream()
+                        .map(t -> t.pushMessage().getMessageData().getData().getMessageId())
+                        .toList();
+        assertEquals(List.of(1L, 2L, 3L), messageIds);
+        assertEquals("gw-2", tasks.getAllValues().get(1).serverAddress());
+    }
+
+    @Test
+    void testProcessPushMessageBatch_FailedQuerySkipsOnlyItsUsers() throws Exception {
+        when(presenceStub.queryUserOnline(any())).thenThrow(new RuntimeException("unavailable"));
+
+        pushService.processPushMessageBatch(List.of(record(1L, 1002L)));
+
+        verify(pushDispatcher, never()).push(any());
+    }
+
+    @Test
+    void testProcessPushMessageBatch_CachedUsersAreNotQueriedAgain() throws Exception {
+        when(presenceStub.queryUserOnline(any()))
+                .thenReturn(
+                        QueryUserOnlineResp.newBuilder()
+                                .addUserOnlineInfos(device("1002", "gw-1"))
+                                .build());
+
+        pushService.processPushMessageBatch(List.of(record(1L, 1002L, 1003L)));
+        pushService.processPushMessageBatch(List.of(record(2L, 1002L, 1003L)));
+
+        // 1003 is offline and cached as such
+        verify(presenceStub, times(1)).queryUserOnline(any());
+        verify(pushDispatcher, times(2)).push(any());
+
+        routeCache.invalidate("1003");
+        pushService.processPushMessageBatch(List.of(record(3L, 1002L, 1003L)));
+
+        ArgumentCaptor<QueryUserOnlineReq> query =
+                ArgumentCaptor.forClass(QueryUserOnlineReq.class);
+        verify(presenceStub, times(2)).queryUserOnline(query.capture());
+        assertEquals(List.of("1003"), query.getValue().getUserIdsList());
+    }
+}
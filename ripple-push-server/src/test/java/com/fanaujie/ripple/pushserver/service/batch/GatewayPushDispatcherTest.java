@@ -0,0 +1,152 @@
+package com.fanaujie.ripple.pushserver.service.batch;
+
+import com.fanaujie.ripple.protobuf.push.PushMessage;
+import com.fanaujie.ripple.protobuf.push.PushMessageData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GatewayPushDispatcherTest {
+
+    private GatewayPushDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        dispatcher.awaitTermination();
+    }
+
+    private static GatewayPushTask task(String serverAddress, long sequence) {
+        return new GatewayPushTask(
+                serverAddress,
+                List.of(),
+                PushMessage.newBuilder()
+                        .setMessageData(PushMessageData.newBuilder().setSendUserId(sequence))
+                        .build());
+    }
+
+    private static long sequenceOf(GatewayPushTask task) {
+        return task.pushMessage().getMessageData().getSendUserId();
+    }
+
+    @Test
+    void testPush_TasksOfAGatewayKeepTheirOrder() throws InterruptedException {
+        List<Long> pushed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1000);
+        dispatcher =
+                new GatewayPushDispatcher(
+                        new GatewayDispatchConfig(1000, 16, 1),
+                        () ->
+                                batch -> {
+                                    assertTrue(batch.size() <= 16);
+                                    batch.forEach(
+                                            task -> {
+                                                pushed.add(sequenceOf(task));
+                                                done.countDown();
+                                            });
+                                },
+                        task -> fail("No task should be shed"));
+
+        for (long i = 0; i < 1000; i++) {
+            dispatcher.push(task("gw-1", i));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, pushed.get(i));
+        }
+    }
+
+    @Test
+    void testPush_FullQueueShedsWithoutBlockingOtherGateways() throws InterruptedException {
+        CountDownLatch slowGatewayBlocked = new CountDownLatch(1);
+        CountDownLatch releaseSlowGateway = new CountDownLatch(1);
+        BlockingQueue<GatewayPushTask> fastGatewayPushed = new LinkedBlockingQueue<>();
+        List<GatewayPushTask> shed = new CopyOnWriteArrayList<>();
+        dispatcher =
+                new GatewayPushDispatcher(
+                        new GatewayDispatchConfig(1, 1, 0),
+                        () ->
+                                batch -> {
+                                    GatewayPushTask task = batch.get(0);
+                                    if (task.serverAddress().equals("gw-slow")) {
+                                        slowGatewayBlocked.countDown();
+                                        try {
+                                            releaseSlowGateway.await();
+                                        } catch (InterruptedException e) {
+                                            Thread.currentThread().interrupt();
+                                        }
+                                    } else {
+                                        fastGatewayPushed.add(task);
+                                    }
+                                },
+                        shed::add);
+
+        dispatcher.push(task("gw-slow", 0));
+        assertTrue(slowGatewayBlocked.await(5, TimeUnit.SECONDS));
+        dispatcher.push(task("gw-slow", 1));
+        GatewayPushTask overflow = task("gw-slow", 2);
+        dispatcher.push(overflow);
+        dispatcher.push(task("gw-fast", 3));
+
+        assertEquals(List.of(overflow), shed);
+        assertEquals(3, sequenceOf(fastGatewayPushed.poll(5, TimeUnit.SECONDS)));
+        assertEquals(1, dispatcher.queueDepths().get("gw-slow"));
+        releaseSlowGateway.countDown();
+    }
+
+    @Test
+    void testPush_IdleQueuesAreEvicted() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        dispatcher =
+                new GatewayPushDispatcher(
+                        new GatewayDispatchConfig(10, 1, 0),
+                        () -> batch -> done.countDown(),
+                        task -> fail("No task should be shed"),
+                        50);
+
+        dispatcher.push(task("gw-gone", 0));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        dispatcher.push(task("gw-1", 1));
+
+        assertFalse(dispatcher.queueDepths().containsKey("gw-gone"));
+        assertTrue(dispatcher.queueDepths().containsKey("gw-1"));
+    }
+
+    @Test
+    void testAwaitTermination_ShedsQueuedTasks() throws InterruptedException {
+        CountDownLatch processing = new CountDownLatch(1);
+        List<GatewayPushTask> shed = new CopyOnWriteArrayList<>();
+        dispatcher =
+                new GatewayPushDispatcher(
+                        new GatewayDispatchConfig(10, 1, 0),
+                        () ->
+                                batch -> {
+                                    processing.countDown();
+                                    try {
+                                        new CountDownLatch(1).await();
+                                    } catch (InterruptedException e) {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                },
+                        shed::add);
+        dispatcher.push(task("gw-1", 0));
+        assertTrue(processing.await(5, TimeUnit.SECONDS));
+        GatewayPushTask queued = task("gw-1", 1);
+        dispatcher.push(queued);
+
+        dispatcher.shutdown();
+        dispatcher.awaitTermination();
+
+        assertEquals(List.of(queued), shed);
+    }
+}
@@ -0,0 +1,134 @@
+package com.fanaujie.ripple.pushserver.service.delivery;
+
+import com.fanaujie.ripple.cache.service.DeliveryCursorStorage;
+import com.fanaujie.ripple.protobuf.msgapiserver.SendMessageReq;
+import com.fanaujie.ripple.protobuf.push.PushMessage;
+import com.fanaujie.ripple.protobuf.push.PushMessageData;
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+import com.fanaujie.ripple.pushserver.service.batch.GatewayPushTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DeliveryRetrySchedulerTest {
+
+    private static final DeliveryRetryConfig CONFIG = new DeliveryRetryConfig(3, 1000, 60000);
+    private static final List<UserOnlineInfo> DEVICES =
+            List.of(
+                    UserOnlineInfo.newBuilder()
+                            .setUserId("1002")
+                            .setDeviceId("device-1")
+                            .setServerLocation("10.0.0.1:10103")
+                            .build());
+
+    private DeliveryCursorStorage cursorStorage;
+    private DeliveryRetryScheduler.Redeliverer redeliverer;
+    private ScheduledExecutorService executor;
+    private DeliveryRetryScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        cursorStorage = mock(DeliveryCursorStorage.class);
+        redeliverer = mock(DeliveryRetryScheduler.Redeliverer.class);
+        executor = mock(ScheduledExecutorService.class);
+        scheduler = new DeliveryRetryScheduler(CONFIG, cursorStorage, redeliverer, executor);
+    }
+
+    private static PushMessage message(long sendTimestamp) {
+        return PushMessage.newBuilder()
+                .setMessageData(
+                        PushMessageData.newBuilder()
+                                .setData(
+                                        SendMessageReq.newBuilder()
+                                                .setConversationId("conv_1")
+                                                .setMessageId(42L)
+                                                .setSendTimestamp(sendTimestamp)))
+                .build();
+    }
+
+    @Test
+    void testOnUndelivered_RetriesWithDoublingBackoff() {
+        PushMessage message = message(System.currentTimeMillis());
+
+        scheduler.onUndelivered(new GatewayPushTask("gw", DEVICES, message, 2), DEVICES);
+
+        ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(retry.capture(), eq(4000L), eq(TimeUnit.MILLISECONDS));
+        retry.getValue().run();
+        ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+        verify(redeliverer)
+                .redeliver(List.of(new DeliveryRetryScheduler.Redelivery(message, DEVICES, 3)));
+        verifyNoInteractions(cursorStorage);
+    }
+
+    @Test
+    void testOnUndelivered_RetriesDueTogetherAreRedeliveredInOneBatch() {
+        PushMessage first = message(System.currentTimeMillis());
+        PushMessage second = message(System.currentTimeMillis());
+
+        scheduler.onUndelivered(new GatewayPushTask("gw", DEVICES, first), DEVICES);
+        scheduler.onUndelivered(new GatewayPushTask("gw", DEVICES, second), DEVICES);
+
+        ArgumentCaptor<Runnable> retries = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(2))
+                .schedule(retries.capture(), eq(1000L), eq(TimeUnit.MILLISECONDS));
+        retries.getAllValues().forEach(Runnable::run);
+        // Only the first due retry queues a drain, the second joins its batch
+        ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+        verify(redeliverer)
+                .redeliver(
+                        List.of(
+                                new DeliveryRetryScheduler.Redelivery(first, DEVICES, 1),
+                                new DeliveryRetryScheduler.Redelivery(second, DEVICES, 1)));
+    }
+
+    @Test
+    void testOnUndelivered_FailedRedeliveryLeavesCursor() {
+        doThrow(new RuntimeException("presence unavailable")).when(redeliverer).redeliver(any());
+        scheduler.onUndelivered(
+                new GatewayPushTask("gw", DEVICES, message(System.currentTimeMillis())), DEVICES);
+
+        ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(retry.capture(), eq(1000L), eq(TimeUnit.MILLISECONDS));
+        retry.getValue().run();
+        ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(drain.capture());
+        drain.getValue().run();
+
+        verify(cursorStorage).recordUndelivered("1002", "device-1", "conv_1", 42L);
+    }
+
+    @Test
+    void testOnUndelivered_RetriesUsedUpLeaveCursor() {
+        scheduler.onUndelivered(
+                new GatewayPushTask("gw", DEVICES, message(System.currentTimeMillis()), 3),
+                DEVICES);
+
+        verify(executor, never()).schedule(any(Runnable.class), anyLong(), any());
+        verify(cursorStorage).recordUndelivered("1002", "device-1", "conv_1", 42L);
+    }
+
+    @Test
+    void testOnUndelivered_ExpiredMessageLeavesCursor() {
+        long expiredTimestamp = System.currentTimeMillis() - CONFIG.expiryMs();
+
+        scheduler.onUndelivered(
+                new GatewayPushTask("gw", DEVICES, message(expiredTimestamp)), DEVICES);
+
+        verify(executor, never()).schedule(any(Runnable.class), anyLong(), any());
+        verify(cursorStorage).recordUndelivered("1002", "device-1", "conv_1", 42L);
+    }
+}
@@ -0,0 +1,123 @@
+package com.fanaujie.ripple.pushserver.service.grpc;
+
+import com.fanaujie.ripple.protobuf.msggateway.BatchPushMessageRequest;
+import com.fanaujie.ripple.protobuf.msggateway.BatchPushMessageResponse;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrame;
+import com.fanaujie.ripple.protobuf.msggateway.PushFrameAck;
+import com.fanaujie.ripple.protobuf.msggateway.PushMessageResponse;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GatewayPushStreamTest {
+
+    private ClientCallStreamObserver<PushFrame> requestStream;
+    private GatewayPushStream stream;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        requestStream = mock(ClientCallStreamObserver.class);
+        when(requestStream.isReady()).thenReturn(true);
+        stream = new GatewayPushStream("gw-1", 50, 100);
+        stream.beforeStart(requestStream);
+    }
+
+    private static PushFrame.Builder frame() {
+        return PushFrame.newBuilder().setBatch(BatchPushMessageRequest.getDefaultInstance());
+    }
+
+    private static Status.Code statusOf(CompletableFuture<?> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        return Status.fromThrowable(e.getCause()).getCode();
+    }
+
+    @Test
+    void testSend_CompletesWithTheAckOfItsSequence() {
+        CompletableFuture<BatchPushMessageResponse> first = stream.send(frame());
+        CompletableFuture<BatchPushMessageResponse> second = stream.send(frame());
+
+        ArgumentCaptor<PushFrame> sent = ArgumentCaptor.forClass(PushFrame.class);
+        verify(requestStream, times(2)).onNext(sent.capture());
+        assertEquals(0L, sent.getAllValues().get(0).getSequence());
+        assertEquals(1L, sent.getAllValues().get(1).getSequence());
+
+        BatchPushMessageResponse response =
+                BatchPushMessageResponse.newBuilder()
+                        .addResponses(PushMessageResponse.newBuilder().setIsSuccess(true))
+                        .build();
+        stream.onNext(PushFrameAck.newBuilder().setSequence(1).setResponse(response).build());
+
+        assertFalse(first.isDone());
+        assertEquals(response, second.join());
+    }
+
+    @Test
+    void testSend_NotReadyStreamFailsAfterTimeout() {
+        when(requestStream.isReady()).thenReturn(false);
+
+        CompletableFuture<BatchPushMessageResponse> acked = stream.send(frame());
+
+        assertEquals(Status.Code.UNAVAILABLE, statusOf(acked));
+        verify(requestStream, never()).onNext(any());
+    }
+
+    @Test
+    void testSend_FrameWithoutAckFailsAndCancelsTheStream() {
+        CompletableFuture<BatchPushMessageResponse> acked = stream.send(frame());
+
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, statusOf(acked));
+        verify(requestStream).cancel(any(), isNull());
+    }
+
+    @Test
+    void testSend_AckedFrameDoesNotCancelTheStream() throws InterruptedException {
+        CompletableFuture<BatchPushMessageResponse> acked = stream.send(frame());
+        stream.onNext(PushFrameAck.newBuilder().setSequence(0).build());
+
+        Thread.sleep(200);
+
+        assertTrue(acked.isDone());
+        verify(requestStream, never()).cancel(any(), any());
+    }
+
+    @Test
+    void testOnError_FailsPendingFramesAndLaterSends() {
+        CompletableFuture<BatchPushMessageResponse> pending = stream.send(frame());
+
+        stream.onError(Status.UNAVAILABLE.asRuntimeException());
+
+        assertEquals(Status.Code.UNAVAILABLE, statusOf(pending));
+        assertTrue(stream.isClosed());
+        assertFalse(stream.isUnsupported());
+        assertEquals(Status.Code.UNAVAILABLE, statusOf(stream.send(frame())));
+    }
+
+    @Test
+    void testOnError_UnimplementedMarksGatewayUnsupported() {
+        CompletableFuture<BatchPushMessageResponse> pending = stream.send(frame());
+
+        stream.onError(Status.UNIMPLEMENTED.asRuntimeException());
+
+        assertEquals(Status.Code.UNIMPLEMENTED, statusOf(pending));
+        assertTrue(stream.isUnsupported());
+    }
+
+    @Test
+    void testClose_HalfClosesOnce() {
+        stream.close();
+        stream.close();
+
+        verify(requestStream).onCompleted();
+        assertTrue(stream.isClosed());
+    }
+}
@@ -0,0 +1,83 @@
+package com.fanaujie.ripple.pushserver.service.route;
+
+import com.fanaujie.ripple.protobuf.userpresence.UserOnlineInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+
+    private static final long TTL_MS = 60000;
+    private static final List<UserOnlineInfo> DEVICES =
+            List.of(
+                    UserOnlineInfo.newBuilder()
+                            .setUserId("1002")
+                            .setDeviceId("device-1")
+                            .setServerLocation("10.0.0.1:10103")
+                            .build());
+
+    private long now;
+    private RouteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        cache = new RouteCache(TTL_MS, 2, () -> now);
+    }
+
+    @Test
+    void testGet_HitUntilExpired() {
+        assertNull(cache.get("1002"));
+        cache.put("1002", DEVICES, cache.version("1002"));
+        cache.put("1003", List.of(), cache.version("1003"));
+
+        assertEquals(DEVICES, cache.get("1002"));
+        assertEquals(List.of(), cache.get("1003"));
+
+        now += TimeUnit.MILLISECONDS.toNanos(TTL_MS);
+        assertNull(cache.get("1002"));
+    }
+
+    @Test
+    void testPut_StaleVersionAfterInvalidateIsIgnored() {
+        long version = cache.version("1002");
+        cache.invalidate("1002");
+
+        cache.put("1002", DEVICES, version);
+        assertNull(cache.get("1002"));
+
+        cache.put("1002", DEVICES, cache.version("1002"));
+        assertEquals(DEVICES, cache.get("1002"));
+        cache.invalidate("1002");
+        assertNull(cache.get("1002"));
+    }
+
+    @Test
+    void testClear_DropsEntriesAndPendingVersions() {
+        long version = cache.version("1003");
+        cache.put("1002", DEVICES, cache.version("1002"));
+
+        cache.clear();
+        cache.put("1003", List.of(), version);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPut_FullCacheSweepsExpiredEntries() {
+        cache.put("1002", DEVICES, cache.version("1002"));
+        cache.put("1003", List.of(), cache.version("1003"));
+
+        cache.put("1004", List.of(), cache.version("1004"));
+        assertNull(cache.get("1004"));
+
+        now += TimeUnit.MILLISECONDS.toNanos(TTL_MS);
+        cache.put("1004", List.of(), cache.version("1004"));
+        assertEquals(List.of(), cache.get("1004"));
+        assertEquals(1, cache.size());
+    }
+}
@@ -1,37 +1,125 @@
 package com.fanaujie.ripple.snowflakeid.client;
 
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandler;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandlerContext;
-import com.fanaujie.ripple.shaded.netty.channel.SimpleChannelInboundHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelDuplexHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelFutureListener;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelPromise;
+import com.fanaujie.ripple.shaded.io.netty.util.collection.LongObjectHashMap;
+import com.fanaujie.ripple.shaded.io.netty.util.collection.LongObjectMap;
+import com.fanaujie.ripple.shaded.io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.nio.channels.ClosedChannelException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-@ChannelHandler.Sharable
-public class ClientHandler extends SimpleChannelInboundHandler<GenerateIdResponse> {
+// One instance per channel. The pending map is only touched on the channel's event loop.
+public class ClientHandler extends ChannelDuplexHandler {
 
     private final Logger logger = LoggerFactory.getLogger(ClientHandler.class);
-    private final Map<String, CompletableFuture<GenerateIdResponse>> responseFutures;
+    private final LongObjectMap<PendingRequest> pendingRequests = new LongObjectHashMap<>();
+    private final long expiryIntervalMs;
+    private final ClientMetrics metrics;
+    private ScheduledFuture<?> expiryTask;
 
-    public ClientHandler(Map<String, CompletableFuture<GenerateIdResponse>> responseFutures) {
-        this.responseFutures = responseFutures;
+    ClientHandler(long expiryIntervalMs, ClientMetrics metrics) {
+        this.expiryIntervalMs = expiryIntervalMs;
+        this.metrics = metrics;
     }
 
     @Override
-    protected void channelRead0(
-            ChannelHandlerContext channelHandlerContext, GenerateIdResponse generateIdResponse)
-            throws Exception {
-        CompletableFuture<GenerateIdResponse> v =
-                this.responseFutures.get(generateIdResponse.getRequestId());
-        if (v != null) {
-            v.complete(generateIdResponse);
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.expiryTask =
+                ctx.executor()
+                        .scheduleAtFixedRate(
+                                this::expirePendingRequests,
+                                expiryIntervalMs,
+                                expiryIntervalMs,
+                                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof PendingRequest pending)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        long correlationId = pending.request().getCorrelationId();
+        pendingRequests.put(correlationId, pending);
+        metrics.requestStarted();
+        promise.addListener(
+                (ChannelFutureListener)
+                        f -> {
+                            if (!f.isSuccess()) {
+                                fail(correlationId, f.cause());
+                            }
+                        });
+        ctx.write(pending.request(), promise);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof GenerateIdResponse response)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        PendingRequest pending = pendingRequests.remove(response.getCorrelationId());
+        if (pending != null) {
+            metrics.requestFinished();
+            pending.future().complete(response);
         } else {
+            // Already expired, or an answer to a request this channel never sent
             logger.warn(
-                    "Received response for unknown requestId: {}",
-                    generateIdResponse.getRequestId());
+                    "Received response for unknown correlationId: {}",
+                    response.getCorrelationId());
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (expiryTask != null) {
+            expiryTask.cancel(false);
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        for (PendingRequest pending : pendingRequests.values()) {
+            metrics.requestFinished();
+            pending.future().completeExceptionally(cause);
+        }
+        pendingRequests.clear();
+        super.channelInactive(ctx);
+    }
+
+    private void fail(long correlationId, Throwable cause) {
+        PendingRequest pending = pendingRequests.remove(correlationId);
+        if (pending != null) {
+            metrics.requestFinished();
+            pending.future().completeExceptionally(cause);
+        }
+    }
+
+    private void expirePendingRequests() {
+        if (pendingRequests.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<LongObjectMap.PrimitiveEntry<PendingRequest>> it =
+                pendingRequests.entries().iterator();
+        while (it.hasNext()) {
+            PendingRequest pending = it.next().value();
+            if (now - pending.deadlineNanos() >= 0) {
+                it.remove();
+                metrics.requestFinished();
+                metrics.requestTimedOut();
+                pending.future()
+                        .completeExceptionally(
+                                new TimeoutException(
+                                        "Snowflake id request "
+                                                + pending.request().getCorrelationId()
+                                                + " timed out"));
+            }
         }
     }
 }
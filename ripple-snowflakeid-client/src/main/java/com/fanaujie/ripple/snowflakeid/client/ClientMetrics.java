@@ -0,0 +1,41 @@
+package com.fanaujie.ripple.snowflakeid.client;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class ClientMetrics {
+    private final LongAdder pendingRequests = new LongAdder();
+    private final LongCounter timedOutRequestCounter;
+
+    ClientMetrics() {
+        Meter meter = GlobalOpenTelemetry.getMeter("snowflakeid-client");
+        meter.upDownCounterBuilder("snowflake_client_pending_requests")
+                .setDescription("Number of id requests waiting for a response")
+                .setUnit("1")
+                .buildWithCallback(m -> m.record(pendingRequests.sum()));
+        this.timedOutRequestCounter =
+                meter.counterBuilder("snowflake_client_request_timeouts")
+                        .setDescription("Number of id requests that expired without a response")
+                        .setUnit("1")
+                        .build();
+    }
+
+    void requestStarted() {
+        pendingRequests.increment();
+    }
+
+    void requestFinished() {
+        pendingRequests.decrement();
+    }
+
+    void requestTimedOut() {
+        timedOutRequestCounter.add(1);
+    }
+
+    long pendingRequests() {
+        return pendingRequests.sum();
+    }
+}
@@ -0,0 +1,50 @@
+package com.fanaujie.ripple.snowflakeid.client;
+
+// Ring buffer of ids leased from the server. Ids are appended in ascending order, so once the
+// head is older than the max lease age every id behind it is checked the same way.
+class LeasedIdBuffer {
+    private final long[] ring;
+    private final long maxLeaseAgeMs;
+    private int head = 0;
+    private int size = 0;
+
+    LeasedIdBuffer(int capacity, long maxLeaseAgeMs) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.ring = new long[capacity];
+        this.maxLeaseAgeMs = maxLeaseAgeMs;
+    }
+
+    // Returns the number of ids that were added, ids that don't fit are dropped.
+    synchronized int offer(Iterable<Long> ids) {
+        int added = 0;
+        for (long id : ids) {
+            if (size == ring.length) {
+                break;
+            }
+            ring[(head + size) % ring.length] = id;
+            size++;
+            added++;
+        }
+        return added;
+    }
+
+    // Returns the next id that is not older than the max lease age, otherwise -1.
+    synchronized long poll(long nowMs) {
+        long minTimestamp = nowMs - SnowflakeIds.EPOCH_MS - maxLeaseAgeMs;
+        while (size > 0) {
+            long id = ring[head];
+            head = (head + 1) % ring.length;
+            size--;
+            if (SnowflakeIds.timestampOf(id) >= minTimestamp) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,13 @@
+package com.fanaujie.ripple.snowflakeid.client;
+
+import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdRequest;
+import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+// Written to the channel instead of the bare request, so ClientHandler can register the future
+// on the event loop before the request goes out.
+record PendingRequest(
+        GenerateIdRequest request,
+        CompletableFuture<GenerateIdResponse> future,
+        long deadlineNanos) {}
@@ -1,36 +1,92 @@
 package com.fanaujie.ripple.snowflakeid.client;
 
+import com.fanaujie.ripple.communication.transport.NettyTransport;
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdRequest;
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
-import com.fanaujie.ripple.shaded.netty.bootstrap.Bootstrap;
-import com.fanaujie.ripple.shaded.netty.channel.*;
-import com.fanaujie.ripple.shaded.netty.channel.nio.NioIoHandler;
-import com.fanaujie.ripple.shaded.netty.channel.pool.AbstractChannelPoolHandler;
-import com.fanaujie.ripple.shaded.netty.channel.pool.ChannelPool;
-import com.fanaujie.ripple.shaded.netty.channel.pool.SimpleChannelPool;
-import com.fanaujie.ripple.shaded.netty.channel.socket.nio.NioSocketChannel;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufDecoder;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufEncoder;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
-import com.fanaujie.ripple.shaded.netty.util.concurrent.Future;
+import com.fanaujie.ripple.shaded.io.netty.bootstrap.Bootstrap;
+import com.fanaujie.ripple.shaded.io.netty.channel.*;
+import com.fanaujie.ripple.shaded.io.netty.channel.pool.AbstractChannelPoolHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.pool.ChannelPool;
+import com.fanaujie.ripple.shaded.io.netty.channel.pool.SimpleChannelPool;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufDecoder;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufEncoder;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
+import com.fanaujie.ripple.shaded.io.netty.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class SnowflakeIdClient {
-    private final RequestIdGenerator requestIdGenerator = new RequestIdGenerator();
-    private final Map<String, CompletableFuture<GenerateIdResponse>> responseFutures = new ConcurrentHashMap<String, CompletableFuture<GenerateIdResponse>>();
+    private static final Logger logger = LoggerFactory.getLogger(SnowflakeIdClient.class);
+    public static final int DEFAULT_LEASE_SIZE = 256;
+    public static final int DEFAULT_LOW_WATER_MARK = 64;
+    // Leased ids carry the time they were generated, stale ones would skew message ordering
+    public static final long DEFAULT_MAX_LEASE_AGE_MS = 1000;
+    public static final long DEFAULT_REQUEST_TIMEOUT_MS = 3000;
+    private static final long MIN_EXPIRY_INTERVAL_MS = 10;
+
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private final ClientMetrics metrics = new ClientMetrics();
     private final ChannelPool channelPool;
+    private final long requestTimeoutNanos;
+    private final int leaseSize;
+    private final int lowWaterMark;
+    private final LeasedIdBuffer leasedIds;
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
 
     public SnowflakeIdClient(String host, int port) {
-        EventLoopGroup group = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
+        this(
+                host,
+                port,
+                DEFAULT_LEASE_SIZE,
+                DEFAULT_LOW_WATER_MARK,
+                DEFAULT_MAX_LEASE_AGE_MS,
+                DEFAULT_REQUEST_TIMEOUT_MS,
+                NettyTransport.select(NettyTransport.AUTO));
+    }
+
+    /**
+     * @param leaseSize number of ids leased per round trip, 0 disables prefetching.
+     * @param lowWaterMark remaining leased ids that trigger an asynchronous refill.
+     * @param requestTimeoutMs time after which an unanswered request fails with a
+     *     TimeoutException.
+     * @param transport netty transport of the client connections, see NettyTransport#select.
+     */
+    public SnowflakeIdClient(
+            String host,
+            int port,
+            int leaseSize,
+            int lowWaterMark,
+            long maxLeaseAgeMs,
+            long requestTimeoutMs,
+            NettyTransport transport) {
+        if (leaseSize < 0) {
+            throw new IllegalArgumentException("leaseSize must not be negative");
+        }
+        if (lowWaterMark < 0 || (leaseSize > 0 && lowWaterMark >= leaseSize)) {
+            throw new IllegalArgumentException("lowWaterMark must be between 0 and leaseSize");
+        }
+        if (requestTimeoutMs <= 0) {
+            throw new IllegalArgumentException("requestTimeoutMs must be greater than 0");
+        }
+        this.requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestTimeoutMs);
+        long expiryIntervalMs = Math.max(MIN_EXPIRY_INTERVAL_MS, requestTimeoutMs / 4);
+        this.leaseSize = leaseSize;
+        this.lowWaterMark = lowWaterMark;
+        // At most one refill is in flight, so the ring never holds more than this
+        this.leasedIds =
+                leaseSize > 0 ? new LeasedIdBuffer(leaseSize + lowWaterMark, maxLeaseAgeMs) : null;
+        EventLoopGroup group = new MultiThreadIoEventLoopGroup(transport.ioHandlerFactory());
         Bootstrap bootstrap = new Bootstrap()
                 .group(group)
-                .channel(NioSocketChannel.class)
+                .channel(transport.channelClass())
                 .remoteAddress(host, port);
         this.channelPool = new SimpleChannelPool(bootstrap, new AbstractChannelPoolHandler() {
             @Override
@@ -40,7 +96,7 @@ public class SnowflakeIdClient {
                 pipeline.addLast("protobufDecoder", new ProtobufDecoder(GenerateIdResponse.getDefaultInstance()));
                 pipeline.addLast("frameEncoder", new ProtobufVarint32LengthFieldPrepender());
                 pipeline.addLast("protobufEncoder", new ProtobufEncoder());
-                pipeline.addLast("handler", new ClientHandler(responseFutures));
+                pipeline.addLast("handler", new ClientHandler(expiryIntervalMs, metrics));
             }
             @Override
             public void channelAcquired(Channel channel) throws Exception {
@@ -56,32 +112,58 @@ public class SnowflakeIdClient {
 
 
     public CompletableFuture<GenerateIdResponse> requestSnowflakeId() {
-        String requestId = this.requestIdGenerator.generateRequestId();
-        GenerateIdRequest request = GenerateIdRequest.newBuilder().setRequestId(requestId).build();
+        if (leasedIds == null) {
+            return sendRequest(1);
+        }
+        long id = leasedIds.poll(System.currentTimeMillis());
+        if (leasedIds.size() <= lowWaterMark) {
+            refillAsync();
+        }
+        if (id < 0) {
+            // Lease exhausted or expired, don't wait for the refill
+            return sendRequest(1);
+        }
+        return CompletableFuture.completedFuture(GenerateIdResponse.newBuilder().setId(id).build());
+    }
 
+    private void refillAsync() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        sendRequest(leaseSize)
+                .whenComplete(
+                        (response, e) -> {
+                            if (e != null) {
+                                logger.warn("refillAsync: Failed to lease snowflake ids", e);
+                            } else {
+                                leasedIds.offer(response.getIdsList());
+                            }
+                            refilling.set(false);
+                        });
+    }
+
+    private CompletableFuture<GenerateIdResponse> sendRequest(int count) {
+        GenerateIdRequest request =
+                GenerateIdRequest.newBuilder()
+                        .setCorrelationId(nextCorrelationId.incrementAndGet())
+                        .setCount(count)
+                        .build();
         CompletableFuture<GenerateIdResponse> future = new CompletableFuture<>();
-        this.responseFutures.put(requestId, future);
+        PendingRequest pending =
+                new PendingRequest(request, future, System.nanoTime() + requestTimeoutNanos);
+
         Future<Channel> channelFuture = channelPool.acquire();
         channelFuture.addListener((Future<Channel> f)  -> {
             if (f.isSuccess()) {
                 Channel channel = f.getNow();
-                ChannelFuture writeFuture = channel.writeAndFlush(request);
-                writeFuture.addListener((ChannelFuture wf) -> {
-                    if (wf.isSuccess()) {
-                        this.channelPool.release(channel);
-                    } else {
-                        responseFutures.remove(requestId);
-                        future.completeExceptionally(wf.cause());
-                        this.channelPool.release(channel);
-                    }
-                });
+                // ClientHandler fails the future if the write fails
+                channel.writeAndFlush(pending);
+                this.channelPool.release(channel);
             } else {
-                responseFutures.remove(requestId);
                 future.completeExceptionally(f.cause());
             }
         });
 
         return future;
     }
-
 }
@@ -0,0 +1,27 @@
+package com.fanaujie.ripple.snowflakeid.client;
+
+/**
+ * Layout of the ids issued by the snowflake id server: the milliseconds since EPOCH_MS, then the
+ * node id, then the sequence within the millisecond. Code reading ids back uses these constants so
+ * it can't drift from the generator.
+ */
+public final class SnowflakeIds {
+    // Date and time (GMT): Wednesday, January 1, 2025 0:00:00
+    public static final long EPOCH_MS = 1735689600000L;
+    public static final int NODE_ID_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    // Node id and sequence bits below the timestamp
+    public static final int TIMESTAMP_SHIFT = NODE_ID_BITS + SEQUENCE_BITS;
+
+    private SnowflakeIds() {}
+
+    /** @return the milliseconds since EPOCH_MS at which id was issued. */
+    public static long timestampOf(long id) {
+        return id >>> TIMESTAMP_SHIFT;
+    }
+
+    /** @return the Unix time in milliseconds at which id was issued. */
+    public static long createdAtMillis(long id) {
+        return timestampOf(id) + EPOCH_MS;
+    }
+}
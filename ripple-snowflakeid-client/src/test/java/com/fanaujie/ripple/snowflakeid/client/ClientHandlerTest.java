@@ -0,0 +1,89 @@
+package com.fanaujie.ripple.snowflakeid.client;
+
+import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdRequest;
+import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
+import com.fanaujie.ripple.shaded.io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientHandlerTest {
+
+    private ClientMetrics metrics;
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new ClientMetrics();
+        channel = new EmbeddedChannel(new ClientHandler(10, metrics));
+    }
+
+    private CompletableFuture<GenerateIdResponse> send(long correlationId, long timeoutNanos) {
+        CompletableFuture<GenerateIdResponse> future = new CompletableFuture<>();
+        GenerateIdRequest request =
+                GenerateIdRequest.newBuilder().setCorrelationId(correlationId).build();
+        channel.writeAndFlush(new PendingRequest(request, future, System.nanoTime() + timeoutNanos));
+        return future;
+    }
+
+    @Test
+    void testResponseCompletesAndRemovesPendingRequest() throws Exception {
+        // Given
+        CompletableFuture<GenerateIdResponse> future = send(1, TimeUnit.SECONDS.toNanos(10));
+        GenerateIdRequest written = channel.readOutbound();
+        assertEquals(1, written.getCorrelationId());
+        assertEquals(1, metrics.pendingRequests());
+
+        // When
+        channel.writeInbound(
+                GenerateIdResponse.newBuilder().setCorrelationId(1).setId(99).build());
+
+        // Then
+        assertEquals(99, future.get().getId());
+        assertEquals(0, metrics.pendingRequests());
+    }
+
+    @Test
+    void testUnknownCorrelationIdIsIgnored() {
+        CompletableFuture<GenerateIdResponse> future = send(1, TimeUnit.SECONDS.toNanos(10));
+
+        channel.writeInbound(
+                GenerateIdResponse.newBuilder().setCorrelationId(2).setId(99).build());
+
+        assertFalse(future.isDone());
+        assertEquals(1, metrics.pendingRequests());
+    }
+
+    @Test
+    void testPendingRequestExpires() throws Exception {
+        // Given
+        CompletableFuture<GenerateIdResponse> future = send(1, 0);
+
+        // When
+        Thread.sleep(20);
+        channel.runPendingTasks();
+
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertEquals(0, metrics.pendingRequests());
+    }
+
+    @Test
+    void testChannelCloseFailsPendingRequests() {
+        CompletableFuture<GenerateIdResponse> future = send(1, TimeUnit.SECONDS.toNanos(10));
+
+        channel.close();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(ClosedChannelException.class, exception.getCause());
+        assertEquals(0, metrics.pendingRequests());
+    }
+}
@@ -0,0 +1,54 @@
+package com.fanaujie.ripple.snowflakeid.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeasedIdBufferTest {
+
+    private static final long EPOCH = 1735689600000L;
+
+    private static long idAt(long timestampMs, long sequence) {
+        return ((timestampMs - EPOCH) << 22) | sequence;
+    }
+
+    @Test
+    void testPoll_EmptyBuffer() {
+        LeasedIdBuffer buffer = new LeasedIdBuffer(4, 1000);
+
+        assertEquals(-1, buffer.poll(System.currentTimeMillis()));
+    }
+
+    @Test
+    void testPoll_ReturnsIdsInOrderAcrossWrapAround() {
+        // Given
+        long now = System.currentTimeMillis();
+        LeasedIdBuffer buffer = new LeasedIdBuffer(3, 1000);
+        buffer.offer(List.of(idAt(now, 1), idAt(now, 2)));
+        assertEquals(idAt(now, 1), buffer.poll(now));
+
+        // When - the second block wraps around the end of the ring
+        int added = buffer.offer(List.of(idAt(now, 3), idAt(now, 4), idAt(now, 5)));
+
+        // Then
+        assertEquals(2, added);
+        assertEquals(idAt(now, 2), buffer.poll(now));
+        assertEquals(idAt(now, 3), buffer.poll(now));
+        assertEquals(idAt(now, 4), buffer.poll(now));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void testPoll_SkipsExpiredIds() {
+        // Given
+        long now = System.currentTimeMillis();
+        LeasedIdBuffer buffer = new LeasedIdBuffer(4, 1000);
+        buffer.offer(List.of(idAt(now - 5000, 1), idAt(now - 5000, 2), idAt(now, 1)));
+
+        // When & Then
+        assertEquals(idAt(now, 1), buffer.poll(now));
+        assertEquals(-1, buffer.poll(now));
+    }
+}
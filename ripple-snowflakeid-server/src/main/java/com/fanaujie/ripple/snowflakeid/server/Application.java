@@ -1,6 +1,7 @@
 package com.fanaujie.ripple.snowflakeid.server;
 
 import com.fanaujie.ripple.snowflakeid.server.service.snowflakeid.SnowflakeIdService;
+import com.fanaujie.ripple.communication.transport.NettyTransport;
 import com.fanaujie.ripple.communication.zookeeper.ZookeeperWorkerIdService;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.Config;
@@ -17,6 +18,7 @@ public class Application {
         String zookeeperAddr = config.getString("zookeeper.address");
         String zookeeperLockPath = config.getString("zookeeper.lockPath");
         String zookeeperIdsPath = config.getString("zookeeper.idsPath");
+        NettyTransport transport = NettyTransport.select(config.getString("server.netty.transport"));
         logger.info("GRPC server starting on port: {}", port);
         logger.info("zookeeper.address = {}", zookeeperAddr);
         logger.info("zookeeper.lockPath = {}", zookeeperLockPath);
@@ -29,7 +31,7 @@ public class Application {
                 logger.error("Failed to acquire a worker ID from Zookeeper.");
             } else {
                 logger.info("Acquired worker ID: {}", workerId);
-                SnowflakeIdService snowflakeIdService = new SnowflakeIdService(workerId, port);
+                SnowflakeIdService snowflakeIdService = new SnowflakeIdService(workerId, port, transport);
                 try {
                     snowflakeIdService.start();
                 } catch (Exception e) {
@@ -2,24 +2,39 @@ package com.fanaujie.ripple.snowflakeid.server.service.snowflakeid;
 
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdRequest;
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandler;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandlerContext;
-import com.fanaujie.ripple.shaded.netty.channel.SimpleChannelInboundHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandler;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.SimpleChannelInboundHandler;
 
 @ChannelHandler.Sharable
 public class ServerHandler extends SimpleChannelInboundHandler<GenerateIdRequest> {
 
+    // One millisecond worth of sequence numbers, larger leases are truncated
+    static final int MAX_LEASE_COUNT = 4096;
+
     private final SnowflakeIdGenerator snowflakeIdGenerator;
 
     public ServerHandler(SnowflakeIdGenerator snowflakeIdGenerator) {
         this.snowflakeIdGenerator = snowflakeIdGenerator;
     }
     @Override
+    @SuppressWarnings("deprecation")
     protected void channelRead0(ChannelHandlerContext channelHandlerContext, GenerateIdRequest generateIdRequest) throws Exception {
-        GenerateIdResponse res = GenerateIdResponse.newBuilder()
-                .setRequestId(generateIdRequest.getRequestId())
-                .setId(this.snowflakeIdGenerator.nextId())
-                .build();
-        channelHandlerContext.writeAndFlush(res);
+        GenerateIdResponse.Builder builder =
+                GenerateIdResponse.newBuilder()
+                        .setRequestId(generateIdRequest.getRequestId())
+                        .setCorrelationId(generateIdRequest.getCorrelationId());
+        if (generateIdRequest.getCount() > 1) {
+            long[] ids =
+                    this.snowflakeIdGenerator.nextIds(
+                            Math.min(generateIdRequest.getCount(), MAX_LEASE_COUNT));
+            for (long id : ids) {
+                builder.addIds(id);
+            }
+            builder.setId(ids[0]);
+        } else {
+            builder.setId(this.snowflakeIdGenerator.nextId());
+        }
+        channelHandlerContext.writeAndFlush(builder.build());
     }
 }
@@ -1,40 +1,52 @@
 package com.fanaujie.ripple.snowflakeid.server.service.snowflakeid;
 
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIds;
 import io.opentelemetry.api.GlobalOpenTelemetry;
-import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.metrics.LongCounter;
-import io.opentelemetry.api.metrics.LongHistogram;
 import io.opentelemetry.api.metrics.Meter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 
 public class SnowflakeIdGenerator {
     private static final Logger logger = LoggerFactory.getLogger(SnowflakeIdGenerator.class);
 
-    // OpenTelemetry metrics
-    private final LongCounter idGeneratedCounter;
-    private final LongCounter sequenceOverflowCounter;
-    private final LongHistogram generationDurationHistogram;
-
     // private static final int UNUSED_BITS = 1;
     private static final int TIMESTAMP_BITS = 41;
-    private static final int NODE_ID_BITS = 10;
-    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_ID_BITS = SnowflakeIds.NODE_ID_BITS;
+    private static final int SEQUENCE_BITS = SnowflakeIds.SEQUENCE_BITS;
 
     private static final long maxNodeId = (1L << NODE_ID_BITS) - 1;
     private static final long maxSequence = (1L << SEQUENCE_BITS) - 1;
     private static final long maxTimestamp = (1L << TIMESTAMP_BITS) - 1;
 
-    // Date and time (GMT): Wednesday, January 1, 2025 0:00:00
-    private static final long DEFAULT_EPOCH = 1735689600000L;
+    private static final long DEFAULT_EPOCH = SnowflakeIds.EPOCH_MS;
+
+    // The wall clock falling further behind its latest reading than this is refused, smaller
+    // steps back (e.g. NTP slews) wait for the clock to catch up again
+    private static final long MAX_CLOCK_BACKWARD_MS = 10;
+    // Callers waiting for the clock park in slices this long instead of spinning
+    private static final long WAIT_PARK_NANOS = 100_000L;
 
     private final long nodeId;
-    private long sequence = 0L;
-    private long lastTimestamp = -1L;
+    private final LongSupplier clock;
+    // (timestamp - epoch) << SEQUENCE_BITS | sequence of the last issued id
+    private final AtomicLong state = new AtomicLong(0L);
+    // Latest wall clock reading (timestamp - epoch), independent of ids reserved ahead of it
+    private final AtomicLong lastObservedTime = new AtomicLong(0L);
+
+    // Striped counters, exported when the metric reader collects
+    private final LongAdder idGeneratedCount = new LongAdder();
+    private final LongAdder sequenceOverflowCount = new LongAdder();
 
     public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
         logger.debug("SnowflakeIdGenerator: Initializing with nodeId: {}", nodeId);
         if (nodeId < 0 || nodeId > maxNodeId) {
             logger.error(
@@ -45,109 +57,106 @@ public class SnowflakeIdGenerator {
                     String.format("NodeId must be between %d and %d", 0, maxNodeId));
         }
         this.nodeId = nodeId;
+        this.clock = clock;
 
         // Initialize OpenTelemetry metrics
         Meter meter = GlobalOpenTelemetry.getMeter("snowflakeid-server");
-        this.idGeneratedCounter = meter.counterBuilder("snowflake_id_generated")
+        meter.counterBuilder("snowflake_id_generated")
                 .setDescription("Total number of snowflake IDs generated")
                 .setUnit("1")
-                .build();
-        this.sequenceOverflowCounter = meter.counterBuilder("snowflake_sequence_overflow")
+                .buildWithCallback(m -> m.record(idGeneratedCount.sum()));
+        meter.counterBuilder("snowflake_sequence_overflow")
                 .setDescription("Number of sequence overflow events")
                 .setUnit("1")
-                .build();
-        this.generationDurationHistogram = meter.histogramBuilder("snowflake_id_generation_duration")
-                .setDescription("Duration of ID generation in microseconds")
-                .setUnit("us")
-                .ofLongs()
-                .build();
+                .buildWithCallback(m -> m.record(sequenceOverflowCount.sum()));
 
         logger.debug("SnowflakeIdGenerator: Initialization complete for nodeId: {}", nodeId);
     }
 
-    public synchronized long nextId() {
-        long startNanos = System.nanoTime();
-        long currentTimestamp = timestamp();
-        logger.debug(
-                "nextId: Current timestamp: {}, lastTimestamp: {}, sequence: {}",
-                currentTimestamp,
-                lastTimestamp,
-                sequence);
+    public long nextId() {
+        return toId(reserve(1));
+    }
 
-        if (currentTimestamp < lastTimestamp) {
-            logger.error(
-                    "nextId: Clock moved backwards. Current: {}, Last: {}, Difference: {} ms",
-                    currentTimestamp,
-                    lastTimestamp,
-                    lastTimestamp - currentTimestamp);
-            throw new IllegalStateException(
-                    String.format(
-                            "Clock moved backwards. Refusing to generate id for %d milliseconds",
-                            lastTimestamp - currentTimestamp));
+    // Leases a block of ascending ids with a single CAS
+    public long[] nextIds(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be greater than 0");
+        }
+        long last = reserve(count);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = toId(last - (count - 1 - i));
         }
-        if (currentTimestamp == lastTimestamp) {
-            // Same millisecond, increment sequence
-            sequence = (sequence + 1) & maxSequence;
-            logger.debug("nextId: Same millisecond, incremented sequence to: {}", sequence);
-            if (sequence == 0L) {
-                // Sequence overflow, wait for next millisecond
-                logger.debug("nextId: Sequence overflow detected, waiting for next millisecond");
-                sequenceOverflowCounter.add(1);
-                currentTimestamp = waitNextMillis(lastTimestamp);
-                logger.debug("nextId: Got next millisecond: {}", currentTimestamp);
+        return ids;
+    }
+
+    // Reserves count consecutive states and returns the last one
+    private long reserve(int count) {
+        while (true) {
+            long prev = state.get();
+            long now = currentTime();
+            long prevTimestamp = prev >>> SEQUENCE_BITS;
+            if (prevTimestamp > now) {
+                // Earlier reservations borrowed upcoming milliseconds, let the clock catch up
+                // before borrowing more so the backlog stays within a single lease
+                waitUntil(prevTimestamp);
+                continue;
+            }
+            long first = prevTimestamp < now ? now << SEQUENCE_BITS : prev + 1;
+            long last = first + count - 1;
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            if (lastTimestamp > maxTimestamp) {
+                logger.error(
+                        "reserve: Timestamp overflow - adjustedTimestamp: {} exceeds maxTimestamp: {}",
+                        lastTimestamp,
+                        maxTimestamp);
+                throw new IllegalStateException("Timestamp overflow");
+            }
+            if (!state.compareAndSet(prev, last)) {
+                continue;
             }
-        } else {
-            // New millisecond, reset sequence
-            sequence = 0L;
-            logger.debug("nextId: New millisecond detected, reset sequence to 0");
+            idGeneratedCount.add(count);
+            if (lastTimestamp > now) {
+                // Sequence overflow, the reservation carried into a future millisecond
+                sequenceOverflowCount.increment();
+                waitUntil(lastTimestamp);
+            }
+            return last;
+        }
+    }
+
+    // Reads the clock, a reading behind the latest one is held at the latest one
+    private long currentTime() {
+        // Read the latest reading before the clock, so a stale sample can't look like a regression
+        long observed = lastObservedTime.get();
+        long now = clock.getAsLong() - DEFAULT_EPOCH;
+        if (now >= observed) {
+            lastObservedTime.accumulateAndGet(now, Math::max);
+            return now;
         }
-        lastTimestamp = currentTimestamp;
-        long adjustedTimestamp = currentTimestamp - DEFAULT_EPOCH;
-        logger.debug("nextId: Adjusted timestamp: {}", adjustedTimestamp);
-        if (adjustedTimestamp > maxTimestamp) {
+        if (observed - now > MAX_CLOCK_BACKWARD_MS) {
             logger.error(
-                    "nextId: Timestamp overflow - adjustedTimestamp: {} exceeds maxTimestamp: {}",
-                    adjustedTimestamp,
-                    maxTimestamp);
-            throw new IllegalStateException("Timestamp overflow");
+                    "currentTime: Clock moved backwards. Current: {}, Last: {}",
+                    now + DEFAULT_EPOCH,
+                    observed + DEFAULT_EPOCH);
+            throw new IllegalStateException(
+                    String.format(
+                            "Clock moved backwards. Refusing to generate id for %d milliseconds",
+                            observed - now));
         }
-        long id =
-                (adjustedTimestamp << (NODE_ID_BITS + SEQUENCE_BITS))
-                        | (nodeId << SEQUENCE_BITS)
-                        | sequence;
-
-        // Record metrics
-        long durationMicros = (System.nanoTime() - startNanos) / 1000;
-        idGeneratedCounter.add(1);
-        generationDurationHistogram.record(durationMicros);
-
-        logger.debug(
-                "nextId: Generated snowflake ID: {} (timestamp: {}, nodeId: {}, sequence: {})",
-                id,
-                adjustedTimestamp,
-                nodeId,
-                sequence);
-        return id;
+        return observed;
     }
 
-    private long waitNextMillis(long lastTimestamp) {
-        logger.debug("waitNextMillis: Waiting for next millisecond after: {}", lastTimestamp);
-        long timestamp = timestamp();
-        long waitCount = 0;
-        while (timestamp <= lastTimestamp) {
-            timestamp = timestamp();
-            waitCount++;
-        }
-        logger.debug(
-                "waitNextMillis: Wait completed after {} iterations, got timestamp: {}",
-                waitCount,
-                timestamp);
-        return timestamp;
+    private long toId(long packed) {
+        return ((packed >>> SEQUENCE_BITS) << SnowflakeIds.TIMESTAMP_SHIFT)
+                | (nodeId << SEQUENCE_BITS)
+                | (packed & maxSequence);
     }
 
-    private long timestamp() {
-        long ts = Instant.now().toEpochMilli();
-        logger.trace("timestamp: Current epoch millis: {}", ts);
-        return ts;
+    // Ids are never handed out ahead of the clock
+    private void waitUntil(long adjustedTimestamp) {
+        while (currentTime() < adjustedTimestamp) {
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
     }
 }
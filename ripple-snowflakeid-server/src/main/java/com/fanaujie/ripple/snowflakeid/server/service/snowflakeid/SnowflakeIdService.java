@@ -1,15 +1,14 @@
 package com.fanaujie.ripple.snowflakeid.server.service.snowflakeid;
 
+import com.fanaujie.ripple.communication.transport.NettyTransport;
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdRequest;
-import com.fanaujie.ripple.shaded.netty.bootstrap.ServerBootstrap;
-import com.fanaujie.ripple.shaded.netty.channel.*;
-import com.fanaujie.ripple.shaded.netty.channel.nio.NioIoHandler;
-import com.fanaujie.ripple.shaded.netty.channel.socket.nio.NioServerSocketChannel;
-import com.fanaujie.ripple.shaded.netty.channel.socket.nio.NioSocketChannel;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufDecoder;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufEncoder;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
-import com.fanaujie.ripple.shaded.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
+import com.fanaujie.ripple.shaded.io.netty.bootstrap.ServerBootstrap;
+import com.fanaujie.ripple.shaded.io.netty.channel.*;
+import com.fanaujie.ripple.shaded.io.netty.channel.socket.SocketChannel;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufDecoder;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufEncoder;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import com.fanaujie.ripple.shaded.io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,27 +18,33 @@ public class SnowflakeIdService {
 
     private final long workerId;
     private final int serverPort;
+    private final NettyTransport transport;
 
     public SnowflakeIdService(long workerId, int serverPort) {
+        this(workerId, serverPort, NettyTransport.select(NettyTransport.AUTO));
+    }
+
+    public SnowflakeIdService(long workerId, int serverPort, NettyTransport transport) {
         this.workerId = workerId;
         this.serverPort = serverPort;
+        this.transport = transport;
     }
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
 
     public void start() {
-        bossGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
-        workerGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
+        bossGroup = new MultiThreadIoEventLoopGroup(1, transport.ioHandlerFactory());
+        workerGroup = new MultiThreadIoEventLoopGroup(transport.ioHandlerFactory());
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         SnowflakeIdGenerator snowflakeIdGenerator = new SnowflakeIdGenerator(this.workerId);
         serverBootstrap
                 .group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(transport.serverChannelClass())
                 .childHandler(
-                        new ChannelInitializer<NioSocketChannel>() {
+                        new ChannelInitializer<SocketChannel>() {
                             @Override
-                            protected void initChannel(NioSocketChannel ch) {
+                            protected void initChannel(SocketChannel ch) {
                                 ChannelPipeline pipeline = ch.pipeline();
                                 pipeline.addLast(
                                         "frameDecoder", new ProtobufVarint32FrameDecoder());
@@ -56,7 +61,8 @@ public class SnowflakeIdService {
                         });
         try {
             ChannelFuture serverChannelFuture = serverBootstrap.bind(this.serverPort).sync();
-            logger.info("Server started on port: {}", this.serverPort);
+            logger.info(
+                    "Server started on port: {} with {} transport", this.serverPort, transport);
             serverChannelFuture.channel().closeFuture().sync();
         } catch (Exception e) {
             e.printStackTrace();
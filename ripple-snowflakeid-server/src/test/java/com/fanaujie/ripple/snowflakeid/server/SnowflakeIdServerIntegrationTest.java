@@ -52,11 +52,9 @@ public class SnowflakeIdServerIntegrationTest {
         GenerateIdResponse response = future.get(5, TimeUnit.SECONDS);
 
         assertNotNull(response);
-        assertNotNull(response.getRequestId());
         assertTrue(response.getId() > 0);
 
         System.out.println("Test 1 - Received ID: " + response.getId());
-        System.out.println("Test 1 - Request ID: " + response.getRequestId());
     }
 
     @Test
@@ -71,17 +69,9 @@ public class SnowflakeIdServerIntegrationTest {
         assertNotNull(response2);
         assertTrue(response1.getId() > 0);
         assertTrue(response2.getId() > 0);
-        assertNotEquals(response1.getRequestId(), response2.getRequestId());
-
-        System.out.println(
-                "Test 2 - Response 1 - ID: "
-                        + response1.getId()
-                        + ", Request ID: "
-                        + response1.getRequestId());
-        System.out.println(
-                "Test 2 - Response 2 - ID: "
-                        + response2.getId()
-                        + ", Request ID: "
-                        + response2.getRequestId());
+        assertNotEquals(response1.getId(), response2.getId());
+
+        System.out.println("Test 2 - Response 1 - ID: " + response1.getId());
+        System.out.println("Test 2 - Response 2 - ID: " + response2.getId());
     }
 }
@@ -2,7 +2,7 @@ package com.fanaujie.ripple.snowflakeid.server.service.snowflakeid;
 
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdRequest;
 import com.fanaujie.ripple.protobuf.snowflakeid.GenerateIdResponse;
-import com.fanaujie.ripple.shaded.netty.channel.ChannelHandlerContext;
+import com.fanaujie.ripple.shaded.io.netty.channel.ChannelHandlerContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,6 +10,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -119,4 +121,54 @@ class ServerHandlerTest {
         assertEquals("req-3", responses.get(2).getRequestId());
         assertEquals(300L, responses.get(2).getId());
     }
+
+    @Test
+    void testChannelRead0_LeasesBlockOfIds() throws Exception {
+        GenerateIdRequest request =
+                GenerateIdRequest.newBuilder().setRequestId("lease-1").setCount(3).build();
+
+        when(mockGenerator.nextIds(3)).thenReturn(new long[] {10L, 11L, 12L});
+
+        serverHandler.channelRead0(ctx, request);
+
+        ArgumentCaptor<GenerateIdResponse> responseCaptor =
+                ArgumentCaptor.forClass(GenerateIdResponse.class);
+        verify(ctx).writeAndFlush(responseCaptor.capture());
+        verify(mockGenerator, never()).nextId();
+
+        GenerateIdResponse response = responseCaptor.getValue();
+        assertEquals("lease-1", response.getRequestId());
+        assertEquals(List.of(10L, 11L, 12L), response.getIdsList());
+    }
+
+    @Test
+    void testChannelRead0_CapsLeaseCount() throws Exception {
+        GenerateIdRequest request =
+                GenerateIdRequest.newBuilder()
+                        .setRequestId("lease-2")
+                        .setCount(ServerHandler.MAX_LEASE_COUNT + 1)
+                        .build();
+
+        when(mockGenerator.nextIds(ServerHandler.MAX_LEASE_COUNT))
+                .thenReturn(new long[ServerHandler.MAX_LEASE_COUNT]);
+
+        serverHandler.channelRead0(ctx, request);
+
+        verify(mockGenerator).nextIds(ServerHandler.MAX_LEASE_COUNT);
+    }
+
+    @Test
+    void testChannelRead0_EchoesCorrelationId() throws Exception {
+        GenerateIdRequest request = GenerateIdRequest.newBuilder().setCorrelationId(42L).build();
+
+        when(mockGenerator.nextId()).thenReturn(7L);
+
+        serverHandler.channelRead0(ctx, request);
+
+        ArgumentCaptor<GenerateIdResponse> responseCaptor =
+                ArgumentCaptor.forClass(GenerateIdResponse.class);
+        verify(ctx).writeAndFlush(responseCaptor.capture());
+        assertEquals(42L, responseCaptor.getValue().getCorrelationId());
+        assertEquals(7L, responseCaptor.getValue().getId());
+    }
 }
@@ -0,0 +1,106 @@
+package com.fanaujie.ripple.snowflakeid.server.service.snowflakeid;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of the CAS generator against the previous synchronized one, run main() with the
+// test classpath.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator generator;
+    private SynchronizedSnowflakeIdGenerator synchronizedGenerator;
+
+    @Setup
+    public void setUp() {
+        generator = new SnowflakeIdGenerator(1);
+        synchronizedGenerator = new SynchronizedSnowflakeIdGenerator(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long casSingleThread() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long casMultiThread() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long synchronizedSingleThread() {
+        return synchronizedGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long synchronizedMultiThread() {
+        return synchronizedGenerator.nextId();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options =
+                new OptionsBuilder()
+                        .include(SnowflakeIdGeneratorBenchmark.class.getSimpleName())
+                        .build();
+        new Runner(options).run();
+    }
+
+    // The generator before the CAS rewrite, kept as the baseline
+    static class SynchronizedSnowflakeIdGenerator {
+        private static final Logger logger =
+                LoggerFactory.getLogger(SynchronizedSnowflakeIdGenerator.class);
+        private static final long maxSequence = (1L << 12) - 1;
+        private static final long DEFAULT_EPOCH = 1735689600000L;
+
+        private final long nodeId;
+        private long sequence = 0L;
+        private long lastTimestamp = -1L;
+
+        SynchronizedSnowflakeIdGenerator(long nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        synchronized long nextId() {
+            long currentTimestamp = Instant.now().toEpochMilli();
+            logger.debug(
+                    "nextId: Current timestamp: {}, lastTimestamp: {}, sequence: {}",
+                    currentTimestamp,
+                    lastTimestamp,
+                    sequence);
+            if (currentTimestamp < lastTimestamp) {
+                throw new IllegalStateException("Clock moved backwards");
+            }
+            if (currentTimestamp == lastTimestamp) {
+                sequence = (sequence + 1) & maxSequence;
+                if (sequence == 0L) {
+                    while (currentTimestamp <= lastTimestamp) {
+                        currentTimestamp = Instant.now().toEpochMilli();
+                    }
+                }
+            } else {
+                sequence = 0L;
+            }
+            lastTimestamp = currentTimestamp;
+            long id = ((currentTimestamp - DEFAULT_EPOCH) << 22) | (nodeId << 12) | sequence;
+            logger.debug("nextId: Generated snowflake ID: {}", id);
+            return id;
+        }
+    }
+}
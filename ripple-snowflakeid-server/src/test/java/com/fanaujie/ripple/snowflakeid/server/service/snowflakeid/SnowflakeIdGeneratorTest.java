@@ -4,6 +4,13 @@ import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -138,4 +145,144 @@ class SnowflakeIdGeneratorTest {
 
         assertEquals(count, ids.size(), "All generated IDs should be unique");
     }
+
+    @Test
+    void testNextIds_ReturnsAscendingUniqueIds() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        long previousId = generator.nextId();
+
+        long[] ids = generator.nextIds(5000);
+
+        assertEquals(5000, ids.length);
+        for (long id : ids) {
+            assertTrue(id > previousId, "Leased IDs should be monotonically increasing");
+            previousId = id;
+        }
+    }
+
+    @Test
+    void testNextIds_InvalidCount() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+
+        assertThrows(IllegalArgumentException.class, () -> generator.nextIds(0));
+    }
+
+    @Test
+    void testSequenceOverflowWaitsForNextMillisecond() {
+        AtomicLong clock = new AtomicLong(1735689600000L + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long[] ids = generator.nextIds(1 << SEQUENCE_BITS);
+
+        // The clock advances while the overflowing call spins
+        Thread ticker =
+                new Thread(
+                        () -> {
+                            try {
+                                Thread.sleep(50);
+                            } catch (InterruptedException ignored) {
+                            }
+                            clock.incrementAndGet();
+                        });
+        ticker.start();
+        long id = generator.nextId();
+
+        assertTrue(id > ids[ids.length - 1]);
+        assertEquals(0, id & ((1L << SEQUENCE_BITS) - 1), "Sequence should reset to 0");
+        assertEquals(
+                (ids[0] >> (NODE_ID_BITS + SEQUENCE_BITS)) + 1,
+                id >> (NODE_ID_BITS + SEQUENCE_BITS));
+    }
+
+    @Test
+    void testClockMovedBackwards() {
+        AtomicLong clock = new AtomicLong(1735689600000L + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        generator.nextId();
+
+        clock.addAndGet(-1000);
+
+        IllegalStateException exception =
+                assertThrows(IllegalStateException.class, generator::nextId);
+        assertTrue(exception.getMessage().contains("Clock moved backwards"));
+    }
+
+    @Test
+    void testSmallClockRegressionWaits() {
+        AtomicLong clock = new AtomicLong(1735689600000L + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long previousId = generator.nextIds(1 << SEQUENCE_BITS)[(1 << SEQUENCE_BITS) - 1];
+
+        clock.addAndGet(-5);
+        Thread ticker =
+                new Thread(
+                        () -> {
+                            try {
+                                Thread.sleep(50);
+                            } catch (InterruptedException ignored) {
+                            }
+                            clock.addAndGet(6);
+                        });
+        ticker.start();
+        long id = generator.nextId();
+
+        assertTrue(id > previousId);
+    }
+
+    @Test
+    void testConcurrentLeasesAheadOfClockDoNotFail() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int leasesPerThread = 10;
+        int leaseSize = 1 << SEQUENCE_BITS;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                for (int i = 0; i < leasesPerThread; i++) {
+                                    for (long id : generator.nextIds(leaseSize)) {
+                                        ids.add(id);
+                                    }
+                                }
+                            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(
+                threads * leasesPerThread * leaseSize,
+                ids.size(),
+                "All leased IDs should be unique");
+    }
+
+    @Test
+    void testConcurrentIdGeneration() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                for (int i = 0; i < perThread; i++) {
+                                    ids.add(generator.nextId());
+                                }
+                            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(threads * perThread, ids.size(), "All generated IDs should be unique");
+    }
 }
@@ -155,5 +155,7 @@ public interface RippleStorageFacade {
             byte commandType,
             String commandData);
 
+    void incrementUnreadCounts(String conversationId, List<Long> ownerIds, long messageId);
+
     int calculateUnreadCount(long userId, String conversationId);
 }
@@ -1,4 +1,4 @@
-package com.fanaujie.ripple.apigateway.service.utils;
+package com.fanaujie.ripple.storage.service.utils;
 
 import java.util.Set;
 
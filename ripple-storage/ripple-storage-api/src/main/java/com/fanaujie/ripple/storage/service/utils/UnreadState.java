@@ -0,0 +1,54 @@
+package com.fanaujie.ripple.storage.service.utils;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Unread count of one conversation owner, together with the newest message ids it counted. The ids
+ * make counting idempotent: a redelivered message is found among them and is not counted again.
+ * They also tell a read which counted messages are newer than the read position, so the count is
+ * set rather than decremented.
+ */
+public record UnreadState(int unreadCount, NavigableSet<Long> countedMessageIds) {
+
+    public static final int TRACKED_MESSAGE_IDS = 64;
+    public static final UnreadState EMPTY = new UnreadState(0, new TreeSet<>());
+
+    public static UnreadState of(int unreadCount, Collection<Long> countedMessageIds) {
+        return new UnreadState(unreadCount, new TreeSet<>(countedMessageIds));
+    }
+
+    /**
+     * @return the state with messageId counted, or null when it was counted already
+     */
+    public UnreadState count(long messageId) {
+        if (countedMessageIds.contains(messageId)) {
+            return null;
+        }
+        // Older than every tracked id of a full window, so counted before those were
+        if (countedMessageIds.size() >= TRACKED_MESSAGE_IDS
+                && messageId < countedMessageIds.first()) {
+            return null;
+        }
+        TreeSet<Long> ids = new TreeSet<>(countedMessageIds);
+        ids.add(messageId);
+        while (ids.size() > TRACKED_MESSAGE_IDS) {
+            ids.pollFirst();
+        }
+        return new UnreadState(unreadCount + 1, ids);
+    }
+
+    /**
+     * @return the state after the owner read up to readMessageId, counted messages newer than it
+     *     stay unread
+     */
+    public UnreadState read(long readMessageId) {
+        int newer = countedMessageIds.tailSet(readMessageId, false).size();
+        // Every tracked id is newer, so more messages than tracked may still be unread
+        if (newer == TRACKED_MESSAGE_IDS) {
+            newer = Math.max(newer, unreadCount);
+        }
+        return new UnreadState(newer, countedMessageIds);
+    }
+}
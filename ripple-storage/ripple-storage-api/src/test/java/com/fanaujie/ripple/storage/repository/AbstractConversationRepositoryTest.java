@@ -446,6 +446,28 @@ public abstract class AbstractConversationRepositoryTest {
         }
     }
 
+    @Test
+    void getMessagesAfter_shouldWalkMessagesAcrossDays() {
+        String conversationId = "conv_messages_after_days";
+        long oneDayOfIdBits = 86_400_000L << 22;
+        // Snowflake ids generated on three different days, with an empty day in between
+        long[] messageIds = {oneDayOfIdBits + 1, oneDayOfIdBits + 2, 3 * oneDayOfIdBits + 1};
+        for (long messageId : messageIds) {
+            getStorageFacade().saveTextMessage(
+                    conversationId, messageId, 1062L, 2062L, System.currentTimeMillis(), "Message", null, null);
+        }
+
+        Messages result = getStorageFacade().getMessagesAfter(conversationId, oneDayOfIdBits + 1, 10);
+
+        assertEquals(2, result.getMessages().size());
+        assertEquals(oneDayOfIdBits + 2, result.getMessages().get(0).getMessageId());
+        assertEquals(3 * oneDayOfIdBits + 1, result.getMessages().get(1).getMessageId());
+
+        Messages page = getStorageFacade().getMessagesAfter(conversationId, 0, 2);
+        assertEquals(2, page.getMessages().size());
+        assertEquals(oneDayOfIdBits + 2, page.getMessages().get(1).getMessageId());
+    }
+
     @Test
     void getMessagesAfter_shouldRespectPageSize() {
         String conversationId = "conv_messages_after3";
@@ -505,10 +527,13 @@ public abstract class AbstractConversationRepositoryTest {
         // Add messages
         // Message 101 from peer (unread)
         getStorageFacade().saveTextMessage(conversationId, 101L, peerId, ownerId, System.currentTimeMillis(), "Msg 101", null, null);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
         // Message 102 from owner (should not count as unread)
         getStorageFacade().saveTextMessage(conversationId, 102L, ownerId, peerId, System.currentTimeMillis(), "Msg 102", null, null);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(peerId), 102L);
         // Message 103 from peer (unread)
         getStorageFacade().saveTextMessage(conversationId, 103L, peerId, ownerId, System.currentTimeMillis(), "Msg 103", null, null);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 103L);
 
         int unreadCount = getStorageFacade().calculateUnreadCount(ownerId, conversationId);
 
@@ -525,16 +550,75 @@ public abstract class AbstractConversationRepositoryTest {
         String conversationId = com.fanaujie.ripple.storage.service.utils.ConversationUtils.generateConversationId(ownerId, peerId);
         getStorageFacade().createSingeMessageConversation(conversationId, ownerId, peerId, System.currentTimeMillis());
 
-        getStorageFacade().markLastReadMessageId(conversationId, ownerId, 200L, System.currentTimeMillis());
-
         // Message 101 (read)
         getStorageFacade().saveTextMessage(conversationId, 101L, peerId, ownerId, System.currentTimeMillis(), "Msg 101", null, null);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
+
+        getStorageFacade().markLastReadMessageId(conversationId, ownerId, 200L, System.currentTimeMillis());
 
         int unreadCount = getStorageFacade().calculateUnreadCount(ownerId, conversationId);
 
         assertEquals(0, unreadCount);
     }
 
+    @Test
+    void calculateUnreadCount_shouldCountRedeliveredMessageOnce() throws NotFoundUserProfileException {
+        long ownerId = 3004L;
+        long peerId = 4004L;
+        createUserProfile(ownerId, "owner_redelivered", "Owner Redelivered", "avatar.png");
+        createUserProfile(peerId, "peer_redelivered", "Peer Redelivered", "avatar.png");
+
+        String conversationId = com.fanaujie.ripple.storage.service.utils.ConversationUtils.generateConversationId(ownerId, peerId);
+        getStorageFacade().createSingeMessageConversation(conversationId, ownerId, peerId, System.currentTimeMillis());
+
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 102L);
+        // Message 101 is delivered again
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
+
+        assertEquals(2, getStorageFacade().calculateUnreadCount(ownerId, conversationId));
+    }
+
+    @Test
+    void calculateUnreadCount_shouldKeepMessagesNewerThanReadPositionUnread() throws NotFoundUserProfileException {
+        long ownerId = 3005L;
+        long peerId = 4005L;
+        createUserProfile(ownerId, "owner_read_behind", "Owner Read Behind", "avatar.png");
+        createUserProfile(peerId, "peer_read_behind", "Peer Read Behind", "avatar.png");
+
+        String conversationId = com.fanaujie.ripple.storage.service.utils.ConversationUtils.generateConversationId(ownerId, peerId);
+        getStorageFacade().createSingeMessageConversation(conversationId, ownerId, peerId, System.currentTimeMillis());
+
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 102L);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 103L);
+
+        // Marking the same position read twice sets the same count
+        getStorageFacade().markLastReadMessageId(conversationId, ownerId, 101L, System.currentTimeMillis());
+        getStorageFacade().markLastReadMessageId(conversationId, ownerId, 101L, System.currentTimeMillis());
+
+        assertEquals(2, getStorageFacade().calculateUnreadCount(ownerId, conversationId));
+    }
+
+    @Test
+    void calculateUnreadCount_shouldNotCountMessageRedeliveredAfterRead() throws NotFoundUserProfileException {
+        long ownerId = 3006L;
+        long peerId = 4006L;
+        createUserProfile(ownerId, "owner_read_redelivered", "Owner Read Redelivered", "avatar.png");
+        createUserProfile(peerId, "peer_read_redelivered", "Peer Read Redelivered", "avatar.png");
+
+        String conversationId = com.fanaujie.ripple.storage.service.utils.ConversationUtils.generateConversationId(ownerId, peerId);
+        getStorageFacade().createSingeMessageConversation(conversationId, ownerId, peerId, System.currentTimeMillis());
+
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 102L);
+        getStorageFacade().markLastReadMessageId(conversationId, ownerId, 102L, System.currentTimeMillis());
+        // Message 101 is delivered again after the owner read past it
+        getStorageFacade().incrementUnreadCounts(conversationId, List.of(ownerId), 101L);
+
+        assertEquals(0, getStorageFacade().calculateUnreadCount(ownerId, conversationId));
+    }
+
     @Test
     void calculateUnreadCount_shouldReturnZero_whenConversationDoesNotExist() {
         long ownerId = 3003L;
@@ -0,0 +1,70 @@
+package com.fanaujie.ripple.storage.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnreadStateTest {
+
+    @Test
+    void count_shouldCountEachMessageOnce() {
+        UnreadState state = UnreadState.EMPTY.count(101L).count(102L);
+
+        assertEquals(2, state.unreadCount());
+        assertNull(state.count(101L));
+        assertNull(state.count(102L));
+    }
+
+    @Test
+    void count_shouldCountMessagesArrivingOutOfOrder() {
+        UnreadState state = UnreadState.EMPTY.count(103L).count(101L);
+
+        assertEquals(2, state.unreadCount());
+        assertEquals(List.of(101L, 103L), List.copyOf(state.countedMessageIds()));
+    }
+
+    @Test
+    void count_shouldKeepOnlyTheNewestIdsAndSkipOlderOnes() {
+        UnreadState state = UnreadState.EMPTY;
+        for (long id = 1; id <= UnreadState.TRACKED_MESSAGE_IDS + 10; id++) {
+            state = state.count(id);
+        }
+
+        assertEquals(UnreadState.TRACKED_MESSAGE_IDS + 10, state.unreadCount());
+        assertEquals(UnreadState.TRACKED_MESSAGE_IDS, state.countedMessageIds().size());
+        assertEquals(11L, state.countedMessageIds().first());
+        // A redelivery of a message that dropped out of the window
+        assertNull(state.count(5L));
+    }
+
+    @Test
+    void read_shouldSetCountToMessagesNewerThanReadPosition() {
+        UnreadState state = UnreadState.EMPTY.count(101L).count(102L).count(103L);
+
+        assertEquals(0, state.read(103L).unreadCount());
+        assertEquals(0, state.read(200L).unreadCount());
+        assertEquals(1, state.read(102L).unreadCount());
+        // Reading twice gives the same count
+        assertEquals(1, state.read(102L).read(102L).unreadCount());
+    }
+
+    @Test
+    void read_shouldKeepCountedIdsSoRedeliveriesAreStillSkipped() {
+        UnreadState state = UnreadState.EMPTY.count(101L).read(101L);
+
+        assertEquals(0, state.unreadCount());
+        assertNull(state.count(101L));
+    }
+
+    @Test
+    void read_shouldKeepCountWhenEveryTrackedMessageIsNewer() {
+        UnreadState state = UnreadState.EMPTY;
+        for (long id = 101; id <= 100 + UnreadState.TRACKED_MESSAGE_IDS + 10; id++) {
+            state = state.count(id);
+        }
+
+        assertEquals(UnreadState.TRACKED_MESSAGE_IDS + 10, state.read(100L).unreadCount());
+    }
+}
@@ -64,7 +64,19 @@ public class CassandraStorageProvider implements RippleStorageProvider {
         CqlSession session =
                 CassandraDriver.createCqlSession(contactPoints, keyspace, localDatacenter);
 
-        return new CassandraStorageFacadeBuilder().cqlSession(session).build();
+        // Switch on once MessageBucketBackfill has copied the legacy user_messages rows
+        boolean bucketedMessageReads =
+                Boolean.parseBoolean(
+                        getProperty(
+                                propertyLoader,
+                                "cassandra.bucketed-message-reads",
+                                "CASSANDRA_BUCKETED_MESSAGE_READS"));
+        logger.info("Resolved 'cassandra.bucketed-message-reads': {}", bucketedMessageReads);
+
+        return new CassandraStorageFacadeBuilder()
+                .cqlSession(session)
+                .bucketedMessageReads(bucketedMessageReads)
+                .build();
     }
 
     private String getProperty(Function<String, String> loader, String... keys) {
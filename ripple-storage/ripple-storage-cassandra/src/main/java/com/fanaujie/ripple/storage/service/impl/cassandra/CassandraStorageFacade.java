@@ -14,21 +14,32 @@ import static com.fanaujie.ripple.storage.model.GroupChangeOperation.*;
 import static com.fanaujie.ripple.storage.model.UserGroupOperation.*;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
+import com.fanaujie.ripple.storage.service.utils.UnreadState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
 
 public class CassandraStorageFacade implements RippleStorageFacade {
 
+    // Conversations whose current bucket index entry is remembered
+    private static final int WRITTEN_BUCKET_CACHE_SIZE = 1 << 16;
+
     private final Logger logger = LoggerFactory.getLogger(CassandraStorageFacade.class);
     private final CqlSession session;
     private final UserCqlStatement userCqlStatement;
     private final RelationCqlStatement relationCqlStatement;
     private final ConversationCqlStatement conversationCqlStatement;
     private final GroupCqlStatement groupCqlStatement;
+    private final boolean bucketedMessageReads;
+    private final WrittenBucketCache writtenBuckets =
+            new WrittenBucketCache(WRITTEN_BUCKET_CACHE_SIZE);
 
     public CassandraStorageFacade(CassandraStorageFacadeBuilder builder) {
         this.session = builder.getSession();
+        this.bucketedMessageReads = builder.isBucketedMessageReads();
         this.userCqlStatement = new UserCqlStatement(this.session);
         this.relationCqlStatement = new RelationCqlStatement(this.session);
         this.conversationCqlStatement = new ConversationCqlStatement(this.session);
@@ -240,68 +251,64 @@ public class CassandraStorageFacade implements RippleStorageFacade {
     public Messages getMessages(String conversationId, long beforeMessageId, int pageSize) {
         // When beforeMessageId is 0, use Long.MAX_VALUE to get the latest messages
         long effectiveBeforeMessageId = (beforeMessageId == 0) ? Long.MAX_VALUE : beforeMessageId;
+        if (!bucketedMessageReads) {
+            return toMessages(
+                    session.execute(
+                            conversationCqlStatement
+                                    .getSelectLegacyMessagesStmt()
+                                    .bind(conversationId, effectiveBeforeMessageId, pageSize)));
+        }
 
-        ResultSet resultSet =
+        ResultSet buckets =
                 session.execute(
+                        conversationCqlStatement
+                                .getSelectBucketsUntilStmt()
+                                .bind(
+                                        conversationId,
+                                        MessageBuckets.bucketOf(effectiveBeforeMessageId)));
+        return readBuckets(
+                buckets,
+                pageSize,
+                (bucket, limit) ->
                         conversationCqlStatement
                                 .getSelectMessagesStmt()
-                                .bind(conversationId, effectiveBeforeMessageId, pageSize));
-
-        List<Message> messages = new ArrayList<>();
-        for (Row row : resultSet) {
-            Message message = new Message();
-            message.setConversationId(row.getString("conversation_id"));
-            message.setMessageId(row.getLong("message_id"));
-            message.setSenderId(row.getLong("sender_id"));
-            message.setReceiverId(row.getLong("receiver_id"));
-            message.setGroupId(row.getLong("group_id"));
-            message.setSendTimestamp(row.getLong("send_timestamp"));
-            message.setMessageType(row.getByte("message_type"));
-            message.setText(row.getString("text"));
-            message.setFileUrl(row.getString("file_url"));
-            message.setFileName(row.getString("file_name"));
-            message.setCommandType(row.getByte("command_type"));
-            message.setCommandData(row.getString("command_data"));
-            messages.add(message);
-        }
-        return new Messages(messages);
+                                .bind(conversationId, bucket, effectiveBeforeMessageId, limit));
     }
 
     @Override
     public Messages getMessagesAfter(String conversationId, long afterMessageId, int pageSize) {
-        ResultSet resultSet =
+        if (!bucketedMessageReads) {
+            return toMessages(
+                    session.execute(
+                            conversationCqlStatement
+                                    .getSelectLegacyMessagesAfterStmt()
+                                    .bind(conversationId, afterMessageId, pageSize)));
+        }
+        ResultSet buckets =
                 session.execute(
+                        conversationCqlStatement
+                                .getSelectBucketsFromStmt()
+                                .bind(conversationId, MessageBuckets.bucketOf(afterMessageId)));
+        return readBuckets(
+                buckets,
+                pageSize,
+                (bucket, limit) ->
                         conversationCqlStatement
                                 .getSelectMessagesAfterStmt()
-                                .bind(conversationId, afterMessageId, pageSize));
-
-        List<Message> messages = new ArrayList<>();
-        for (Row row : resultSet) {
-            Message message = new Message();
-            message.setConversationId(row.getString("conversation_id"));
-            message.setMessageId(row.getLong("message_id"));
-            message.setSenderId(row.getLong("sender_id"));
-            message.setReceiverId(row.getLong("receiver_id"));
-            message.setGroupId(row.getLong("group_id"));
-            message.setSendTimestamp(row.getLong("send_timestamp"));
-            message.setMessageType(row.getByte("message_type"));
-            message.setText(row.getString("text"));
-            message.setFileUrl(row.getString("file_url"));
-            message.setFileName(row.getString("file_name"));
-            message.setCommandType(row.getByte("command_type"));
-            message.setCommandData(row.getString("command_data"));
-            messages.add(message);
-        }
-        return new Messages(messages);
+                                .bind(conversationId, bucket, afterMessageId, limit));
     }
 
     @Override
     public Message getMessages(String conversationId, long messageId) throws NotMessageException {
-        ResultSet resultSet =
-                session.execute(
-                        conversationCqlStatement
+        BoundStatement select =
+                bucketedMessageReads
+                        ? conversationCqlStatement
                                 .getSelectMessageByIdStmt()
-                                .bind(conversationId, messageId));
+                                .bind(conversationId, MessageBuckets.bucketOf(messageId), messageId)
+                        : conversationCqlStatement
+                                .getSelectLegacyMessageByIdStmt()
+                                .bind(conversationId, messageId);
+        ResultSet resultSet = session.execute(select);
 
         Row row = resultSet.one();
         if (row == null) {
@@ -311,6 +318,39 @@ public class CassandraStorageFacade implements RippleStorageFacade {
                             + ", messageId: "
                             + messageId);
         }
+        return toMessage(row);
+    }
+
+    // Walks the conversation's buckets in ascending order and stops as soon as the page is full,
+    // the bucket index is paged by the driver so later buckets are only fetched when needed.
+    private Messages readBuckets(
+            ResultSet buckets,
+            int pageSize,
+            BiFunction<Integer, Integer, BoundStatement> bucketQuery) {
+        List<Message> messages = new ArrayList<>();
+        for (Row bucketRow : buckets) {
+            int remaining = pageSize - messages.size();
+            if (remaining <= 0) {
+                break;
+            }
+            ResultSet resultSet =
+                    session.execute(bucketQuery.apply(bucketRow.getInt("bucket"), remaining));
+            for (Row row : resultSet) {
+                messages.add(toMessage(row));
+            }
+        }
+        return new Messages(messages);
+    }
+
+    private Messages toMessages(ResultSet resultSet) {
+        List<Message> messages = new ArrayList<>();
+        for (Row row : resultSet) {
+            messages.add(toMessage(row));
+        }
+        return new Messages(messages);
+    }
+
+    private Message toMessage(Row row) {
         Message message = new Message();
         message.setConversationId(row.getString("conversation_id"));
         message.setMessageId(row.getLong("message_id"));
@@ -329,6 +369,18 @@ public class CassandraStorageFacade implements RippleStorageFacade {
 
     @Override
     public void markLastReadMessageId(String conversationId, long ownerId, long readMessageId, long version) {
+        Row unreadRow =
+                session.execute(
+                                conversationCqlStatement
+                                        .getSelectUnreadStateStmt()
+                                        .bind(ownerId, conversationId))
+                        .one();
+        // Without unread state the owner's messages were counted by the message scan, reading
+        // starts the unread state
+        UnreadState unreadState =
+                (unreadRow == null ? UnreadState.EMPTY : toUnreadState(unreadRow))
+                        .read(readMessageId);
+        int trackedUnread = countAfter(unreadState.countedMessageIds(), readMessageId);
         BatchStatement batch =
                 new BatchStatementBuilder(DefaultBatchType.LOGGED)
                         .addStatement(
@@ -348,6 +400,14 @@ public class CassandraStorageFacade implements RippleStorageFacade {
                                                 readMessageId, // last_read_message_id
                                                 null, // name not updated when marking read
                                                 null)) // avatar not updated when marking read
+                        .addStatement(
+                                conversationCqlStatement
+                                        .getUpdateUnreadStateReadStmt()
+                                        .bind(
+                                                unreadState.unreadCount() - trackedUnread,
+                                                readMessageId,
+                                                ownerId,
+                                                conversationId))
                         .build();
         session.execute(batch);
     }
@@ -410,6 +470,10 @@ public class CassandraStorageFacade implements RippleStorageFacade {
                                                 name,
                                                 avatar))
                         // events
+                        .addStatement(
+                                conversationCqlStatement
+                                        .getInsertUnreadStateStmt()
+                                        .bind(ownerId, conversationId))
                         .build();
         session.execute(senderBatch);
     }
@@ -424,9 +488,26 @@ public class CassandraStorageFacade implements RippleStorageFacade {
             String messageText,
             String fileUrl,
             String fileName) {
-        session.execute(
+        int bucket = MessageBuckets.bucketOf(messageId);
+        saveMessage(
+                conversationId,
+                bucket,
                 conversationCqlStatement
                         .getInsertMessageStmt()
+                        .bind(
+                                conversationId,
+                                bucket,
+                                messageId,
+                                senderId,
+                                receiverId,
+                                null,
+                                timestamp,
+                                MessageType.MESSAGE_TYPE_TEXT.getValue(),
+                                messageText,
+                                fileUrl,
+                                fileName),
+                conversationCqlStatement
+                        .getInsertLegacyMessageStmt()
                         .bind(
                                 conversationId,
                                 messageId,
@@ -450,9 +531,26 @@ public class CassandraStorageFacade implements RippleStorageFacade {
             String messageText,
             String fileUrl,
             String fileName) {
-        session.execute(
+        int bucket = MessageBuckets.bucketOf(messageId);
+        saveMessage(
+                conversationId,
+                bucket,
                 conversationCqlStatement
                         .getInsertMessageStmt()
+                        .bind(
+                                conversationId,
+                                bucket,
+                                messageId,
+                                senderId,
+                                null, // receiverId is null for group messages
+                                groupId,
+                                timestamp,
+                                MessageType.MESSAGE_TYPE_TEXT.getValue(),
+                                messageText,
+                                fileUrl,
+                                fileName),
+                conversationCqlStatement
+                        .getInsertLegacyMessageStmt()
                         .bind(
                                 conversationId,
                                 messageId,
@@ -466,6 +564,29 @@ public class CassandraStorageFacade implements RippleStorageFacade {
                                 fileName));
     }
 
+    // The bucket index entry is written before the message, otherwise the message could be stored
+    // in a bucket the read paths never visit. It is idempotent, so it is only written again when
+    // the conversation moves to another bucket. The legacy row is written too while reads still
+    // use user_messages.
+    private void saveMessage(
+            String conversationId, int bucket, BoundStatement insert, BoundStatement legacyInsert) {
+        if (!writtenBuckets.contains(conversationId, bucket)) {
+            session.execute(
+                    conversationCqlStatement
+                            .getInsertMessageBucketStmt()
+                            .bind(conversationId, bucket));
+            writtenBuckets.add(conversationId, bucket);
+        }
+        if (bucketedMessageReads) {
+            session.execute(insert);
+            return;
+        }
+        CompletableFuture<AsyncResultSet> legacy =
+                session.executeAsync(legacyInsert).toCompletableFuture();
+        session.execute(insert);
+        legacy.join();
+    }
+
     @Override
     public PagedConversationResult getConversations(
             long userId, String nextPageToken, int pageSize) {
@@ -1285,6 +1406,10 @@ public class CassandraStorageFacade implements RippleStorageFacade {
                                                 null,
                                                 groupName,
                                                 groupAvatar))
+                        .addStatement(
+                                conversationCqlStatement
+                                        .getInsertUnreadStateStmt()
+                                        .bind(userId, conversationId))
                         .build();
         session.execute(batch);
     }
@@ -1738,6 +1863,10 @@ public class CassandraStorageFacade implements RippleStorageFacade {
                                                 null, // last_read_message_id
                                                 null, // name
                                                 null)) // avatar
+                        .addStatement(
+                                conversationCqlStatement
+                                        .getDeleteUnreadStateStmt()
+                                        .bind(userId, conversationId))
                         .build();
         session.execute(batch);
     }
@@ -1751,9 +1880,24 @@ public class CassandraStorageFacade implements RippleStorageFacade {
             long timestamp,
             byte commandType,
             String commandData) {
-        session.execute(
+        int bucket = MessageBuckets.bucketOf(messageId);
+        saveMessage(
+                conversationId,
+                bucket,
                 conversationCqlStatement
                         .getInsertGroupCommandMessageStmt()
+                        .bind(
+                                conversationId,
+                                bucket,
+                                messageId,
+                                senderId,
+                                groupId,
+                                timestamp,
+                                MessageType.MESSAGE_TYPE_GROUP_COMMAND.getValue(),
+                                commandType,
+                                commandData),
+                conversationCqlStatement
+                        .getInsertLegacyGroupCommandMessageStmt()
                         .bind(
                                 conversationId,
                                 messageId,
@@ -1817,8 +1961,113 @@ public class CassandraStorageFacade implements RippleStorageFacade {
         return null;
     }
 
+    @Override
+    public void incrementUnreadCounts(String conversationId, List<Long> ownerIds, long messageId) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(ownerIds.size());
+        for (long ownerId : ownerIds) {
+            futures.add(countUnreadMessage(ownerId, conversationId, messageId).toCompletableFuture());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    // Same rules as UnreadState.count. The id is added to the set at the message's creation time,
+    // so concurrent counts don't overwrite each other, and an id trimmed from the window or a
+    // conversation deleted later isn't brought back by a redelivery.
+    private CompletionStage<Void> countUnreadMessage(
+            long ownerId, String conversationId, long messageId) {
+        return session.executeAsync(
+                        conversationCqlStatement
+                                .getSelectUnreadStateStmt()
+                                .bind(ownerId, conversationId))
+                .thenCompose(
+                        resultSet -> {
+                            Row row = resultSet.one();
+                            if (!hasUnreadState(row)) {
+                                // Left to the message scan until the owner reads the conversation
+                                return CompletableFuture.completedFuture(null);
+                            }
+                            UnreadState current = toUnreadState(row);
+                            UnreadState next = current.count(messageId);
+                            if (next == null) {
+                                return CompletableFuture.completedFuture(null);
+                            }
+                            BatchStatementBuilder batch =
+                                    new BatchStatementBuilder(DefaultBatchType.UNLOGGED)
+                                            .addStatement(
+                                                    conversationCqlStatement
+                                                            .getAddCountedMessageIdStmt()
+                                                            .bind(
+                                                                    MessageIds.createdAtMicros(
+                                                                            messageId),
+                                                                    Set.of(messageId),
+                                                                    ownerId,
+                                                                    conversationId));
+                            Set<Long> trimmed = new TreeSet<>(current.countedMessageIds());
+                            trimmed.removeAll(next.countedMessageIds());
+                            if (!trimmed.isEmpty()) {
+                                // Unread ids leaving the window move to the untracked count
+                                int untrackedUnread =
+                                        row.getInt("untracked_unread_count")
+                                                + countAfter(
+                                                        trimmed,
+                                                        row.getLong("last_read_message_id"));
+                                batch.addStatement(
+                                        conversationCqlStatement
+                                                .getTrimCountedMessageIdsStmt()
+                                                .bind(
+                                                        trimmed,
+                                                        untrackedUnread,
+                                                        ownerId,
+                                                        conversationId));
+                            }
+                            return session.executeAsync(batch.build())
+                                    .thenApply(result -> (Void) null);
+                        });
+    }
+
     @Override
     public int calculateUnreadCount(long userId, String conversationId) {
+        Row row =
+                session.execute(
+                                conversationCqlStatement
+                                        .getSelectUnreadStateStmt()
+                                        .bind(userId, conversationId))
+                        .one();
+        if (!hasUnreadState(row)) {
+            return countUnreadMessagesAfterLastRead(userId, conversationId);
+        }
+        return toUnreadState(row).unreadCount();
+    }
+
+    // Conversations are given unread state when they are created or read, older ones that the
+    // owner hasn't read since have none
+    private static boolean hasUnreadState(Row row) {
+        return row != null && !row.isNull("last_read_message_id");
+    }
+
+    // The row keeps the unread messages older than every tracked id in untracked_unread_count,
+    // tracked ids up to the read position are read
+    private static UnreadState toUnreadState(Row row) {
+        Set<Long> countedMessageIds = row.getSet("counted_message_ids", Long.class);
+        int trackedUnread =
+                countAfter(countedMessageIds, row.getLong("last_read_message_id"));
+        return UnreadState.of(
+                row.getInt("untracked_unread_count") + trackedUnread, countedMessageIds);
+    }
+
+    private static int countAfter(Collection<Long> messageIds, long messageId) {
+        int count = 0;
+        for (long id : messageIds) {
+            if (id > messageId) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Counts the messages of others after the owner's read position, for conversations without
+    // unread state
+    private int countUnreadMessagesAfterLastRead(long userId, String conversationId) {
         Row conversationRow =
                 session.execute(
                                 conversationCqlStatement
@@ -1828,24 +2077,46 @@ public class CassandraStorageFacade implements RippleStorageFacade {
         if (conversationRow == null) {
             return 0;
         }
-
         long lastReadMessageId = conversationRow.getLong("last_read_message_id");
-
-        ResultSet countRow =
+        if (!bucketedMessageReads) {
+            return countMessagesOfOthers(
+                    session.execute(
+                            conversationCqlStatement
+                                    .getSelectLegacyMessageSendersAfterStmt()
+                                    .bind(conversationId, lastReadMessageId)),
+                    userId);
+        }
+        ResultSet buckets =
                 session.execute(
                         conversationCqlStatement
-                                .getCountUnreadMessagesStmt()
-                                .bind(conversationId, lastReadMessageId));
+                                .getSelectBucketsFromStmt()
+                                .bind(conversationId, MessageBuckets.bucketOf(lastReadMessageId)));
         int unreadCount = 0;
-        for (Row row : countRow) {
-            long senderId = row.getLong("sender_id");
-            if (senderId != userId) {
-                unreadCount++;
-            }
+        for (Row bucketRow : buckets) {
+            unreadCount +=
+                    countMessagesOfOthers(
+                            session.execute(
+                                    conversationCqlStatement
+                                            .getSelectMessageSendersAfterStmt()
+                                            .bind(
+                                                    conversationId,
+                                                    bucketRow.getInt("bucket"),
+                                                    lastReadMessageId)),
+                            userId);
         }
         return unreadCount;
     }
 
+    private static int countMessagesOfOthers(ResultSet senders, long userId) {
+        int count = 0;
+        for (Row row : senders) {
+            if (row.getLong("sender_id") != userId) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private UserDefinedType buildGroupChangeDetailType() {
         return session.getMetadata()
                 .getKeyspace("ripple")
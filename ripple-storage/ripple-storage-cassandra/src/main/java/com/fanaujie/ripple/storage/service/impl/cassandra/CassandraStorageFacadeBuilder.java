@@ -6,12 +6,20 @@ import lombok.Getter;
 @Getter
 public class CassandraStorageFacadeBuilder {
     private CqlSession session;
+    private boolean bucketedMessageReads;
 
     public CassandraStorageFacadeBuilder cqlSession(CqlSession session) {
         this.session = session;
         return this;
     }
 
+    // Read messages from user_messages_by_bucket. Until then reads stay on the legacy
+    // user_messages table and messages are written to both layouts.
+    public CassandraStorageFacadeBuilder bucketedMessageReads(boolean bucketedMessageReads) {
+        this.bucketedMessageReads = bucketedMessageReads;
+        return this;
+    }
+
     public CassandraStorageFacade build() {
         return new CassandraStorageFacade(this);
     }
@@ -14,6 +14,11 @@ public class ConversationCqlStatement {
     private final PreparedStatement updateLastReadMessageIdStmt;
     private final PreparedStatement insertMessageStmt;
     private final PreparedStatement insertGroupCommandMessageStmt;
+    private final PreparedStatement insertMessageBucketStmt;
+    private final PreparedStatement insertLegacyMessageStmt;
+    private final PreparedStatement insertLegacyGroupCommandMessageStmt;
+    private final PreparedStatement selectBucketsFromStmt;
+    private final PreparedStatement selectBucketsUntilStmt;
     private final PreparedStatement selectConversationsFirstPageStmt;
     private final PreparedStatement selectConversationsNextPageStmt;
     private final PreparedStatement selectConversationChangesStmt;
@@ -21,9 +26,19 @@ public class ConversationCqlStatement {
     private final PreparedStatement selectMessagesStmt;
     private final PreparedStatement selectMessagesAfterStmt;
     private final PreparedStatement selectMessageByIdStmt;
+    private final PreparedStatement selectLegacyMessagesStmt;
+    private final PreparedStatement selectLegacyMessagesAfterStmt;
+    private final PreparedStatement selectLegacyMessageByIdStmt;
     private final PreparedStatement deleteConversationStmt;
+    private final PreparedStatement selectUnreadStateStmt;
+    private final PreparedStatement insertUnreadStateStmt;
+    private final PreparedStatement addCountedMessageIdStmt;
+    private final PreparedStatement trimCountedMessageIdsStmt;
+    private final PreparedStatement updateUnreadStateReadStmt;
+    private final PreparedStatement deleteUnreadStateStmt;
     private final PreparedStatement selectLastReadMessageIdStmt;
-    private final PreparedStatement countUnreadMessagesStmt;
+    private final PreparedStatement selectMessageSendersAfterStmt;
+    private final PreparedStatement selectLegacyMessageSendersAfterStmt;
 
     public ConversationCqlStatement(CqlSession session) {
         this.existsConversationStmt =
@@ -31,12 +46,52 @@ public class ConversationCqlStatement {
                         "SELECT conversation_id FROM ripple.user_conversations "
                                 + "WHERE owner_id = ? AND conversation_id = ?");
 
+        this.selectUnreadStateStmt =
+                session.prepare(
+                        "SELECT untracked_unread_count, counted_message_ids, last_read_message_id "
+                                + "FROM ripple.user_conversation_unread_state "
+                                + "WHERE owner_id = ? AND conversation_id = ?");
+
+        this.insertUnreadStateStmt =
+                session.prepare(
+                        "INSERT INTO ripple.user_conversation_unread_state "
+                                + "(owner_id, conversation_id, untracked_unread_count, last_read_message_id) "
+                                + "VALUES (?, ?, 0, 0)");
+
+        this.addCountedMessageIdStmt =
+                session.prepare(
+                        "UPDATE ripple.user_conversation_unread_state USING TIMESTAMP ? "
+                                + "SET counted_message_ids = counted_message_ids + ? "
+                                + "WHERE owner_id = ? AND conversation_id = ?");
+
+        this.trimCountedMessageIdsStmt =
+                session.prepare(
+                        "UPDATE ripple.user_conversation_unread_state "
+                                + "SET counted_message_ids = counted_message_ids - ?, untracked_unread_count = ? "
+                                + "WHERE owner_id = ? AND conversation_id = ?");
+
+        this.updateUnreadStateReadStmt =
+                session.prepare(
+                        "UPDATE ripple.user_conversation_unread_state "
+                                + "SET untracked_unread_count = ?, last_read_message_id = ? "
+                                + "WHERE owner_id = ? AND conversation_id = ?");
+
+        this.deleteUnreadStateStmt =
+                session.prepare(
+                        "DELETE FROM ripple.user_conversation_unread_state "
+                                + "WHERE owner_id = ? AND conversation_id = ?");
+
         this.selectLastReadMessageIdStmt =
                 session.prepare(
                         "SELECT last_read_message_id FROM ripple.user_conversations "
                                 + "WHERE owner_id = ? AND conversation_id = ?");
 
-        this.countUnreadMessagesStmt =
+        this.selectMessageSendersAfterStmt =
+                session.prepare(
+                        "SELECT sender_id FROM ripple.user_messages_by_bucket "
+                                + "WHERE conversation_id = ? AND bucket = ? AND message_id > ?");
+
+        this.selectLegacyMessageSendersAfterStmt =
                 session.prepare(
                         "SELECT sender_id FROM ripple.user_messages "
                                 + "WHERE conversation_id = ? AND message_id > ?");
@@ -71,19 +126,48 @@ public class ConversationCqlStatement {
                                 + "WHERE owner_id = ? AND conversation_id = ?");
 
         this.insertMessageStmt =
+                session.prepare(
+                        "INSERT INTO ripple.user_messages_by_bucket "
+                                + "(conversation_id, bucket, message_id, sender_id, receiver_id, "
+                                + "group_id, send_timestamp, message_type, text, file_url, file_name) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        this.insertGroupCommandMessageStmt =
+                session.prepare(
+                        "INSERT INTO ripple.user_messages_by_bucket "
+                                + "(conversation_id, bucket, message_id, sender_id, group_id, "
+                                + "send_timestamp, message_type, command_type, command_data) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        this.insertLegacyMessageStmt =
                 session.prepare(
                         "INSERT INTO ripple.user_messages "
                                 + "(conversation_id, message_id, sender_id, receiver_id, group_id, "
                                 + "send_timestamp, message_type, text, file_url, file_name) "
                                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
 
-        this.insertGroupCommandMessageStmt =
+        this.insertLegacyGroupCommandMessageStmt =
                 session.prepare(
                         "INSERT INTO ripple.user_messages "
                                 + "(conversation_id, message_id, sender_id, group_id, "
                                 + "send_timestamp, message_type, command_type, command_data) "
                                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
 
+        this.insertMessageBucketStmt =
+                session.prepare(
+                        "INSERT INTO ripple.user_message_buckets (conversation_id, bucket) "
+                                + "VALUES (?, ?)");
+
+        this.selectBucketsFromStmt =
+                session.prepare(
+                        "SELECT bucket FROM ripple.user_message_buckets "
+                                + "WHERE conversation_id = ? AND bucket >= ?");
+
+        this.selectBucketsUntilStmt =
+                session.prepare(
+                        "SELECT bucket FROM ripple.user_message_buckets "
+                                + "WHERE conversation_id = ? AND bucket <= ?");
+
         this.selectConversationsFirstPageStmt =
                 session.prepare(
                         "SELECT conversation_id, peer_id, group_id,"
@@ -111,6 +195,29 @@ public class ConversationCqlStatement {
                                 + "WHERE user_id = ? ORDER BY version DESC LIMIT 1");
 
         this.selectMessagesStmt =
+                session.prepare(
+                        "SELECT conversation_id, message_id, sender_id, receiver_id, group_id, "
+                                + "send_timestamp, message_type, text, file_url, file_name, command_type, command_data "
+                                + "FROM ripple.user_messages_by_bucket "
+                                + "WHERE conversation_id = ? AND bucket = ? AND message_id < ? "
+                                + "ORDER BY message_id ASC LIMIT ?");
+
+        this.selectMessagesAfterStmt =
+                session.prepare(
+                        "SELECT conversation_id, message_id, sender_id, receiver_id, group_id, "
+                                + "send_timestamp, message_type, text, file_url, file_name, command_type, command_data "
+                                + "FROM ripple.user_messages_by_bucket "
+                                + "WHERE conversation_id = ? AND bucket = ? AND message_id > ? "
+                                + "ORDER BY message_id ASC LIMIT ?");
+
+        this.selectMessageByIdStmt =
+                session.prepare(
+                        "SELECT conversation_id, message_id, sender_id, receiver_id, group_id, "
+                                + "send_timestamp, message_type, text, file_url, file_name, command_type, command_data "
+                                + "FROM ripple.user_messages_by_bucket "
+                                + "WHERE conversation_id = ? AND bucket = ? AND message_id = ?");
+
+        this.selectLegacyMessagesStmt =
                 session.prepare(
                         "SELECT conversation_id, message_id, sender_id, receiver_id, group_id, "
                                 + "send_timestamp, message_type, text, file_url, file_name, command_type, command_data "
@@ -118,7 +225,7 @@ public class ConversationCqlStatement {
                                 + "WHERE conversation_id = ? AND message_id < ? "
                                 + "ORDER BY message_id ASC LIMIT ?");
 
-        this.selectMessagesAfterStmt =
+        this.selectLegacyMessagesAfterStmt =
                 session.prepare(
                         "SELECT conversation_id, message_id, sender_id, receiver_id, group_id, "
                                 + "send_timestamp, message_type, text, file_url, file_name, command_type, command_data "
@@ -126,7 +233,7 @@ public class ConversationCqlStatement {
                                 + "WHERE conversation_id = ? AND message_id > ? "
                                 + "ORDER BY message_id ASC LIMIT ?");
 
-        this.selectMessageByIdStmt =
+        this.selectLegacyMessageByIdStmt =
                 session.prepare(
                         "SELECT conversation_id, message_id, sender_id, receiver_id, group_id, "
                                 + "send_timestamp, message_type, text, file_url, file_name, command_type, command_data "
@@ -0,0 +1,135 @@
+package com.fanaujie.ripple.storage.service.impl.cassandra;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.*;
+import com.fanaujie.ripple.storage.driver.CassandraDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies the legacy user_messages table into user_messages_by_bucket and its bucket index. Rows
+ * are upserted, so the backfill can be re-run safely, e.g. once more after every dispatcher writes
+ * the bucketed layout.
+ */
+public class MessageBucketBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(MessageBucketBackfill.class);
+    private static final int SCAN_PAGE_SIZE = 500;
+    private static final int MAX_IN_FLIGHT = 64;
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    private final CqlSession session;
+    private final PreparedStatement insertMessageStmt;
+    private final PreparedStatement insertMessageBucketStmt;
+
+    public MessageBucketBackfill(CqlSession session) {
+        this.session = session;
+        this.insertMessageStmt =
+                session.prepare(
+                        "INSERT INTO ripple.user_messages_by_bucket "
+                                + "(conversation_id, bucket, message_id, sender_id, receiver_id, "
+                                + "group_id, send_timestamp, message_type, text, file_url, file_name, "
+                                + "command_type, command_data) "
+                                + "VALUES (:conversation_id, :bucket, :message_id, :sender_id, "
+                                + ":receiver_id, :group_id, :send_timestamp, :message_type, :text, "
+                                + ":file_url, :file_name, :command_type, :command_data)");
+        this.insertMessageBucketStmt =
+                session.prepare(
+                        "INSERT INTO ripple.user_message_buckets (conversation_id, bucket) "
+                                + "VALUES (?, ?)");
+    }
+
+    /** @return the number of migrated messages. */
+    public long run() throws InterruptedException {
+        SimpleStatement scan =
+                SimpleStatement.newInstance(
+                                "SELECT conversation_id, message_id, sender_id, receiver_id, "
+                                        + "group_id, send_timestamp, message_type, text, file_url, "
+                                        + "file_name, command_type, command_data "
+                                        + "FROM ripple.user_messages")
+                        .setPageSize(SCAN_PAGE_SIZE);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long migrated = 0;
+        for (Row row : session.execute(scan)) {
+            if (failure.get() != null) {
+                break;
+            }
+            inFlight.acquire();
+            session.executeAsync(toBatch(row))
+                    .whenComplete(
+                            (rs, e) -> {
+                                if (e != null) {
+                                    failure.compareAndSet(null, e);
+                                }
+                                inFlight.release();
+                            });
+            migrated++;
+            if (migrated % PROGRESS_INTERVAL == 0) {
+                logger.info("run: Migrated {} messages", migrated);
+            }
+        }
+        inFlight.acquire(MAX_IN_FLIGHT);
+        if (failure.get() != null) {
+            throw new IllegalStateException("Message bucket backfill failed", failure.get());
+        }
+        logger.info("run: Backfill complete, migrated {} messages", migrated);
+        return migrated;
+    }
+
+    private BatchStatement toBatch(Row row) {
+        String conversationId = row.getString("conversation_id");
+        long messageId = row.getLong("message_id");
+        int bucket = MessageBuckets.bucketOf(messageId);
+        BoundStatementBuilder insert =
+                insertMessageStmt
+                        .boundStatementBuilder()
+                        .setString("conversation_id", conversationId)
+                        .setInt("bucket", bucket)
+                        .setLong("message_id", messageId);
+        // Null columns are left unset so the copy doesn't write tombstones
+        for (String column :
+                List.of("sender_id", "receiver_id", "group_id", "send_timestamp")) {
+            if (!row.isNull(column)) {
+                insert.setLong(column, row.getLong(column));
+            }
+        }
+        for (String column : List.of("message_type", "command_type")) {
+            if (!row.isNull(column)) {
+                insert.setByte(column, row.getByte(column));
+            }
+        }
+        for (String column : List.of("text", "file_url", "file_name", "command_data")) {
+            if (!row.isNull(column)) {
+                insert.setString(column, row.getString(column));
+            }
+        }
+        return new BatchStatementBuilder(DefaultBatchType.LOGGED)
+                .addStatement(insert.build())
+                .addStatement(insertMessageBucketStmt.bind(conversationId, bucket))
+                .build();
+    }
+
+    // Uses the same environment variables as CassandraStorageProvider
+    public static void main(String[] args) throws InterruptedException {
+        String contactPoints =
+                System.getenv().getOrDefault("CASSANDRA_CONTACT_POINTS", "localhost:9042");
+        String keyspace = System.getenv().getOrDefault("CASSANDRA_KEYSPACE_NAME", "ripple");
+        String localDatacenter =
+                System.getenv().getOrDefault("CASSANDRA_LOCAL_DATACENTER", "datacenter1");
+        try (CqlSession session =
+                CassandraDriver.createCqlSession(
+                        Arrays.stream(contactPoints.split(","))
+                                .map(String::trim)
+                                .filter(s -> !s.isEmpty())
+                                .toList(),
+                        keyspace,
+                        localDatacenter)) {
+            new MessageBucketBackfill(session).run();
+        }
+    }
+}
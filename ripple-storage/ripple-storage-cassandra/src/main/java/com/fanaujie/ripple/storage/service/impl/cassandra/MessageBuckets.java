@@ -0,0 +1,16 @@
+package com.fanaujie.ripple.storage.service.impl.cassandra;
+
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIds;
+
+import java.util.concurrent.TimeUnit;
+
+// Maps a snowflake message id to its user_messages_by_bucket partition.
+final class MessageBuckets {
+    static final long BUCKET_DURATION_MS = TimeUnit.DAYS.toMillis(1);
+
+    private MessageBuckets() {}
+
+    static int bucketOf(long messageId) {
+        return (int) (SnowflakeIds.timestampOf(messageId) / BUCKET_DURATION_MS);
+    }
+}
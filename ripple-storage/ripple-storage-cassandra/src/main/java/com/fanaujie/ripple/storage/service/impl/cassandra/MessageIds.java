@@ -0,0 +1,15 @@
+package com.fanaujie.ripple.storage.service.impl.cassandra;
+
+import com.fanaujie.ripple.snowflakeid.client.SnowflakeIds;
+
+import java.util.concurrent.TimeUnit;
+
+// Reads the creation time out of a snowflake message id.
+final class MessageIds {
+    private MessageIds() {}
+
+    // Unix time in microseconds, the unit of Cassandra write timestamps
+    static long createdAtMicros(long messageId) {
+        return TimeUnit.MILLISECONDS.toMicros(SnowflakeIds.createdAtMillis(messageId));
+    }
+}
@@ -0,0 +1,35 @@
+package com.fanaujie.ripple.storage.service.impl.cassandra;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Remembers the last bucket whose user_message_buckets entry was written per conversation.
+// Direct-mapped and bounded: a conversation pushed out by a colliding one writes its idempotent
+// index entry once more.
+final class WrittenBucketCache {
+    private record Slot(String conversationId, int bucket) {}
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+
+    WrittenBucketCache(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    boolean contains(String conversationId, int bucket) {
+        Slot slot = slots.get(indexOf(conversationId));
+        return slot != null && slot.bucket() == bucket && slot.conversationId().equals(conversationId);
+    }
+
+    void add(String conversationId, int bucket) {
+        slots.set(indexOf(conversationId), new Slot(conversationId, bucket));
+    }
+
+    private int indexOf(String conversationId) {
+        int h = conversationId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -1,15 +1,22 @@
 package com.fanaujie.ripple.storage.repository.impl;
 
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.fanaujie.ripple.storage.exception.NotFoundUserProfileException;
 import com.fanaujie.ripple.storage.repository.AbstractConversationRepositoryTest;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.storage.service.impl.cassandra.CassandraStorageFacadeBuilder;
+import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.testcontainers.containers.CassandraContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @Testcontainers
 class CassandraConversationRepositoryTest extends AbstractConversationRepositoryTest {
 
@@ -27,7 +34,11 @@ class CassandraConversationRepositoryTest extends AbstractConversationRepository
                         .addContactPoint(cassandraContainer.getContactPoint())
                         .withLocalDatacenter(cassandraContainer.getLocalDatacenter())
                         .build();
-        storageFacade = new CassandraStorageFacadeBuilder().cqlSession(session).build();
+        storageFacade =
+                new CassandraStorageFacadeBuilder()
+                        .cqlSession(session)
+                        .bucketedMessageReads(true)
+                        .build();
     }
 
     @AfterEach
@@ -38,7 +49,10 @@ class CassandraConversationRepositoryTest extends AbstractConversationRepository
             session.execute("TRUNCATE ripple.user_relations");
             session.execute("TRUNCATE ripple.user_conversations");
             session.execute("TRUNCATE ripple.user_conversations_version");
+            session.execute("TRUNCATE ripple.user_conversation_unread_state");
             session.execute("TRUNCATE ripple.user_messages");
+            session.execute("TRUNCATE ripple.user_messages_by_bucket");
+            session.execute("TRUNCATE ripple.user_message_buckets");
             session.close();
         }
     }
@@ -47,4 +61,40 @@ class CassandraConversationRepositoryTest extends AbstractConversationRepository
     protected RippleStorageFacade getStorageFacade() {
         return storageFacade;
     }
+
+    @Test
+    void calculateUnreadCount_shouldScanMessages_whenConversationHasNoUnreadState()
+            throws NotFoundUserProfileException {
+        long ownerId = 3101L;
+        long peerId = 4101L;
+        createUserProfile(ownerId, "owner_legacy_unread", "Owner Legacy Unread", "avatar.png");
+        createUserProfile(peerId, "peer_legacy_unread", "Peer Legacy Unread", "avatar.png");
+
+        String conversationId = ConversationUtils.generateConversationId(ownerId, peerId);
+        storageFacade.createSingeMessageConversation(
+                conversationId, ownerId, peerId, System.currentTimeMillis());
+        // A conversation created before unread state was kept
+        session.execute(
+                "DELETE FROM ripple.user_conversation_unread_state "
+                        + "WHERE owner_id = ? AND conversation_id = ?",
+                ownerId,
+                conversationId);
+
+        storageFacade.saveTextMessage(
+                conversationId, 101L, peerId, ownerId, System.currentTimeMillis(), "Msg 101", null, null);
+        storageFacade.saveTextMessage(
+                conversationId, 102L, ownerId, peerId, System.currentTimeMillis(), "Msg 102", null, null);
+        storageFacade.saveTextMessage(
+                conversationId, 103L, peerId, ownerId, System.currentTimeMillis(), "Msg 103", null, null);
+        storageFacade.incrementUnreadCounts(conversationId, List.of(ownerId), 103L);
+        assertEquals(2, storageFacade.calculateUnreadCount(ownerId, conversationId));
+
+        // Reading gives the conversation unread state, later messages are counted
+        storageFacade.markLastReadMessageId(
+                conversationId, ownerId, 103L, System.currentTimeMillis());
+        storageFacade.saveTextMessage(
+                conversationId, 104L, peerId, ownerId, System.currentTimeMillis(), "Msg 104", null, null);
+        storageFacade.incrementUnreadCounts(conversationId, List.of(ownerId), 104L);
+        assertEquals(1, storageFacade.calculateUnreadCount(ownerId, conversationId));
+    }
 }
\ No newline at end of file
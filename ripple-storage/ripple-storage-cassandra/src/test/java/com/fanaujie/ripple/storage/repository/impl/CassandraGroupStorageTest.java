@@ -41,7 +41,10 @@ class CassandraGroupStorageTest extends AbstractGroupStorageTest {
             session.execute("TRUNCATE ripple.user_group_version");
             session.execute("TRUNCATE ripple.user_conversations");
             session.execute("TRUNCATE ripple.user_conversations_version");
+            session.execute("TRUNCATE ripple.user_conversation_unread_state");
             session.execute("TRUNCATE ripple.user_messages");
+            session.execute("TRUNCATE ripple.user_messages_by_bucket");
+            session.execute("TRUNCATE ripple.user_message_buckets");
             session.close();
         }
     }
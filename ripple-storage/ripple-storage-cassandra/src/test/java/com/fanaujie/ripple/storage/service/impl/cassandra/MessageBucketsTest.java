@@ -0,0 +1,42 @@
+package com.fanaujie.ripple.storage.service.impl.cassandra;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageBucketsTest {
+
+    private static long snowflakeId(long timestampMs, long nodeAndSequence) {
+        return (timestampMs << 22) | nodeAndSequence;
+    }
+
+    @Test
+    void testBucketOf_SameDayShareBucket() {
+        long dayStart = 400 * MessageBuckets.BUCKET_DURATION_MS;
+
+        int first = MessageBuckets.bucketOf(snowflakeId(dayStart, 0));
+        int last =
+                MessageBuckets.bucketOf(
+                        snowflakeId(dayStart + MessageBuckets.BUCKET_DURATION_MS - 1, (1 << 22) - 1));
+
+        assertEquals(400, first);
+        assertEquals(first, last);
+    }
+
+    @Test
+    void testBucketOf_NextDayStartsNewBucket() {
+        long dayStart = 400 * MessageBuckets.BUCKET_DURATION_MS;
+
+        assertEquals(
+                MessageBuckets.bucketOf(snowflakeId(dayStart, 5)) + 1,
+                MessageBuckets.bucketOf(
+                        snowflakeId(dayStart + MessageBuckets.BUCKET_DURATION_MS, 5)));
+    }
+
+    @Test
+    void testBucketOf_MaxValueIsLastBucket() {
+        // getMessages uses Long.MAX_VALUE as the upper bound for the latest page
+        assertTrue(MessageBuckets.bucketOf(Long.MAX_VALUE) >= MessageBuckets.bucketOf(snowflakeId(
+                System.currentTimeMillis(), 0)));
+    }
+}
@@ -0,0 +1,37 @@
+package com.fanaujie.ripple.storage.service.impl.cassandra;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WrittenBucketCacheTest {
+
+    @Test
+    void testContains_OnlyTheLastWrittenBucket() {
+        WrittenBucketCache cache = new WrittenBucketCache(16);
+
+        assertFalse(cache.contains("conv-1", 400));
+        cache.add("conv-1", 400);
+        assertTrue(cache.contains("conv-1", 400));
+
+        cache.add("conv-1", 401);
+        assertTrue(cache.contains("conv-1", 401));
+        assertFalse(cache.contains("conv-1", 400));
+    }
+
+    @Test
+    void testContains_CollidingConversationEvicts() {
+        WrittenBucketCache cache = new WrittenBucketCache(1);
+
+        cache.add("conv-1", 400);
+        cache.add("conv-2", 400);
+
+        assertFalse(cache.contains("conv-1", 400));
+        assertTrue(cache.contains("conv-2", 400));
+    }
+
+    @Test
+    void testCapacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new WrittenBucketCache(12));
+    }
+}
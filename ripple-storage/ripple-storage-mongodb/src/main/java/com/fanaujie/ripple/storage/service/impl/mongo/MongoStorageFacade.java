@@ -6,11 +6,13 @@ import com.fanaujie.ripple.storage.exception.*;
 import com.fanaujie.ripple.storage.model.*;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
+import com.fanaujie.ripple.storage.service.utils.UnreadState;
 import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.PushOptions;
 import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.Updates;
 import org.bson.Document;
@@ -406,12 +408,27 @@ public class MongoStorageFacade implements RippleStorageFacade {
         try {
             session.startTransaction();
 
+            Bson conversationFilter = Filters.and(
+                    Filters.eq("user_id", ownerId),
+                    Filters.eq("conversation_id", conversationId)
+            );
+            // Read inside the transaction, a concurrent count makes the commit fail instead of
+            // being overwritten
+            Document unreadDoc = userConversationsCollection.find(session, conversationFilter)
+                    .projection(new Document("unread_count", 1).append("counted_message_ids", 1))
+                    .first();
+            Number unreadCount = unreadDoc == null ? null : unreadDoc.get("unread_count", Number.class);
+            UnreadState unreadState = unreadDoc == null
+                    ? UnreadState.EMPTY
+                    : UnreadState.of(
+                            unreadCount == null ? 0 : unreadCount.intValue(),
+                            unreadDoc.getList("counted_message_ids", Long.class, List.of()));
+
             userConversationsCollection.updateOne(session,
-                    Filters.and(
-                            Filters.eq("user_id", ownerId),
-                            Filters.eq("conversation_id", conversationId)
-                    ),
-                    Updates.set("last_read_message_id", readMessageId)
+                    conversationFilter,
+                    Updates.combine(
+                            Updates.set("last_read_message_id", readMessageId),
+                            Updates.set("unread_count", unreadState.read(readMessageId).unreadCount()))
             );
 
             Document versionDoc = new Document("user_id", ownerId)
@@ -1986,6 +2003,35 @@ public class MongoStorageFacade implements RippleStorageFacade {
         userMessagesCollection.insertOne(doc);
     }
 
+    @Override
+    public void incrementUnreadCounts(String conversationId, List<Long> ownerIds, long messageId) {
+        if (ownerIds.isEmpty()) {
+            return;
+        }
+        // Same rules as UnreadState.count, a redelivered message matches no conversation.
+        // Conversations without unread_count are left to the message count until they are read.
+        userConversationsCollection.updateMany(
+                Filters.and(
+                        Filters.eq("conversation_id", conversationId),
+                        Filters.in("user_id", ownerIds),
+                        Filters.exists("unread_count"),
+                        Filters.ne("counted_message_ids", messageId),
+                        Filters.or(
+                                // The window isn't full, or holds an id older than this message
+                                Filters.exists(
+                                        "counted_message_ids." + (UnreadState.TRACKED_MESSAGE_IDS - 1),
+                                        false),
+                                Filters.elemMatch("counted_message_ids", new Document("$lt", messageId))
+                        )
+                ),
+                Updates.combine(
+                        Updates.inc("unread_count", 1),
+                        Updates.pushEach("counted_message_ids", List.of(messageId),
+                                new PushOptions().sort(1).slice(-UnreadState.TRACKED_MESSAGE_IDS))
+                )
+        );
+    }
+
     @Override
     public int calculateUnreadCount(long userId, String conversationId) {
         Document convDoc = userConversationsCollection.find(
@@ -1993,25 +2039,25 @@ public class MongoStorageFacade implements RippleStorageFacade {
                         Filters.eq("user_id", userId),
                         Filters.eq("conversation_id", conversationId)
                 )
-        ).first();
+        ).projection(new Document("unread_count", 1).append("last_read_message_id", 1)).first();
 
         if (convDoc == null) {
             return 0;
         }
-
-        Long lastReadMessageId = convDoc.getLong("last_read_message_id");
-        if (lastReadMessageId == null) {
-            lastReadMessageId = 0L;
+        Number unreadCount = convDoc.get("unread_count", Number.class);
+        if (unreadCount != null) {
+            return unreadCount.intValue();
         }
 
+        // Created before unread_count was kept and not read since, count the messages instead
+        Number lastReadMessageId = convDoc.get("last_read_message_id", Number.class);
         long count = userMessagesCollection.countDocuments(
                 Filters.and(
                         Filters.eq("conversation_id", conversationId),
-                        Filters.gt("message_id", lastReadMessageId),
+                        Filters.gt("message_id", lastReadMessageId == null ? 0L : lastReadMessageId.longValue()),
                         Filters.ne("sender_id", userId)
                 )
         );
-
         return (int) count;
     }
 }
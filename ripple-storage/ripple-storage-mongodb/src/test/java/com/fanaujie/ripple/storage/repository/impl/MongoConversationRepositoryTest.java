@@ -1,17 +1,26 @@
 package com.fanaujie.ripple.storage.repository.impl;
 
 import com.fanaujie.ripple.storage.driver.MongoDriver;
+import com.fanaujie.ripple.storage.exception.NotFoundUserProfileException;
 import com.fanaujie.ripple.storage.repository.AbstractConversationRepositoryTest;
 import com.fanaujie.ripple.storage.service.RippleStorageFacade;
 import com.fanaujie.ripple.storage.service.impl.mongo.MongoStorageFacadeBuilder;
+import com.fanaujie.ripple.storage.service.utils.ConversationUtils;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @Testcontainers
 class MongoConversationRepositoryTest extends AbstractConversationRepositoryTest {
 
@@ -47,4 +56,42 @@ class MongoConversationRepositoryTest extends AbstractConversationRepositoryTest
     protected RippleStorageFacade getStorageFacade() {
         return storageFacade;
     }
+
+    @Test
+    void calculateUnreadCount_shouldCountMessages_whenConversationHasNoUnreadCount()
+            throws NotFoundUserProfileException {
+        long ownerId = 3101L;
+        long peerId = 4101L;
+        createUserProfile(ownerId, "owner_legacy_unread", "Owner Legacy Unread", "avatar.png");
+        createUserProfile(peerId, "peer_legacy_unread", "Peer Legacy Unread", "avatar.png");
+
+        String conversationId = ConversationUtils.generateConversationId(ownerId, peerId);
+        storageFacade.createSingeMessageConversation(
+                conversationId, ownerId, peerId, System.currentTimeMillis());
+        // A conversation created before unread_count was kept
+        MongoDriver.getDatabase(mongoClient)
+                .getCollection("user_conversations")
+                .updateOne(
+                        Filters.and(
+                                Filters.eq("user_id", ownerId),
+                                Filters.eq("conversation_id", conversationId)),
+                        Updates.unset("unread_count"));
+
+        storageFacade.saveTextMessage(
+                conversationId, 101L, peerId, ownerId, System.currentTimeMillis(), "Msg 101", null, null);
+        storageFacade.saveTextMessage(
+                conversationId, 102L, ownerId, peerId, System.currentTimeMillis(), "Msg 102", null, null);
+        storageFacade.saveTextMessage(
+                conversationId, 103L, peerId, ownerId, System.currentTimeMillis(), "Msg 103", null, null);
+        storageFacade.incrementUnreadCounts(conversationId, List.of(ownerId), 103L);
+        assertEquals(2, storageFacade.calculateUnreadCount(ownerId, conversationId));
+
+        // Reading sets unread_count, later messages are counted
+        storageFacade.markLastReadMessageId(
+                conversationId, ownerId, 103L, System.currentTimeMillis());
+        storageFacade.saveTextMessage(
+                conversationId, 104L, peerId, ownerId, System.currentTimeMillis(), "Msg 104", null, null);
+        storageFacade.incrementUnreadCounts(conversationId, List.of(ownerId), 104L);
+        assertEquals(1, storageFacade.calculateUnreadCount(ownerId, conversationId));
+    }
 }
@@ -21,15 +21,21 @@ public class Application {
         String redisHost = config.getString("redis.host");
         int redisPort = config.getInt("redis.port");
         int userPresenceTtlSeconds = config.getInt("user-presence.ttl-seconds");
+        boolean migrateLegacyKeys = config.getBoolean("user-presence.migrate-legacy-keys");
         logger.info("Configuration - Redis Host: {}, Redis Port: {}", redisHost, redisPort);
         logger.info("Starting User Presence server...");
         logger.info("gRPC Port: {}", grpcPort);
         logger.info("User Presence TTL (seconds): {}", userPresenceTtlSeconds);
+        logger.info("User Presence Migrate Legacy Keys: {}", migrateLegacyKeys);
 
-        UserPresenceStorage userPresenceStorage =
+        RedisUserPresenceStorage redisUserPresenceStorage =
                 new RedisUserPresenceStorage(
                         RedisDriver.createRedissonClient(redisHost, redisPort),
                         userPresenceTtlSeconds);
+        if (migrateLegacyKeys) {
+            redisUserPresenceStorage.migrateLegacyPresence();
+        }
+        UserPresenceStorage userPresenceStorage = redisUserPresenceStorage;
         GrpcServer grpcServer = new GrpcServer(grpcPort, userPresenceStorage);
         CompletableFuture<Void> grpcFuture = grpcServer.startAsync();
         grpcFuture.join();